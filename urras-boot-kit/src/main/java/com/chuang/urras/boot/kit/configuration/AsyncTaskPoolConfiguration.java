@@ -3,11 +3,14 @@ package com.chuang.urras.boot.kit.configuration;
 import com.chuang.urras.boot.kit.properties.ThreadPoolProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.core.task.TaskDecorator;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.scheduling.config.ScheduledTaskRegistrar;
@@ -15,6 +18,8 @@ import org.springframework.scheduling.config.ScheduledTaskRegistrar;
 import javax.annotation.Resource;
 import java.lang.reflect.Method;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Slf4j
 @EnableAsync
@@ -24,13 +29,31 @@ public class AsyncTaskPoolConfiguration implements AsyncConfigurer, SchedulingCo
 
     @Resource private ThreadPoolProperties properties;
 
+    /**
+     * 可选，用于把提交任务线程的上下文（例如操作人）传递到异步线程
+     */
+    @Autowired(required = false) private TaskDecorator taskDecorator;
+
     /**
      * 任务提交失败策略，当线程都在工作中，且队列已满，则任务提交失败。
      * 这里使用DiscardOld策略，当任务提交失败时，移除队列最前面的任务
      * 这里发现EnableScheduling实际需要的是TaskScheduler。该线程池无法满足需要。
+     * thread.pool.virtual=true 并且JDK支持时，每个异步任务使用一个虚拟线程，阻塞的HTTP调用不再占用平台线程。
      */
     @Override
     public Executor getAsyncExecutor() {
+        if (properties.isVirtual()) {
+            ExecutorService virtual = newVirtualExecutor();
+            if (null != virtual) {
+                ConcurrentTaskExecutor executor = new ConcurrentTaskExecutor(virtual);
+                if (null != taskDecorator) {
+                    executor.setTaskDecorator(taskDecorator);
+                }
+                return executor;
+            }
+            log.warn("当前JDK不支持虚拟线程，异步任务使用线程池");
+        }
+
         ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
         pool.setThreadNamePrefix(properties.getThreadNamePrefix());
         pool.setCorePoolSize(properties.getCoreSize());
@@ -38,10 +61,25 @@ public class AsyncTaskPoolConfiguration implements AsyncConfigurer, SchedulingCo
         pool.setQueueCapacity(properties.getWorkQueueCapacity());
         pool.setKeepAliveSeconds(properties.getKeepAliveTime());
         pool.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.DiscardOldestPolicy());
+        if (null != taskDecorator) {
+            pool.setTaskDecorator(taskDecorator);
+        }
         pool.initialize();
         return pool;
     }
 
+    /**
+     * 项目按 Java 8 编译，通过反射调用 Executors.newVirtualThreadPerTaskExecutor
+     * @return JDK 21 以下返回 null
+     */
+    private static ExecutorService newVirtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return (Throwable throwable, Method method, Object... objects) ->
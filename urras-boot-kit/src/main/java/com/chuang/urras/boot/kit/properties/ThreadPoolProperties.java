@@ -23,5 +23,10 @@ public class ThreadPoolProperties {
 
     private int schedulerPoolSize = 2;
 
+    /**
+     * 异步任务使用虚拟线程（需要JDK 21+，低版本JDK上忽略）。开启后 coreSize、maximumSize、workQueueCapacity 不再生效
+     */
+    private boolean virtual = false;
+
 
 }
@@ -1,6 +1,7 @@
 package com.chuang.urras.crud.handlers;
 
 import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -52,6 +53,27 @@ public interface ValueGetter<T> extends Supplier<Optional<T>> {
 
     }
 
+    /**
+     * 捕获当前线程的值，在执行task的线程中使用这个值，执行完后恢复。用于把值传递到异步线程池
+     */
+    default Runnable wrap(Runnable task) {
+        T value = this.get().orElse(null);
+        return () -> temp(value, task);
+    }
+
+    default <R> Callable<R> wrap(Callable<R> task) {
+        T value = this.get().orElse(null);
+        return () -> {
+            T old = this.get().orElse(null);
+            set(value);
+            try {
+                return task.call();
+            } finally {
+                set(old);
+            }
+        };
+    }
+
     interface RunnableWithEx {
         void run() throws Throwable;
     }
@@ -0,0 +1,63 @@
+package com.chuang.urras.sdk.payment.bench;
+
+import com.chuang.urras.sdk.payment.ConfigLoadPolicy;
+import com.chuang.urras.sdk.payment.PaymentPlatformConfig;
+import com.chuang.urras.sdk.payment.PaymentRequest;
+import com.chuang.urras.sdk.payment.PaymentSDK;
+import com.chuang.urras.sdk.payment.http.PlatformHttpSettings;
+import com.chuang.urras.support.enums.PaymentType;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 压测使用的配置：存款、取款各一个 {@link MockPlatform} 配置，都指向同一个 {@link MockGateway}
+ */
+public class BenchConfigLoadPolicy implements ConfigLoadPolicy {
+
+    public static final String DEPOSIT_KEY = "mock-deposit";
+    public static final String WITHDRAW_KEY = "mock-withdraw";
+
+    private final PaymentPlatformConfig deposit;
+    private final PaymentPlatformConfig withdraw;
+
+    /**
+     * @param maxConnections 平台 http 客户端的连接池大小
+     */
+    public BenchConfigLoadPolicy(String apiUrl, String key, int maxConnections) {
+        Map<String, Object> ext = new HashMap<>();
+        ext.put(PlatformHttpSettings.EXT_MAX_CONNECTIONS, maxConnections);
+        this.deposit = config(DEPOSIT_KEY, PaymentType.ALI, apiUrl, key, ext);
+        this.withdraw = config(WITHDRAW_KEY, PaymentType.ONLINE_BANK_PAYOUT, apiUrl, key, ext);
+    }
+
+    private static PaymentPlatformConfig config(String configKey, PaymentType type, String apiUrl, String key, Map<String, Object> ext) {
+        return new PaymentPlatformConfig(configKey, MockPlatform.CODE, "bench-merchant", type, key, apiUrl, null, ext,
+                "http://127.0.0.1/front", "http://127.0.0.1/callback", null, null);
+    }
+
+    @Override
+    public Optional<PaymentPlatformConfig> loadConfig(PaymentRequest request, PaymentSDK sdk) {
+        return Optional.of(request.getType().isWithdraw() ? withdraw : deposit);
+    }
+
+    @Override
+    public Optional<PaymentPlatformConfig> loadConfig(String key) {
+        if (DEPOSIT_KEY.equals(key)) {
+            return Optional.of(deposit);
+        }
+        if (WITHDRAW_KEY.equals(key)) {
+            return Optional.of(withdraw);
+        }
+        return Optional.empty();
+    }
+
+    public PaymentPlatformConfig getDeposit() {
+        return deposit;
+    }
+
+    public PaymentPlatformConfig getWithdraw() {
+        return withdraw;
+    }
+}
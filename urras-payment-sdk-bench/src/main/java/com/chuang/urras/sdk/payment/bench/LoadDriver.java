@@ -0,0 +1,300 @@
+package com.chuang.urras.sdk.payment.bench;
+
+import com.chuang.urras.sdk.payment.PaymentPlatformConfig;
+import com.chuang.urras.sdk.payment.PaymentSDK;
+import com.chuang.urras.sdk.payment.callback.CallbackPipeline;
+import com.chuang.urras.sdk.payment.callback.MemoryCallbackDeduplicator;
+import com.chuang.urras.sdk.payment.deposit.DepositRequest;
+import com.chuang.urras.sdk.payment.http.PlatformHttpClients;
+import com.chuang.urras.sdk.payment.query.QueryRequest;
+import com.chuang.urras.sdk.payment.withdraw.WithdrawRequest;
+import com.chuang.urras.support.Result;
+import com.chuang.urras.support.enums.PaymentType;
+
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * PaymentSDK 端到端压测。
+ * 启动本地 {@link MockGateway}，以固定速率（开环，不等待上一个请求完成）发起存款、取款、查询，
+ * 网关的回调交给 {@link CallbackPipeline} 处理，最后输出各操作的延迟分位、吞吐、错误数和分配速率。
+ * 延迟从计划发起时间开始计算，发起线程落后时排队的时间也计入延迟。
+ *
+ * 参数均为 key=value，例如：
+ * <pre>
+ *     java -cp ... com.chuang.urras.sdk.payment.bench.LoadDriver rps=2000 duration=60 latency=50 errorRate=0.01 hops=2 duplicates=3
+ * </pre>
+ * <ul>
+ *     <li>rps：每秒发起的请求数，默认 500</li>
+ *     <li>warmup / duration：预热和统计的秒数，默认 10 / 30</li>
+ *     <li>mix：存款:取款:查询 的比例，默认 6:2:2</li>
+ *     <li>latency / jitter：网关延迟毫秒，默认 20 / 10</li>
+ *     <li>errorRate：网关返回 503 的概率，默认 0</li>
+ *     <li>hops：存款响应前的 302 跳转次数，默认 0</li>
+ *     <li>callbackDelay / duplicates：回调延迟毫秒和每个订单的回调次数，默认 500 / 2</li>
+ *     <li>handlerLatency：业务处理回调的耗时毫秒，默认 0</li>
+ *     <li>connections：平台 http 连接池大小，默认 200</li>
+ *     <li>concurrency：PaymentSDK 每个平台的最大并发，默认 {@link PaymentSDK#DEFAULT_PLATFORM_CONCURRENCY}</li>
+ * </ul>
+ * 分配速率通过 com.sun.management.ThreadMXBean 统计存活线程的分配字节数，压测期间退出的线程不计入，只作为回归比较的参考。
+ */
+public class LoadDriver {
+
+    private static final String KEY = "bench-key";
+
+    private final Map<String, String> args;
+
+    private final LatencyHistogram deposit = new LatencyHistogram();
+    private final LatencyHistogram withdraw = new LatencyHistogram();
+    private final LatencyHistogram query = new LatencyHistogram();
+    private final LatencyHistogram callback = new LatencyHistogram();
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+
+    public LoadDriver(Map<String, String> args) {
+        this.args = args;
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> args = new HashMap<>();
+        for (String arg : argv) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("参数格式为 key=value：" + arg);
+            }
+            args.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        new LoadDriver(args).run();
+    }
+
+    public void run() throws Exception {
+        int rps = intArg("rps", 500);
+        int warmup = intArg("warmup", 10);
+        int duration = intArg("duration", 30);
+        int handlerLatency = intArg("handlerLatency", 0);
+        int[] mix = mix(args.getOrDefault("mix", "6:2:2"));
+
+        MockGateway gateway = new MockGateway(KEY, Math.max(4, Runtime.getRuntime().availableProcessors()));
+        gateway.setLatency(intArg("latency", 20), intArg("jitter", 10));
+        gateway.setErrorRate(Double.parseDouble(args.getOrDefault("errorRate", "0")));
+        gateway.setRedirectHops(intArg("hops", 0));
+        gateway.setCallbackDelay(intArg("callbackDelay", 500));
+        gateway.setCallbackDuplicates(intArg("duplicates", 2));
+        gateway.start();
+
+        BenchConfigLoadPolicy policy = new BenchConfigLoadPolicy(gateway.getUrl(), KEY, intArg("connections", 200));
+        PaymentSDK sdk = new PaymentSDK(policy, MockPlatform.class.getPackage().getName());
+        sdk.getBulkhead().setLimit(MockPlatform.CODE, intArg("concurrency", PaymentSDK.DEFAULT_PLATFORM_CONCURRENCY));
+
+        CallbackPipeline pipeline = new CallbackPipeline(sdk, new MemoryCallbackDeduplicator(),
+                Runtime.getRuntime().availableProcessors(), 4096, 8);
+        pipeline.onDeposit((platform, info) -> handle(handlerLatency));
+        pipeline.onWithdraw((platform, info) -> handle(handlerLatency));
+        gateway.setCallbackSink((isWithdraw, params) -> {
+            long start = System.nanoTime();
+            CompletableFuture<? extends Result<?>> f = isWithdraw
+                    ? pipeline.withdraw(params, "", BenchConfigLoadPolicy.WITHDRAW_KEY)
+                    : pipeline.deposit(params, "", false, BenchConfigLoadPolicy.DEPOSIT_KEY);
+            f.whenComplete((r, e) -> callback.record(micros(start), null == e && r.isSuccess()));
+        });
+
+        System.out.printf("mock gateway %s, rps=%d, warmup=%ds, duration=%ds, mix=%s%n",
+                gateway.getUrl(), rps, warmup, duration, args.getOrDefault("mix", "6:2:2"));
+        try {
+            drive(sdk, policy.getDeposit(), rps, warmup, mix);
+            resetAll();
+            long[] allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            drive(sdk, policy.getDeposit(), rps, duration, mix);
+            drain(TimeUnit.SECONDS.toNanos(10));
+            long elapsed = System.nanoTime() - start;
+            report(elapsed, allocatedBefore, allocatedBytes());
+            print("gateway", gateway.metrics());
+            print("callback pipeline", pipeline.metrics());
+            print("http clients", PlatformHttpClients.DEFAULT.metrics());
+        } finally {
+            pipeline.shutdown();
+            gateway.stop();
+            PlatformHttpClients.DEFAULT.shutdown();
+        }
+    }
+
+    /**
+     * 按计划时间逐个发起请求，不等待请求完成
+     */
+    private void drive(PaymentSDK sdk, PaymentPlatformConfig queryConfig, int rps, int seconds, int[] mix) {
+        long interval = TimeUnit.SECONDS.toNanos(1) / rps;
+        long total = (long) rps * seconds;
+        long begin = System.nanoTime();
+        int weight = mix[0] + mix[1] + mix[2];
+        for (long i = 0; i < total; i++) {
+            long scheduled = begin + i * interval;
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            int pick = ThreadLocalRandom.current().nextInt(weight);
+            if (pick < mix[0]) {
+                call(deposit, scheduled, () -> sdk.deposit(depositRequest()));
+            } else if (pick < mix[0] + mix[1]) {
+                call(withdraw, scheduled, () -> sdk.withdraw(withdrawRequest()));
+            } else {
+                call(query, scheduled, () -> sdk.query(queryRequest(), queryConfig));
+            }
+        }
+    }
+
+    private void call(LatencyHistogram histogram, long scheduled, Supplier<? extends CompletableFuture<? extends Result<?>>> supplier) {
+        inFlight.increment();
+        CompletableFuture<? extends Result<?>> f;
+        try {
+            f = supplier.get();
+        } catch (RuntimeException e) {
+            inFlight.decrement();
+            histogram.record(micros(scheduled), false);
+            return;
+        }
+        f.whenComplete((r, e) -> {
+            inFlight.decrement();
+            histogram.record(micros(scheduled), null == e && r.isSuccess());
+        });
+    }
+
+    private DepositRequest depositRequest() {
+        DepositRequest request = new DepositRequest();
+        request.setReference("BD" + sequence.incrementAndGet());
+        request.setType(PaymentType.ALI);
+        request.setAmount(ThreadLocalRandom.current().nextLong(100, 1000000));
+        request.setUsername("bench");
+        request.setClientIp("127.0.0.1");
+        return request;
+    }
+
+    private WithdrawRequest withdrawRequest() {
+        WithdrawRequest request = new WithdrawRequest();
+        request.setReference("BW" + sequence.incrementAndGet());
+        request.setType(PaymentType.ONLINE_BANK_PAYOUT);
+        request.setAmount(ThreadLocalRandom.current().nextLong(100, 1000000));
+        request.setUsername("bench");
+        request.setClientIp("127.0.0.1");
+        request.setAccount("6222000000000000");
+        request.setRealname("bench");
+        return request;
+    }
+
+    private QueryRequest queryRequest() {
+        return QueryRequest.create("BD" + ThreadLocalRandom.current().nextLong(1, sequence.get() + 2), new Date(), PaymentType.ALI, null);
+    }
+
+    private void handle(int handlerLatency) throws InterruptedException {
+        if (handlerLatency > 0) {
+            Thread.sleep(handlerLatency);
+        }
+        handled.increment();
+    }
+
+    /**
+     * 等待已发起的请求完成，最多等待 timeout 纳秒
+     */
+    private void drain(long timeout) {
+        long deadline = System.nanoTime() + timeout;
+        while (inFlight.sum() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    private void resetAll() {
+        deposit.reset();
+        withdraw.reset();
+        query.reset();
+        callback.reset();
+        handled.reset();
+    }
+
+    private void report(long elapsedNanos, long[] allocatedBefore, long[] allocatedAfter) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%n%-10s %10s %10s %8s %10s %10s %10s %10s%n", "op", "count", "ops/s", "errors", "p50(ms)", "p90(ms)", "p99(ms)", "max(ms)");
+        long ops = 0;
+        ops += row("deposit", deposit, seconds);
+        ops += row("withdraw", withdraw, seconds);
+        ops += row("query", query, seconds);
+        ops += row("callback", callback, seconds);
+        System.out.printf("callbacks handled by business: %d%n", handled.sum());
+
+        long allocated = allocatedAfter[0] - allocatedBefore[0];
+        if (allocatedBefore[1] == 0 && allocated >= 0) {
+            System.out.printf("allocation: %.1f MB/s, %d bytes/op (live threads only, approximate)%n",
+                    allocated / seconds / 1024 / 1024, ops == 0 ? 0 : allocated / ops);
+        } else {
+            System.out.println("allocation: not supported by this JVM");
+        }
+    }
+
+    private long row(String name, LatencyHistogram h, double seconds) {
+        System.out.printf("%-10s %10d %10.1f %8d %10.2f %10.2f %10.2f %10.2f%n", name, h.getCount(), h.getCount() / seconds,
+                h.getErrors(), h.percentile(50) / 1000.0, h.percentile(90) / 1000.0, h.percentile(99) / 1000.0, h.getMax() / 1000.0);
+        return h.getCount();
+    }
+
+    private static void print(String title, Map<String, String> metrics) {
+        System.out.println(title + ": " + new LinkedHashMap<>(metrics));
+    }
+
+    /**
+     * @return [所有存活线程累计分配的字节数, 不支持时为 1]
+     */
+    private static long[] allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return new long[]{0, 1};
+        }
+        com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+        if (!sun.isThreadAllocatedMemorySupported()) {
+            return new long[]{0, 1};
+        }
+        sun.setThreadAllocatedMemoryEnabled(true);
+        long total = 0;
+        for (long bytes : sun.getThreadAllocatedBytes(sun.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return new long[]{total, 0};
+    }
+
+    private static long micros(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    }
+
+    private int intArg(String name, int defaultValue) {
+        String value = args.get(name);
+        return null == value ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static int[] mix(String value) {
+        String[] parts = value.split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("mix 格式为 存款:取款:查询，例如 6:2:2");
+        }
+        int[] mix = new int[3];
+        for (int i = 0; i < 3; i++) {
+            mix[i] = Integer.parseInt(parts[i].trim());
+        }
+        if (mix[0] + mix[1] + mix[2] <= 0) {
+            throw new IllegalArgumentException("mix 的比例之和必须大于 0");
+        }
+        return mix;
+    }
+}
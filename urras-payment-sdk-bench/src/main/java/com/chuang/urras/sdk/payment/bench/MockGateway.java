@@ -0,0 +1,326 @@
+package com.chuang.urras.sdk.payment.bench;
+
+import com.alibaba.fastjson.JSON;
+import com.chuang.urras.toolskit.basic.HashKit;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地模拟支付网关，基于 JDK 自带的 HttpServer，监听 127.0.0.1 的随机端口。
+ * <ul>
+ *     <li>POST /deposit、/withdraw、/query，参数为 form 表单，返回 json</li>
+ *     <li>延迟：每个请求在 latency ± jitter 毫秒后应答</li>
+ *     <li>错误率：按 errorRate 的概率返回 503</li>
+ *     <li>302 链：存款请求先经过 redirectHops 次 /redirect 跳转再返回结果</li>
+ *     <li>慢回调：存款、取款受理后 callbackDelay 毫秒再通过 {@link CallbackSink} 发出回调，每个订单重复发送 callbackDuplicates 次</li>
+ * </ul>
+ * 回调参数使用 {@link #sign(Map, String)} 签名，{@link MockPlatform} 用同样的方式验签。
+ */
+public class MockGateway {
+
+    /**
+     * 网关发出的回调，由压测程序交给 {@link com.chuang.urras.sdk.payment.callback.CallbackPipeline}
+     */
+    @FunctionalInterface
+    public interface CallbackSink {
+        /**
+         * @param withdraw true 为取款回调
+         * @param params 已签名的回调参数
+         */
+        void send(boolean withdraw, Map<String, String> params);
+    }
+
+    private final String key;
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService timer;
+
+    private volatile int latency = 20;
+    private volatile int jitter = 10;
+    private volatile double errorRate = 0;
+    private volatile int redirectHops = 0;
+    private volatile int callbackDelay = 500;
+    private volatile int callbackDuplicates = 1;
+    private volatile CallbackSink callbackSink = (withdraw, params) -> {};
+
+    private final AtomicInteger orderSeq = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder redirects = new LongAdder();
+    private final LongAdder callbacks = new LongAdder();
+
+    /**
+     * @param key 签名密钥，和 {@link com.chuang.urras.sdk.payment.PaymentPlatformConfig#getPrivateKey()} 相同
+     * @param threads 处理请求的线程数，延迟通过定时器实现，不占用处理线程
+     */
+    public MockGateway(String key, int threads) throws IOException {
+        this.key = key;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        this.workers = Executors.newFixedThreadPool(threads, threadFactory("mock-gateway-"));
+        this.timer = Executors.newScheduledThreadPool(2, threadFactory("mock-gateway-timer-"));
+        server.setExecutor(workers);
+        server.createContext("/deposit", exchange -> delay(exchange, () -> deposit(exchange)));
+        server.createContext("/redirect/", exchange -> delay(exchange, () -> redirect(exchange)));
+        server.createContext("/withdraw", exchange -> delay(exchange, () -> withdraw(exchange)));
+        server.createContext("/query", exchange -> delay(exchange, () -> query(exchange)));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        timer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * 网关地址，作为配置的 apiUrl
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public void setLatency(int latency, int jitter) {
+        this.latency = latency;
+        this.jitter = jitter;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public void setRedirectHops(int redirectHops) {
+        this.redirectHops = redirectHops;
+    }
+
+    public void setCallbackDelay(int callbackDelay) {
+        this.callbackDelay = callbackDelay;
+    }
+
+    public void setCallbackDuplicates(int callbackDuplicates) {
+        this.callbackDuplicates = callbackDuplicates;
+    }
+
+    public void setCallbackSink(CallbackSink callbackSink) {
+        this.callbackSink = callbackSink;
+    }
+
+    public Map<String, String> metrics() {
+        Map<String, String> metrics = new LinkedHashMap<>();
+        metrics.put("requests", String.valueOf(requests.sum()));
+        metrics.put("errors", String.valueOf(errors.sum()));
+        metrics.put("redirects", String.valueOf(redirects.sum()));
+        metrics.put("callbacks", String.valueOf(callbacks.sum()));
+        return metrics;
+    }
+
+    /**
+     * md5(按 key 升序拼接的非空参数 + "&amp;key=" + 密钥)
+     */
+    public static String sign(Map<String, String> params, String key) {
+        Map<String, String> src = new HashMap<>(params);
+        src.remove("sign");
+        return HashKit.MD5Encode(HashKit.signSrc(src, false, -1) + "&key=" + key);
+    }
+
+    private interface Action {
+        void run() throws IOException;
+    }
+
+    /**
+     * 读取请求体后按配置的延迟交给 action 应答，延迟期间不占用处理线程
+     */
+    private void delay(HttpExchange exchange, Action action) throws IOException {
+        requests.increment();
+        byte[] body = readBody(exchange);
+        exchange.setAttribute("body", new String(body, StandardCharsets.UTF_8));
+        int wait = latency + (jitter > 0 ? ThreadLocalRandom.current().nextInt(-jitter, jitter + 1) : 0);
+        Runnable reply = () -> {
+            try {
+                if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                    errors.increment();
+                    write(exchange, 503, "{\"code\":\"BUSY\",\"message\":\"mock error\"}");
+                } else {
+                    action.run();
+                }
+            } catch (IOException | RuntimeException e) {
+                exchange.close();
+            }
+        };
+        if (wait <= 0) {
+            reply.run();
+        } else {
+            timer.schedule(() -> workers.execute(reply), wait, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void deposit(HttpExchange exchange) throws IOException {
+        Map<String, String> params = form(exchange);
+        if (!verify(exchange, params)) {
+            return;
+        }
+        String orderNo = "D" + orderSeq.incrementAndGet();
+        scheduleCallback(false, params, orderNo);
+        if (redirectHops > 0) {
+            sendRedirect(exchange, redirectHops - 1, params.get("reference"), orderNo);
+        } else {
+            depositResult(exchange, params.get("reference"), orderNo);
+        }
+    }
+
+    /**
+     * /redirect/{剩余次数}/{订单号}/{网关订单号}，跳转后浏览器使用 GET，所以订单信息放在路径中
+     */
+    private void redirect(HttpExchange exchange) throws IOException {
+        String[] path = exchange.getRequestURI().getPath().split("/");
+        if (path.length != 5) {
+            write(exchange, 404, "{\"code\":\"NOT_FOUND\"}");
+            return;
+        }
+        int remain = Integer.parseInt(path[2]);
+        if (remain > 0) {
+            sendRedirect(exchange, remain - 1, path[3], path[4]);
+        } else {
+            depositResult(exchange, path[3], path[4]);
+        }
+    }
+
+    private void sendRedirect(HttpExchange exchange, int remain, String reference, String orderNo) throws IOException {
+        redirects.increment();
+        exchange.getResponseHeaders().set("Location", getUrl() + "/redirect/" + remain + "/" + reference + "/" + orderNo);
+        exchange.sendResponseHeaders(302, -1);
+        exchange.close();
+    }
+
+    private void depositResult(HttpExchange exchange, String reference, String orderNo) throws IOException {
+        Map<String, String> result = new LinkedHashMap<>();
+        result.put("code", "SUCCESS");
+        result.put("reference", reference);
+        result.put("orderNo", orderNo);
+        result.put("payUrl", getUrl() + "/pay/" + orderNo);
+        write(exchange, 200, JSON.toJSONString(result));
+    }
+
+    private void withdraw(HttpExchange exchange) throws IOException {
+        Map<String, String> params = form(exchange);
+        if (!verify(exchange, params)) {
+            return;
+        }
+        String orderNo = "W" + orderSeq.incrementAndGet();
+        scheduleCallback(true, params, orderNo);
+        Map<String, String> result = new LinkedHashMap<>();
+        result.put("code", "SUCCESS");
+        result.put("reference", params.get("reference"));
+        result.put("orderNo", orderNo);
+        write(exchange, 200, JSON.toJSONString(result));
+    }
+
+    /**
+     * 模拟网关不保存订单，按订单号的 hash 返回固定的状态
+     */
+    private void query(HttpExchange exchange) throws IOException {
+        Map<String, String> params = form(exchange);
+        if (!verify(exchange, params)) {
+            return;
+        }
+        String reference = params.get("reference");
+        Map<String, String> result = new LinkedHashMap<>();
+        result.put("code", "SUCCESS");
+        result.put("reference", reference);
+        result.put("status", (reference.hashCode() & 3) == 0 ? "NO_PAY" : "PAID");
+        write(exchange, 200, JSON.toJSONString(result));
+    }
+
+    private void scheduleCallback(boolean withdraw, Map<String, String> request, String orderNo) {
+        Map<String, String> params = new HashMap<>();
+        params.put("merchantId", request.get("merchantId"));
+        params.put("reference", request.get("reference"));
+        params.put("orderNo", orderNo);
+        params.put("amount", request.get("amount"));
+        params.put("status", "SUCCESS");
+        params.put("sign", sign(params, key));
+        int duplicates = Math.max(1, callbackDuplicates);
+        for (int i = 0; i < duplicates; i++) {
+            // 重复的回调错开几毫秒，既有同时到达的也有先后到达的
+            timer.schedule(() -> {
+                callbacks.increment();
+                callbackSink.send(withdraw, params);
+            }, callbackDelay + i * 5L, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private boolean verify(HttpExchange exchange, Map<String, String> params) throws IOException {
+        if (sign(params, key).equals(params.get("sign"))) {
+            return true;
+        }
+        write(exchange, 200, "{\"code\":\"SIGN_ERROR\",\"message\":\"sign error\"}");
+        return false;
+    }
+
+    private static Map<String, String> form(HttpExchange exchange) throws UnsupportedEncodingException {
+        String body = (String) exchange.getAttribute("body");
+        String query = exchange.getRequestURI().getRawQuery();
+        String raw = body.isEmpty() ? (null == query ? "" : query) : body;
+        Map<String, String> params = new HashMap<>();
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static void write(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + seq.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
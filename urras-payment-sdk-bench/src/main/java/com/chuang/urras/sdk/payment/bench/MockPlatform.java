@@ -0,0 +1,131 @@
+package com.chuang.urras.sdk.payment.bench;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.chuang.urras.sdk.payment.IPaymentPlatform;
+import com.chuang.urras.sdk.payment.PaymentPlatformConfig;
+import com.chuang.urras.sdk.payment.Platform;
+import com.chuang.urras.sdk.payment.deposit.DepositCallbackInfo;
+import com.chuang.urras.sdk.payment.deposit.DepositInfo;
+import com.chuang.urras.sdk.payment.deposit.DepositRequest;
+import com.chuang.urras.sdk.payment.query.OrderStatus;
+import com.chuang.urras.sdk.payment.query.QueryInfo;
+import com.chuang.urras.sdk.payment.query.QueryRequest;
+import com.chuang.urras.sdk.payment.withdraw.WithdrawCallbackInfo;
+import com.chuang.urras.sdk.payment.withdraw.WithdrawInfo;
+import com.chuang.urras.sdk.payment.withdraw.WithdrawRequest;
+import com.chuang.urras.support.Result;
+import com.chuang.urras.support.enums.Bank;
+import com.chuang.urras.support.enums.PaymentType;
+import com.chuang.urras.support.enums.Whether;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.Request;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 对接 {@link MockGateway} 的平台实现，请求和验签流程与真实平台一致：
+ * 参数 md5 签名，通过平台独立的 http 客户端提交，解析 json 响应。
+ */
+@Platform(MockPlatform.CODE)
+public class MockPlatform implements IPaymentPlatform {
+
+    public static final String CODE = "mock";
+
+    private static final Map<Bank, String> BANKS = new EnumMap<>(Bank.class);
+    private static final Map<PaymentType, String> TYPES = new EnumMap<>(PaymentType.class);
+
+    static {
+        for (Bank bank : Bank.values()) {
+            BANKS.put(bank, bank.name());
+        }
+        TYPES.put(PaymentType.ONLINE_BANK, "bank");
+        TYPES.put(PaymentType.ALI, "alipay");
+        TYPES.put(PaymentType.WE_CHAT, "wechat");
+        TYPES.put(PaymentType.ONLINE_BANK_PAYOUT, "payout");
+    }
+
+    @Override
+    public Map<Bank, String> bankCodeMapping() {
+        return BANKS;
+    }
+
+    @Override
+    public Map<PaymentType, String> paymentTypeCodeMapping() {
+        return TYPES;
+    }
+
+    @Override
+    public CompletableFuture<Result<DepositInfo>> deposit(DepositRequest request, PaymentPlatformConfig config) {
+        Map<String, String> params = new HashMap<>();
+        params.put("merchantId", config.getMerchantId());
+        params.put("reference", request.getReference());
+        params.put("amount", request.getAmount().toString());
+        params.put("type", TYPES.get(request.getType()));
+        params.put("notifyUrl", config.getServerCallbackAbsolute());
+        params.put("sign", MockGateway.sign(params, config.getPrivateKey()));
+
+        return post(config, "/deposit", params).thenApply(json -> {
+            boolean success = "SUCCESS".equals(json.getString("code"));
+            return DepositInfo.parse(success, json.getString("message"), DepositInfo.Type.URL, config.getMerchantId(),
+                    json.getString("payUrl"), request.getAmount(), request.getReference(), json.getString("orderNo"));
+        });
+    }
+
+    @Override
+    public CompletableFuture<Result<WithdrawInfo>> withdraw(WithdrawRequest request, PaymentPlatformConfig config) {
+        Map<String, String> params = new HashMap<>();
+        params.put("merchantId", config.getMerchantId());
+        params.put("reference", request.getReference());
+        params.put("amount", request.getAmount().toString());
+        params.put("account", request.getAccount());
+        params.put("realname", request.getRealname());
+        params.put("notifyUrl", config.getServerCallbackAbsolute());
+        params.put("sign", MockGateway.sign(params, config.getPrivateKey()));
+
+        return post(config, "/withdraw", params).thenApply(json -> {
+            boolean success = "SUCCESS".equals(json.getString("code"));
+            return WithdrawInfo.parse(success, json.getString("message"), true, request.getReference(),
+                    json.getString("orderNo"), json.toJSONString());
+        });
+    }
+
+    @Override
+    public CompletableFuture<Result<QueryInfo>> query(QueryRequest info, PaymentPlatformConfig config) {
+        Map<String, String> params = new HashMap<>();
+        params.put("merchantId", config.getMerchantId());
+        params.put("reference", info.getReference());
+        params.put("sign", MockGateway.sign(params, config.getPrivateKey()));
+
+        return post(config, "/query", params).thenApply(json -> {
+            if (!"SUCCESS".equals(json.getString("code"))) {
+                return QueryInfo.parse(false, json.getString("message"), OrderStatus.QUERY_ERROR);
+            }
+            return QueryInfo.parse(true, "", OrderStatus.valueOf(json.getString("status")));
+        });
+    }
+
+    @Override
+    public Result<DepositCallbackInfo> depositCallback(Map<String, String> callbackParams, String body, boolean front, PaymentPlatformConfig config) {
+        boolean verify = MockGateway.sign(callbackParams, config.getPrivateKey()).equals(callbackParams.get("sign"));
+        return DepositCallbackInfo.create(verify, "SUCCESS".equals(callbackParams.get("status")),
+                callbackParams.get("merchantId"), callbackParams.get("reference"), "success",
+                callbackParams.get("orderNo"), Long.valueOf(callbackParams.get("amount")));
+    }
+
+    @Override
+    public Result<WithdrawCallbackInfo> withdrawCallback(Map<String, String> callbackParams, String body, PaymentPlatformConfig config) {
+        boolean verify = MockGateway.sign(callbackParams, config.getPrivateKey()).equals(callbackParams.get("sign"));
+        return WithdrawCallbackInfo.create(verify, "SUCCESS".equals(callbackParams.get("status")) ? Whether.YES : Whether.NO,
+                callbackParams.get("merchantId"), callbackParams.get("reference"), "success",
+                callbackParams.get("orderNo"), Long.valueOf(callbackParams.get("amount")));
+    }
+
+    private CompletableFuture<JSONObject> post(PaymentPlatformConfig config, String path, Map<String, String> params) {
+        return Request.Post(config.getApiUrl() + path).parameter(params).build()
+                .executeAsString(httpClient(config))
+                .thenApply(JSON::parseObject);
+    }
+}
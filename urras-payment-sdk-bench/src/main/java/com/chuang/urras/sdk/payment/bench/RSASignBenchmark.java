@@ -0,0 +1,101 @@
+package com.chuang.urras.sdk.payment.bench;
+
+import com.chuang.urras.toolskit.basic.RSACoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RSACoder} 签名、验签的 JMH 基准。
+ * uncached* 是缓存之前的做法：每次调用都 Base64 解码密钥、生成 KeySpec、调用 KeyFactory.getInstance 和 Signature.getInstance；
+ * cached* 走 {@link RSACoder}，密钥按内容缓存，Signature 每个线程复用。两者的差就是每次签名省下的开销。
+ * 运行：
+ * <pre>
+ *     java -cp ... com.chuang.urras.sdk.payment.bench.RSASignBenchmark
+ * </pre>
+ * 或者加 -prof gc 查看每次调用的分配字节数。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class RSASignBenchmark {
+
+    private byte[] data;
+    private String privateKey;
+    private String publicKey;
+    private String sign;
+
+    @Setup
+    public void setup() throws Exception {
+        Map<String, Object> keys = RSACoder.initKey();
+        privateKey = RSACoder.getPrivateKey(keys);
+        publicKey = RSACoder.getPublicKey(keys);
+        data = "amount=100.00&merchantId=bench-merchant&notifyUrl=http://127.0.0.1/callback&orderNo=20200101000000000001"
+                .getBytes(StandardCharsets.UTF_8);
+        sign = RSACoder.signBase64(data, privateKey);
+    }
+
+    @Benchmark
+    public String cachedSign() throws Exception {
+        return RSACoder.signBase64(data, privateKey);
+    }
+
+    @Benchmark
+    public boolean cachedVerify() throws Exception {
+        return RSACoder.verify(data, publicKey, sign);
+    }
+
+    @Benchmark
+    public String uncachedSign() throws Exception {
+        PrivateKey key = KeyFactory.getInstance(RSACoder.KEY_ALGORITHM)
+                .generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(privateKey)));
+        Signature signature = Signature.getInstance(RSACoder.SIGNATURE_ALGORITHM);
+        signature.initSign(key);
+        signature.update(data);
+        return Base64.getEncoder().encodeToString(signature.sign());
+    }
+
+    @Benchmark
+    public boolean uncachedVerify() throws Exception {
+        PublicKey key = KeyFactory.getInstance(RSACoder.KEY_ALGORITHM)
+                .generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(publicKey)));
+        Signature signature = Signature.getInstance(RSACoder.SIGNATURE_ALGORITHM);
+        signature.initVerify(key);
+        signature.update(data);
+        return signature.verify(Base64.getDecoder().decode(sign));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RSASignBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
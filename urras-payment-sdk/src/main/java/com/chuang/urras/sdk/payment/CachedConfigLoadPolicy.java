@@ -0,0 +1,274 @@
+package com.chuang.urras.sdk.payment;
+
+import com.chuang.urras.sdk.payment.deposit.BankDepositRequest;
+import com.chuang.urras.sdk.payment.withdraw.BankWithdrawRequest;
+import com.chuang.urras.support.enums.Bank;
+import com.chuang.urras.support.enums.PaymentType;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带缓存的 {@link ConfigLoadPolicy}。
+ * 存款、取款、回调都要加载配置，而配置通常来自数据库，这里按 configKey 缓存 delegate 的结果：
+ * <ul>
+ *     <li>按key过期，默认 defaultTtlMillis，可以通过 {@link #setTtl(String, long)} 单独设置</li>
+ *     <li>后台修改配置后调用 {@link #changed(String, long)} 推送新版本号，旧版本的缓存立即失效</li>
+ *     <li>加载时预先生成代理 {@link PaymentPlatformConfig#getProxy()}，以及平台的支付类型、银行编号，请求时不再解析</li>
+ * </ul>
+ * 按请求选择配置时，选择结果按 {@link #selectionKey(PaymentRequest)}（默认为 支付类型 + 银行）缓存，
+ * 命中时不调用 delegate，只有未命中、过期、其中的配置版本变化或者调用了 changed / invalidate 时才重新选择。
+ * 所以 delegate 的选择必须只取决于 selectionKey，还和金额、用户等有关时覆盖 {@link #selectionKey(PaymentRequest)}。
+ * 找不到的配置和没有选出配置的请求都不缓存，新增、启用的配置不需要等缓存过期。
+ * 加载期间配置被修改（changed / invalidate）时，加载结果只返回给这次调用，不写入缓存，避免旧配置以新版本号缓存下来。
+ */
+public class CachedConfigLoadPolicy implements ConfigLoadPolicy {
+
+    private final ConfigLoadPolicy delegate;
+    private final long defaultTtlMillis;
+    private final Map<String, Long> ttls = new ConcurrentHashMap<>();
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    /**
+     * loadConfig(request) 和 loadConfigs(request) 的选择结果
+     */
+    private final Map<Object, Selection> selected = new ConcurrentHashMap<>();
+    private final Map<Object, Selection> candidates = new ConcurrentHashMap<>();
+    /**
+     * 配置有任何修改时加一，之前的选择结果全部失效：修改可能启用或停用了某个配置，影响选择
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param defaultTtlMillis 缓存时间，小于等于0时只在 {@link #changed} 或 {@link #invalidate} 时失效
+     */
+    public CachedConfigLoadPolicy(ConfigLoadPolicy delegate, long defaultTtlMillis) {
+        this.delegate = delegate;
+        this.defaultTtlMillis = defaultTtlMillis;
+    }
+
+    @Override
+    public Optional<PaymentPlatformConfig> loadConfig(PaymentRequest request, PaymentSDK sdk) {
+        Object selectionKey = selectionKey(request);
+        List<PaymentPlatformConfig> configs = cached(selected, selectionKey);
+        if (null == configs) {
+            long gen = generation.get();
+            Optional<PaymentPlatformConfig> loaded = delegate.loadConfig(request, sdk);
+            configs = select(selected, selectionKey, gen,
+                    loaded.map(Collections::singletonList).orElse(Collections.emptyList()), sdk);
+        }
+        return configs.isEmpty() ? Optional.empty() : Optional.of(configs.get(0));
+    }
+
+    @Override
+    public Collection<PaymentPlatformConfig> loadConfigs(PaymentRequest request, PaymentSDK sdk) {
+        Object selectionKey = selectionKey(request);
+        List<PaymentPlatformConfig> configs = cached(candidates, selectionKey);
+        if (null == configs) {
+            long gen = generation.get();
+            configs = select(candidates, selectionKey, gen, delegate.loadConfigs(request, sdk), sdk);
+        }
+        return configs;
+    }
+
+    @Override
+    public Optional<PaymentPlatformConfig> loadConfig(String key) {
+        long gen = generation.get();
+        long version = currentVersion(key);
+        Entry entry = cache.get(key);
+        if (null != entry && entry.isValid(version)) {
+            return Optional.of(entry.config);
+        }
+        return delegate.loadConfig(key).map(config -> put(key, config, version, gen, null).config);
+    }
+
+    /**
+     * 选择结果的缓存key，delegate 对 selectionKey 相同的请求必须选择相同的配置。
+     * 默认为支付类型和银行（银行卡存款、取款请求），返回的对象需要实现 equals 和 hashCode
+     */
+    protected Object selectionKey(PaymentRequest request) {
+        Bank bank = null;
+        if (request instanceof BankDepositRequest) {
+            bank = ((BankDepositRequest) request).getBank();
+        } else if (request instanceof BankWithdrawRequest) {
+            bank = ((BankWithdrawRequest) request).getBank();
+        }
+        return new SelectionKey(request.getType(), bank);
+    }
+
+    /**
+     * 单独设置某个key的缓存时间
+     */
+    public void setTtl(String key, long ttlMillis) {
+        ttls.put(key, ttlMillis);
+        invalidate(key);
+    }
+
+    /**
+     * 配置已修改。版本号比缓存中的新时，缓存失效，下次使用时重新加载，按请求的选择结果也全部重新选择
+     */
+    public void changed(String key, long version) {
+        // 先加 generation：读到新版本号的加载一定能发现 generation 已经变化
+        generation.incrementAndGet();
+        versions.merge(key, version, Math::max);
+    }
+
+    public void invalidate(String key) {
+        generation.incrementAndGet();
+        cache.remove(key);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    private long currentVersion(String key) {
+        return versions.getOrDefault(key, 0L);
+    }
+
+    /**
+     * @return 选择结果失效或者其中某个配置失效时返回 null
+     */
+    @Nullable
+    private List<PaymentPlatformConfig> cached(Map<Object, Selection> selections, Object selectionKey) {
+        Selection selection = selections.get(selectionKey);
+        if (null == selection || !selection.isValid(generation.get())) {
+            return null;
+        }
+        for (String key : selection.configKeys) {
+            Entry entry = cache.get(key);
+            if (null == entry || !entry.isValid(currentVersion(key))) {
+                return null;
+            }
+        }
+        return selection.configs;
+    }
+
+    /**
+     * 把 delegate 选出的配置换成缓存中同一个key的对象，以便复用已经生成的代理、密钥和编号，再缓存选择结果
+     * @param gen 调用 delegate 之前的 generation，期间配置被修改时结果只返回不缓存
+     */
+    private List<PaymentPlatformConfig> select(Map<Object, Selection> selections, Object selectionKey, long gen,
+                                               Collection<PaymentPlatformConfig> loaded, PaymentSDK sdk) {
+        List<PaymentPlatformConfig> configs = new ArrayList<>(loaded.size());
+        List<String> configKeys = new ArrayList<>(loaded.size());
+        for (PaymentPlatformConfig config : loaded) {
+            String key = config.getConfigKey();
+            if (null == key) {
+                prepare(config, sdk);
+                configs.add(config);
+                continue;
+            }
+            long version = currentVersion(key);
+            Entry entry = cache.get(key);
+            if (null == entry || !entry.isValid(version)) {
+                entry = put(key, config, version, gen, sdk);
+            }
+            configs.add(entry.config);
+            configKeys.add(key);
+        }
+        configs = Collections.unmodifiableList(configs);
+        if (!configs.isEmpty() && generation.get() == gen) {
+            selections.put(selectionKey, new Selection(configs, configKeys, gen, expiresAt(defaultTtlMillis)));
+        }
+        return configs;
+    }
+
+    /**
+     * @param version 调用 delegate 之前或者之后读到的版本号
+     * @param gen 调用 delegate 之前的 generation。先写入再检查：期间有修改时移除刚写入的缓存，
+     *            检查之后才发生的修改会在写入之后移除缓存或者提高版本号，缓存中不会留下旧配置
+     */
+    private Entry put(String key, PaymentPlatformConfig config, long version, long gen, @Nullable PaymentSDK sdk) {
+        prepare(config, sdk);
+        Entry entry = new Entry(config, version, expiresAt(ttls.getOrDefault(key, defaultTtlMillis)));
+        cache.put(key, entry);
+        if (generation.get() != gen) {
+            cache.remove(key, entry);
+        }
+        return entry;
+    }
+
+    private static void prepare(PaymentPlatformConfig config, @Nullable PaymentSDK sdk) {
+        config.getProxy();
+        IPaymentPlatform platform = null == sdk ? null : sdk.getPlatform(config.getPlatform());
+        if (null != platform) {
+            config.getPaymentTypeCode(platform);
+            config.getBankCode(platform, null);
+        }
+    }
+
+    private static long expiresAt(long ttl) {
+        return ttl <= 0 ? Long.MAX_VALUE : System.currentTimeMillis() + ttl;
+    }
+
+    private static class Entry {
+        private final PaymentPlatformConfig config;
+        private final long version;
+        private final long expiresAt;
+
+        Entry(PaymentPlatformConfig config, long version, long expiresAt) {
+            this.config = config;
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isValid(long currentVersion) {
+            return version >= currentVersion && System.currentTimeMillis() < expiresAt;
+        }
+    }
+
+    private static class Selection {
+        private final List<PaymentPlatformConfig> configs;
+        private final List<String> configKeys;
+        private final long generation;
+        private final long expiresAt;
+
+        Selection(List<PaymentPlatformConfig> configs, List<String> configKeys, long generation, long expiresAt) {
+            this.configs = configs;
+            this.configKeys = configKeys;
+            this.generation = generation;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isValid(long currentGeneration) {
+            return generation == currentGeneration && System.currentTimeMillis() < expiresAt;
+        }
+    }
+
+    private static final class SelectionKey {
+        private final PaymentType type;
+        private final Bank bank;
+
+        SelectionKey(PaymentType type, Bank bank) {
+            this.type = type;
+            this.bank = bank;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SelectionKey)) {
+                return false;
+            }
+            SelectionKey that = (SelectionKey) o;
+            return type == that.type && bank == that.bank;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, bank);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.chuang.urras.sdk.payment;
+
+import com.chuang.urras.support.enums.Bank;
+import com.chuang.urras.support.enums.PaymentType;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 平台 × 支付类型 × 银行 的支持矩阵，创建后不可变。
+ * 除了按平台查询，还预先建好了 支付类型 -&gt; 平台、支付类型 + 银行 -&gt; 平台、支付类型 -&gt; 银行 的反向索引，
+ * 渲染收银台时直接查表，不需要遍历所有平台。返回的集合都是只读的，平台编号按字母顺序排列。
+ */
+public final class CapabilityMatrix {
+
+    public static final CapabilityMatrix EMPTY = new CapabilityMatrix(Collections.emptyMap());
+
+    private final Map<String, PlatformCapabilities> platforms;
+
+    private final Map<PaymentType, Set<String>> platformsByType = new EnumMap<>(PaymentType.class);
+    private final Map<PaymentType, Map<Bank, Set<String>>> platformsByTypeAndBank = new EnumMap<>(PaymentType.class);
+    private final Map<PaymentType, Set<Bank>> banksByType = new EnumMap<>(PaymentType.class);
+
+    public CapabilityMatrix(Map<String, PlatformCapabilities> platforms) {
+        this.platforms = Collections.unmodifiableMap(new HashMap<>(platforms));
+
+        Map<PaymentType, TreeSet<String>> byType = new EnumMap<>(PaymentType.class);
+        Map<PaymentType, Map<Bank, TreeSet<String>>> byTypeAndBank = new EnumMap<>(PaymentType.class);
+        Map<PaymentType, EnumSet<Bank>> banks = new EnumMap<>(PaymentType.class);
+        for (Map.Entry<String, PlatformCapabilities> entry : this.platforms.entrySet()) {
+            PlatformCapabilities capabilities = entry.getValue();
+            for (PaymentType type : capabilities.getPaymentTypes()) {
+                byType.computeIfAbsent(type, t -> new TreeSet<>()).add(entry.getKey());
+                banks.computeIfAbsent(type, t -> EnumSet.noneOf(Bank.class)).addAll(capabilities.getBanks());
+                Map<Bank, TreeSet<String>> byBank = byTypeAndBank.computeIfAbsent(type, t -> new EnumMap<>(Bank.class));
+                for (Bank bank : capabilities.getBanks()) {
+                    byBank.computeIfAbsent(bank, b -> new TreeSet<>()).add(entry.getKey());
+                }
+            }
+        }
+
+        byType.forEach((type, codes) -> platformsByType.put(type, Collections.unmodifiableSet(codes)));
+        banks.forEach((type, set) -> banksByType.put(type, Collections.unmodifiableSet(set)));
+        byTypeAndBank.forEach((type, byBank) -> {
+            Map<Bank, Set<String>> map = new EnumMap<>(Bank.class);
+            byBank.forEach((bank, codes) -> map.put(bank, Collections.unmodifiableSet(codes)));
+            platformsByTypeAndBank.put(type, map);
+        });
+    }
+
+    public Set<String> platformCodes() {
+        return platforms.keySet();
+    }
+
+    public Optional<PlatformCapabilities> capabilities(String platformCode) {
+        return Optional.ofNullable(platforms.get(platformCode));
+    }
+
+    /**
+     * 按 {@link IPaymentPlatform#capabilities()} 判断，支付类型和银行都要支持，矩阵中没有该平台时返回 false。
+     * 不会调用平台覆盖的 isSupport，需要逐个平台的特殊判断时使用 {@link PaymentSDK#supportBank(String, PaymentType, Bank)}
+     */
+    public boolean isSupport(String platformCode, PaymentType type, @Nullable Bank bank) {
+        PlatformCapabilities capabilities = platforms.get(platformCode);
+        return null != capabilities && capabilities.isSupport(type, bank);
+    }
+
+    /**
+     * 支持该支付类型的平台
+     */
+    public Set<String> platforms(PaymentType type) {
+        return platformsByType.getOrDefault(type, Collections.emptySet());
+    }
+
+    /**
+     * 同时支持该支付类型和银行的平台
+     */
+    public Set<String> platforms(PaymentType type, Bank bank) {
+        Map<Bank, Set<String>> byBank = platformsByTypeAndBank.get(type);
+        return null == byBank ? Collections.emptySet() : byBank.getOrDefault(bank, Collections.emptySet());
+    }
+
+    /**
+     * 该支付类型下至少有一个平台支持的银行，收银台按它渲染银行列表
+     */
+    public Set<Bank> banks(PaymentType type) {
+        return banksByType.getOrDefault(type, Collections.emptySet());
+    }
+
+    /**
+     * 至少有一个平台支持的支付类型
+     */
+    public Set<PaymentType> paymentTypes() {
+        return Collections.unmodifiableSet(platformsByType.keySet());
+    }
+}
@@ -1,5 +1,7 @@
 package com.chuang.urras.sdk.payment;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Optional;
 
 /**
@@ -10,4 +12,12 @@ public interface ConfigLoadPolicy {
     Optional<PaymentPlatformConfig> loadConfig(PaymentRequest request, PaymentSDK sdk);
 
     Optional<PaymentPlatformConfig> loadConfig(String key);
+
+    /**
+     * 所有可以处理该请求的配置，供 {@link com.chuang.urras.sdk.payment.route.ChannelRouter} 排序选择。
+     * 默认只返回 {@link #loadConfig(PaymentRequest, PaymentSDK)} 的结果
+     */
+    default Collection<PaymentPlatformConfig> loadConfigs(PaymentRequest request, PaymentSDK sdk) {
+        return loadConfig(request, sdk).map(Collections::singletonList).orElse(Collections.emptyList());
+    }
 }
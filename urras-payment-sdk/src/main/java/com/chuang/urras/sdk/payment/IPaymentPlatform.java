@@ -1,6 +1,9 @@
 package com.chuang.urras.sdk.payment;
 
 import com.chuang.urras.sdk.payment.deposit.*;
+import com.chuang.urras.sdk.payment.http.PlatformHttpClients;
+import com.chuang.urras.sdk.payment.http.PlatformHttpSettings;
+import com.chuang.urras.sdk.payment.query.OrderStatus;
 import com.chuang.urras.sdk.payment.query.QueryInfo;
 import com.chuang.urras.sdk.payment.query.QueryRequest;
 import com.chuang.urras.sdk.payment.withdraw.WithdrawCallbackInfo;
@@ -10,8 +13,8 @@ import com.chuang.urras.support.Result;
 import com.chuang.urras.support.enums.Bank;
 import com.chuang.urras.support.enums.PaymentType;
 import com.chuang.urras.support.exception.SystemWarnException;
-import com.chuang.urras.toolskit.basic.StringKit;
 import com.chuang.urras.toolskit.basic.FutureKit;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.async.AsyncHttpClient;
 import org.apache.http.HttpHost;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +23,9 @@ import javax.annotation.Nullable;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -35,18 +41,27 @@ public interface IPaymentPlatform {
         return new BigDecimal(amount.toString()).divide(_100, 2, RoundingMode.FLOOR);
     }
     /**
-     * 这是一个忽略 SSL 校验的 httpclient。
-     * 对应的创建代码为: .ignoreSSLCert() ,它的含义和 .trustAll() 是不同的。
-     * trustAll是信任所有来源，而ignoreSSLCert则是完全忽略（某些接口 https 并没有证书，使用trustAll会无法工作，因此需要进行忽略）。
+     * 该平台的 http 客户端设置，平台实现可以覆盖该方法声明超时、跳转、SSL 模式和连接池大小。
+     * 默认使用 {@link PlatformHttpSettings#DEFAULT}，加上配置的代理，再用配置扩展信息中的 http.* 覆盖。
+     * 网关 https 没有有效证书时使用 {@link PlatformHttpSettings.SslMode#IGNORE_CERT}，它和 TRUST_ALL 是不同的：
+     * TRUST_ALL 信任所有证书，IGNORE_CERT 则完全忽略证书和域名校验。
      */
-//    AsyncHttpClient ignoreSSLClient = Https.async().setDefaultCharset("UTF-8")
-//            .setConnectTimeout(10000)
-//            .setSocketTimeout(10000)
-//            .setConnectionRequestTimeout(10000)
-//            .ignoreSSLCert()
-//            .maxConnectEachHost(5)
-//            .build()
-//            .init();
+    default PlatformHttpSettings httpSettings(PaymentPlatformConfig config) {
+        return PlatformHttpSettings.DEFAULT.toBuilder()
+                .proxy(proxy(config))
+                .build()
+                .merge(config.getExt());
+    }
+
+    /**
+     * 该平台、该配置独立的 http 客户端，第一次使用时按 {@link #httpSettings(PaymentPlatformConfig)} 创建并缓存，
+     * 配置修改后设置不同时替换。设置按配置缓存，每次请求不再重新合并 http.* 扩展信息
+     */
+    default AsyncHttpClient httpClient(PaymentPlatformConfig config) {
+        PlatformHttpSettings settings = config.prepared("http.settings", this::httpSettings);
+        return PlatformHttpClients.DEFAULT.get(config.getPlatform(), config.getConfigKey(), settings);
+    }
+
     /**
      * 通过api路径和参数生成form
      */
@@ -55,19 +70,16 @@ public interface IPaymentPlatform {
                                                           String reference,
                                                           Map<String, String> params,
                                                           PaymentPlatformConfig config) {
-        DepositInfo result = GenFormDepositInfo.form(proxy(config), config.getMerchantId(), config.getApiUrl() + apiPath, method, amount, reference, params);
-        logger.info("generate html: -> " + result.getContent());
+        DepositInfo result = GenFormDepositInfo.form(httpClient(config), proxy(config), config.getMerchantId(), config.getApiUrl() + apiPath, method, amount, reference, params);
+        if (logger.isDebugEnabled()) {
+            logger.debug("generate form: reference={}, action={}, fields={}", reference, config.getApiUrl() + apiPath, params.keySet());
+        }
         Result<DepositInfo> r = Result.success();
         return CompletableFuture.completedFuture(r.data(result));
     }
 
     default HttpHost proxy(PaymentPlatformConfig config) {
-        if(StringKit.isBlank(config.getProxyUrl())) {
-            return null;
-        } else {
-            String[] h = config.getProxyUrl().split(":");
-            return new HttpHost(h[0], Integer.parseInt(h[1]));
-        }
+        return config.getProxy();
     }
 
     /**
@@ -92,6 +104,38 @@ public interface IPaymentPlatform {
         return FutureKit.error(new SystemWarnException(Result.FAIL_CODE, config.getPlatform() + " do not support query status"));
     }
 
+    /**
+     * 一次批量查询最多包含的订单数，返回 1 表示平台没有批量查询接口
+     */
+    default int maxBatchQuerySize() {
+        return 1;
+    }
+
+    /**
+     * 批量查询订单状态，平台有批量查询接口时覆盖该方法和 {@link #maxBatchQuerySize()}。
+     * 默认逐个调用 {@link #query(QueryRequest, PaymentPlatformConfig)}。
+     * @return key 为 {@link QueryRequest#getReference()}，单个订单查询失败时对应的结果为失败
+     */
+    default CompletableFuture<Map<String, Result<QueryInfo>>> batchQuery(List<QueryRequest> requests, PaymentPlatformConfig config) {
+        List<CompletableFuture<Result<QueryInfo>>> futures = new ArrayList<>(requests.size());
+        for (QueryRequest request : requests) {
+            CompletableFuture<Result<QueryInfo>> f;
+            try {
+                f = query(request, config);
+            } catch (RuntimeException e) {
+                f = FutureKit.error(e);
+            }
+            futures.add(f.exceptionally(e -> QueryInfo.parse(false, e.getMessage(), OrderStatus.QUERY_ERROR)));
+        }
+        return FutureKit.allOf(futures).thenApply(results -> {
+            Map<String, Result<QueryInfo>> map = new HashMap<>(requests.size() * 2);
+            for (int i = 0; i < requests.size(); i++) {
+                map.put(requests.get(i).getReference(), results.get(i));
+            }
+            return map;
+        });
+    }
+
     /**
      * 存款回调
      */
@@ -106,6 +150,15 @@ public interface IPaymentPlatform {
     }
 
 
+    /**
+     * 平台支持的支付类型和银行。{@link PaymentSDK} 对每个平台只调用一次并缓存，
+     * 需要频繁判断时使用 {@link PaymentSDK#supportBank(String, PaymentType, Bank)} 或 {@link PaymentSDK#capabilityMatrix()}，
+     * 下面的 supportBanks、supportPaymentTypes、isSupport 每次都会调用编码映射方法。
+     */
+    default PlatformCapabilities capabilities() {
+        return PlatformCapabilities.of(this);
+    }
+
     default Set<Bank> supportBanks() {
         return bankCodeMapping().keySet();
     }
@@ -114,6 +167,11 @@ public interface IPaymentPlatform {
         return paymentTypeCodeMapping().keySet();
     }
 
+    /**
+     * @deprecated 判断是否支持时覆盖 {@link #capabilities()}，{@link CapabilityMatrix} 只使用它。
+     * 为了兼容，覆盖了该方法的平台 {@link PaymentSDK#supportBank(String, PaymentType, Bank)} 仍然调用该方法
+     */
+    @Deprecated
     default boolean isSupport(PaymentType type, @Nullable Bank bank) {
         return paymentTypeCodeMapping().containsKey(type) && (null != bank && bankCodeMapping().containsKey(bank));
     }
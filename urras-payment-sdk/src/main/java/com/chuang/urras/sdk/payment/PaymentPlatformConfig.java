@@ -1,10 +1,26 @@
 package com.chuang.urras.sdk.payment;
 
+import com.chuang.urras.support.Result;
+import com.chuang.urras.support.enums.Bank;
 import com.chuang.urras.support.enums.PaymentType;
+import com.chuang.urras.support.exception.SystemErrorException;
+import com.chuang.urras.toolskit.basic.StringKit;
+import org.apache.http.HttpHost;
 
 import javax.annotation.Nullable;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 public class PaymentPlatformConfig {
     private final String merchantId;
@@ -39,6 +55,11 @@ public class PaymentPlatformConfig {
      */
     private final String configKey;
 
+    /**
+     * 由配置生成的对象（代理、解析后的密钥等），配置不可变，所以每个对象只需要生成一次
+     */
+    private final Map<String, Optional<Object>> prepared = new ConcurrentHashMap<>();
+
     public PaymentPlatformConfig(String configKey,
                                  String platform,
                                  String merchantId,
@@ -124,4 +145,88 @@ public class PaymentPlatformConfig {
     public Object getSource() {
         return source;
     }
+
+    public String getConfigKey() {
+        return configKey;
+    }
+
+    /**
+     * 获取由该配置生成的对象，第一次获取时通过 builder 生成，之后直接返回。
+     * 平台实现可以用它缓存解析后的密钥、编码映射等，避免每次请求重复解析。
+     * builder 在 map 之外执行，可以再调用 prepared 获取其他对象；并发首次获取时 builder 可能执行多次，只保留第一个结果
+     * @param name 对象名称，同一个配置内唯一
+     * @return builder 返回 null 时也返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T prepared(String name, Function<PaymentPlatformConfig, T> builder) {
+        Optional<Object> value = prepared.get(name);
+        if (null == value) {
+            Optional<Object> built = Optional.ofNullable(builder.apply(this));
+            value = prepared.putIfAbsent(name, built);
+            if (null == value) {
+                value = built;
+            }
+        }
+        return (T) value.orElse(null);
+    }
+
+    /**
+     * 解析后的代理，格式为 host:port，没有配置时返回 null
+     */
+    public HttpHost getProxy() {
+        return prepared("proxy", c -> {
+            if (StringKit.isBlank(c.proxyUrl)) {
+                return null;
+            }
+            String[] h = c.proxyUrl.split(":");
+            return new HttpHost(h[0], Integer.parseInt(h[1]));
+        });
+    }
+
+    /**
+     * 该配置的支付类型在平台中的编号，只读取一次平台的映射，平台不支持时返回 null
+     */
+    public String getPaymentTypeCode(IPaymentPlatform platform) {
+        return prepared("code.paymentType", c -> platform.paymentTypeCodeMapping().get(c.type));
+    }
+
+    /**
+     * 银行在平台中的编号，第一次使用时复制平台的映射，之后只查表，平台不支持时返回 null
+     */
+    public String getBankCode(IPaymentPlatform platform, Bank bank) {
+        Map<Bank, String> codes = prepared("code.banks", c -> {
+            Map<Bank, String> mapping = platform.bankCodeMapping();
+            return mapping.isEmpty() ? Collections.<Bank, String>emptyMap() : new EnumMap<>(mapping);
+        });
+        return null == bank ? null : codes.get(bank);
+    }
+
+    /**
+     * privateKey 作为 Base64 编码的 PKCS#8 RSA 私钥解析，只解析一次
+     */
+    public PrivateKey getRsaPrivateKey() {
+        return prepared("rsa.privateKey", c -> {
+            try {
+                return KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(Base64.getMimeDecoder().decode(c.privateKey)));
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                throw new SystemErrorException(Result.FAIL_CODE, c.configKey + " 私钥格式错误", e);
+            }
+        });
+    }
+
+    /**
+     * publicKey 作为 Base64 编码的 X.509 RSA 公钥解析，只解析一次
+     */
+    public Optional<PublicKey> getRsaPublicKey() {
+        return Optional.ofNullable(prepared("rsa.publicKey", c -> {
+            if (StringKit.isBlank(c.publicKey)) {
+                return null;
+            }
+            try {
+                return KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(Base64.getMimeDecoder().decode(c.publicKey)));
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                throw new SystemErrorException(Result.FAIL_CODE, c.configKey + " 公钥格式错误", e);
+            }
+        }));
+    }
 }
@@ -1,6 +1,8 @@
 package com.chuang.urras.sdk.payment;
 
 import com.chuang.urras.sdk.payment.deposit.*;
+import com.chuang.urras.sdk.payment.index.PlatformIndex;
+import com.chuang.urras.sdk.payment.index.PlatformIndexProcessor;
 import com.chuang.urras.sdk.payment.query.QueryInfo;
 import com.chuang.urras.sdk.payment.query.QueryRequest;
 import com.chuang.urras.sdk.payment.withdraw.WithdrawCallbackInfo;
@@ -14,11 +16,9 @@ import com.chuang.urras.toolskit.basic.util.ClassSearch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class PaymentSDK {
     private final Logger logger = LoggerFactory.getLogger(PaymentSDK.class);
@@ -26,12 +26,43 @@ public class PaymentSDK {
     /**
      * 配置加载策略，该接口提供了一个抽象的配置来源。由使用sdk的模块来提供实现。
      * 这样做的目的是为了对业务进行解耦，避免sdk依赖其他的业务实现。
+     * 配置来自数据库时可以使用 {@link CachedConfigLoadPolicy} 包装。
      */
     private final ConfigLoadPolicy configPolicy;
     /**
-     * 所有的平台对象缓存，在启动时统一加载。平台对象为单例，这里默认所有的平台对象实现都是线程安全的。
+     * 已经创建的平台对象，第一次使用时创建。平台对象为单例，这里默认所有的平台对象实现都是线程安全的。
      */
-    private final Map<String, IPaymentPlatform> platforms = new HashMap<>();
+    private final Map<String, IPaymentPlatform> platforms = new ConcurrentHashMap<>();
+    /**
+     * 启动时找到的平台实现类，只加载类，不初始化也不创建对象
+     */
+    private final Map<String, Class<? extends IPaymentPlatform>> platformClasses = new ConcurrentHashMap<>();
+    /**
+     * 平台支持的支付类型和银行，平台对象创建后第一次查询时读取
+     */
+    private final Map<String, PlatformCapabilities> capabilities = new ConcurrentHashMap<>();
+    /**
+     * 所有平台的支持矩阵，第一次使用时创建，注册平台后重新创建
+     */
+    private volatile CapabilityMatrix capabilityMatrix;
+    private final Object capabilityLock = new Object();
+    /**
+     * 平台类是否覆盖了 {@link IPaymentPlatform#isSupport(PaymentType, Bank)}
+     */
+    private final Map<Class<?>, Boolean> customIsSupport = new ConcurrentHashMap<>();
+    /**
+     * 后台扫描使用索引的包，补上索引中缺少的平台（索引不完整时），完成前查不到的平台会等它完成再查一次
+     */
+    private volatile CompletableFuture<Void> indexVerification = CompletableFuture.completedFuture(null);
+
+    /**
+     * 每个平台默认的最大并发请求数
+     */
+    public static final int DEFAULT_PLATFORM_CONCURRENCY = 64;
+    /**
+     * 按平台隔离并发，一个平台变慢不会拖垮其他平台
+     */
+    private PlatformBulkhead bulkhead = new PlatformBulkhead(DEFAULT_PLATFORM_CONCURRENCY);
 
     public PaymentSDK(ConfigLoadPolicy configPolicy) {
         this(configPolicy, "com.chuang.payment.sdk.impl");
@@ -39,30 +70,157 @@ public class PaymentSDK {
 
     /**
      * 根据配置加载策略和实现类包集合来创建sdk。创建流程如下：
-     * 创建时会扫描 scanImplPackage 包下的所有类，如果它们实现了{@link IPaymentPlatform} 以及使用 @{@link Platform}进行注解。那么该对象将作为一个平台实现被加载到缓存中。
-     *
+     * 优先读取编译时由 {@link PlatformIndexProcessor} 生成的平台索引，取出 scanImplPackage 包下的平台；
+     * 某个包在索引中没有任何平台时（例如实现模块编译时没有执行注解处理器），再并行扫描该包下的所有类，
+     * 如果它们实现了{@link IPaymentPlatform} 以及使用 @{@link Platform}进行注解，那么该类将作为一个平台实现。
+     * 使用索引的包随后在后台线程中扫描校验，补上索引中缺少的平台，启动不用等待扫描；
+     * 校验完成前 {@link #getPlatform(String)} 查不到的平台和 {@link #platformCodes()} 会等待校验完成。
+     * 平台对象在第一次使用时才创建，见 {@link #getPlatform(String)}。
      */
     public PaymentSDK(ConfigLoadPolicy configPolicy, String... scanImplPackage) {
         this.configPolicy = configPolicy;
         if(scanImplPackage == null) {
             return;
         }
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        Map<String, String> index = PlatformIndex.load(classLoader);
+        List<String> unindexed = new ArrayList<>();
+        List<String> indexed = new ArrayList<>();
         for(String pack: scanImplPackage) {
-            loadImpl(pack);
+            if (loadIndexed(index, pack, classLoader)) {
+                indexed.add(pack);
+            } else {
+                unindexed.add(pack);
+            }
+        }
+        // ClassSearch 使用线程上下文类加载器，并行扫描时 ForkJoin 线程的类加载器不一定相同
+        unindexed.parallelStream().forEach(pack -> {
+            Thread thread = Thread.currentThread();
+            ClassLoader previous = thread.getContextClassLoader();
+            thread.setContextClassLoader(classLoader);
+            try {
+                platformClasses.putAll(scan(pack));
+            } finally {
+                thread.setContextClassLoader(previous);
+            }
+        });
+        if (!indexed.isEmpty()) {
+            // ClassSearch 使用线程上下文类加载器
+            indexVerification = CompletableFuture.runAsync(() -> verifyIndexed(indexed), r -> {
+                Thread thread = new Thread(r, "payment-platform-index-verify");
+                thread.setDaemon(true);
+                thread.setContextClassLoader(classLoader);
+                thread.start();
+            });
         }
     }
 
-    private void loadImpl(String pack) {
+    /**
+     * @return 索引中没有该包下的平台时返回 false
+     */
+    @SuppressWarnings("unchecked")
+    private boolean loadIndexed(Map<String, String> index, String pack, ClassLoader classLoader) {
+        boolean found = false;
+        for (Map.Entry<String, String> entry : index.entrySet()) {
+            if (!entry.getValue().startsWith(pack + ".")) {
+                continue;
+            }
+            found = true;
+            try {
+                Class<?> clazz = Class.forName(entry.getValue(), false, classLoader);
+                if (IPaymentPlatform.class.isAssignableFrom(clazz)) {
+                    platformClasses.put(entry.getKey(), (Class<? extends IPaymentPlatform>) clazz);
+                } else {
+                    logger.warn(entry.getValue() + " 没有实现 " + IPaymentPlatform.class.getName());
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                logger.error("load payment impl error, the class is " + entry.getValue(), e);
+            }
+        }
+        return found;
+    }
+
+    private Map<String, Class<? extends IPaymentPlatform>> scan(String pack) {
+        Map<String, Class<? extends IPaymentPlatform>> found = new HashMap<>();
         try {
             Collection<Class<IPaymentPlatform>> list = ClassSearch.findClass(pack, true, new ClassSearch.AndCondition(IPaymentPlatform.class, Platform.class));
             for (Class<IPaymentPlatform> clazz : list) {
                 Platform ann = clazz.getAnnotationsByType(Platform.class)[0];
-                String platform = ann.value();
-                platforms.put(platform, clazz.newInstance());
+                found.put(ann.value(), clazz);
             }
-        } catch (ClassNotFoundException | IllegalAccessException | InstantiationException e) {
+        } catch (ClassNotFoundException e) {
             logger.error("load payment impl error, the base package is " + pack, e);
         }
+        return found;
+    }
+
+    /**
+     * 扫描使用索引的包，索引中缺少的平台加入 platformClasses，已有的平台（包括运行时注册的）不会被替换
+     */
+    private void verifyIndexed(List<String> packs) {
+        int missing = 0;
+        for (String pack : packs) {
+            for (Map.Entry<String, Class<? extends IPaymentPlatform>> entry : scan(pack).entrySet()) {
+                if (null == platformClasses.putIfAbsent(entry.getKey(), entry.getValue())) {
+                    missing++;
+                    logger.warn("平台 {}({}) 不在索引 {} 中，索引可能不完整，请重新编译平台实现模块",
+                            entry.getKey(), entry.getValue().getName(), PlatformIndex.LOCATION);
+                }
+            }
+        }
+        if (missing > 0) {
+            // 不在 capabilityLock 中修改：持有锁的 capabilityMatrix() 会等待这里完成
+            capabilityMatrix = null;
+        }
+    }
+
+    /**
+     * 等待后台的索引校验完成
+     */
+    private void awaitIndexVerification() {
+        try {
+            indexVerification.join();
+        } catch (RuntimeException e) {
+            logger.warn("校验平台索引失败", e);
+        }
+    }
+
+    /**
+     * 运行时注册一个平台，同编号的平台会被替换
+     */
+    public void register(String platformCode, IPaymentPlatform platform) {
+        synchronized (capabilityLock) {
+            platforms.put(platformCode, platform);
+            capabilities.put(platformCode, platform.capabilities());
+            capabilityMatrix = null;
+        }
+    }
+
+    /**
+     * 运行时注册一个平台实现类，第一次使用时创建对象
+     */
+    public void register(Class<? extends IPaymentPlatform> platformClass) {
+        Platform ann = platformClass.getAnnotation(Platform.class);
+        if (null == ann) {
+            throw new IllegalArgumentException(platformClass.getName() + " 缺少 @" + Platform.class.getSimpleName());
+        }
+        synchronized (capabilityLock) {
+            // 先放入新的实现类再删除旧对象，并发的 getPlatform 不会因为两者都查不到而返回 null
+            platformClasses.put(ann.value(), platformClass);
+            platforms.remove(ann.value());
+            capabilities.remove(ann.value());
+            capabilityMatrix = null;
+        }
+    }
+
+    /**
+     * 所有已知的平台编号，包括还没有创建对象的平台
+     */
+    public Set<String> platformCodes() {
+        awaitIndexVerification();
+        Set<String> codes = new TreeSet<>(platformClasses.keySet());
+        codes.addAll(platforms.keySet());
+        return codes;
     }
 
     /**
@@ -84,11 +242,11 @@ public class PaymentSDK {
      */
     public CompletableFuture<Result<DepositInfo>> deposit(DepositRequest request) {
         Optional<PaymentPlatformConfig> config = this.configPolicy.loadConfig(request, this);
-        if(config.isPresent()) {
+        if(!config.isPresent()) {
             throw new SystemWarnException(Result.FAIL_CODE, "没有可用通道");
         }
 
-        IPaymentPlatform platform = platforms.get(config.get().getPlatform());
+        IPaymentPlatform platform = getPlatform(config.get().getPlatform());
         if(null == platform) {
             throw new SystemWarnException(Result.FAIL_CODE, "sdk 不支持 " + config.get().getPlatform() + " 平台");
         }
@@ -100,11 +258,11 @@ public class PaymentSDK {
      */
     public CompletableFuture<Result<WithdrawInfo>> withdraw(WithdrawRequest request) {
         Optional<PaymentPlatformConfig> config = this.configPolicy.loadConfig(request, this);
-        if(config.isPresent()) {
+        if(!config.isPresent()) {
             throw new SystemWarnException(Result.FAIL_CODE, "没有可用通道");
         }
 
-        IPaymentPlatform platform = platforms.get(config.get().getPlatform());
+        IPaymentPlatform platform = getPlatform(config.get().getPlatform());
         if(null == platform) {
             throw new SystemWarnException(Result.FAIL_CODE, "sdk 不支持 " + config.get().getPlatform() + " 平台");
         }
@@ -118,15 +276,48 @@ public class PaymentSDK {
      * @return
      */
     public CompletableFuture<Result<DepositInfo>> deposit(DepositRequest request, PaymentPlatformConfig config) {
-        IPaymentPlatform platform = platforms.get(config.getPlatform());
+        IPaymentPlatform platform = getPlatform(config.getPlatform());
         if(null == platform) {
             throw new SystemWarnException(Result.FAIL_CODE, "sdk 不支持 " + config.getPlatform() + " 平台");
         }
-        return platform.deposit(request, config);
+        return bulkhead.call(config.getPlatform(), () -> platform.deposit(request, config));
     }
 
+    public void setBulkhead(PlatformBulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+
+    public PlatformBulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    /**
+     * @return 不支持该平台时返回 null
+     */
     public IPaymentPlatform getPlatform(String platformCode) {
-        return platforms.get(platformCode);
+        if (null == platformCode) {
+            return null;
+        }
+        IPaymentPlatform platform = platforms.get(platformCode);
+        if (null != platform) {
+            return platform;
+        }
+        Class<? extends IPaymentPlatform> clazz = platformClasses.get(platformCode);
+        if (null == clazz && !indexVerification.isDone()) {
+            awaitIndexVerification();
+            clazz = platformClasses.get(platformCode);
+        }
+        if (null == clazz) {
+            return null;
+        }
+        return platforms.computeIfAbsent(platformCode, code -> {
+            try {
+                return clazz.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                logger.error("create payment impl error, the class is " + clazz.getName(), e);
+                return null;
+            }
+        });
     }
 
     /**
@@ -136,19 +327,22 @@ public class PaymentSDK {
      * @return
      */
     public CompletableFuture<Result<WithdrawInfo>> withdraw(WithdrawRequest request, PaymentPlatformConfig config) {
-        IPaymentPlatform platform = platforms.get(config.getPlatform());
+        IPaymentPlatform platform = getPlatform(config.getPlatform());
         if(null == platform) {
             throw new SystemWarnException(Result.FAIL_CODE, "sdk 不支持 " + config.getPlatform() + " 平台");
         }
-        return platform.withdraw(request, config);
+        return bulkhead.call(config.getPlatform(), () -> platform.withdraw(request, config));
     }
 
+    /**
+     * 在调用线程中同步验签，没有去重。回调量大或者网关频繁重发时使用 {@link com.chuang.urras.sdk.payment.callback.CallbackPipeline}
+     */
     public Result<DepositCallbackInfo> depositCallbackHand(Map<String, String> params, String body, boolean isFront, String configKey) {
         Optional<PaymentPlatformConfig> config = this.configPolicy.loadConfig(configKey);
         if(!config.isPresent()) {
             throw new SystemWarnException(Result.FAIL_CODE, "无法找到配置，key->" + configKey);
         }
-        IPaymentPlatform platform = platforms.get(config.get().getPlatform());
+        IPaymentPlatform platform = getPlatform(config.get().getPlatform());
         if(null == platform) {
             throw new SystemWarnException(Result.FAIL_CODE, "sdk 不支持 " + config.get().getPlatform() + " 平台");
         }
@@ -156,7 +350,7 @@ public class PaymentSDK {
     }
 
     public Result<DepositCallbackInfo> depositCallbackHand(Map<String, String> params, String body, boolean isFront, PaymentPlatformConfig config) {
-        IPaymentPlatform platform = platforms.get(config.getPlatform());
+        IPaymentPlatform platform = getPlatform(config.getPlatform());
         if(null == platform) {
             throw new SystemWarnException(Result.FAIL_CODE, "sdk 不支持 " + config.getPlatform() + " 平台");
         }
@@ -168,7 +362,7 @@ public class PaymentSDK {
         if(!config.isPresent()) {
             throw new SystemWarnException(Result.FAIL_CODE, "无法找到配置，key->" + configKey);
         }
-        IPaymentPlatform platform = platforms.get(config.get().getPlatform());
+        IPaymentPlatform platform = getPlatform(config.get().getPlatform());
         if(null == platform) {
             throw new SystemWarnException(Result.FAIL_CODE, "sdk 不支持 " + config.get().getPlatform() + " 平台");
         }
@@ -176,7 +370,7 @@ public class PaymentSDK {
     }
 
     public Result<WithdrawCallbackInfo> withdrawCallbackHand(Map<String, String> params, String body, PaymentPlatformConfig config) {
-        IPaymentPlatform platform = platforms.get(config.getPlatform());
+        IPaymentPlatform platform = getPlatform(config.getPlatform());
         if(null == platform) {
             throw new SystemWarnException(Result.FAIL_CODE, "sdk 不支持 " + config.getPlatform() + " 平台");
         }
@@ -185,29 +379,105 @@ public class PaymentSDK {
 
     /**
      * 判断是否支持 特定平台，特定支付类型，以及特定的银行编号。
+     * 使用缓存的 {@link PlatformCapabilities}，不会每次调用平台的编码映射方法；
+     * 平台覆盖了 {@link IPaymentPlatform#isSupport(PaymentType, Bank)} 时调用它，保留平台自己的判断。
      * @param platformCode
      * @param type
      * @param bank
      * @return
      */
+    @SuppressWarnings("deprecation")
     public boolean supportBank(String platformCode, PaymentType type, Bank bank) {
-        IPaymentPlatform platform = platforms.get(platformCode);
-        if(null == platform) {
-            logger.warn("can not find " + platformCode + ", all platform codes are " + platforms);
+        IPaymentPlatform platform = getPlatform(platformCode);
+        if (null != platform && customIsSupport.computeIfAbsent(platform.getClass(), PaymentSDK::overridesIsSupport)) {
+            return platform.isSupport(type, bank);
+        }
+        Optional<PlatformCapabilities> c = capabilities(platformCode);
+        if(!c.isPresent()) {
+            logger.warn("can not find " + platformCode + ", all platform codes are " + platformCodes());
+            return false;
+        }
+
+        return c.get().isSupport(type, bank);
+    }
+
+    private static boolean overridesIsSupport(Class<?> platformClass) {
+        try {
+            return platformClass.getMethod("isSupport", PaymentType.class, Bank.class).getDeclaringClass() != IPaymentPlatform.class;
+        } catch (NoSuchMethodException e) {
             return false;
         }
+    }
 
-        return platform.isSupport(type, bank);
+    /**
+     * 某个平台支持的支付类型和银行，第一次查询时读取 {@link IPaymentPlatform#capabilities()} 并缓存
+     * @return 不支持该平台时为空
+     */
+    public Optional<PlatformCapabilities> capabilities(String platformCode) {
+        PlatformCapabilities c = capabilities.get(platformCode);
+        if (null != c) {
+            return Optional.of(c);
+        }
+        IPaymentPlatform platform = getPlatform(platformCode);
+        if (null == platform) {
+            return Optional.empty();
+        }
+        // 在锁中确认平台对象没有被 register 替换后再缓存，否则会缓存旧平台的能力
+        synchronized (capabilityLock) {
+            c = capabilities.get(platformCode);
+            if (null != c) {
+                return Optional.of(c);
+            }
+            c = platform.capabilities();
+            if (platforms.get(platformCode) == platform) {
+                capabilities.put(platformCode, c);
+            }
+            return Optional.of(c);
+        }
+    }
+
+    /**
+     * 所有平台的支持矩阵，用于查询 "哪些平台支持某个支付类型/银行"。
+     * 第一次调用时会创建所有还没有创建的平台对象；注册平台后下一次调用重新创建矩阵，其余时候直接返回同一个对象。
+     */
+    public CapabilityMatrix capabilityMatrix() {
+        CapabilityMatrix matrix = capabilityMatrix;
+        if (null != matrix) {
+            return matrix;
+        }
+        synchronized (capabilityLock) {
+            if (null == capabilityMatrix) {
+                Map<String, PlatformCapabilities> all = new HashMap<>();
+                for (String code : platformCodes()) {
+                    capabilities(code).ifPresent(c -> all.put(code, c));
+                }
+                capabilityMatrix = new CapabilityMatrix(all);
+            }
+            return capabilityMatrix;
+        }
     }
 
     public CompletableFuture<Result<QueryInfo>> query(QueryRequest info, PaymentPlatformConfig config) {
-        IPaymentPlatform platform = platforms.get(config.getPlatform());
+        IPaymentPlatform platform = getPlatform(config.getPlatform());
+        if(null == platform) {
+            logger.warn("can not find " + config.getPlatform() + ", all platform codes are " + platformCodes());
+            throw new SystemWarnException(Result.FAIL_CODE, "sdk 不支持 " + config.getPlatform() + " 平台");
+        }
+
+        return bulkhead.call(config.getPlatform(), () -> platform.query(info, config));
+    }
+
+    /**
+     * 批量查询订单状态，平台没有批量查询接口时逐个查询，见 {@link IPaymentPlatform#batchQuery(List, PaymentPlatformConfig)}
+     */
+    public CompletableFuture<Map<String, Result<QueryInfo>>> batchQuery(List<QueryRequest> requests, PaymentPlatformConfig config) {
+        IPaymentPlatform platform = getPlatform(config.getPlatform());
         if(null == platform) {
-            logger.warn("can not find " + config.getPlatform() + ", all platform codes are " + platforms);
+            logger.warn("can not find " + config.getPlatform() + ", all platform codes are " + platformCodes());
             throw new SystemWarnException(Result.FAIL_CODE, "sdk 不支持 " + config.getPlatform() + " 平台");
         }
 
-        return platform.query(info, config);
+        return bulkhead.call(config.getPlatform(), () -> platform.batchQuery(requests, config));
     }
 
 
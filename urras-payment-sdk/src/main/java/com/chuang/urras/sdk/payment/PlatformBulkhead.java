@@ -0,0 +1,62 @@
+package com.chuang.urras.sdk.payment;
+
+import com.chuang.urras.support.Result;
+import com.chuang.urras.support.exception.SystemWarnException;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * 按平台隔离并发。
+ * 每个平台最多同时有 limit 个未完成的请求，超过直接失败，不再排队。
+ * 某个平台的网关变慢时，只会占满自己的名额，不会把连接池和调用方线程都拖住。
+ */
+public class PlatformBulkhead {
+
+    private final int defaultLimit;
+    private final Map<String, Integer> limits = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> semaphores = new ConcurrentHashMap<>();
+
+    /**
+     * @param defaultLimit 每个平台默认的最大并发数，小于等于0不限制
+     */
+    public PlatformBulkhead(int defaultLimit) {
+        this.defaultLimit = defaultLimit;
+    }
+
+    /**
+     * 单独设置某个平台的最大并发数，需要在该平台第一次调用之前设置
+     */
+    public void setLimit(String platform, int limit) {
+        limits.put(platform, limit);
+        semaphores.remove(platform);
+    }
+
+    public <T> CompletableFuture<T> call(String platform, Supplier<CompletableFuture<T>> supplier) {
+        int limit = limits.getOrDefault(platform, defaultLimit);
+        if (limit <= 0) {
+            return supplier.get();
+        }
+        Semaphore semaphore = semaphores.computeIfAbsent(platform, p -> new Semaphore(limit));
+        if (!semaphore.tryAcquire()) {
+            throw new SystemWarnException(Result.FAIL_CODE, platform + " 通道繁忙,请稍后再试");
+        }
+        try {
+            return supplier.get().whenComplete((r, e) -> semaphore.release());
+        } catch (RuntimeException e) {
+            semaphore.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 当前正在执行的请求数
+     */
+    public int inFlight(String platform) {
+        Semaphore semaphore = semaphores.get(platform);
+        return null == semaphore ? 0 : limits.getOrDefault(platform, defaultLimit) - semaphore.availablePermits();
+    }
+}
@@ -0,0 +1,77 @@
+package com.chuang.urras.sdk.payment;
+
+import com.chuang.urras.support.enums.Bank;
+import com.chuang.urras.support.enums.PaymentType;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 一个平台支持的支付类型和银行，创建后不可变。
+ * 内部使用 {@link EnumSet}（枚举个数不超过 64 时就是一个 long 位图），判断是否支持不需要再调用
+ * {@link IPaymentPlatform#bankCodeMapping()} 和 {@link IPaymentPlatform#paymentTypeCodeMapping()}。
+ * 编码映射中的 null key（例如用 HashMap 放了一个默认编号）会被忽略。
+ */
+public final class PlatformCapabilities {
+
+    private final EnumSet<PaymentType> paymentTypes;
+    private final EnumSet<Bank> banks;
+
+    private final Set<PaymentType> paymentTypesView;
+    private final Set<Bank> banksView;
+
+    public PlatformCapabilities(Set<PaymentType> paymentTypes, Set<Bank> banks) {
+        this.paymentTypes = copyOf(PaymentType.class, paymentTypes);
+        this.banks = copyOf(Bank.class, banks);
+        this.paymentTypesView = Collections.unmodifiableSet(this.paymentTypes);
+        this.banksView = Collections.unmodifiableSet(this.banks);
+    }
+
+    /**
+     * 读取一次平台的编码映射
+     */
+    public static PlatformCapabilities of(IPaymentPlatform platform) {
+        return new PlatformCapabilities(platform.paymentTypeCodeMapping().keySet(), platform.bankCodeMapping().keySet());
+    }
+
+    public Set<PaymentType> getPaymentTypes() {
+        return paymentTypesView;
+    }
+
+    public Set<Bank> getBanks() {
+        return banksView;
+    }
+
+    public boolean supportPaymentType(PaymentType type) {
+        return paymentTypes.contains(type);
+    }
+
+    public boolean supportBank(Bank bank) {
+        return banks.contains(bank);
+    }
+
+    /**
+     * 与 {@link IPaymentPlatform#isSupport(PaymentType, Bank)} 的判断相同：支付类型和银行都要支持，bank 为 null 时不支持
+     */
+    public boolean isSupport(PaymentType type, @Nullable Bank bank) {
+        return paymentTypes.contains(type) && null != bank && banks.contains(bank);
+    }
+
+    /**
+     * EnumSet.copyOf 遇到 null 元素会抛出 NullPointerException，这里逐个加入并跳过 null
+     */
+    private static <E extends Enum<E>> EnumSet<E> copyOf(Class<E> type, Collection<E> values) {
+        EnumSet<E> set = EnumSet.noneOf(type);
+        values.stream().filter(Objects::nonNull).forEach(set::add);
+        return set;
+    }
+
+    @Override
+    public String toString() {
+        return "PlatformCapabilities{paymentTypes=" + paymentTypes + ", banks=" + banks + '}';
+    }
+}
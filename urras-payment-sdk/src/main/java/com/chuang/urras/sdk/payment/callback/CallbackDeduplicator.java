@@ -0,0 +1,19 @@
+package com.chuang.urras.sdk.payment.callback;
+
+/**
+ * 回调去重。
+ * key 由平台、订单号和支付状态组成，同一个 key 在有效期内只有第一次 {@link #firstSeen} 返回 true。
+ * 单机使用 {@link MemoryCallbackDeduplicator}；多实例部署时可以基于 redis 的 SET key 1 NX EX ttl 实现。
+ */
+public interface CallbackDeduplicator {
+
+    /**
+     * @return 第一次出现返回 true，并记录该 key
+     */
+    boolean firstSeen(String key);
+
+    /**
+     * 删除 key，业务处理失败后调用，网关重发的回调可以再次处理
+     */
+    void forget(String key);
+}
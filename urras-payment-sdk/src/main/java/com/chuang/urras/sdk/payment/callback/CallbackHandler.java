@@ -0,0 +1,18 @@
+package com.chuang.urras.sdk.payment.callback;
+
+import com.chuang.urras.sdk.payment.CallbackInfo;
+
+/**
+ * 业务回调处理。
+ * 同一个订单的回调按到达顺序在同一个线程中调用，不同订单之间并行。
+ * 抛出异常时该回调的去重记录会被删除，{@link CallbackPipeline} 默认向网关返回失败，网关重发后会再次调用。
+ */
+@FunctionalInterface
+public interface CallbackHandler<T extends CallbackInfo> {
+
+    /**
+     * @param platform 平台编号
+     * @param info 验签通过的回调信息
+     */
+    void handle(String platform, T info) throws Exception;
+}
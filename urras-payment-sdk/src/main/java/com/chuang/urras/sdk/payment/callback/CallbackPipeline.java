@@ -0,0 +1,309 @@
+package com.chuang.urras.sdk.payment.callback;
+
+import com.chuang.urras.sdk.payment.CallbackInfo;
+import com.chuang.urras.sdk.payment.PaymentPlatformConfig;
+import com.chuang.urras.sdk.payment.PaymentSDK;
+import com.chuang.urras.sdk.payment.deposit.DepositCallbackInfo;
+import com.chuang.urras.sdk.payment.withdraw.WithdrawCallbackInfo;
+import com.chuang.urras.support.Result;
+import com.chuang.urras.support.exception.SystemWarnException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 支付回调处理流水线。
+ * <ol>
+ *     <li>同一个配置下参数和内容完全相同的回调（网关重发）共用一次处理，直接拿到同一个结果</li>
+ *     <li>加载配置和验签在 worker 线程池中执行，队列满时直接失败，网关稍后会重发</li>
+ *     <li>验签通过后按 平台+订单号+支付状态 去重，重复的回调不再交给业务处理。第一次的业务处理还没有完成时，
+ *     重复的回调等它完成，成功才返回成功，失败时也返回失败，网关会继续重发</li>
+ *     <li>交给业务处理时按 平台+订单号 分配到固定的线程，同一个订单的事件按顺序处理。每个线程的队列长度有限，
+ *     队列满时删除去重记录并返回失败（即使 awaitHandler 为 false），网关稍后重发</li>
+ * </ol>
+ * 默认业务处理成功后才返回成功，业务处理失败时删除去重记录并返回失败，网关重发后再次处理，回调不会丢失。
+ * {@link #setAwaitHandler(boolean)} 设为 false 时验签完成就返回结果，只适用于业务处理自己持久化并重试的场景，
+ * 否则业务处理失败时网关已经收到成功应答，不会再重发。
+ *
+ * 使用方式：
+ * <pre>
+ *     pipeline.onDeposit((platform, info) -&gt; orderService.paid(info));
+ *     Result&lt;DepositCallbackInfo&gt; r = pipeline.deposit(params, body, false, configKey).get(5, TimeUnit.SECONDS);
+ *     response.getWriter().write(r.getData().getBackMessage());
+ * </pre>
+ */
+public class CallbackPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(CallbackPipeline.class);
+
+    private final PaymentSDK sdk;
+    private final CallbackDeduplicator deduplicator;
+    private final ThreadPoolExecutor verifiers;
+    private final ThreadPoolExecutor[] lanes;
+
+    /**
+     * 正在处理的回调，key 为配置和回调内容
+     */
+    private final Map<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+    /**
+     * 正在进行的业务处理，key 为去重key，重复的回调等它完成后才应答
+     */
+    private final Map<String, CompletableFuture<Void>> deliveries = new ConcurrentHashMap<>();
+
+    private volatile CallbackHandler<DepositCallbackInfo> depositHandler;
+    private volatile CallbackHandler<WithdrawCallbackInfo> withdrawHandler;
+    private volatile boolean awaitHandler = true;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder duplicated = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * 每个业务处理线程的队列长度与 queueSize 相同
+     * @param workers 验签线程数
+     * @param queueSize 等待验签的最大回调数
+     * @param laneCount 业务处理线程数
+     */
+    public CallbackPipeline(PaymentSDK sdk, CallbackDeduplicator deduplicator, int workers, int queueSize, int laneCount) {
+        this(sdk, deduplicator, workers, queueSize, laneCount, queueSize);
+    }
+
+    /**
+     * @param workers 验签线程数
+     * @param queueSize 等待验签的最大回调数
+     * @param laneCount 业务处理线程数
+     * @param laneQueueSize 每个业务处理线程等待处理的最大回调数
+     */
+    public CallbackPipeline(PaymentSDK sdk, CallbackDeduplicator deduplicator, int workers, int queueSize, int laneCount, int laneQueueSize) {
+        this.sdk = sdk;
+        this.deduplicator = deduplicator;
+        this.verifiers = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), threadFactory("payment-callback-verify-"));
+        this.verifiers.allowCoreThreadTimeOut(true);
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        ThreadFactory laneFactory = threadFactory("payment-callback-lane-");
+        for (int i = 0; i < laneCount; i++) {
+            // 单线程保证同一个订单按顺序处理，队列满时 AbortPolicy 抛出 RejectedExecutionException
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(laneQueueSize), laneFactory);
+        }
+    }
+
+    public CallbackPipeline(PaymentSDK sdk) {
+        this(sdk, new MemoryCallbackDeduplicator(), Runtime.getRuntime().availableProcessors(), 1024, 8);
+    }
+
+    public void onDeposit(CallbackHandler<DepositCallbackInfo> handler) {
+        this.depositHandler = handler;
+    }
+
+    public void onWithdraw(CallbackHandler<WithdrawCallbackInfo> handler) {
+        this.withdrawHandler = handler;
+    }
+
+    /**
+     * @param awaitHandler 默认 true，返回的结果要等业务处理完成，业务处理失败时结果也为失败。
+     *                     false 时验签完成就返回，业务处理失败的回调不会再收到重发，只有业务处理自己持久化并重试时才能使用
+     */
+    public void setAwaitHandler(boolean awaitHandler) {
+        this.awaitHandler = awaitHandler;
+    }
+
+    /**
+     * 处理存款回调，参数与 {@link PaymentSDK#depositCallbackHand(Map, String, boolean, String)} 相同
+     */
+    public CompletableFuture<Result<DepositCallbackInfo>> deposit(Map<String, String> params, String body, boolean isFront, String configKey) {
+        return ingest("deposit", configKey, payloadKey("D", configKey, params, body, isFront),
+                config -> sdk.depositCallbackHand(params, body, isFront, config),
+                () -> depositHandler);
+    }
+
+    /**
+     * 处理取款回调，参数与 {@link PaymentSDK#withdrawCallbackHand(Map, String, String)} 相同
+     */
+    public CompletableFuture<Result<WithdrawCallbackInfo>> withdraw(Map<String, String> params, String body, String configKey) {
+        return ingest("withdraw", configKey, payloadKey("W", configKey, params, body, false),
+                config -> sdk.withdrawCallbackHand(params, body, config),
+                () -> withdrawHandler);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends CallbackInfo> CompletableFuture<Result<T>> ingest(String kind,
+                                                                       String configKey,
+                                                                       String payloadKey,
+                                                                       Function<PaymentPlatformConfig, Result<T>> verifier,
+                                                                       Supplier<CallbackHandler<T>> handler) {
+        received.increment();
+        CompletableFuture<Result<T>> created = new CompletableFuture<>();
+        CompletableFuture<Result<T>> existing = (CompletableFuture<Result<T>>) inFlight.putIfAbsent(payloadKey, created);
+        if (null != existing) {
+            coalesced.increment();
+            return existing;
+        }
+        created.whenComplete((r, e) -> inFlight.remove(payloadKey, created));
+
+        try {
+            verifiers.execute(() -> verify(kind, configKey, verifier, handler, created));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            created.completeExceptionally(new SystemWarnException(Result.FAIL_CODE, "回调繁忙,请稍后再试"));
+        }
+        return created;
+    }
+
+    private <T extends CallbackInfo> void verify(String kind,
+                                                 String configKey,
+                                                 Function<PaymentPlatformConfig, Result<T>> verifier,
+                                                 Supplier<CallbackHandler<T>> handler,
+                                                 CompletableFuture<Result<T>> future) {
+        try {
+            PaymentPlatformConfig config = sdk.loadConfigByKey(configKey)
+                    .orElseThrow(() -> new SystemWarnException(Result.FAIL_CODE, "无法找到配置，key->" + configKey));
+            Result<T> result = verifier.apply(config);
+            T info = result.getData();
+            CallbackHandler<T> h = handler.get();
+            if (!result.isSuccess() || null == info || null == info.getReference() || null == h) {
+                future.complete(result);
+                return;
+            }
+
+            String orderKey = kind + ":" + config.getPlatform() + ":" + info.getReference();
+            String dedupKey = orderKey + ":" + info.getPaymentSuccess();
+            // 先占住 deliveries 再去重，重复的回调总能找到正在进行的业务处理
+            CompletableFuture<Void> delivery = new CompletableFuture<>();
+            CompletableFuture<Void> pending = deliveries.putIfAbsent(dedupKey, delivery);
+            if (null != pending) {
+                duplicated.increment();
+                completeAfter(pending, result, future);
+                return;
+            }
+            boolean first;
+            try {
+                first = deduplicator.firstSeen(dedupKey);
+            } catch (RuntimeException e) {
+                finish(dedupKey, delivery, e);
+                throw e;
+            }
+            if (!first) {
+                // 之前已经处理成功
+                duplicated.increment();
+                finish(dedupKey, delivery, null);
+                future.complete(result);
+                return;
+            }
+
+            deliver(orderKey, dedupKey, config.getPlatform(), info, h, delivery);
+            // 队列已满时 delivery 已经失败，即使不等待业务处理也要返回失败，让网关重发
+            if (awaitHandler || delivery.isCompletedExceptionally()) {
+                completeAfter(delivery, result, future);
+            } else {
+                future.complete(result);
+            }
+        } catch (Exception e) {
+            logger.error("处理回调失败，key->" + configKey, e);
+            future.completeExceptionally(e);
+        }
+    }
+
+    private static <T> void completeAfter(CompletableFuture<Void> delivery, Result<T> result, CompletableFuture<Result<T>> future) {
+        delivery.whenComplete((v, e) -> {
+            if (null == e) {
+                future.complete(result);
+            } else {
+                future.completeExceptionally(e);
+            }
+        });
+    }
+
+    private <T extends CallbackInfo> void deliver(String orderKey, String dedupKey, String platform, T info,
+                                                  CallbackHandler<T> handler, CompletableFuture<Void> future) {
+        ThreadPoolExecutor lane = lanes[(orderKey.hashCode() & Integer.MAX_VALUE) % lanes.length];
+        try {
+            lane.execute(() -> {
+                try {
+                    handler.handle(platform, info);
+                    handled.increment();
+                    finish(dedupKey, future, null);
+                } catch (Throwable e) {
+                    failed.increment();
+                    deduplicator.forget(dedupKey);
+                    logger.error("业务处理回调失败 " + orderKey, e);
+                    finish(dedupKey, future, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            deduplicator.forget(dedupKey);
+            logger.warn("业务处理队列已满，{} 等待网关重发", orderKey);
+            finish(dedupKey, future, new SystemWarnException(Result.FAIL_CODE, "回调繁忙,请稍后再试"));
+        }
+    }
+
+    /**
+     * 先从 deliveries 删除再结束业务处理。等待它的回调一收到应答网关就可能重发，
+     * 重发的回调不能再找到这次已经结束（尤其是失败）的业务处理
+     */
+    private void finish(String dedupKey, CompletableFuture<Void> delivery, Throwable error) {
+        deliveries.remove(dedupKey, delivery);
+        if (null == error) {
+            delivery.complete(null);
+        } else {
+            delivery.completeExceptionally(error);
+        }
+    }
+
+    private static String payloadKey(String kind, String configKey, Map<String, String> params, String body, boolean isFront) {
+        // 参数排序后比较，网关重发时参数顺序可能不同
+        return kind + (isFront ? "F" : "B") + "|" + configKey + "|"
+                + (null == params ? "" : new TreeMap<>(params).toString()) + "|"
+                + (null == body ? "" : body);
+    }
+
+    public Map<String, String> metrics() {
+        Map<String, String> metrics = new LinkedHashMap<>();
+        metrics.put("received", String.valueOf(received.sum()));
+        metrics.put("coalesced", String.valueOf(coalesced.sum()));
+        metrics.put("duplicated", String.valueOf(duplicated.sum()));
+        metrics.put("rejected", String.valueOf(rejected.sum()));
+        metrics.put("handled", String.valueOf(handled.sum()));
+        metrics.put("failed", String.valueOf(failed.sum()));
+        metrics.put("verifyQueue", String.valueOf(verifiers.getQueue().size()));
+        int laneQueue = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            laneQueue += lane.getQueue().size();
+        }
+        metrics.put("laneQueue", String.valueOf(laneQueue));
+        metrics.put("inFlight", String.valueOf(inFlight.size()));
+        metrics.put("delivering", String.valueOf(deliveries.size()));
+        return metrics;
+    }
+
+    /**
+     * 停止接收回调，已经在处理的回调会继续处理完
+     */
+    public void shutdown() {
+        verifiers.shutdown();
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger index = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,53 @@
+package com.chuang.urras.sdk.payment.callback;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内存中的回调去重，最多保存 capacity 个 key，超出后淘汰最早的 key，每个 key 在 ttl 后过期。
+ */
+public class MemoryCallbackDeduplicator implements CallbackDeduplicator {
+
+    private final long ttlMillis;
+    private final Map<String, Long> expires;
+
+    public MemoryCallbackDeduplicator(int capacity, long ttl, TimeUnit unit) {
+        this.ttlMillis = unit.toMillis(ttl);
+        this.expires = new LinkedHashMap<String, Long>(Math.min(capacity, 1024) * 2, 0.75f) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * 默认保存 10 万个 key，一天过期
+     */
+    public MemoryCallbackDeduplicator() {
+        this(100_000, 1, TimeUnit.DAYS);
+    }
+
+    @Override
+    public synchronized boolean firstSeen(String key) {
+        long now = System.currentTimeMillis();
+        Long expire = expires.get(key);
+        if (null != expire && expire > now) {
+            return false;
+        }
+        // 先删除再放入，过期后重新出现的 key 排到最后
+        expires.remove(key);
+        expires.put(key, now + ttlMillis);
+        return true;
+    }
+
+    @Override
+    public synchronized void forget(String key) {
+        expires.remove(key);
+    }
+
+    public synchronized int size() {
+        return expires.size();
+    }
+}
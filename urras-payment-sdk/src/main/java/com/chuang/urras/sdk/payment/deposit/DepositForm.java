@@ -0,0 +1,46 @@
+package com.chuang.urras.sdk.payment.deposit;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 需要由浏览器提交的存款表单。
+ * 前端可以直接用 action、method 和 fields 构造表单提交，不需要解析 {@link DepositInfo#getContent()} 中的 html。
+ */
+public class DepositForm {
+
+    private final String action;
+
+    private final String method;
+
+    private final Map<String, String> fields;
+
+    public DepositForm(String action, String method, Map<String, String> fields) {
+        this.action = action;
+        this.method = method;
+        this.fields = Collections.unmodifiableMap(new LinkedHashMap<>(fields));
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * 表单中的隐藏字段，保持参数原来的顺序
+     */
+    public Map<String, String> getFields() {
+        return fields;
+    }
+
+    /**
+     * 渲染成自动提交的 html，值已经转义
+     */
+    public String toHtml() {
+        return FormRenderer.render(this);
+    }
+}
@@ -0,0 +1,106 @@
+package com.chuang.urras.sdk.payment.deposit;
+
+import java.util.Map;
+
+/**
+ * 自动提交表单的 html 渲染。
+ * 模板在类加载时拆成固定片段，渲染时按顺序写入线程复用的 StringBuilder，所有属性值都做 html 转义，
+ * 参数中带有引号、尖括号的值不会破坏页面结构或注入脚本。
+ */
+public final class FormRenderer {
+
+    private static final String FORM_START = "<form action=\"";
+    private static final String FORM_METHOD = "\" method=\"";
+    private static final String FORM_OPEN_END = "\">";
+    private static final String INPUT_START = "<input type=\"hidden\" name=\"";
+    private static final String INPUT_VALUE = "\" value=\"";
+    private static final String INPUT_END = "\" />";
+    private static final String FORM_END = "</form><script>document.forms[0].submit();</script>";
+
+    private static final int FIXED_LENGTH = FORM_START.length() + FORM_METHOD.length() + FORM_OPEN_END.length() + FORM_END.length();
+    private static final int INPUT_LENGTH = INPUT_START.length() + INPUT_VALUE.length() + INPUT_END.length();
+
+    /**
+     * 超过该大小的缓冲区用完后不保留
+     */
+    private static final int MAX_POOLED = 16 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+    private FormRenderer() {}
+
+    public static String render(DepositForm form) {
+        return render(form.getAction(), form.getMethod(), form.getFields());
+    }
+
+    public static String render(String action, String method, Map<String, String> fields) {
+        StringBuilder html = BUFFERS.get();
+        html.setLength(0);
+        html.ensureCapacity(estimate(action, fields));
+
+        html.append(FORM_START);
+        escape(html, action);
+        html.append(FORM_METHOD);
+        escape(html, method);
+        html.append(FORM_OPEN_END);
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            html.append(INPUT_START);
+            escape(html, field.getKey());
+            html.append(INPUT_VALUE);
+            escape(html, field.getValue());
+            html.append(INPUT_END);
+        }
+        html.append(FORM_END);
+
+        String result = html.toString();
+        if (html.capacity() > MAX_POOLED) {
+            BUFFERS.remove();
+        }
+        return result;
+    }
+
+    /**
+     * 属性值转义：&amp; &lt; &gt; &quot; '
+     * 没有需要转义的字符时整段追加
+     */
+    static void escape(StringBuilder out, String value) {
+        if (null == value) {
+            return;
+        }
+        int start = 0;
+        int n = value.length();
+        for (int i = 0; i < n; i++) {
+            String replacement;
+            switch (value.charAt(i)) {
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '"':
+                    replacement = "&quot;";
+                    break;
+                case '\'':
+                    replacement = "&#39;";
+                    break;
+                default:
+                    continue;
+            }
+            out.append(value, start, i).append(replacement);
+            start = i + 1;
+        }
+        out.append(value, start, n);
+    }
+
+    private static int estimate(String action, Map<String, String> fields) {
+        int length = FIXED_LENGTH + (null == action ? 0 : action.length()) + 8;
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            length += INPUT_LENGTH + field.getKey().length() + (null == field.getValue() ? 0 : field.getValue().length());
+        }
+        return length;
+    }
+}
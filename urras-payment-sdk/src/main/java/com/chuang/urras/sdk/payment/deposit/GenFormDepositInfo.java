@@ -1,54 +1,78 @@
 package com.chuang.urras.sdk.payment.deposit;
 
 import com.chuang.urras.support.Result;
-import com.chuang.urras.toolskit.third.apache.httpcomponents.Https;
 import com.chuang.urras.toolskit.third.apache.httpcomponents.Request;
 import com.chuang.urras.toolskit.third.apache.httpcomponents.async.AsyncHttpClient;
 import org.apache.http.HttpHost;
-import org.apache.http.impl.client.LaxRedirectStrategy;
-import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
 
+import javax.annotation.Nullable;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 public abstract class GenFormDepositInfo extends DepositInfo {
 
-    public static AsyncHttpClient allow302AsyncHttpClient = Https
-            .async(HttpAsyncClientBuilder.create().setRedirectStrategy(new LaxRedirectStrategy()))
-            .setConnectTimeout(10000)
-            .setSocketTimeout(10000)
-            .setConnectionRequestTimeout(10000)
-            .trustAll()
-            .build()
-            .init();
+    private final @Nullable DepositForm form;
+
+    /**
+     * 第一次调用 {@link #getContent()} 时才渲染
+     */
+    private volatile String html;
 
     public GenFormDepositInfo(String merchantId,
                               String content,
                               Long amount,
                               String reference) {
         super(DepositInfo.Type.FORM_DOC, merchantId, content, amount, reference);
+        this.form = null;
+        this.html = content;
+    }
+
+    /**
+     * html 在第一次调用 {@link #getContent()} 时由 form 渲染，前端直接使用 {@link #getForm()} 时不会生成 html
+     */
+    protected GenFormDepositInfo(String merchantId,
+                                 DepositForm form,
+                                 Long amount,
+                                 String reference) {
+        super(DepositInfo.Type.FORM_DOC, merchantId, null, amount, reference);
+        this.form = form;
+    }
+
+    /**
+     * 结构化的表单，通过 html 构造时为 null
+     */
+    public @Nullable DepositForm getForm() {
+        return form;
+    }
+
+    @Override
+    public String getContent() {
+        String h = html;
+        if (null == h && null != form) {
+            h = form.toHtml();
+            html = h;
+        }
+        return h;
     }
 
     public abstract CompletableFuture<Result<DepositInfo>> submit();
 
-    public static GenFormDepositInfo form(HttpHost proxy,
+    /**
+     * @param client 提交表单使用的客户端，通常是 {@link com.chuang.urras.sdk.payment.IPaymentPlatform#httpClient} 返回的平台独立客户端，需要跟随 POST 的 302 跳转
+     */
+    public static GenFormDepositInfo form(AsyncHttpClient client,
+                                          HttpHost proxy,
                                           String merchantId,
                                           String apiPath,
                                           String method,
                                           Long amount,
                                           String reference,
                                           Map<String, String> params) {
-        StringBuilder html = new StringBuilder("<form action=\"" + apiPath + "\" method=\"" + method + "\">");
-        for(String key : params.keySet()) {
-            html.append("<input type=\"hidden\" name=\"").append(key).append("\" value=\"").append(params.get(key)).append("\" />");
-        }
-        html.append("</form><script>document.forms[0].submit();</script>");
-
-        return new GenFormDepositInfo(merchantId, html.toString(), amount, reference) {
+        return new GenFormDepositInfo(merchantId, new DepositForm(apiPath, method, params), amount, reference) {
             @Override
             public CompletableFuture<Result<DepositInfo>> submit() {
                 return Request.newBuilder().proxy(proxy).method(method).url(apiPath).parameter(params).build()
-                        .executeAsString(allow302AsyncHttpClient)
+                        .executeAsString(client)
                         .thenApply(s -> Result.success(new DepositInfo(Type.FORM_DOC, merchantId, s, amount, reference)));
             }
         };
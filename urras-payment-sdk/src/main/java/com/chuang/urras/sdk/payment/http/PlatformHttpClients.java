@@ -0,0 +1,162 @@
+package com.chuang.urras.sdk.payment.http;
+
+import com.chuang.urras.support.Result;
+import com.chuang.urras.support.exception.SystemErrorException;
+import com.chuang.urras.toolskit.basic.util.ScheduleKit;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.Https;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.async.AsyncBuilder;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.async.AsyncHttpClient;
+import org.apache.http.impl.client.DefaultRedirectStrategy;
+import org.apache.http.impl.client.LaxRedirectStrategy;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按平台隔离的 http 客户端。
+ * 每个 平台+配置 在第一次使用时按 {@link PlatformHttpSettings} 创建一个独立的连接池并缓存，
+ * 某个平台的网关变慢或配置错误时只会占满它自己的连接，不会影响其他平台。
+ * 配置修改后设置不同时创建新的客户端替换旧的，旧客户端等正在进行的请求超时时间过后关闭，不会越积越多。
+ */
+public class PlatformHttpClients {
+
+    /**
+     * {@link com.chuang.urras.sdk.payment.IPaymentPlatform#httpClient} 默认使用的实例
+     */
+    public static final PlatformHttpClients DEFAULT = new PlatformHttpClients();
+
+    private final Map<Key, Holder> clients = new ConcurrentHashMap<>();
+
+    /**
+     * @param configKey 配置key，为 null 时同一个平台共用一个客户端
+     */
+    public AsyncHttpClient get(String platform, String configKey, PlatformHttpSettings settings) {
+        Key key = new Key(platform, configKey);
+        Holder holder = clients.get(key);
+        if (null != holder && holder.settings.equals(settings)) {
+            return holder.client;
+        }
+        Holder[] replaced = new Holder[1];
+        holder = clients.compute(key, (k, old) -> {
+            if (null != old && old.settings.equals(settings)) {
+                return old;
+            }
+            replaced[0] = old;
+            return new Holder(settings, create(platform, settings));
+        });
+        if (null != replaced[0]) {
+            retire(replaced[0]);
+        }
+        return holder.client;
+    }
+
+    /**
+     * 关闭某个平台的所有客户端，下次使用时重新创建
+     */
+    public void close(String platform) {
+        clients.entrySet().removeIf(entry -> {
+            if (entry.getKey().platform.equals(platform)) {
+                entry.getValue().client.shutdown();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    public void shutdown() {
+        clients.values().forEach(holder -> holder.client.shutdown());
+        clients.clear();
+    }
+
+    /**
+     * 每个客户端的设置，key 为平台编号
+     */
+    public Map<String, String> metrics() {
+        Map<String, String> metrics = new TreeMap<>();
+        clients.forEach((key, holder) -> metrics.merge(key.platform, holder.settings.toString(), (a, b) -> a + "; " + b));
+        return metrics;
+    }
+
+    /**
+     * 被替换的客户端上可能还有请求，等一个完整请求的超时时间之后再关闭
+     */
+    private static void retire(Holder holder) {
+        PlatformHttpSettings settings = holder.settings;
+        long grace = (long) settings.getConnectionRequestTimeout() + settings.getConnectTimeout() + settings.getSocketTimeout();
+        ScheduleKit.schedule(holder.client::shutdown, (int) Math.min(Integer.MAX_VALUE, Math.max(0, grace)), TimeUnit.MILLISECONDS);
+    }
+
+    private static AsyncHttpClient create(String platform, PlatformHttpSettings settings) {
+        HttpAsyncClientBuilder clientBuilder = HttpAsyncClientBuilder.create();
+        if (settings.getRedirect() == PlatformHttpSettings.Redirect.LAX) {
+            clientBuilder.setRedirectStrategy(new LaxRedirectStrategy());
+        } else if (settings.getRedirect() == PlatformHttpSettings.Redirect.DEFAULT) {
+            clientBuilder.setRedirectStrategy(DefaultRedirectStrategy.INSTANCE);
+        }
+
+        AsyncBuilder builder = Https.async(clientBuilder)
+                .setDefaultCharset(settings.getCharset())
+                .totalConnectPoolMax(settings.getMaxConnections())
+                .maxConnectEachHost(settings.getMaxConnections())
+                .evictIdle(60000)
+                .setConnectTimeout(settings.getConnectTimeout())
+                .setSocketTimeout(settings.getSocketTimeout())
+                .setConnectionRequestTimeout(settings.getConnectionRequestTimeout())
+                .setRedirectsEnabled(settings.getRedirect() != PlatformHttpSettings.Redirect.NONE);
+        if (null != settings.getProxy()) {
+            builder.setProxy(settings.getProxy());
+        }
+        if (settings.getSslMode() == PlatformHttpSettings.SslMode.TRUST_ALL) {
+            builder.trustAll();
+        } else if (settings.getSslMode() == PlatformHttpSettings.SslMode.IGNORE_CERT) {
+            builder.ignoreSSLCert();
+        }
+
+        AsyncHttpClient client = builder.build();
+        if (null == client) {
+            throw new SystemErrorException(Result.FAIL_CODE, platform + " 创建 http 客户端失败 " + settings);
+        }
+        return client.init();
+    }
+
+    private static final class Holder {
+        private final PlatformHttpSettings settings;
+        private final AsyncHttpClient client;
+
+        private Holder(PlatformHttpSettings settings, AsyncHttpClient client) {
+            this.settings = settings;
+            this.client = client;
+        }
+    }
+
+    private static final class Key {
+        private final String platform;
+        private final String configKey;
+
+        private Key(String platform, String configKey) {
+            this.platform = platform;
+            this.configKey = configKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return platform.equals(key.platform) && Objects.equals(configKey, key.configKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * platform.hashCode() + Objects.hashCode(configKey);
+        }
+    }
+}
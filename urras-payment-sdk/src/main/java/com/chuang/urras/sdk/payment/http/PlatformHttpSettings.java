@@ -0,0 +1,258 @@
+package com.chuang.urras.sdk.payment.http;
+
+import org.apache.http.HttpHost;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 支付平台 http 客户端的设置。
+ * 平台实现可以覆盖 {@link com.chuang.urras.sdk.payment.IPaymentPlatform#httpSettings} 声明自己的默认值，
+ * 单个配置可以在扩展信息中用 http.* 覆盖，见 {@link #merge(Map)}。
+ * 设置相同的配置共用一个连接池，不同平台之间的连接池永远不共用。
+ */
+public final class PlatformHttpSettings {
+
+    public static final String EXT_CONNECT_TIMEOUT = "http.connectTimeout";
+    public static final String EXT_SOCKET_TIMEOUT = "http.socketTimeout";
+    public static final String EXT_MAX_CONNECTIONS = "http.maxConnections";
+    public static final String EXT_REDIRECT = "http.redirect";
+    public static final String EXT_SSL = "http.ssl";
+
+    public enum Redirect {
+        /**
+         * 不跟随跳转
+         */
+        NONE,
+        /**
+         * 只有 GET/HEAD 跟随 301/302
+         */
+        DEFAULT,
+        /**
+         * POST 也跟随 301/302，表单提交需要
+         */
+        LAX
+    }
+
+    public enum SslMode {
+        /**
+         * 校验证书和域名
+         */
+        VERIFY,
+        /**
+         * 信任所有证书，仍校验域名
+         */
+        TRUST_ALL,
+        /**
+         * 完全忽略证书和域名，某些网关 https 没有有效证书
+         */
+        IGNORE_CERT
+    }
+
+    /**
+     * 与原来表单提交使用的共享客户端相同：10 秒超时、POST 跟随跳转、信任所有证书
+     */
+    public static final PlatformHttpSettings DEFAULT = builder().build();
+
+    private final int connectTimeout;
+    private final int socketTimeout;
+    private final int connectionRequestTimeout;
+    private final int maxConnections;
+    private final Redirect redirect;
+    private final SslMode sslMode;
+    private final String charset;
+    private final @Nullable HttpHost proxy;
+
+    private PlatformHttpSettings(Builder builder) {
+        this.connectTimeout = builder.connectTimeout;
+        this.socketTimeout = builder.socketTimeout;
+        this.connectionRequestTimeout = builder.connectionRequestTimeout;
+        this.maxConnections = builder.maxConnections;
+        this.redirect = builder.redirect;
+        this.sslMode = builder.sslMode;
+        this.charset = builder.charset;
+        this.proxy = builder.proxy;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Builder toBuilder() {
+        return new Builder()
+                .connectTimeout(connectTimeout)
+                .socketTimeout(socketTimeout)
+                .connectionRequestTimeout(connectionRequestTimeout)
+                .maxConnections(maxConnections)
+                .redirect(redirect)
+                .sslMode(sslMode)
+                .charset(charset)
+                .proxy(proxy);
+    }
+
+    /**
+     * 用配置扩展信息中的 http.* 覆盖当前设置，没有对应 key 时保持不变
+     */
+    public PlatformHttpSettings merge(@Nullable Map<String, Object> ext) {
+        if (null == ext || ext.isEmpty()) {
+            return this;
+        }
+        Builder builder = toBuilder();
+        Integer i;
+        if (null != (i = intValue(ext.get(EXT_CONNECT_TIMEOUT)))) {
+            builder.connectTimeout(i).connectionRequestTimeout(i);
+        }
+        if (null != (i = intValue(ext.get(EXT_SOCKET_TIMEOUT)))) {
+            builder.socketTimeout(i);
+        }
+        if (null != (i = intValue(ext.get(EXT_MAX_CONNECTIONS)))) {
+            builder.maxConnections(i);
+        }
+        Object redirect = ext.get(EXT_REDIRECT);
+        if (null != redirect) {
+            builder.redirect(Redirect.valueOf(redirect.toString().trim().toUpperCase()));
+        }
+        Object ssl = ext.get(EXT_SSL);
+        if (null != ssl) {
+            builder.sslMode(SslMode.valueOf(ssl.toString().trim().toUpperCase()));
+        }
+        return builder.build();
+    }
+
+    private static Integer intValue(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return null == value ? null : Integer.valueOf(value.toString().trim());
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public Redirect getRedirect() {
+        return redirect;
+    }
+
+    public SslMode getSslMode() {
+        return sslMode;
+    }
+
+    public String getCharset() {
+        return charset;
+    }
+
+    public @Nullable HttpHost getProxy() {
+        return proxy;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PlatformHttpSettings)) {
+            return false;
+        }
+        PlatformHttpSettings that = (PlatformHttpSettings) o;
+        return connectTimeout == that.connectTimeout
+                && socketTimeout == that.socketTimeout
+                && connectionRequestTimeout == that.connectionRequestTimeout
+                && maxConnections == that.maxConnections
+                && redirect == that.redirect
+                && sslMode == that.sslMode
+                && Objects.equals(charset, that.charset)
+                && Objects.equals(proxy, that.proxy);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(connectTimeout, socketTimeout, connectionRequestTimeout, maxConnections, redirect, sslMode, charset, proxy);
+    }
+
+    @Override
+    public String toString() {
+        return "PlatformHttpSettings{connectTimeout=" + connectTimeout
+                + ", socketTimeout=" + socketTimeout
+                + ", connectionRequestTimeout=" + connectionRequestTimeout
+                + ", maxConnections=" + maxConnections
+                + ", redirect=" + redirect
+                + ", sslMode=" + sslMode
+                + ", charset=" + charset
+                + ", proxy=" + proxy + "}";
+    }
+
+    public static class Builder {
+        private int connectTimeout = 10000;
+        private int socketTimeout = 10000;
+        private int connectionRequestTimeout = 10000;
+        private int maxConnections = 20;
+        private Redirect redirect = Redirect.LAX;
+        private SslMode sslMode = SslMode.TRUST_ALL;
+        private String charset = "UTF-8";
+        private @Nullable HttpHost proxy;
+
+        public Builder connectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        public Builder socketTimeout(int socketTimeout) {
+            this.socketTimeout = socketTimeout;
+            return this;
+        }
+
+        /**
+         * 从连接池获取连接的超时时间，连接池被占满时最多等待这么久
+         */
+        public Builder connectionRequestTimeout(int connectionRequestTimeout) {
+            this.connectionRequestTimeout = connectionRequestTimeout;
+            return this;
+        }
+
+        /**
+         * 该平台的连接池大小
+         */
+        public Builder maxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        public Builder redirect(Redirect redirect) {
+            this.redirect = redirect;
+            return this;
+        }
+
+        public Builder sslMode(SslMode sslMode) {
+            this.sslMode = sslMode;
+            return this;
+        }
+
+        public Builder charset(String charset) {
+            this.charset = charset;
+            return this;
+        }
+
+        public Builder proxy(@Nullable HttpHost proxy) {
+            this.proxy = proxy;
+            return this;
+        }
+
+        public PlatformHttpSettings build() {
+            return new PlatformHttpSettings(this);
+        }
+    }
+}
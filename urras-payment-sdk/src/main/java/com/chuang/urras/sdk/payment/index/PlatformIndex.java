@@ -0,0 +1,54 @@
+package com.chuang.urras.sdk.payment.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 读取 {@link PlatformIndexProcessor} 生成的平台索引
+ */
+public final class PlatformIndex {
+    private static final Logger logger = LoggerFactory.getLogger(PlatformIndex.class);
+
+    public static final String LOCATION = "META-INF/urras/payment-platforms";
+
+    private PlatformIndex() {}
+
+    /**
+     * 读取 classpath 中所有的索引文件
+     * @return 平台编号 - 实现类名，没有索引时为空
+     */
+    public static Map<String, String> load(ClassLoader classLoader) {
+        Map<String, String> index = new LinkedHashMap<>();
+        try {
+            Enumeration<URL> urls = classLoader.getResources(LOCATION);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while (null != (line = reader.readLine())) {
+                        int eq = line.indexOf('=');
+                        if (line.isEmpty() || line.startsWith("#") || eq <= 0) {
+                            continue;
+                        }
+                        String previous = index.putIfAbsent(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+                        if (null != previous) {
+                            logger.warn("平台编号 {} 重复，使用 {}，忽略 {} 中的 {}", line.substring(0, eq), previous, url, line.substring(eq + 1));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("读取平台索引失败，将扫描 class 文件", e);
+        }
+        return index;
+    }
+}
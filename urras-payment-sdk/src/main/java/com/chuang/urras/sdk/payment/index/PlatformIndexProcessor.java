@@ -0,0 +1,144 @@
+package com.chuang.urras.sdk.payment.index;
+
+import com.chuang.urras.sdk.payment.Platform;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.NoSuchFileException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 编译时生成平台索引 {@value PlatformIndex#LOCATION}。
+ * 依赖 payment-sdk 的平台实现模块编译时会自动执行，每行一个 平台编号=实现类，
+ * {@link com.chuang.urras.sdk.payment.PaymentSDK} 启动时读取索引，不再扫描 class 文件。
+ * 增量编译时只有修改过的类参与处理，所以写出前会合并已有的索引文件，保留其中仍然存在并且编号不变的平台。
+ */
+@SupportedAnnotationTypes("com.chuang.urras.sdk.payment.Platform")
+public class PlatformIndexProcessor extends AbstractProcessor {
+
+    private static final String PLATFORM_INTERFACE = "com.chuang.urras.sdk.payment.IPaymentPlatform";
+
+    /**
+     * 多轮处理累计的结果，最后一轮统一写出
+     */
+    private final Map<String, String> index = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            write();
+            return false;
+        }
+        TypeElement platformInterface = processingEnv.getElementUtils().getTypeElement(PLATFORM_INTERFACE);
+        TypeMirror platformType = null == platformInterface ? null : processingEnv.getTypeUtils().erasure(platformInterface.asType());
+        for (Element element : roundEnv.getElementsAnnotatedWith(Platform.class)) {
+            if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) {
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            if (null != platformType && !processingEnv.getTypeUtils().isAssignable(type.asType(), platformType)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "@Platform 注解的类没有实现 " + PLATFORM_INTERFACE, element);
+                continue;
+            }
+            String code = type.getAnnotation(Platform.class).value();
+            String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+            String previous = index.put(code, className);
+            if (null != previous && !previous.equals(className)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "平台编号 " + code + " 重复：" + previous + ", " + className, element);
+            }
+        }
+        return false;
+    }
+
+    private void write() {
+        Map<String, String> merged = merge(readExisting());
+        if (merged.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", PlatformIndex.LOCATION);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, String> entry : merged.entrySet()) {
+                    writer.write(entry.getKey());
+                    writer.write('=');
+                    writer.write(entry.getValue());
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "生成平台索引失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 本次编译的结果优先；已有索引中的平台，类仍然存在、仍然有 @Platform 且编号不变时保留，
+     * 本次编译过的类以本次的编号为准
+     */
+    private Map<String, String> merge(Map<String, String> existing) {
+        Map<String, String> merged = new TreeMap<>(index);
+        Set<String> compiled = new HashSet<>(index.values());
+        for (Map.Entry<String, String> entry : existing.entrySet()) {
+            String code = entry.getKey();
+            String className = entry.getValue();
+            if (merged.containsKey(code) || compiled.contains(className)) {
+                continue;
+            }
+            TypeElement type = processingEnv.getElementUtils().getTypeElement(className.replace('$', '.'));
+            Platform platform = null == type ? null : type.getAnnotation(Platform.class);
+            if (null != platform && code.equals(platform.value())) {
+                merged.put(code, className);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 读取上次编译生成的索引，没有时为空
+     */
+    private Map<String, String> readExisting() {
+        Map<String, String> existing = new TreeMap<>();
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", PlatformIndex.LOCATION);
+            try (Reader in = file.openReader(true); BufferedReader reader = new BufferedReader(in)) {
+                String line;
+                while (null != (line = reader.readLine())) {
+                    int eq = line.indexOf('=');
+                    if (line.isEmpty() || line.startsWith("#") || eq <= 0) {
+                        continue;
+                    }
+                    existing.put(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+                }
+            }
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            // 第一次编译
+        } catch (IOException | IllegalArgumentException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "读取已有平台索引失败，只写出本次编译的平台：" + e.getMessage());
+        }
+        return existing;
+    }
+}
@@ -0,0 +1,25 @@
+package com.chuang.urras.sdk.payment.reconcile;
+
+import com.chuang.urras.sdk.payment.PaymentPlatformConfig;
+import com.chuang.urras.sdk.payment.query.OrderStatus;
+import com.chuang.urras.sdk.payment.query.QueryInfo;
+import com.chuang.urras.sdk.payment.query.QueryRequest;
+
+/**
+ * 对账结果
+ */
+public interface ReconcileListener {
+
+    /**
+     * 查询到订单已成功（{@link OrderStatus#PAID}）或失败（{@link OrderStatus#FAIL}）。
+     * 抛出异常时订单会保留，按退避时间再次查询。
+     */
+    void onResolved(QueryRequest request, PaymentPlatformConfig config, QueryInfo info) throws Exception;
+
+    /**
+     * 超过最长对账时间仍未得到最终状态，订单不再查询
+     * @param lastStatus 最后一次查询到的状态
+     */
+    default void onExpired(QueryRequest request, PaymentPlatformConfig config, OrderStatus lastStatus) {
+    }
+}
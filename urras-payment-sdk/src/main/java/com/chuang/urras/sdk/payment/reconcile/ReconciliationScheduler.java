@@ -0,0 +1,345 @@
+package com.chuang.urras.sdk.payment.reconcile;
+
+import com.chuang.urras.sdk.payment.IPaymentPlatform;
+import com.chuang.urras.sdk.payment.PaymentPlatformConfig;
+import com.chuang.urras.sdk.payment.PaymentSDK;
+import com.chuang.urras.sdk.payment.query.OrderStatus;
+import com.chuang.urras.sdk.payment.query.QueryInfo;
+import com.chuang.urras.sdk.payment.query.QueryRequest;
+import com.chuang.urras.support.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 订单状态对账。
+ * 待确认的订单通过 {@link #submit} 加入，每个 tick 把到期的订单按配置分组，
+ * 按平台的 {@link IPaymentPlatform#maxBatchQuerySize()} 分批调用 {@link PaymentSDK#batchQuery}，
+ * 每个平台每秒发出的查询请求数受 {@link #setRate} 限制，超出的订单留到下一个 tick。
+ *
+ * 没有得到最终状态的订单按退避时间再次查询：
+ * <pre>
+ *     delay = min(maxDelay, max(baseDelay × 2^查询次数, 订单年龄 / 8))
+ * </pre>
+ * 新订单查得勤，老订单查得少；超过 maxAge 后调用 {@link ReconcileListener#onExpired} 并放弃。
+ * 收到回调后可以用 {@link #cancel} 提前移除订单，查询中的订单被移除后，查询结果直接丢弃，不再调用 listener。
+ * 查询结果在对账线程中处理，listener 不会在 HTTP 客户端的 I/O 线程中执行。
+ */
+public class ReconciliationScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(ReconciliationScheduler.class);
+
+    private final PaymentSDK sdk;
+    private final ReconcileListener listener;
+    private final Map<String, PendingOrder> pending = new ConcurrentHashMap<>();
+    private final Map<String, Double> rates = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+
+    private double defaultRate = 10;
+    private long tickMillis = 1000;
+    private long baseDelayMillis = TimeUnit.SECONDS.toMillis(5);
+    private long maxDelayMillis = TimeUnit.MINUTES.toMillis(10);
+    private long maxAgeMillis = TimeUnit.HOURS.toMillis(24);
+
+    private final LongAdder queried = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder resolved = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    public ReconciliationScheduler(PaymentSDK sdk, ReconcileListener listener) {
+        this.sdk = sdk;
+        this.listener = listener;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "payment-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(this::tickSafely, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 加入一个待确认的订单，同一个配置下相同的订单号只保留一个
+     */
+    public void submit(QueryRequest request, PaymentPlatformConfig config) {
+        pending.putIfAbsent(key(config.getConfigKey(), request.getReference()), new PendingOrder(request, config, System.currentTimeMillis()));
+    }
+
+    /**
+     * 订单已通过其他方式（例如回调）确认，不再查询
+     */
+    public boolean cancel(String configKey, String reference) {
+        return null != pending.remove(key(configKey, reference));
+    }
+
+    /**
+     * 执行一次对账，正常情况下由 {@link #start()} 定时调用
+     */
+    public void tick() {
+        long now = System.currentTimeMillis();
+        Map<String, List<PendingOrder>> due = new HashMap<>();
+        for (PendingOrder order : pending.values()) {
+            if (!order.inFlight && order.nextAt <= now) {
+                due.computeIfAbsent(order.config.getConfigKey(), k -> new ArrayList<>()).add(order);
+            }
+        }
+        for (List<PendingOrder> orders : due.values()) {
+            orders.sort(Comparator.comparingLong(o -> o.nextAt));
+            dispatch(orders, now);
+        }
+    }
+
+    private void tickSafely() {
+        try {
+            tick();
+        } catch (Exception e) {
+            logger.error("对账失败", e);
+        }
+    }
+
+    private void dispatch(List<PendingOrder> orders, long now) {
+        PaymentPlatformConfig config = orders.get(0).config;
+        IPaymentPlatform platform = sdk.getPlatform(config.getPlatform());
+        if (null == platform) {
+            logger.warn("sdk 不支持 {} 平台，{} 个订单无法对账", config.getPlatform(), orders.size());
+            orders.forEach(this::expire);
+            return;
+        }
+
+        int batchSize = Math.max(1, platform.maxBatchQuerySize());
+        TokenBucket bucket = bucket(config.getPlatform());
+        for (int from = 0; from < orders.size(); from += batchSize) {
+            if (!bucket.tryAcquire(now)) {
+                throttled.add(orders.size() - from);
+                return;
+            }
+            List<PendingOrder> batch = orders.subList(from, Math.min(orders.size(), from + batchSize));
+            query(new ArrayList<>(batch), config);
+        }
+    }
+
+    private void query(List<PendingOrder> batch, PaymentPlatformConfig config) {
+        List<QueryRequest> requests = new ArrayList<>(batch.size());
+        for (PendingOrder order : batch) {
+            order.inFlight = true;
+            requests.add(order.request);
+        }
+        batches.increment();
+        queried.add(batch.size());
+
+        CompletableFuture<Map<String, Result<QueryInfo>>> future;
+        try {
+            future = sdk.batchQuery(requests, config);
+        } catch (RuntimeException e) {
+            // 平台繁忙等情况，直接按失败处理，等待下一次退避
+            CompletableFuture<Map<String, Result<QueryInfo>>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            future = failed;
+        }
+        future.whenCompleteAsync((results, e) -> {
+            if (null != e) {
+                errors.add(batch.size());
+                logger.warn("{} 批量查询失败：{}", config.getPlatform(), e.toString());
+            }
+            long now = System.currentTimeMillis();
+            for (PendingOrder order : batch) {
+                Result<QueryInfo> r = null == results ? null : results.get(order.request.getReference());
+                handle(order, r, now);
+            }
+        }, this::executeQuietly);
+    }
+
+    /**
+     * 停止后到达的查询结果直接丢弃，不把 RejectedExecutionException 抛给完成查询的 I/O 线程
+     */
+    private void executeQuietly(Runnable command) {
+        try {
+            executor.execute(command);
+        } catch (RejectedExecutionException e) {
+            logger.warn("对账已停止，丢弃查询结果");
+        }
+    }
+
+    private void handle(PendingOrder order, Result<QueryInfo> r, long now) {
+        QueryInfo info = null == r || !r.isSuccess() ? null : r.getData();
+        OrderStatus status = null == info || null == info.getStatus() ? OrderStatus.QUERY_ERROR : info.getStatus();
+        order.lastStatus = status;
+        try {
+            if (status == OrderStatus.PAID || status == OrderStatus.FAIL) {
+                // 先移除再通知：和 cancel 只有一方能移除成功，查询期间被取消的订单不会再调用 onResolved
+                if (!pending.remove(order.key(), order)) {
+                    return;
+                }
+                try {
+                    listener.onResolved(order.request, order.config, info);
+                    resolved.increment();
+                    return;
+                } catch (Exception e) {
+                    logger.error("处理对账结果失败 " + order.key(), e);
+                    if (null != pending.putIfAbsent(order.key(), order)) {
+                        return;
+                    }
+                }
+            } else if (pending.get(order.key()) != order) {
+                return;
+            }
+
+            long age = now - order.createdAt();
+            if (age >= maxAgeMillis) {
+                expire(order);
+                return;
+            }
+            order.attempts++;
+            order.nextAt = now + delay(order.attempts, age);
+        } finally {
+            order.inFlight = false;
+        }
+    }
+
+    private void expire(PendingOrder order) {
+        if (!pending.remove(order.key(), order)) {
+            return;
+        }
+        expired.increment();
+        try {
+            listener.onExpired(order.request, order.config, order.lastStatus);
+        } catch (Exception e) {
+            logger.error("处理对账超时失败 " + order.key(), e);
+        }
+    }
+
+    /**
+     * 指数退避，下限随订单年龄增长，加 ±10% 抖动避免同一批订单总是同时到期
+     */
+    private long delay(int attempts, long age) {
+        long exp = baseDelayMillis << Math.min(attempts, 20);
+        long delay = Math.min(maxDelayMillis, Math.max(exp, age / 8));
+        return delay + (long) (delay * (ThreadLocalRandom.current().nextDouble() - 0.5) * 0.2);
+    }
+
+    private TokenBucket bucket(String platform) {
+        return buckets.computeIfAbsent(platform, p -> new TokenBucket(rates.getOrDefault(p, defaultRate)));
+    }
+
+    private static String key(String configKey, String reference) {
+        return configKey + "|" + reference;
+    }
+
+    public Map<String, String> metrics() {
+        Map<String, String> metrics = new LinkedHashMap<>();
+        Map<String, Integer> byPlatform = new TreeMap<>();
+        int inFlight = 0;
+        for (PendingOrder order : pending.values()) {
+            byPlatform.merge(order.config.getPlatform(), 1, Integer::sum);
+            if (order.inFlight) {
+                inFlight++;
+            }
+        }
+        metrics.put("pending", String.valueOf(pending.size()));
+        metrics.put("inFlight", String.valueOf(inFlight));
+        metrics.put("queried", String.valueOf(queried.sum()));
+        metrics.put("batches", String.valueOf(batches.sum()));
+        metrics.put("resolved", String.valueOf(resolved.sum()));
+        metrics.put("expired", String.valueOf(expired.sum()));
+        metrics.put("errors", String.valueOf(errors.sum()));
+        metrics.put("throttled", String.valueOf(throttled.sum()));
+        byPlatform.forEach((platform, count) -> metrics.put("pending." + platform, String.valueOf(count)));
+        return metrics;
+    }
+
+    /**
+     * 单独设置某个平台每秒最多发出的查询请求数（批量查询算一次），需要在该平台第一次查询之前设置
+     */
+    public void setRate(String platform, double permitsPerSecond) {
+        rates.put(platform, permitsPerSecond);
+        buckets.remove(platform);
+    }
+
+    public void setDefaultRate(double defaultRate) {
+        this.defaultRate = defaultRate;
+    }
+
+    /**
+     * 需要在 {@link #start()} 之前设置
+     */
+    public void setTickMillis(long tickMillis) {
+        this.tickMillis = tickMillis;
+    }
+
+    public void setBaseDelayMillis(long baseDelayMillis) {
+        this.baseDelayMillis = baseDelayMillis;
+    }
+
+    public void setMaxDelayMillis(long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public void setMaxAgeMillis(long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    private static class PendingOrder {
+        private final QueryRequest request;
+        private final PaymentPlatformConfig config;
+        private final long submittedAt;
+        private volatile long nextAt;
+        private volatile boolean inFlight;
+        private volatile OrderStatus lastStatus = OrderStatus.UNKNOWN;
+        private int attempts;
+
+        private PendingOrder(QueryRequest request, PaymentPlatformConfig config, long now) {
+            this.request = request;
+            this.config = config;
+            this.submittedAt = now;
+            this.nextAt = now;
+        }
+
+        private long createdAt() {
+            return null == request.getCreateDate() ? submittedAt : request.getCreateDate().getTime();
+        }
+
+        private String key() {
+            return ReconciliationScheduler.key(config.getConfigKey(), request.getReference());
+        }
+    }
+
+    /**
+     * 令牌桶，容量为每秒的速率
+     */
+    private static class TokenBucket {
+        private final double rate;
+        private final double capacity;
+        private double tokens;
+        private long last;
+
+        private TokenBucket(double permitsPerSecond) {
+            this.rate = permitsPerSecond / 1000;
+            this.capacity = Math.max(1, permitsPerSecond);
+            this.tokens = capacity;
+            this.last = System.currentTimeMillis();
+        }
+
+        private synchronized boolean tryAcquire(long now) {
+            if (now > last) {
+                tokens = Math.min(capacity, tokens + (now - last) * rate);
+                last = now;
+            }
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+    }
+}
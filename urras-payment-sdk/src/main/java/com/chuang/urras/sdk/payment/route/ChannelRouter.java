@@ -0,0 +1,263 @@
+package com.chuang.urras.sdk.payment.route;
+
+import com.chuang.urras.sdk.payment.ConfigLoadPolicy;
+import com.chuang.urras.sdk.payment.PaymentPlatformConfig;
+import com.chuang.urras.sdk.payment.PaymentSDK;
+import com.chuang.urras.sdk.payment.PlatformCapabilities;
+import com.chuang.urras.sdk.payment.deposit.BankDepositRequest;
+import com.chuang.urras.sdk.payment.deposit.DepositInfo;
+import com.chuang.urras.sdk.payment.deposit.DepositRequest;
+import com.chuang.urras.support.Result;
+import com.chuang.urras.support.exception.SystemWarnException;
+import com.chuang.urras.toolskit.basic.FutureKit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 存款通道路由。
+ * 从 {@link ConfigLoadPolicy#loadConfigs} 取出所有候选配置，过滤掉平台不支持该支付类型、银行或当天额度不足的通道，
+ * 再按最近的成功率、p95 耗时和剩余额度计算权重：
+ * <pre>
+ *     weight = 成功率² × latencyReference / (latencyReference + p95) × 剩余额度比例
+ * </pre>
+ * 按权重随机排序（权重越大越可能排在前面），第一个通道失败、返回失败结果或超时后依次尝试下一个，最多 maxAttempts 个。
+ * 变慢或失败率上升的网关权重会迅速下降，流量自动转向其他通道，但仍保留少量流量用于探测恢复。
+ *
+ * 超时后原请求不会被撤回，网关可能已经生成了订单；存款订单需要用户支付才会生效，所以直接换通道重新发起。
+ * 当天额度从配置的扩展信息 {@link #DAILY_QUOTA_EXT}（分）读取，没有配置时不限制。
+ * 发起存款之前先原子地预占额度，预占失败的通道直接跳过，存款失败或超时后归还，并发请求不会超出额度。
+ * 额度只在本节点内统计：多节点部署时每个节点各自计算，需要全局额度时按节点数拆分 {@link #DAILY_QUOTA_EXT}。
+ */
+public class ChannelRouter {
+    private static final Logger logger = LoggerFactory.getLogger(ChannelRouter.class);
+
+    /**
+     * {@link PaymentPlatformConfig#getExt()} 中当天额度的key，单位为分
+     */
+    public static final String DAILY_QUOTA_EXT = "dailyQuota";
+
+    private final PaymentSDK sdk;
+    private final ConfigLoadPolicy configPolicy;
+    private final Map<String, ChannelStats> stats = new ConcurrentHashMap<>();
+
+    private int bucketCount = 12;
+    private long bucketMillis = 5000;
+    private int maxAttempts = 2;
+    private long attemptTimeoutMillis = 8000;
+    private long latencyReferenceMillis = 1000;
+    private double minWeight = 0.01;
+
+    public ChannelRouter(PaymentSDK sdk, ConfigLoadPolicy configPolicy) {
+        this.sdk = sdk;
+        this.configPolicy = configPolicy;
+    }
+
+    /**
+     * 选择通道发起存款，失败时自动切换到下一个通道
+     */
+    public CompletableFuture<Result<DepositInfo>> deposit(DepositRequest request) {
+        List<PaymentPlatformConfig> ranked = rank(request);
+        if (ranked.isEmpty()) {
+            return FutureKit.error(new SystemWarnException(Result.FAIL_CODE, "没有可用通道"));
+        }
+        CompletableFuture<Result<DepositInfo>> result = new CompletableFuture<>();
+        attempt(request, ranked, 0, Math.min(maxAttempts, ranked.size()), result);
+        return result;
+    }
+
+    /**
+     * 可用通道按权重随机排序的结果
+     */
+    public List<PaymentPlatformConfig> rank(DepositRequest request) {
+        long now = System.currentTimeMillis();
+        long amount = null == request.getAmount() ? 0 : request.getAmount();
+        List<PaymentPlatformConfig> eligible = new ArrayList<>();
+        List<Double> keys = new ArrayList<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (PaymentPlatformConfig config : configPolicy.loadConfigs(request, sdk)) {
+            if (!supports(config, request)) {
+                continue;
+            }
+            double weight = weight(config, amount, now);
+            if (weight <= 0) {
+                continue;
+            }
+            // 按权重随机排序：key = u^(1/weight)，key 越大越靠前
+            eligible.add(config);
+            keys.add(Math.pow(random.nextDouble(), 1 / weight));
+        }
+
+        Integer[] order = new Integer[eligible.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(keys.get(b), keys.get(a)));
+        List<PaymentPlatformConfig> ranked = new ArrayList<>(order.length);
+        for (Integer i : order) {
+            ranked.add(eligible.get(i));
+        }
+        return ranked;
+    }
+
+    /**
+     * @return 当天额度不足时返回 0
+     */
+    public double weight(PaymentPlatformConfig config, long amount, long now) {
+        ChannelStats channel = stats(config);
+        ChannelStats.Snapshot snapshot = channel.snapshot(now);
+
+        double quotaFactor = 1;
+        Long quota = quota(config);
+        if (null != quota) {
+            long remaining = quota - channel.usedToday(now);
+            if (remaining < amount) {
+                return 0;
+            }
+            quotaFactor = Math.max(0.1, Math.min(1, remaining / (double) quota));
+        }
+
+        double successRate = snapshot.getSuccessRate();
+        long p95 = snapshot.getP95Millis();
+        double latencyFactor = p95 < 0 ? 1 : latencyReferenceMillis / (double) (latencyReferenceMillis + p95);
+        return Math.max(minWeight, successRate * successRate * latencyFactor * quotaFactor);
+    }
+
+    /**
+     * 每个通道的统计
+     */
+    public Map<String, String> metrics() {
+        long now = System.currentTimeMillis();
+        Map<String, String> metrics = new TreeMap<>();
+        stats.forEach((key, channel) -> metrics.put(key, channel.snapshot(now) + ", usedToday=" + channel.usedToday(now)));
+        return metrics;
+    }
+
+    private void attempt(DepositRequest request, List<PaymentPlatformConfig> ranked, int index, int attempts, CompletableFuture<Result<DepositInfo>> result) {
+        PaymentPlatformConfig config = ranked.get(index);
+        ChannelStats channel = stats(config);
+        long start = System.currentTimeMillis();
+        long amount = null == request.getAmount() ? 0 : request.getAmount();
+        Long quota = quota(config);
+        boolean reserved = null != quota && amount > 0;
+        if (reserved && !channel.reserve(amount, quota, start)) {
+            next(request, ranked, index, attempts, result, null,
+                    new SystemWarnException(Result.FAIL_CODE, "通道 " + config.getConfigKey() + " 当天额度不足"));
+            return;
+        }
+
+        CompletableFuture<Result<DepositInfo>> f;
+        try {
+            f = FutureKit.withTimeout(sdk.deposit(request, config), attemptTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            f = FutureKit.error(e);
+        }
+
+        f.whenComplete((r, e) -> {
+            long now = System.currentTimeMillis();
+            boolean success = null == e && null != r && r.isSuccess();
+            channel.record(success, now - start, now);
+            if (success) {
+                result.complete(r);
+                return;
+            }
+            if (reserved) {
+                channel.release(amount, start);
+            }
+            next(request, ranked, index, attempts, result, r, e);
+        });
+    }
+
+    /**
+     * 第 index 个通道失败，还有剩余次数时切换到下一个通道，否则以这次的结果结束
+     */
+    private void next(DepositRequest request, List<PaymentPlatformConfig> ranked, int index, int attempts,
+                      CompletableFuture<Result<DepositInfo>> result, Result<DepositInfo> r, Throwable e) {
+        if (index + 1 < attempts) {
+            logger.warn("通道 {} 存款失败，切换到 {}：{}", ranked.get(index).getConfigKey(), ranked.get(index + 1).getConfigKey(),
+                    null != e ? e.toString() : null == r ? "null" : r.getMessage());
+            attempt(request, ranked, index + 1, attempts, result);
+        } else if (null != e) {
+            result.completeExceptionally(e);
+        } else {
+            result.complete(r);
+        }
+    }
+
+    /**
+     * 使用 {@link PaymentSDK#capabilities(String)} 缓存的支付类型和银行，不在每次路由时调用平台的编码映射
+     */
+    private boolean supports(PaymentPlatformConfig config, DepositRequest request) {
+        Optional<PlatformCapabilities> capabilities = sdk.capabilities(config.getPlatform());
+        if (!capabilities.isPresent()) {
+            return false;
+        }
+        if (null != request.getType()) {
+            if (null != config.getType() && config.getType() != request.getType()) {
+                return false;
+            }
+            if (!capabilities.get().supportPaymentType(request.getType())) {
+                return false;
+            }
+        }
+        if (request instanceof BankDepositRequest && null != ((BankDepositRequest) request).getBank()) {
+            return capabilities.get().supportBank(((BankDepositRequest) request).getBank());
+        }
+        return true;
+    }
+
+    private ChannelStats stats(PaymentPlatformConfig config) {
+        String key = null == config.getConfigKey() ? config.getPlatform() : config.getConfigKey();
+        return stats.computeIfAbsent(key, k -> new ChannelStats(bucketCount, bucketMillis));
+    }
+
+    private static Long quota(PaymentPlatformConfig config) {
+        Object quota = null == config.getExt() ? null : config.getExt(DAILY_QUOTA_EXT);
+        if (quota instanceof Number) {
+            return ((Number) quota).longValue();
+        }
+        if (null != quota) {
+            try {
+                return Long.parseLong(quota.toString().trim());
+            } catch (NumberFormatException e) {
+                logger.warn("{} 的 {} 格式错误：{}", config.getConfigKey(), DAILY_QUOTA_EXT, quota);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 统计窗口，需要在第一次路由之前设置
+     */
+    public void setWindow(int bucketCount, long bucketMillis) {
+        this.bucketCount = bucketCount;
+        this.bucketMillis = bucketMillis;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public void setAttemptTimeoutMillis(long attemptTimeoutMillis) {
+        this.attemptTimeoutMillis = attemptTimeoutMillis;
+    }
+
+    /**
+     * p95 等于该值时耗时因子为 0.5
+     */
+    public void setLatencyReferenceMillis(long latencyReferenceMillis) {
+        this.latencyReferenceMillis = latencyReferenceMillis;
+    }
+
+    /**
+     * 最小权重，保证失败的通道仍有少量流量用于探测恢复
+     */
+    public void setMinWeight(double minWeight) {
+        this.minWeight = minWeight;
+    }
+}
@@ -0,0 +1,226 @@
+package com.chuang.urras.sdk.payment.route;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个通道最近一段时间的成功率、耗时分布和当天已用额度。
+ * 时间窗口分为 bucketCount 个桶，每个桶 bucketMillis 毫秒，桶过期后由下一次记录通过 CAS 替换，记录和读取都不加锁。
+ * 耗时按指数区间计数，p95 取所在区间的上限。
+ * 当天额度通过 {@link #reserve} 预占、{@link #release} 归还，日期和金额放在同一个不可变对象里整体 CAS，
+ * 并发预占不会超过额度，跨天时也不会把前一天的预占算到今天。
+ */
+public class ChannelStats {
+
+    /**
+     * 耗时区间的上限（毫秒）
+     */
+    private static final long[] LATENCY_BOUNDS = {50, 100, 200, 400, 800, 1600, 3200, 6400, 12800, 25600, Long.MAX_VALUE};
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final long bucketMillis;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    private final AtomicReference<DayUsage> usage = new AtomicReference<>(new DayUsage(-1, 0));
+
+    /**
+     * @param bucketCount 桶的数量
+     * @param bucketMillis 每个桶的时长，窗口长度为 bucketCount * bucketMillis
+     */
+    public ChannelStats(int bucketCount, long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+    }
+
+    public void record(boolean success, long latencyMillis, long now) {
+        Bucket bucket = bucket(now / bucketMillis);
+        if (null != bucket) {
+            if (success) {
+                bucket.success.increment();
+            } else {
+                bucket.failure.increment();
+            }
+            bucket.latency.incrementAndGet(latencyIndex(latencyMillis));
+        }
+    }
+
+    /**
+     * 预占当天额度
+     * @param amount 金额（分）
+     * @param quota 当天额度（分）
+     * @return 剩余额度不足时不预占，返回 false
+     */
+    public boolean reserve(long amount, long quota, long now) {
+        long today = today(now);
+        while (true) {
+            DayUsage current = usage.get();
+            long used = current.day == today ? current.amount : 0;
+            if (used + amount > quota) {
+                return false;
+            }
+            if (usage.compareAndSet(current, new DayUsage(today, used + amount))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 归还 {@link #reserve} 预占的额度，预占之后已经跨天时不需要归还
+     */
+    public void release(long amount, long reservedAt) {
+        long day = today(reservedAt);
+        while (true) {
+            DayUsage current = usage.get();
+            if (current.day != day) {
+                return;
+            }
+            if (usage.compareAndSet(current, new DayUsage(day, Math.max(0, current.amount - amount)))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 当天已用额度（分），按系统时区划分日期
+     */
+    public long usedToday(long now) {
+        DayUsage current = usage.get();
+        return current.day == today(now) ? current.amount : 0;
+    }
+
+    public Snapshot snapshot(long now) {
+        long current = now / bucketMillis;
+        long success = 0;
+        long failure = 0;
+        long[] latency = new long[LATENCY_BOUNDS.length];
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (null == bucket || current - bucket.epoch >= buckets.length()) {
+                continue;
+            }
+            success += bucket.success.sum();
+            failure += bucket.failure.sum();
+            for (int j = 0; j < latency.length; j++) {
+                latency[j] += bucket.latency.get(j);
+            }
+        }
+        return new Snapshot(success, failure, percentile(latency, success + failure, 0.95));
+    }
+
+    private Bucket bucket(long epoch) {
+        int index = (int) (epoch % buckets.length());
+        while (true) {
+            Bucket bucket = buckets.get(index);
+            if (null != bucket && bucket.epoch == epoch) {
+                return bucket;
+            }
+            if (null != bucket && bucket.epoch > epoch) {
+                // 记录得太晚，所在的桶已经被新的时间段使用
+                return null;
+            }
+            Bucket created = new Bucket(epoch);
+            if (buckets.compareAndSet(index, bucket, created)) {
+                return created;
+            }
+        }
+    }
+
+    private static long today(long now) {
+        return (now + TimeZone.getDefault().getOffset(now)) / DAY_MILLIS;
+    }
+
+    private static int latencyIndex(long millis) {
+        for (int i = 0; i < LATENCY_BOUNDS.length; i++) {
+            if (millis <= LATENCY_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return LATENCY_BOUNDS.length - 1;
+    }
+
+    /**
+     * @return 没有样本时返回 -1
+     */
+    private static long percentile(long[] counts, long total, double p) {
+        if (total <= 0) {
+            return -1;
+        }
+        long target = (long) Math.ceil(total * p);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return i == counts.length - 1 ? LATENCY_BOUNDS[i - 1] * 2 : LATENCY_BOUNDS[i];
+            }
+        }
+        return LATENCY_BOUNDS[LATENCY_BOUNDS.length - 2] * 2;
+    }
+
+    private static final class DayUsage {
+        private final long day;
+        private final long amount;
+
+        DayUsage(long day, long amount) {
+            this.day = day;
+            this.amount = amount;
+        }
+    }
+
+    private static final class Bucket {
+        private final long epoch;
+        private final LongAdder success = new LongAdder();
+        private final LongAdder failure = new LongAdder();
+        private final AtomicLongArray latency = new AtomicLongArray(LATENCY_BOUNDS.length);
+
+        Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * 窗口内的统计
+     */
+    public static class Snapshot {
+        private final long success;
+        private final long failure;
+        private final long p95Millis;
+
+        public Snapshot(long success, long failure, long p95Millis) {
+            this.success = success;
+            this.failure = failure;
+            this.p95Millis = p95Millis;
+        }
+
+        public long getSuccess() {
+            return success;
+        }
+
+        public long getFailure() {
+            return failure;
+        }
+
+        /**
+         * @return 没有样本时返回 -1
+         */
+        public long getP95Millis() {
+            return p95Millis;
+        }
+
+        /**
+         * 平滑后的成功率 (success + 1) / (total + 2)，没有样本时为 0.5
+         */
+        public double getSuccessRate() {
+            return (success + 1.0) / (success + failure + 2.0);
+        }
+
+        @Override
+        public String toString() {
+            return "success=" + success + ", failure=" + failure + ", p95=" + p95Millis + "ms";
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.chuang.urras.sdk.payment;
+
+import com.chuang.urras.support.enums.PaymentType;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CachedConfigLoadPolicyTest {
+
+    private static PaymentPlatformConfig config(String key, String merchantId) {
+        return new PaymentPlatformConfig(key, "test", merchantId, PaymentType.ONLINE_BANK, "private", "http://127.0.0.1",
+                null, new HashMap<>(), null, null, null, null);
+    }
+
+    private static PaymentRequest request() {
+        PaymentRequest request = new PaymentRequest();
+        request.setType(PaymentType.ONLINE_BANK);
+        return request;
+    }
+
+    /**
+     * 返回 current 中的配置；设置了 gate 时先通知 entered，再等 gate 打开，模拟加载期间配置被修改
+     */
+    private static class Delegate implements ConfigLoadPolicy {
+        final AtomicReference<PaymentPlatformConfig> current = new AtomicReference<>();
+        final AtomicInteger loads = new AtomicInteger();
+        volatile CountDownLatch entered;
+        volatile CountDownLatch gate;
+
+        private PaymentPlatformConfig load() {
+            loads.incrementAndGet();
+            PaymentPlatformConfig config = current.get();
+            CountDownLatch g = gate;
+            if (null != g) {
+                entered.countDown();
+                try {
+                    g.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return config;
+        }
+
+        @Override
+        public Optional<PaymentPlatformConfig> loadConfig(PaymentRequest request, PaymentSDK sdk) {
+            return Optional.ofNullable(load());
+        }
+
+        @Override
+        public Optional<PaymentPlatformConfig> loadConfig(String key) {
+            return Optional.ofNullable(load());
+        }
+
+        @Override
+        public Collection<PaymentPlatformConfig> loadConfigs(PaymentRequest request, PaymentSDK sdk) {
+            PaymentPlatformConfig config = load();
+            return null == config ? Collections.emptyList() : Collections.singletonList(config);
+        }
+    }
+
+    @Test
+    public void cachesByKeyUntilChanged() {
+        Delegate delegate = new Delegate();
+        CachedConfigLoadPolicy policy = new CachedConfigLoadPolicy(delegate, 0);
+        delegate.current.set(config("k", "v1"));
+
+        PaymentPlatformConfig first = policy.loadConfig("k").get();
+        assertSame(first, policy.loadConfig("k").get());
+        assertEquals(1, delegate.loads.get());
+
+        delegate.current.set(config("k", "v2"));
+        policy.changed("k", 1);
+        assertEquals("v2", policy.loadConfig("k").get().getMerchantId());
+        assertEquals(2, delegate.loads.get());
+    }
+
+    @Test
+    public void missesAreNotCached() {
+        Delegate delegate = new Delegate();
+        CachedConfigLoadPolicy policy = new CachedConfigLoadPolicy(delegate, 0);
+
+        assertFalse(policy.loadConfig("k").isPresent());
+        assertTrue(policy.loadConfigs(request(), null).isEmpty());
+
+        delegate.current.set(config("k", "v1"));
+        assertTrue(policy.loadConfig("k").isPresent());
+        assertEquals(1, policy.loadConfigs(request(), null).size());
+    }
+
+    @Test
+    public void changeDuringKeyLoadDoesNotCacheStaleConfig() throws Exception {
+        Delegate delegate = new Delegate();
+        CachedConfigLoadPolicy policy = new CachedConfigLoadPolicy(delegate, 0);
+        delegate.current.set(config("k", "v1"));
+        delegate.entered = new CountDownLatch(1);
+        delegate.gate = new CountDownLatch(1);
+
+        CompletableFuture<Optional<PaymentPlatformConfig>> loading = CompletableFuture.supplyAsync(() -> policy.loadConfig("k"));
+        assertTrue(delegate.entered.await(5, TimeUnit.SECONDS));
+        // 加载线程已经读到旧配置，此时后台修改配置
+        delegate.current.set(config("k", "v2"));
+        policy.changed("k", 1);
+        delegate.gate.countDown();
+        assertEquals("v1", loading.get(5, TimeUnit.SECONDS).get().getMerchantId());
+
+        delegate.gate = null;
+        assertEquals("v2", policy.loadConfig("k").get().getMerchantId());
+    }
+
+    @Test
+    public void changeDuringSelectionDoesNotCacheStaleConfig() throws Exception {
+        Delegate delegate = new Delegate();
+        CachedConfigLoadPolicy policy = new CachedConfigLoadPolicy(delegate, 0);
+        delegate.current.set(config("k", "v1"));
+        delegate.entered = new CountDownLatch(1);
+        delegate.gate = new CountDownLatch(1);
+
+        CompletableFuture<Collection<PaymentPlatformConfig>> loading =
+                CompletableFuture.supplyAsync(() -> policy.loadConfigs(request(), null));
+        assertTrue(delegate.entered.await(5, TimeUnit.SECONDS));
+        delegate.current.set(config("k", "v2"));
+        policy.changed("k", 1);
+        delegate.gate.countDown();
+        assertEquals("v1", loading.get(5, TimeUnit.SECONDS).iterator().next().getMerchantId());
+
+        delegate.gate = null;
+        assertEquals("v2", policy.loadConfigs(request(), null).iterator().next().getMerchantId());
+        assertEquals("v2", policy.loadConfig("k").get().getMerchantId());
+    }
+
+    @Test
+    public void invalidateDuringLoadDoesNotCacheStaleConfig() throws Exception {
+        Delegate delegate = new Delegate();
+        CachedConfigLoadPolicy policy = new CachedConfigLoadPolicy(delegate, 0);
+        delegate.current.set(config("k", "v1"));
+        delegate.entered = new CountDownLatch(1);
+        delegate.gate = new CountDownLatch(1);
+
+        CompletableFuture<Optional<PaymentPlatformConfig>> loading = CompletableFuture.supplyAsync(() -> policy.loadConfig("k"));
+        assertTrue(delegate.entered.await(5, TimeUnit.SECONDS));
+        delegate.current.set(config("k", "v2"));
+        policy.invalidate("k");
+        delegate.gate.countDown();
+        loading.get(5, TimeUnit.SECONDS);
+
+        delegate.gate = null;
+        assertEquals("v2", policy.loadConfig("k").get().getMerchantId());
+    }
+}
@@ -0,0 +1,52 @@
+package com.chuang.urras.sdk.payment;
+
+import com.chuang.urras.support.enums.PaymentType;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PaymentPlatformConfigTest {
+
+    private static PaymentPlatformConfig config(String proxyUrl) {
+        return new PaymentPlatformConfig("k", "test", "m", PaymentType.ONLINE_BANK, "private", "http://127.0.0.1",
+                proxyUrl, new HashMap<>(), null, null, null, null);
+    }
+
+    @Test
+    public void preparedIsBuiltOnce() {
+        PaymentPlatformConfig config = config(null);
+        AtomicInteger builds = new AtomicInteger();
+        Object first = config.prepared("x", c -> {
+            builds.incrementAndGet();
+            return new Object();
+        });
+        assertSame(first, config.prepared("x", c -> new Object()));
+        assertEquals(1, builds.get());
+    }
+
+    @Test
+    public void nullIsCachedToo() {
+        PaymentPlatformConfig config = config(null);
+        AtomicInteger builds = new AtomicInteger();
+        assertNull(config.prepared("x", c -> {
+            builds.incrementAndGet();
+            return null;
+        }));
+        assertNull(config.prepared("x", c -> "other"));
+        assertEquals(1, builds.get());
+    }
+
+    @Test
+    public void builderMayUseOtherPreparedValues() {
+        // 与 IPaymentPlatform#httpClient 相同：http.settings 的 builder 里读取 proxy
+        PaymentPlatformConfig config = config("127.0.0.1:8888");
+        String settings = config.prepared("http.settings", c -> "proxy=" + c.getProxy());
+        assertEquals("proxy=" + config.getProxy(), settings);
+        assertEquals(8888, config.getProxy().getPort());
+    }
+}
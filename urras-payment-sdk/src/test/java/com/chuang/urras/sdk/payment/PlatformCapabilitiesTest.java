@@ -0,0 +1,109 @@
+package com.chuang.urras.sdk.payment;
+
+import com.chuang.urras.sdk.payment.deposit.DepositCallbackInfo;
+import com.chuang.urras.sdk.payment.deposit.DepositInfo;
+import com.chuang.urras.sdk.payment.deposit.DepositRequest;
+import com.chuang.urras.support.Result;
+import com.chuang.urras.support.enums.Bank;
+import com.chuang.urras.support.enums.PaymentType;
+import com.chuang.urras.toolskit.basic.FutureKit;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PlatformCapabilitiesTest {
+
+    private static Bank bank(int i) {
+        return Bank.values()[i];
+    }
+
+    /**
+     * 编码映射中带一个 null key 的默认编号
+     */
+    private static class TestPlatform implements IPaymentPlatform {
+        @Override
+        public Map<Bank, String> bankCodeMapping() {
+            Map<Bank, String> mapping = new HashMap<>();
+            mapping.put(bank(0), "B0");
+            mapping.put(null, "DEFAULT");
+            return mapping;
+        }
+
+        @Override
+        public Map<PaymentType, String> paymentTypeCodeMapping() {
+            Map<PaymentType, String> mapping = new HashMap<>();
+            mapping.put(PaymentType.ONLINE_BANK, "online");
+            mapping.put(null, "DEFAULT");
+            return mapping;
+        }
+
+        @Override
+        public CompletableFuture<Result<DepositInfo>> deposit(DepositRequest request, PaymentPlatformConfig config) {
+            return FutureKit.error(new UnsupportedOperationException());
+        }
+
+        @Override
+        public Result<DepositCallbackInfo> depositCallback(Map<String, String> callbackParams, String body, boolean front, PaymentPlatformConfig config) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * 覆盖了 isSupport：所有银行都支持
+     */
+    private static class AnyBankPlatform extends TestPlatform {
+        @Override
+        @SuppressWarnings("deprecation")
+        public boolean isSupport(PaymentType type, Bank bank) {
+            return PaymentType.ONLINE_BANK == type;
+        }
+    }
+
+    private static PaymentSDK sdk() {
+        PaymentSDK sdk = new PaymentSDK(new ConfigLoadPolicy() {
+            @Override
+            public Optional<PaymentPlatformConfig> loadConfig(PaymentRequest request, PaymentSDK sdk) {
+                return Optional.empty();
+            }
+
+            @Override
+            public Optional<PaymentPlatformConfig> loadConfig(String key) {
+                return Optional.empty();
+            }
+        }, (String[]) null);
+        sdk.register("plain", new TestPlatform());
+        sdk.register("any", new AnyBankPlatform());
+        return sdk;
+    }
+
+    @Test
+    public void nullKeysAreIgnored() {
+        PlatformCapabilities capabilities = PlatformCapabilities.of(new TestPlatform());
+        assertEquals(1, capabilities.getBanks().size());
+        assertEquals(1, capabilities.getPaymentTypes().size());
+        assertTrue(capabilities.isSupport(PaymentType.ONLINE_BANK, bank(0)));
+        assertFalse(capabilities.isSupport(PaymentType.ONLINE_BANK, bank(1)));
+    }
+
+    @Test
+    public void supportBankUsesCapabilitiesByDefault() {
+        PaymentSDK sdk = sdk();
+        assertTrue(sdk.supportBank("plain", PaymentType.ONLINE_BANK, bank(0)));
+        assertFalse(sdk.supportBank("plain", PaymentType.ONLINE_BANK, bank(1)));
+        assertFalse(sdk.supportBank("missing", PaymentType.ONLINE_BANK, bank(0)));
+    }
+
+    @Test
+    public void supportBankDelegatesToOverriddenIsSupport() {
+        PaymentSDK sdk = sdk();
+        assertTrue(sdk.supportBank("any", PaymentType.ONLINE_BANK, bank(1)));
+        assertFalse(sdk.supportBank("any", PaymentType.VISA, bank(0)));
+    }
+}
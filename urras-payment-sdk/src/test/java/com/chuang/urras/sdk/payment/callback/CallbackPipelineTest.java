@@ -0,0 +1,204 @@
+package com.chuang.urras.sdk.payment.callback;
+
+import com.chuang.urras.sdk.payment.ConfigLoadPolicy;
+import com.chuang.urras.sdk.payment.IPaymentPlatform;
+import com.chuang.urras.sdk.payment.PaymentPlatformConfig;
+import com.chuang.urras.sdk.payment.PaymentRequest;
+import com.chuang.urras.sdk.payment.PaymentSDK;
+import com.chuang.urras.sdk.payment.deposit.DepositCallbackInfo;
+import com.chuang.urras.sdk.payment.deposit.DepositInfo;
+import com.chuang.urras.sdk.payment.deposit.DepositRequest;
+import com.chuang.urras.support.Result;
+import com.chuang.urras.support.enums.Bank;
+import com.chuang.urras.support.enums.PaymentType;
+import com.chuang.urras.support.enums.Whether;
+import com.chuang.urras.support.exception.SystemWarnException;
+import com.chuang.urras.toolskit.basic.FutureKit;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CallbackPipelineTest {
+
+    private static final String CONFIG_KEY = "k";
+
+    private CallbackPipeline pipeline;
+
+    /**
+     * 回调参数 ref 为订单号，paid 为 YES / NO，其余参数只用来区分网关的不同重发
+     */
+    private static class TestPlatform implements IPaymentPlatform {
+        @Override
+        public Map<Bank, String> bankCodeMapping() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Map<PaymentType, String> paymentTypeCodeMapping() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public CompletableFuture<Result<DepositInfo>> deposit(DepositRequest request, PaymentPlatformConfig config) {
+            return FutureKit.error(new UnsupportedOperationException());
+        }
+
+        @Override
+        public Result<DepositCallbackInfo> depositCallback(Map<String, String> callbackParams, String body, boolean front, PaymentPlatformConfig config) {
+            return DepositCallbackInfo.create(true, "YES".equals(callbackParams.get("paid")), config.getMerchantId(),
+                    callbackParams.get("ref"), "success", null, null);
+        }
+    }
+
+    private static class FixedConfig implements ConfigLoadPolicy {
+        private final PaymentPlatformConfig config = new PaymentPlatformConfig(CONFIG_KEY, "test", "m", PaymentType.ONLINE_BANK,
+                "private", "http://127.0.0.1", null, new HashMap<>(), null, null, null, null);
+
+        @Override
+        public Optional<PaymentPlatformConfig> loadConfig(PaymentRequest request, PaymentSDK sdk) {
+            return Optional.of(config);
+        }
+
+        @Override
+        public Optional<PaymentPlatformConfig> loadConfig(String key) {
+            return Optional.of(config);
+        }
+    }
+
+    private static PaymentSDK sdk() {
+        PaymentSDK sdk = new PaymentSDK(new FixedConfig(), (String[]) null);
+        sdk.register("test", new TestPlatform());
+        return sdk;
+    }
+
+    private static Map<String, String> params(String ref, String paid, int resend) {
+        Map<String, String> params = new HashMap<>();
+        params.put("ref", ref);
+        params.put("paid", paid);
+        params.put("resend", String.valueOf(resend));
+        return params;
+    }
+
+    private CompletableFuture<Result<DepositCallbackInfo>> callback(String ref, String paid, int resend) {
+        return pipeline.deposit(params(ref, paid, resend), "", false, CONFIG_KEY);
+    }
+
+    @After
+    public void shutdown() {
+        if (null != pipeline) {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    public void duplicateCallbacksAreHandledOnce() throws Exception {
+        pipeline = new CallbackPipeline(sdk(), new MemoryCallbackDeduplicator(), 2, 16, 2);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline.onDeposit((platform, info) -> {
+            calls.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+        });
+
+        CompletableFuture<Result<DepositCallbackInfo>> first = callback("o1", "YES", 1);
+        CompletableFuture<Result<DepositCallbackInfo>> second = callback("o1", "YES", 2);
+        release.countDown();
+
+        assertTrue(first.get(5, TimeUnit.SECONDS).isSuccess());
+        assertTrue(second.get(5, TimeUnit.SECONDS).isSuccess());
+        // 之前已经处理成功的重发直接返回成功
+        assertTrue(callback("o1", "YES", 3).get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void failedHandlerIsRetriedOnResend() throws Exception {
+        pipeline = new CallbackPipeline(sdk(), new MemoryCallbackDeduplicator(), 2, 16, 2);
+        AtomicInteger calls = new AtomicInteger();
+        pipeline.onDeposit((platform, info) -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("db down");
+            }
+        });
+
+        try {
+            callback("o1", "YES", 1).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertTrue(callback("o1", "YES", 2).get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void eventsOfOneOrderAreHandledInOrder() throws Exception {
+        pipeline = new CallbackPipeline(sdk(), new MemoryCallbackDeduplicator(), 1, 16, 4);
+        List<Whether> events = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline.onDeposit((platform, info) -> {
+            if (info.getPaymentSuccess() == Whether.NO) {
+                // 第一个事件处理得慢，第二个事件也要等它完成
+                release.await(5, TimeUnit.SECONDS);
+            }
+            events.add(info.getPaymentSuccess());
+        });
+
+        CompletableFuture<Result<DepositCallbackInfo>> pending = callback("o1", "NO", 1);
+        CompletableFuture<Result<DepositCallbackInfo>> paid = callback("o1", "YES", 1);
+        release.countDown();
+
+        pending.get(5, TimeUnit.SECONDS);
+        paid.get(5, TimeUnit.SECONDS);
+        assertEquals(2, events.size());
+        assertEquals(Whether.NO, events.get(0));
+        assertEquals(Whether.YES, events.get(1));
+    }
+
+    @Test
+    public void fullLaneRejectsAndForgets() throws Exception {
+        pipeline = new CallbackPipeline(sdk(), new MemoryCallbackDeduplicator(), 1, 16, 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        pipeline.onDeposit((platform, info) -> {
+            calls.incrementAndGet();
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+        });
+
+        CompletableFuture<Result<DepositCallbackInfo>> running = callback("o1", "YES", 1);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Result<DepositCallbackInfo>> queued = callback("o2", "YES", 1);
+        CompletableFuture<Result<DepositCallbackInfo>> rejected = callback("o3", "YES", 1);
+        try {
+            rejected.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SystemWarnException);
+        }
+        assertEquals("1", pipeline.metrics().get("rejected"));
+
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+        // 被拒绝的回调去重记录已经删除，网关重发后可以处理
+        assertTrue(callback("o3", "YES", 2).get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(3, calls.get());
+    }
+}
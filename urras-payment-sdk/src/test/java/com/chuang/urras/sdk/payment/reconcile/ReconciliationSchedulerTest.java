@@ -0,0 +1,146 @@
+package com.chuang.urras.sdk.payment.reconcile;
+
+import com.chuang.urras.sdk.payment.ConfigLoadPolicy;
+import com.chuang.urras.sdk.payment.IPaymentPlatform;
+import com.chuang.urras.sdk.payment.PaymentPlatformConfig;
+import com.chuang.urras.sdk.payment.PaymentRequest;
+import com.chuang.urras.sdk.payment.PaymentSDK;
+import com.chuang.urras.sdk.payment.deposit.DepositCallbackInfo;
+import com.chuang.urras.sdk.payment.deposit.DepositInfo;
+import com.chuang.urras.sdk.payment.deposit.DepositRequest;
+import com.chuang.urras.sdk.payment.query.OrderStatus;
+import com.chuang.urras.sdk.payment.query.QueryInfo;
+import com.chuang.urras.sdk.payment.query.QueryRequest;
+import com.chuang.urras.support.Result;
+import com.chuang.urras.support.enums.Bank;
+import com.chuang.urras.support.enums.PaymentType;
+import com.chuang.urras.toolskit.basic.FutureKit;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReconciliationSchedulerTest {
+
+    private static final PaymentPlatformConfig CONFIG = new PaymentPlatformConfig("k", "test", "m", PaymentType.ONLINE_BANK,
+            "private", "http://127.0.0.1", null, new HashMap<>(), null, null, null, null);
+
+    /**
+     * 批量查询返回的 future 由测试完成
+     */
+    private static class TestPlatform implements IPaymentPlatform {
+        final CompletableFuture<Map<String, Result<QueryInfo>>> query = new CompletableFuture<>();
+
+        @Override
+        public Map<Bank, String> bankCodeMapping() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Map<PaymentType, String> paymentTypeCodeMapping() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public CompletableFuture<Result<DepositInfo>> deposit(DepositRequest request, PaymentPlatformConfig config) {
+            return FutureKit.error(new UnsupportedOperationException());
+        }
+
+        @Override
+        public Result<DepositCallbackInfo> depositCallback(Map<String, String> callbackParams, String body, boolean front, PaymentPlatformConfig config) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int maxBatchQuerySize() {
+            return 10;
+        }
+
+        @Override
+        public CompletableFuture<Map<String, Result<QueryInfo>>> batchQuery(List<QueryRequest> requests, PaymentPlatformConfig config) {
+            return query;
+        }
+    }
+
+    private static class NoConfig implements ConfigLoadPolicy {
+        @Override
+        public Optional<PaymentPlatformConfig> loadConfig(PaymentRequest request, PaymentSDK sdk) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<PaymentPlatformConfig> loadConfig(String key) {
+            return Optional.empty();
+        }
+    }
+
+    private final TestPlatform platform = new TestPlatform();
+    private final LinkedBlockingQueue<String> resolved = new LinkedBlockingQueue<>();
+    private ReconciliationScheduler scheduler;
+
+    private ReconciliationScheduler scheduler() {
+        PaymentSDK sdk = new PaymentSDK(new NoConfig(), (String[]) null);
+        sdk.register("test", platform);
+        scheduler = new ReconciliationScheduler(sdk, (request, config, info) ->
+                resolved.add(request.getReference() + "@" + Thread.currentThread().getName()));
+        return scheduler;
+    }
+
+    private static QueryRequest request(String reference) {
+        QueryRequest request = new QueryRequest();
+        request.setReference(reference);
+        return request;
+    }
+
+    @After
+    public void shutdown() {
+        if (null != scheduler) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void resultsAreHandledOnSchedulerThread() throws Exception {
+        ReconciliationScheduler scheduler = scheduler();
+        scheduler.submit(request("o1"), CONFIG);
+        scheduler.tick();
+
+        Map<String, Result<QueryInfo>> results = new HashMap<>();
+        results.put("o1", QueryInfo.parse(true, "ok", OrderStatus.PAID));
+        platform.query.complete(results);
+
+        assertEquals("o1@payment-reconcile", resolved.poll(5, TimeUnit.SECONDS));
+        assertEquals("0", scheduler.metrics().get("pending"));
+    }
+
+    @Test
+    public void cancelledWhileInFlightIsNotResolved() throws Exception {
+        ReconciliationScheduler scheduler = scheduler();
+        scheduler.submit(request("o1"), CONFIG);
+        // 同一批按到期时间排序，保证 o1 排在 o2 前面
+        Thread.sleep(5);
+        scheduler.submit(request("o2"), CONFIG);
+        scheduler.tick();
+        assertTrue(scheduler.cancel("k", "o1"));
+
+        Map<String, Result<QueryInfo>> results = new HashMap<>();
+        results.put("o1", QueryInfo.parse(true, "ok", OrderStatus.PAID));
+        results.put("o2", QueryInfo.parse(true, "ok", OrderStatus.PAID));
+        platform.query.complete(results);
+
+        // 同一批的结果在一个任务中按顺序处理，o2 处理完时 o1 已经处理过
+        assertEquals("o2@payment-reconcile", resolved.poll(5, TimeUnit.SECONDS));
+        assertTrue(resolved.isEmpty());
+        assertEquals("1", scheduler.metrics().get("resolved"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.chuang.urras.sdk.payment.route;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelStatsTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Test
+    public void reserveStopsAtQuota() {
+        ChannelStats stats = new ChannelStats(12, 5000);
+        long now = System.currentTimeMillis();
+        assertTrue(stats.reserve(600, 1000, now));
+        assertFalse(stats.reserve(500, 1000, now));
+        assertTrue(stats.reserve(400, 1000, now));
+        assertEquals(1000, stats.usedToday(now));
+    }
+
+    @Test
+    public void releaseReturnsReservedAmount() {
+        ChannelStats stats = new ChannelStats(12, 5000);
+        long now = System.currentTimeMillis();
+        assertTrue(stats.reserve(1000, 1000, now));
+        stats.release(1000, now);
+        assertEquals(0, stats.usedToday(now));
+        assertTrue(stats.reserve(1000, 1000, now));
+    }
+
+    @Test
+    public void newDayStartsFromZero() {
+        ChannelStats stats = new ChannelStats(12, 5000);
+        long now = System.currentTimeMillis();
+        assertTrue(stats.reserve(1000, 1000, now));
+        assertEquals(0, stats.usedToday(now + DAY));
+        assertTrue(stats.reserve(1000, 1000, now + DAY));
+
+        // 前一天的预占在跨天后归还，不影响当天的额度
+        stats.release(1000, now);
+        assertEquals(1000, stats.usedToday(now + DAY));
+    }
+
+    @Test
+    public void concurrentReservationsNeverExceedQuota() throws Exception {
+        ChannelStats stats = new ChannelStats(12, 5000);
+        long now = System.currentTimeMillis();
+        int threads = 8;
+        int perThread = 1000;
+        long quota = 2500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit((Callable<Integer>) () -> {
+                    start.await();
+                    int reserved = 0;
+                    for (int i = 0; i < perThread; i++) {
+                        if (stats.reserve(1, quota, now)) {
+                            reserved++;
+                        }
+                    }
+                    return reserved;
+                }));
+            }
+            start.countDown();
+            int total = 0;
+            for (Future<Integer> f : futures) {
+                total += f.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(quota, total);
+            assertEquals(quota, stats.usedToday(now));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -2,12 +2,20 @@ package com.chuang.urras.sdk;
 
 import com.chuang.urras.toolskit.third.apache.httpcomponents.Request;
 
+/**
+ * 请求签名。sign 在发送前调用，签名结果直接写入 request 的参数。
+ * arg 为 {@link HttpSDKConfigurer#getSdkConfig()}，内置算法使用其中的私钥
+ */
 public interface CredentialAlgorithm {
+
+    /** 签名结果的参数名 */
+    String SIGN_FIELD = "sign";
+
     CredentialAlgorithm NONE = (Request request, Object arg) -> {};
 
-    CredentialAlgorithm QUERY_STR_MD5 = (Request request, Object arg) -> {};
+    CredentialAlgorithm QUERY_STR_MD5 = CredentialSigns::queryStrMd5;
 
-    CredentialAlgorithm PARAM_VALUE_MD5 = (Request request, Object arg) -> {};
+    CredentialAlgorithm PARAM_VALUE_MD5 = CredentialSigns::paramValueMd5;
 
     void sign(Request request, Object arg);
 }
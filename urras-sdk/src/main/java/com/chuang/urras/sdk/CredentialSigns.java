@@ -0,0 +1,75 @@
+package com.chuang.urras.sdk;
+
+import com.chuang.urras.toolskit.third.apache.httpcomponents.Request;
+import org.apache.commons.codec.binary.Hex;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@link CredentialAlgorithm} 内置的MD5签名。
+ * MessageDigest 按线程复用，不在每次签名时 getInstance。
+ */
+final class CredentialSigns {
+
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private CredentialSigns() {
+    }
+
+    /**
+     * 按key排序后拼接为 k1=v1&amp;k2=v2&amp;key=私钥，MD5后写入 sign 参数。空值和 sign 本身不参与签名
+     */
+    static void queryStrMd5(Request request, Object arg) {
+        StringBuilder src = new StringBuilder(128);
+        sorted(request.getParams()).forEach((k, v) -> src.append(k).append('=').append(v).append('&'));
+        src.append("key=").append(secret(arg));
+        request.getParams().put(CredentialAlgorithm.SIGN_FIELD, md5Hex(src, request.getCharset()));
+    }
+
+    /**
+     * 按key排序后只拼接参数值，最后加上私钥，MD5后写入 sign 参数。空值和 sign 本身不参与签名
+     */
+    static void paramValueMd5(Request request, Object arg) {
+        StringBuilder src = new StringBuilder(128);
+        sorted(request.getParams()).forEach((k, v) -> src.append(v));
+        src.append(secret(arg));
+        request.getParams().put(CredentialAlgorithm.SIGN_FIELD, md5Hex(src, request.getCharset()));
+    }
+
+    private static Map<String, String> sorted(Map<String, String> params) {
+        Map<String, String> sorted = new TreeMap<>();
+        params.forEach((k, v) -> {
+            if (null != v && !v.isEmpty() && !CredentialAlgorithm.SIGN_FIELD.equals(k)) {
+                sorted.put(k, v);
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * 没有私钥时直接失败，不能用空私钥签名
+     */
+    private static String secret(Object arg) {
+        String secret = arg instanceof SDKConfig ? ((SDKConfig) arg).getPrivateKey() : (null == arg ? null : arg.toString());
+        if (null == secret || secret.isEmpty()) {
+            throw new IllegalStateException("签名需要私钥，没有配置 sdkConfig.privateKey");
+        }
+        return secret;
+    }
+
+    static String md5Hex(CharSequence src, String charset) {
+        MessageDigest md = MD5.get();
+        md.reset();
+        return Hex.encodeHexString(md.digest(src.toString().getBytes(Charset.forName(null == charset ? "UTF-8" : charset))));
+    }
+}
@@ -16,4 +16,17 @@ public class HttpSDKConfigurer {
     String proxy;
     /** 加密手段 */
     private CredentialAlgorithm signAlgorithm = CredentialAlgorithm.NONE;
+    /** 商户配置，签名时使用 */
+    private @Nullable
+    SDKConfig sdkConfig;
+    /** 编码 */
+    private String charset = "UTF-8";
+    /** 该SDK独立连接池的最大连接数 */
+    private int maxConnect = 50;
+    /** 连接超时，毫秒 */
+    private int connTimeout = 5000;
+    /** 读取超时，毫秒 */
+    private int readTimeout = 10000;
+    /** 是否信任所有证书，默认校验证书；网关使用自签名证书时才开启 */
+    private boolean trustAll = false;
 }
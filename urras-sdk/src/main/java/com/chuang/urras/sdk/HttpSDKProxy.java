@@ -1,62 +1,91 @@
 package com.chuang.urras.sdk;
 
 
-import com.alibaba.fastjson.JSONObject;
 import com.chuang.urras.toolskit.third.apache.httpcomponents.Request;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.async.AsyncHttpClient;
+import org.apache.http.HttpHost;
 
 import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+/**
+ * {@link RemoteSDK} 接口的代理，由 {@link RemoteSDKManager} 创建。
+ * 参数按 {@link SDKCallPlan} 写入请求，经 {@link CredentialAlgorithm} 签名后通过该SDK自己的连接池发送，
+ * 返回值为 CompletableFuture 时异步返回，否则等待结果，失败时直接抛出原始异常而不是 CompletionException。
+ */
 public class HttpSDKProxy implements InvocationHandler, Serializable {
 
     private static final long serialVersionUID = -1L;
 
     private final Class<?> remoteSDKClass;
 
-    public HttpSDKProxy(Class remoteSDKClass) {
+    private final transient HttpSDKConfigurer configurer;
+
+    private final transient AsyncHttpClient client;
+
+    private final transient HttpHost proxy;
+
+    private final transient Map<Method, SDKCallPlan> plans;
+
+    public HttpSDKProxy(Class<?> remoteSDKClass, HttpSDKConfigurer configurer, AsyncHttpClient client) {
         this.remoteSDKClass = remoteSDKClass;
+        this.configurer = configurer;
+        this.client = client;
+        this.proxy = null == configurer.getProxy() || configurer.getProxy().isEmpty() ? null : HttpHost.create(configurer.getProxy());
+
+        Map<Method, SDKCallPlan> plans = new HashMap<>();
+        for (Method method : remoteSDKClass.getMethods()) {
+            SDKCallPlan plan = SDKCallPlan.compile(configurer.getApiHost(), method);
+            if (null != plan) {
+                plans.put(method, plan);
+            }
+        }
+        this.plans = Collections.unmodifiableMap(plans);
     }
 
     @Override
-    public Object invoke(Object proxy, Method method, Object[] args) {
-        RemoteSDK sdk = remoteSDKClass.getAnnotation(RemoteSDK.class);
-        RemoteSDKApi api = method.getAnnotation(RemoteSDKApi.class);
-
-//        CompletableFuture<Object> obj = Request.newBuilder()
-//                .url(sdk.domain() + api.value())
-//                .method(mapping.method())
-//                .parameter(toMap(method, args))
-//                .build()
-//                .asyncExecuteAsString()
-//                .thenApply(s -> {
-//                    Class clazz = method.getReturnType();
-//                    if(clazz == CompletableFuture.class) {
-//                        clazz = clazz.getComponentType();
-//                    }
-//                    return JSONObject.parseObject(s, clazz);
-//                });
-//
-//        if (method.getReturnType() == CompletableFuture.class) {
-//            return obj;
-//        } else {
-//            return obj.join();
-//        }
-        return null;
-    }
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        SDKCallPlan plan = plans.get(method);
+        if (null == plan) {
+            return invokeObjectMethod(proxy, method, args);
+        }
+
+        Request request = new Request(plan.getUrl(), plan.getMethod(), null, plan.params(args), null,
+                this.proxy, configurer.getCharset(), configurer.getConnTimeout(), configurer.getReadTimeout());
+        configurer.getSignAlgorithm().sign(request, configurer.getSdkConfig());
 
-    private Map<String, String> toMap(Method method, Object[] args) {
-        Parameter[] parameters = method.getParameters();
+        CompletableFuture<Object> future = request.executeAsJson(client, plan.getResultType());
+        if (plan.isAsync()) {
+            return future;
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // 接口没有声明的受检异常由 Proxy 包装为 UndeclaredThrowableException
+            throw null == e.getCause() ? e : e.getCause();
+        }
+    }
 
-        Map<String, String> params = new HashMap<>();
-        for(int i = 0; i < parameters.length; i++) {
-            params.put(parameters[i].getName(), args[i].toString());
+    private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "HttpSDKProxy(" + remoteSDKClass.getName() + ", " + configurer.getPlatformName() + ")";
+                default:
+                    break;
+            }
         }
-        return params;
+        throw new UnsupportedOperationException(remoteSDKClass.getName() + "." + method.getName() + " 缺少 @RemoteSDKApi");
     }
 
 }
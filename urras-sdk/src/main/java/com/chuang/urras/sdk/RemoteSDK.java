@@ -2,9 +2,16 @@ package com.chuang.urras.sdk;
 
 import java.lang.annotation.*;
 
+/**
+ * 远程SDK接口
+ */
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.TYPE})
 @Documented
 public @interface RemoteSDK {
 
+    /**
+     * 平台名称，对应 {@link HttpSDKConfigurer#getPlatformName()}，为空时使用接口的类名
+     */
+    String value() default "";
 }
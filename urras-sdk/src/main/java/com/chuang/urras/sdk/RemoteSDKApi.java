@@ -1,9 +1,18 @@
 package com.chuang.urras.sdk;
 
+import com.chuang.urras.toolskit.third.apache.httpcomponents.HttpMethod;
+
 import java.lang.annotation.*;
 
+/**
+ * 远程SDK接口中的方法，请求地址为 {@link HttpSDKConfigurer#getApiHost()} + value
+ */
 @Retention(RetentionPolicy.RUNTIME)
-@Target({ElementType.TYPE})
+@Target({ElementType.METHOD})
 @Documented
 public @interface RemoteSDKApi {
+
+    String value() default "/";
+
+    HttpMethod method() default HttpMethod.POST;
 }
@@ -1,18 +1,108 @@
 package com.chuang.urras.sdk;
 
+import com.chuang.urras.toolskit.basic.StringKit;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.Https;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.async.AsyncBuilder;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.async.AsyncHttpClient;
+
+import java.lang.reflect.Proxy;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * 创建并缓存 {@link RemoteSDK} 接口的代理。
+ * 每个平台使用独立的连接池（大小和超时来自 {@link HttpSDKConfigurer}），一个平台的网关变慢不会占用其他平台的连接。
+ */
 public class RemoteSDKManager {
 
     private final Map<String, HttpSDKConfigurer> sdkConfigurerMap;
 
     private final Class markerInterface;
 
+    private final Map<String, AsyncHttpClient> clients = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, Object> sdks = new ConcurrentHashMap<>();
+
+    /**
+     * @param sdkConfigurerMap 平台名称 - 配置
+     * @param markerInterface SDK接口必须继承的接口，为 null 时不检查
+     */
     public RemoteSDKManager(Map<String, HttpSDKConfigurer> sdkConfigurerMap, Class markerInterface) {
         this.sdkConfigurerMap = sdkConfigurerMap;
         this.markerInterface = markerInterface;
     }
 
+    @SuppressWarnings("unchecked")
+    public <T> T getSDK(Class<T> sdkClass) {
+        return (T) sdks.computeIfAbsent(sdkClass, this::create);
+    }
+
+    /**
+     * 关闭所有平台的连接池
+     */
+    public void shutdown() {
+        sdks.clear();
+        clients.values().forEach(AsyncHttpClient::shutdown);
+        clients.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object create(Class<?> sdkClass) {
+        if (null != markerInterface && !markerInterface.isAssignableFrom(sdkClass)) {
+            throw new IllegalArgumentException(sdkClass.getName() + " 没有继承 " + markerInterface.getName());
+        }
+        RemoteSDK remoteSDK = sdkClass.getAnnotation(RemoteSDK.class);
+        if (null == remoteSDK) {
+            throw new IllegalArgumentException(sdkClass.getName() + " 缺少 @RemoteSDK");
+        }
+        String platform = remoteSDK.value().isEmpty() ? sdkClass.getSimpleName() : remoteSDK.value();
+        HttpSDKConfigurer configurer = configurer(platform);
+        checkSecret(platform, configurer);
+        AsyncHttpClient client = clients.computeIfAbsent(platform, p -> createClient(configurer));
 
+        return Proxy.newProxyInstance(sdkClass.getClassLoader(),
+                new Class[] { sdkClass },
+                new HttpSDKProxy(sdkClass, configurer, client));
+    }
+
+    private HttpSDKConfigurer configurer(String platform) {
+        HttpSDKConfigurer configurer = sdkConfigurerMap.get(platform);
+        if (null != configurer) {
+            return configurer;
+        }
+        for (HttpSDKConfigurer c : sdkConfigurerMap.values()) {
+            if (platform.equals(c.getPlatformName())) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("没有找到平台 " + platform + " 的配置");
+    }
+
+    /**
+     * 使用内置签名算法时必须配置私钥，否则会用空的私钥签名
+     */
+    private static void checkSecret(String platform, HttpSDKConfigurer configurer) {
+        CredentialAlgorithm algorithm = configurer.getSignAlgorithm();
+        if (algorithm != CredentialAlgorithm.QUERY_STR_MD5 && algorithm != CredentialAlgorithm.PARAM_VALUE_MD5) {
+            return;
+        }
+        if (null == configurer.getSdkConfig() || StringKit.isBlank(configurer.getSdkConfig().getPrivateKey())) {
+            throw new IllegalArgumentException("平台 " + platform + " 使用签名但没有配置 sdkConfig.privateKey");
+        }
+    }
+
+    private static AsyncHttpClient createClient(HttpSDKConfigurer configurer) {
+        AsyncBuilder builder = Https.async().setDefaultCharset(configurer.getCharset())
+                .totalConnectPoolMax(configurer.getMaxConnect())
+                .maxConnectEachHost(configurer.getMaxConnect())
+                .evictIdle(60000)
+                .setConnectTimeout(configurer.getConnTimeout())
+                .setSocketTimeout(configurer.getReadTimeout())
+                .setConnectionRequestTimeout(configurer.getConnTimeout());
+        if (configurer.isTrustAll()) {
+            builder.trustAll();
+        }
+        return builder.build().init();
+    }
 
 }
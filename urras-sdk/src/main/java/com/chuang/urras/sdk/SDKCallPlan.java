@@ -0,0 +1,136 @@
+package com.chuang.urras.sdk;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.HttpMethod;
+
+import java.lang.reflect.*;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * SDK方法的调用计划，创建代理时为每个 {@link RemoteSDKApi} 方法编译一次。
+ * 参数写入方式：
+ * <ul>
+ *     <li>字符串、数字、布尔、枚举、日期：参数名=值</li>
+ *     <li>Map：每个entry作为一个参数</li>
+ *     <li>其他对象：按属性展开为参数</li>
+ * </ul>
+ * null 不写入。
+ */
+class SDKCallPlan {
+
+    private final String url;
+    private final HttpMethod method;
+    private final String[] names;
+    private final ParamWriter[] writers;
+    private final Type resultType;
+    private final boolean async;
+
+    private SDKCallPlan(String url, HttpMethod method, Parameter[] parameters, Type resultType, boolean async) {
+        this.url = url;
+        this.method = method;
+        this.resultType = resultType;
+        this.async = async;
+        this.names = new String[parameters.length];
+        this.writers = new ParamWriter[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            names[i] = parameters[i].getName();
+            writers[i] = writer(parameters[i].getType());
+        }
+    }
+
+    /**
+     * @return 方法没有 {@link RemoteSDKApi} 注解时返回 null
+     */
+    static SDKCallPlan compile(String apiHost, Method method) {
+        RemoteSDKApi api = method.getAnnotation(RemoteSDKApi.class);
+        if (null == api) {
+            return null;
+        }
+        boolean async = CompletableFuture.class.isAssignableFrom(method.getReturnType());
+        return new SDKCallPlan(apiHost + api.value(), api.method(), method.getParameters(), resultType(method, async), async);
+    }
+
+    /**
+     * @param args 方法没有参数时为 null
+     */
+    Map<String, String> params(Object[] args) {
+        Map<String, String> params = new LinkedHashMap<>(Math.max(16, names.length * 2));
+        for (int i = 0; i < names.length; i++) {
+            if (null != args[i]) {
+                writers[i].write(params, names[i], args[i]);
+            }
+        }
+        return params;
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    HttpMethod getMethod() {
+        return method;
+    }
+
+    Type getResultType() {
+        return resultType;
+    }
+
+    boolean isAsync() {
+        return async;
+    }
+
+    private static Type resultType(Method method, boolean async) {
+        Type type = method.getGenericReturnType();
+        if (!async) {
+            return type;
+        }
+        if (!(type instanceof ParameterizedType)) {
+            return Object.class;
+        }
+        Type actual = ((ParameterizedType) type).getActualTypeArguments()[0];
+        if (actual instanceof WildcardType) {
+            return ((WildcardType) actual).getUpperBounds()[0];
+        }
+        if (actual instanceof TypeVariable) {
+            return ((TypeVariable<?>) actual).getBounds()[0];
+        }
+        return actual;
+    }
+
+    private static ParamWriter writer(Class<?> type) {
+        if (type == String.class) {
+            return (params, name, arg) -> params.put(name, (String) arg);
+        }
+        if (type.isPrimitive() || Number.class.isAssignableFrom(type) || type == Boolean.class
+                || type == Character.class || CharSequence.class.isAssignableFrom(type)) {
+            return (params, name, arg) -> params.put(name, arg.toString());
+        }
+        if (type.isEnum()) {
+            return (params, name, arg) -> params.put(name, ((Enum<?>) arg).name());
+        }
+        if (Date.class.isAssignableFrom(type)) {
+            return (params, name, arg) -> params.put(name, String.valueOf(((Date) arg).getTime()));
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            return (params, name, arg) -> putAll(params, (Map<?, ?>) arg);
+        }
+        return (params, name, arg) -> putAll(params, (JSONObject) JSON.toJSON(arg));
+    }
+
+    private static void putAll(Map<String, String> params, Map<?, ?> values) {
+        values.forEach((k, v) -> {
+            if (null != v) {
+                params.put(k.toString(), v.toString());
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface ParamWriter {
+        void write(Map<String, String> params, String name, Object arg);
+    }
+}
@@ -7,7 +7,9 @@ import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -79,6 +81,27 @@ public class FutureKit {
         return future;
     }
 
+    /**
+     * 指数退避 + 全抖动：random(0, min(maxDelay, baseDelay * 2^attempt))
+     * @param attempt 第几次重试，从0开始
+     */
+    public static long backoffDelay(int attempt, long baseDelay, long maxDelay) {
+        long exp = baseDelay << Math.min(attempt, 30);
+        long cap = exp <= 0 ? maxDelay : Math.min(maxDelay, exp);
+        return ThreadLocalRandom.current().nextLong(Math.max(0, cap) + 1);
+    }
+
+    /**
+     * 超过 timeout 仍未完成时以 {@link TimeoutException} 结束，原 future 不会被取消
+     */
+    public static <T> CompletableFuture<T> withTimeout(CompletableFuture<T> f, long timeout, TimeUnit unit) {
+        MyCompletableFuture<T> future = new MyCompletableFuture<>();
+        future.setCancelHandler(f::cancel);
+        f.whenComplete((t, throwable) -> done(future, t, throwable));
+        ScheduleKit.schedule(() -> future.completeExceptionally(new TimeoutException("超时 " + timeout + " " + unit)), (int) timeout, unit);
+        return future;
+    }
+
     private static <T> void done(CompletableFuture<T> future, @Nullable T value, @Nullable Throwable throwable) {
         if(null != throwable) {
             future.completeExceptionally(throwable);
@@ -34,6 +34,8 @@ public class HashKit {
 
     private static final SecureRandom random = new SecureRandom();
 
+    private static final ThreadLocal<StringBuilder> SIGN_SRC_BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
     public static byte[] genSalt(int len) {
         byte[] salt = new byte[len];
         random.nextBytes(salt);
@@ -199,26 +201,7 @@ public class HashKit {
      * @return
      */
     public static String signSrc(Map<String, ? extends Object> map, String separator, String eq, boolean useEmpty, int order) {
-        String[] keys = new String[map.size()];
-        keys = map.keySet().toArray(keys);
-        if(order != 0) {
-            Arrays.sort(keys, (o1, o2) -> {
-                if(order < 0) {
-                    return o1.compareTo(o2);
-                } else {
-                    return o2.compareTo(o1);
-                }
-            });
-        }
-        String src = "";
-        for(String key: keys) {
-            if(!useEmpty && (null == map.get(key) || "".equals(map.get(key).toString().trim()))) {
-                continue;
-            }
-            Object value = map.get(key) == null ? "" : map.get(key);
-            src += key + eq + value.toString() + separator;
-        }
-        return src.substring(0, src.length() - separator.length());
+        return join(map, separator, eq, useEmpty, order);
     }
 
     public static String signSrc(Map<String, ? extends Object> map, boolean useEmpty, int order) {
@@ -226,26 +209,42 @@ public class HashKit {
     }
 
     public static String signSrcValueOnly(Map<String, ? extends Object> map, String separator, boolean useEmpty, int order) {
+        return join(map, separator, null, useEmpty, order);
+    }
 
-        String[] keys = new String[map.size()];
-        keys = map.keySet().toArray(keys);
-        if(order != 0) {
-            Arrays.sort(keys, (o1, o2) -> {
-                if(order < 0) {
-                    return o1.compareTo(o2);
-                } else {
-                    return o2.compareTo(o1);
-                }
-            });
+    /**
+     * 排序一次 entry，直接写入复用的 StringBuilder，不再逐个拼接字符串
+     * @param eq 为 null 时只拼接 value
+     */
+    private static String join(Map<String, ? extends Object> map, String separator, String eq, boolean useEmpty, int order) {
+        @SuppressWarnings("unchecked")
+        Map.Entry<String, ? extends Object>[] entries = map.entrySet().toArray(new Map.Entry[0]);
+        if(order < 0) {
+            Arrays.sort(entries, (o1, o2) -> o1.getKey().compareTo(o2.getKey()));
+        } else if(order > 0) {
+            Arrays.sort(entries, (o1, o2) -> o2.getKey().compareTo(o1.getKey()));
         }
-        String src = "";
-        for(String key: keys) {
-            if(!useEmpty && (null == map.get(key) || "".equals(map.get(key).toString().trim()))) {
+
+        StringBuilder src = SIGN_SRC_BUILDER.get();
+        src.setLength(0);
+        for(Map.Entry<String, ? extends Object> entry : entries) {
+            Object value = entry.getValue();
+            String str = null == value ? "" : value.toString();
+            if(!useEmpty && str.trim().isEmpty()) {
                 continue;
             }
-            Object value = map.get(key) == null ? "" : map.get(key);
-            src +=  value.toString() + separator;
+            if(null != eq) {
+                src.append(entry.getKey()).append(eq);
+            }
+            src.append(str).append(separator);
+        }
+        if(src.length() >= separator.length()) {
+            src.setLength(src.length() - separator.length());
+        }
+        String result = src.toString();
+        if(src.capacity() > 16 * 1024) {
+            SIGN_SRC_BUILDER.remove();
         }
-        return src.substring(0, src.length() - separator.length());
+        return result;
     }
 }
@@ -11,9 +11,7 @@ import java.security.*;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.security.spec.InvalidKeySpecException;
-import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.RSAPublicKeySpec;
-import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
@@ -36,17 +34,15 @@ public abstract class RSACoder {
      */
     public static boolean verify(String src, String keyname, String signname, byte[] pubKey, String signature, String charset) throws InvalidKeySpecException, SignatureException, NoSuchAlgorithmException, InvalidKeyException, IOException {
         try {
-            ASN1InputStream in = new ASN1InputStream(pubKey); //HexKit.decodeHex(pubKey.toCharArray())
-            RSAPublicKeyStructure pStruct = RSAPublicKeyStructure.getInstance(in.readObject());
-            RSAPublicKeySpec spec = new RSAPublicKeySpec(pStruct.getModulus(), pStruct.getPublicExponent());
-            KeyFactory kf = KeyFactory.getInstance(keyname);
-            in.close();
-            PublicKey pk = kf.generatePublic(spec);
-            Signature signetcheck = Signature.getInstance(signname);
-            signetcheck.initVerify(pk);
+            String cacheKey = "asn1:" + Base64.getEncoder().encodeToString(pubKey);
+            PublicKey pk = RSAKeys.publicKey(keyname, cacheKey, () -> {
+                try (ASN1InputStream in = new ASN1InputStream(pubKey)) { //HexKit.decodeHex(pubKey.toCharArray())
+                    RSAPublicKeyStructure pStruct = RSAPublicKeyStructure.getInstance(in.readObject());
+                    return new RSAPublicKeySpec(pStruct.getModulus(), pStruct.getPublicExponent());
+                }
+            });
             byte[] by = src.getBytes(charset);
-            signetcheck.update(by);
-            return signetcheck.verify(HexKit.decodeHex(signature.toCharArray()));
+            return RSAKeys.verify(signname, pk, by, HexKit.decodeHex(signature.toCharArray()));
         } catch (Exception e) {
             throw e;
         }
@@ -60,14 +56,9 @@ public abstract class RSACoder {
      */
     public static String signature(String src, String keyname, String signname, byte[] privateKey, String charset) throws SignatureException, UnsupportedEncodingException, NoSuchAlgorithmException, InvalidKeyException, InvalidKeySpecException {
         try {
-            PKCS8EncodedKeySpec priPKCS8 = new PKCS8EncodedKeySpec(privateKey);//Hex.decodeHex(privateKey)
-            KeyFactory keyf = KeyFactory.getInstance(keyname);
-            PrivateKey myprikey = keyf.generatePrivate(priPKCS8);
-            Signature signet = Signature.getInstance(signname);
-            signet.initSign(myprikey);
+            PrivateKey myprikey = RSAKeys.privateKey(keyname, Base64.getEncoder().encodeToString(privateKey));//Hex.decodeHex(privateKey)
             byte[] infoByte = src.getBytes(charset);
-            signet.update(infoByte);
-            byte[] signed = signet.sign();
+            byte[] signed = RSAKeys.sign(signname, myprikey, infoByte);
             return Hex.encodeHexString(signed);
         } catch (Exception e) {
             throw e;
@@ -84,23 +75,11 @@ public abstract class RSACoder {
      *
      */  
     public static String signBase64(byte[] data, String privateKey) throws Exception {
-        // 解密由base64编码的私钥  
-        byte[] keyBytes = Base64.getDecoder().decode(privateKey);
-        // 构造PKCS8EncodedKeySpec对象  
-        PKCS8EncodedKeySpec pkcs8KeySpec = new PKCS8EncodedKeySpec(keyBytes);
-  
-        // KEY_ALGORITHM 指定的加密算法  
-        KeyFactory keyFactory = KeyFactory.getInstance(KEY_ALGORITHM);
-  
-        // 取私钥匙对象  
-        PrivateKey priKey = keyFactory.generatePrivate(pkcs8KeySpec);
-  
-        // 用私钥对信息生成数字签名  
-        Signature signature = Signature.getInstance(SIGNATURE_ALGORITHM);
-        signature.initSign(priKey);  
-        signature.update(data);  
-  
-        return Base64.getEncoder().encodeToString(signature.sign());
+        // 取私钥匙对象，按密钥内容缓存
+        PrivateKey priKey = RSAKeys.privateKey(KEY_ALGORITHM, privateKey);
+
+        // 用私钥对信息生成数字签名
+        return Base64.getEncoder().encodeToString(RSAKeys.sign(SIGNATURE_ALGORITHM, priKey, data));
     }  
   
     /** 
@@ -119,24 +98,11 @@ public abstract class RSACoder {
     public static boolean verify(byte[] data, String publicKey, String sign)  
             throws Exception {  
   
-        // 解密由base64编码的公钥  
-        byte[] keyBytes = Base64.getDecoder().decode(publicKey);
-  
-        // 构造X509EncodedKeySpec对象  
-        X509EncodedKeySpec keySpec = new X509EncodedKeySpec(keyBytes);
-  
-        // KEY_ALGORITHM 指定的加密算法  
-        KeyFactory keyFactory = KeyFactory.getInstance(KEY_ALGORITHM);  
-  
-        // 取公钥匙对象  
-        PublicKey pubKey = keyFactory.generatePublic(keySpec);
-  
-        Signature signature = Signature.getInstance(SIGNATURE_ALGORITHM);  
-        signature.initVerify(pubKey);  
-        signature.update(data);  
-  
-        // 验证签名是否正常  
-        return signature.verify(Base64.getDecoder().decode(sign));
+        // 取公钥匙对象，按密钥内容缓存
+        PublicKey pubKey = RSAKeys.publicKey(KEY_ALGORITHM, publicKey);
+
+        // 验证签名是否正常
+        return RSAKeys.verify(SIGNATURE_ALGORITHM, pubKey, data, Base64.getDecoder().decode(sign));
     }  
   
     /** 
@@ -146,19 +112,11 @@ public abstract class RSACoder {
      */  
     public static byte[] decryptByPrivateKey(byte[] data, String key)  
             throws Exception {  
-        // 对密钥解密  
-        byte[] keyBytes = Base64.getDecoder().decode(key);
-  
-        // 取得私钥  
-        PKCS8EncodedKeySpec pkcs8KeySpec = new PKCS8EncodedKeySpec(keyBytes);  
-        KeyFactory keyFactory = KeyFactory.getInstance(KEY_ALGORITHM);  
-        Key privateKey = keyFactory.generatePrivate(pkcs8KeySpec);
-  
-        // 对数据解密  
-        Cipher cipher = Cipher.getInstance(keyFactory.getAlgorithm());
-        cipher.init(Cipher.DECRYPT_MODE, privateKey);  
-  
-        return cipher.doFinal(data);  
+        // 取得私钥，按密钥内容缓存
+        Key privateKey = RSAKeys.privateKey(KEY_ALGORITHM, key);
+
+        // 对数据解密
+        return doFinal(privateKey, Cipher.DECRYPT_MODE, data);
     }  
   
     /** 
@@ -168,19 +126,11 @@ public abstract class RSACoder {
      */  
     public static byte[] decryptByPublicKey(byte[] data, String key)  
             throws Exception {  
-        // 对密钥解密  
-        byte[] keyBytes = Base64.getDecoder().decode(key);
-  
-        // 取得公钥  
-        X509EncodedKeySpec x509KeySpec = new X509EncodedKeySpec(keyBytes);  
-        KeyFactory keyFactory = KeyFactory.getInstance(KEY_ALGORITHM);  
-        Key publicKey = keyFactory.generatePublic(x509KeySpec);  
-  
-        // 对数据解密  
-        Cipher cipher = Cipher.getInstance(keyFactory.getAlgorithm());  
-        cipher.init(Cipher.DECRYPT_MODE, publicKey);  
-  
-        return cipher.doFinal(data);  
+        // 取得公钥，按密钥内容缓存
+        Key publicKey = RSAKeys.publicKey(KEY_ALGORITHM, key);
+
+        // 对数据解密
+        return doFinal(publicKey, Cipher.DECRYPT_MODE, data);
     }  
   
     /** 
@@ -190,19 +140,11 @@ public abstract class RSACoder {
      */  
     public static byte[] encryptByPublicKey(byte[] data, String key)  
             throws Exception {  
-        // 对公钥解密  
-        byte[] keyBytes = Base64.getDecoder().decode(key);
-  
-        // 取得公钥  
-        X509EncodedKeySpec x509KeySpec = new X509EncodedKeySpec(keyBytes);  
-        KeyFactory keyFactory = KeyFactory.getInstance(KEY_ALGORITHM);  
-        Key publicKey = keyFactory.generatePublic(x509KeySpec);  
-  
-        // 对数据加密  
-        Cipher cipher = Cipher.getInstance(keyFactory.getAlgorithm());  
-        cipher.init(Cipher.ENCRYPT_MODE, publicKey);  
-  
-        return cipher.doFinal(data);  
+        // 取得公钥，按密钥内容缓存
+        Key publicKey = RSAKeys.publicKey(KEY_ALGORITHM, key);
+
+        // 对数据加密
+        return doFinal(publicKey, Cipher.ENCRYPT_MODE, data);
     }  
   
     /** 
@@ -212,21 +154,22 @@ public abstract class RSACoder {
      */  
     public static byte[] encryptByPrivateKey(byte[] data, String key)  
             throws Exception {  
-        // 对密钥解密  
-        byte[] keyBytes = Base64.getDecoder().decode(key);
-  
-        // 取得私钥  
-        PKCS8EncodedKeySpec pkcs8KeySpec = new PKCS8EncodedKeySpec(keyBytes);  
-        KeyFactory keyFactory = KeyFactory.getInstance(KEY_ALGORITHM);  
-        Key privateKey = keyFactory.generatePrivate(pkcs8KeySpec);  
-  
-        // 对数据加密  
-        Cipher cipher = Cipher.getInstance(keyFactory.getAlgorithm());  
-        cipher.init(Cipher.ENCRYPT_MODE, privateKey);  
-  
-        return cipher.doFinal(data);  
+        // 取得私钥，按密钥内容缓存
+        Key privateKey = RSAKeys.privateKey(KEY_ALGORITHM, key);
+
+        // 对数据加密
+        return doFinal(privateKey, Cipher.ENCRYPT_MODE, data);
     }  
   
+    private static byte[] doFinal(Key key, int mode, byte[] data) throws Exception {
+        try {
+            return RSAKeys.cipher(KEY_ALGORITHM, mode, key).doFinal(data);
+        } catch (Exception e) {
+            RSAKeys.discardCipher(KEY_ALGORITHM);
+            throw e;
+        }
+    }
+
     /** 
      * 取得私钥 
      *
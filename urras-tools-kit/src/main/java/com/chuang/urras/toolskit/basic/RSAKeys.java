@@ -0,0 +1,182 @@
+package com.chuang.urras.toolskit.basic;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import java.io.IOException;
+import java.security.*;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.KeySpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RSA 密钥和签名、加解密对象的缓存。
+ * 支付平台的密钥来自配置，数量很少却每次请求、每次回调都要用到。
+ * 这里按密钥内容缓存解析好的 {@link PublicKey}/{@link PrivateKey}，每个线程按算法复用 {@link Signature} 和 {@link Cipher}，
+ * 连续使用同一个密钥时也不再重复 init。
+ */
+public final class RSAKeys {
+
+    /**
+     * 缓存的密钥数超过该值时清空，避免密钥不断变化时无限增长
+     */
+    private static final int MAX_KEYS = 256;
+
+    private static final Map<String, PublicKey> PUBLIC_KEYS = new ConcurrentHashMap<>();
+    private static final Map<String, PrivateKey> PRIVATE_KEYS = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<Map<String, Engine<Signature>>> SIGNATURES = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, Engine<Cipher>>> CIPHERS = ThreadLocal.withInitial(HashMap::new);
+
+    private RSAKeys() {}
+
+    /**
+     * @param base64 X.509 格式，base64 编码
+     */
+    public static PublicKey publicKey(String algorithm, String base64) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        String cacheKey = algorithm + ":" + base64;
+        PublicKey key = PUBLIC_KEYS.get(cacheKey);
+        if (null == key) {
+            key = KeyFactory.getInstance(algorithm).generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(base64)));
+            put(PUBLIC_KEYS, cacheKey, key);
+        }
+        return key;
+    }
+
+    /**
+     * @param base64 PKCS#8 格式，base64 编码
+     */
+    public static PrivateKey privateKey(String algorithm, String base64) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        String cacheKey = algorithm + ":" + base64;
+        PrivateKey key = PRIVATE_KEYS.get(cacheKey);
+        if (null == key) {
+            key = KeyFactory.getInstance(algorithm).generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(base64)));
+            put(PRIVATE_KEYS, cacheKey, key);
+        }
+        return key;
+    }
+
+    /**
+     * 按 spec 生成公钥并缓存，用于 RSAPublicKeySpec 等其他格式，只有缓存中没有时才会调用 spec
+     * @param cacheKey 能唯一代表该密钥的字符串，例如密钥原文
+     */
+    public static PublicKey publicKey(String algorithm, String cacheKey, SpecLoader spec) throws NoSuchAlgorithmException, InvalidKeySpecException, IOException {
+        String k = algorithm + ":" + cacheKey;
+        PublicKey key = PUBLIC_KEYS.get(k);
+        if (null == key) {
+            key = KeyFactory.getInstance(algorithm).generatePublic(spec.load());
+            put(PUBLIC_KEYS, k, key);
+        }
+        return key;
+    }
+
+    public static byte[] sign(String signAlgorithm, PrivateKey key, byte[] data) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        Engine<Signature> engine = signature(signAlgorithm);
+        try {
+            if (engine.key != key || engine.mode != Cipher.ENCRYPT_MODE) {
+                engine.invalidate();
+                engine.target.initSign(key);
+                engine.init(key, Cipher.ENCRYPT_MODE);
+            }
+            engine.target.update(data);
+            // sign 之后 Signature 回到 initSign 后的状态，可以直接用于下一次签名
+            return engine.target.sign();
+        } catch (InvalidKeyException | SignatureException | RuntimeException e) {
+            engine.invalidate();
+            throw e;
+        }
+    }
+
+    public static boolean verify(String signAlgorithm, PublicKey key, byte[] data, byte[] sign) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        Engine<Signature> engine = signature(signAlgorithm);
+        try {
+            if (engine.key != key || engine.mode != Cipher.DECRYPT_MODE) {
+                engine.invalidate();
+                engine.target.initVerify(key);
+                engine.init(key, Cipher.DECRYPT_MODE);
+            }
+            engine.target.update(data);
+            return engine.target.verify(sign);
+        } catch (InvalidKeyException | SignatureException | RuntimeException e) {
+            engine.invalidate();
+            throw e;
+        }
+    }
+
+    /**
+     * 当前线程缓存的 Cipher，已经用 key 和 mode 初始化。
+     * 调用方需要在当前线程内用 doFinal 结束本次操作，doFinal 之后 Cipher 回到初始化后的状态；
+     * 中途抛出异常时调用 {@link #discardCipher(String)}。
+     * @param mode {@link Cipher#ENCRYPT_MODE} 或 {@link Cipher#DECRYPT_MODE}
+     */
+    public static Cipher cipher(String transformation, int mode, Key key) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+        Map<String, Engine<Cipher>> engines = CIPHERS.get();
+        Engine<Cipher> engine = engines.get(transformation);
+        if (null == engine) {
+            engine = new Engine<>(Cipher.getInstance(transformation));
+            engines.put(transformation, engine);
+        }
+        if (engine.key != key || engine.mode != mode) {
+            engine.invalidate();
+            engine.target.init(mode, key);
+            engine.init(key, mode);
+        }
+        return engine.target;
+    }
+
+    /**
+     * 丢弃当前线程缓存的 Cipher，下次重新创建
+     */
+    public static void discardCipher(String transformation) {
+        CIPHERS.get().remove(transformation);
+    }
+
+    private static Engine<Signature> signature(String signAlgorithm) throws NoSuchAlgorithmException {
+        Map<String, Engine<Signature>> engines = SIGNATURES.get();
+        Engine<Signature> engine = engines.get(signAlgorithm);
+        if (null == engine) {
+            engine = new Engine<>(Signature.getInstance(signAlgorithm));
+            engines.put(signAlgorithm, engine);
+        }
+        return engine;
+    }
+
+    private static <K> void put(Map<String, K> cache, String cacheKey, K key) {
+        if (cache.size() >= MAX_KEYS) {
+            cache.clear();
+        }
+        cache.put(cacheKey, key);
+    }
+
+    @FunctionalInterface
+    public interface SpecLoader {
+        KeySpec load() throws IOException;
+    }
+
+    /**
+     * 线程内复用的 Signature/Cipher，记录最后一次 init 使用的密钥和模式
+     */
+    private static class Engine<T> {
+        private final T target;
+        private Key key;
+        private int mode;
+
+        private Engine(T target) {
+            this.target = target;
+        }
+
+        private void init(Key key, int mode) {
+            this.key = key;
+            this.mode = mode;
+        }
+
+        private void invalidate() {
+            this.key = null;
+            this.mode = 0;
+        }
+    }
+}
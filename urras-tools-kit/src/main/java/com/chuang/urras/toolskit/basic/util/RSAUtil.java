@@ -1,5 +1,7 @@
 package com.chuang.urras.toolskit.basic.util;
 
+import com.chuang.urras.toolskit.basic.RSAKeys;
+
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
@@ -8,9 +10,6 @@ import java.io.*;
 import java.nio.channels.FileChannel;
 import java.security.*;
 import java.security.spec.InvalidKeySpecException;
-import java.security.spec.KeySpec;
-import java.security.spec.PKCS8EncodedKeySpec;
-import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
 
 /**
@@ -31,6 +30,8 @@ public class RSAUtil {
 
 	private static final Integer MAX_DECRYPT_SIZE = 128;
 
+	private static final String TRANSFORMATION = "RSA";
+
 	public static void generateKeyPair(String path) throws IOException {
 		KeyPairGenerator keyPairGenerator = null;
 		try {
@@ -185,12 +186,8 @@ public class RSAUtil {
 		//	logger.info("异常,"+e.getMessage());
 		//}
 		//return decrypt;
-		byte[] keyBytes = Base64.getDecoder().decode(publicKeyStr);
-        X509EncodedKeySpec x509KeySpec = new X509EncodedKeySpec(keyBytes);
-        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-        Key publicK = keyFactory.generatePublic(x509KeySpec);
-        Cipher cipher = Cipher.getInstance(keyFactory.getAlgorithm());
-        cipher.init(Cipher.DECRYPT_MODE, publicK);
+		Key publicK = getPublicKey(publicKeyStr);
+        Cipher cipher = cipher(Cipher.DECRYPT_MODE, publicK);
         int inputLen = encryptedData.length;
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         int offSet = 0;
@@ -216,10 +213,8 @@ public class RSAUtil {
 			BadPaddingException, NoSuchAlgorithmException,
 			NoSuchPaddingException, IOException {
 
-		Cipher cipher = Cipher.getInstance("RSA");
-
 		// encrypt
-		cipher.init(Cipher.ENCRYPT_MODE, key);
+		Cipher cipher = cipher(Cipher.ENCRYPT_MODE, key);
 
 		ByteArrayInputStream iis = new ByteArrayInputStream(needEncryptBytes);
 		ByteArrayOutputStream oos = new ByteArrayOutputStream();
@@ -246,10 +241,14 @@ public class RSAUtil {
 		if (needDecryptBytes == null) {
 			return null;
 		}
-		Cipher cipher = Cipher.getInstance("RSA");
 		// decrypt
-		cipher.init(Cipher.DECRYPT_MODE, key);
-		return cipher.doFinal(needDecryptBytes);
+		Cipher cipher = cipher(Cipher.DECRYPT_MODE, key);
+		try {
+			return cipher.doFinal(needDecryptBytes);
+		} catch (IllegalBlockSizeException | BadPaddingException e) {
+			RSAKeys.discardCipher(TRANSFORMATION);
+			throw e;
+		}
 //		ByteArrayInputStream iis = new ByteArrayInputStream(needDecryptBytes);
 //		ByteArrayOutputStream oos = new ByteArrayOutputStream();
 //		int restLength = needDecryptBytes.length;
@@ -269,26 +268,24 @@ public class RSAUtil {
 //		return decryptedBytes;
 	}
 
+	/**
+	 * 当前线程复用的 Cipher，见 {@link RSAKeys#cipher(String, int, Key)}
+	 */
+	private static Cipher cipher(int mode, Key key) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+		return RSAKeys.cipher(TRANSFORMATION, mode, key);
+	}
+
 	public static PublicKey getPublicKey(String publicKeyStr)
 			throws IOException, InvalidKeySpecException,
 			NoSuchAlgorithmException {
-		KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-
-		byte[] publicKeyBytes = base64Decode(publicKeyStr);
-		KeySpec keySpec = new X509EncodedKeySpec(publicKeyBytes);
-
-        return keyFactory.generatePublic(keySpec);
+		// 按密钥内容缓存，同一个密钥只解析一次
+		return RSAKeys.publicKey(TRANSFORMATION, publicKeyStr);
 	}
 
 	private static PrivateKey getPrivateKey(String privateKeyStr)
 			throws IOException, InvalidKeySpecException,
 			NoSuchAlgorithmException {
-		KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-
-		byte[] privateKeyBytes = base64Decode(privateKeyStr);
-		KeySpec keySpec = new PKCS8EncodedKeySpec(privateKeyBytes);
-
-        return keyFactory.generatePrivate(keySpec);
+		return RSAKeys.privateKey(TRANSFORMATION, privateKeyStr);
 	}
 
 	/**
@@ -351,8 +348,7 @@ public class RSAUtil {
 	
 	
 	public static byte[] decryptByPrivateKey(PrivateKey privateKey, byte[] encryptedData) throws Exception {
-        Cipher cipher = Cipher.getInstance(privateKey.getAlgorithm());
-        cipher.init(2, privateKey);
+        Cipher cipher = cipher(Cipher.DECRYPT_MODE, privateKey);
         int inputLen = encryptedData.length;
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         int offSet = 0;
@@ -375,8 +371,7 @@ public class RSAUtil {
     }
 
     private static byte[] encryptByPublicKey(PublicKey publicKey, byte[] data) throws Exception {
-        Cipher cipher = Cipher.getInstance(publicKey.getAlgorithm());
-        cipher.init(1, publicKey);
+        Cipher cipher = cipher(Cipher.ENCRYPT_MODE, publicKey);
         int inputLen = data.length;
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         int offSet = 0;
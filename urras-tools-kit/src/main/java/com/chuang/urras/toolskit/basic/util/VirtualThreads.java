@@ -0,0 +1,119 @@
+package com.chuang.urras.toolskit.basic.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程（JDK 21+）。
+ * 项目按 Java 8 编译，这里通过反射调用 Thread.ofVirtual 等方法，低版本JDK上 {@link #isSupported()} 返回 false。
+ * 通过系统属性 -Durras.virtual-threads=true 开启，见 {@link #isEnabled()}。
+ */
+public class VirtualThreads {
+
+    public static final String ENABLED_PROPERTY = "urras.virtual-threads";
+
+    private static final MethodHandle IS_VIRTUAL;
+    private static final MethodHandle OF_VIRTUAL;
+    private static final MethodHandle NAME;
+    private static final MethodHandle FACTORY;
+    private static final MethodHandle NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        MethodHandle isVirtual = null;
+        MethodHandle ofVirtual = null;
+        MethodHandle name = null;
+        MethodHandle factory = null;
+        MethodHandle perTask = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            isVirtual = lookup.findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+            ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(Class.forName("java.lang.Thread$Builder$OfVirtual")));
+            name = lookup.findVirtual(builder, "name", MethodType.methodType(builder, String.class, long.class));
+            factory = lookup.findVirtual(builder, "factory", MethodType.methodType(ThreadFactory.class));
+            perTask = lookup.findStatic(Executors.class, "newThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class, ThreadFactory.class));
+        } catch (ReflectiveOperationException ignore) {
+            // JDK 21 以下
+            isVirtual = null;
+        }
+        IS_VIRTUAL = isVirtual;
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = perTask;
+    }
+
+    /**
+     * 当前JDK是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        return null != IS_VIRTUAL;
+    }
+
+    /**
+     * 支持虚拟线程，并且通过 -Durras.virtual-threads=true 开启
+     */
+    public static boolean isEnabled() {
+        return isSupported() && Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    public static boolean isVirtual(Thread thread) {
+        if (null == IS_VIRTUAL) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(thread);
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param prefix 线程名前缀，线程名为 prefix + 序号
+     * @throws UnsupportedOperationException 当前JDK不支持虚拟线程
+     */
+    public static ThreadFactory factory(String prefix) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("当前JDK不支持虚拟线程");
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke();
+            builder = NAME.invoke(builder, prefix, 0L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (Throwable e) {
+            throw new UnsupportedOperationException("创建虚拟线程失败", e);
+        }
+    }
+
+    /**
+     * 每个任务一个虚拟线程的 ExecutorService
+     * @throws UnsupportedOperationException 当前JDK不支持虚拟线程
+     */
+    public static ExecutorService newExecutor(String prefix) {
+        ThreadFactory factory = factory(prefix);
+        try {
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(factory);
+        } catch (Throwable e) {
+            throw new UnsupportedOperationException("创建虚拟线程失败", e);
+        }
+    }
+
+    /**
+     * 共用的虚拟线程 ExecutorService
+     * @throws UnsupportedOperationException 当前JDK不支持虚拟线程
+     */
+    public static ExecutorService shared() {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("当前JDK不支持虚拟线程");
+        }
+        return SharedHolder.EXECUTOR;
+    }
+
+    private static class SharedHolder {
+        private static final ExecutorService EXECUTOR = newExecutor("urras-virtual-");
+    }
+}
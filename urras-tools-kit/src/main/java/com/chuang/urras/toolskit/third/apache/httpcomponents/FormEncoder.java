@@ -0,0 +1,159 @@
+package com.chuang.urras.toolskit.third.apache.httpcomponents;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * application/x-www-form-urlencoded 编码。
+ * 编码结果与 {@link org.apache.http.client.entity.UrlEncodedFormEntity} 相同（字母数字和 -_.* 不编码，空格为 +，null 值为空字符串），
+ * 但直接写入线程复用的字节缓冲区，不再为每个参数创建 NameValuePair，也不经过中间 String。
+ * 每次编码只在最后复制一次结果。
+ */
+public final class FormEncoder {
+
+    /**
+     * 超过该大小的缓冲区用完后不保留，避免一次大请求让线程一直持有大数组
+     */
+    private static final int MAX_POOLED = 64 * 1024;
+
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[1024]);
+
+    private static final boolean[] SAFE = new boolean[128];
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            SAFE[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            SAFE[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            SAFE[c] = true;
+        }
+        SAFE['-'] = true;
+        SAFE['_'] = true;
+        SAFE['.'] = true;
+        SAFE['*'] = true;
+    }
+
+    private byte[] buf;
+    private int len;
+
+    private FormEncoder(byte[] buf) {
+        this.buf = buf;
+    }
+
+    /**
+     * 按 params 的顺序编码为 k1=v1&amp;k2=v2
+     * @param charset 为 null 时使用 ISO-8859-1，与 UrlEncodedFormEntity 一致
+     */
+    public static byte[] encode(Map<String, String> params, Charset charset) {
+        Charset cs = null == charset ? StandardCharsets.ISO_8859_1 : charset;
+        FormEncoder encoder = new FormEncoder(BUFFERS.get());
+        boolean first = true;
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            if (!first) {
+                encoder.write('&');
+            }
+            first = false;
+            encoder.append(entry.getKey(), cs);
+            encoder.write('=');
+            if (null != entry.getValue()) {
+                encoder.append(entry.getValue(), cs);
+            }
+        }
+        byte[] result = Arrays.copyOf(encoder.buf, encoder.len);
+        if (encoder.buf.length <= MAX_POOLED) {
+            BUFFERS.set(encoder.buf);
+        }
+        return result;
+    }
+
+    /**
+     * 编码为查询字符串，GET 请求拼接到 url 后面
+     */
+    public static String query(Map<String, String> params, Charset charset) {
+        return new String(encode(params, charset), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 编码为请求体，Content-Type 为 application/x-www-form-urlencoded
+     * @return params 为空时返回 null
+     */
+    public static HttpEntity entity(Map<String, String> params, Charset charset) {
+        if (null == params || params.isEmpty()) {
+            return null;
+        }
+        Charset cs = null == charset ? StandardCharsets.ISO_8859_1 : charset;
+        return new ByteArrayEntity(encode(params, cs), ContentType.create(ContentType.APPLICATION_FORM_URLENCODED.getMimeType(), cs));
+    }
+
+    /**
+     * @param charset 编码名称，为 null 时使用 ISO-8859-1
+     */
+    public static HttpEntity entity(Map<String, String> params, String charset) throws UnsupportedEncodingException {
+        if (null == charset) {
+            return entity(params, (Charset) null);
+        }
+        try {
+            return entity(params, Charset.forName(charset));
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedEncodingException(charset);
+        }
+    }
+
+    private void append(String s, Charset charset) {
+        int n = s.length();
+        int i = 0;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (c < 128) {
+                if (SAFE[c]) {
+                    write(c);
+                } else if (c == ' ') {
+                    write('+');
+                } else {
+                    escape((byte) c);
+                }
+                i++;
+            } else {
+                // 连续的非ASCII字符按 charset 一次编码，代理对不会被拆开
+                int j = i + 1;
+                while (j < n && s.charAt(j) >= 128) {
+                    j++;
+                }
+                for (byte b : s.substring(i, j).getBytes(charset)) {
+                    escape(b);
+                }
+                i = j;
+            }
+        }
+    }
+
+    private void escape(byte b) {
+        ensure(3);
+        buf[len++] = '%';
+        buf[len++] = HEX[(b >> 4) & 0x0F];
+        buf[len++] = HEX[b & 0x0F];
+    }
+
+    private void write(char c) {
+        ensure(1);
+        buf[len++] = (byte) c;
+    }
+
+    private void ensure(int n) {
+        if (len + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, len + n));
+        }
+    }
+}
@@ -11,7 +11,6 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -19,41 +18,54 @@ public class HttpTools {
 
 	private static final Logger logger = LoggerFactory.getLogger(HttpTools.class);
 	
+    /**
+     * 在uri的路径后拼接参数，参数值不做编码（需要编码时使用 {@link FormEncoder#query(Map, java.nio.charset.Charset)}）。
+     * 路径、原有的query和参数写入同一个 StringBuilder，不生成中间字符串
+     */
     public static String getQueryURI (URI uri, Map<String, String> params) {
     	String path = uri.getPath();
     	String query = uri.getQuery();
     	if(StringUtils.isEmpty(path)) {
     		path = "/";
     	}
-    	if(StringUtils.isEmpty(query)) {
-    		query = getQueryString(params);
-    	} else {
-    		query += "&" + getQueryString(params);
+    	StringBuilder result = new StringBuilder(estimate(params) + path.length() + (null == query ? 0 : query.length()) + 2);
+    	result.append(path).append('?');
+    	if(!StringUtils.isEmpty(query)) {
+    		result.append(query);
+    		if(!params.isEmpty()) {
+    			result.append('&');
+    		}
     	}
-    	
-    	return path + "?" + query;
+    	appendQuery(result, params);
+    	return result.toString();
     }
-    
+
 	/**
-	 * 将map转成字符串
+	 * 将map转成字符串，参数值不做编码，空map返回空字符串
 	 */
 	public static String getQueryString(Map<String, String> params) {
+		StringBuilder result = new StringBuilder(estimate(params));
+		appendQuery(result, params);
+		return result.toString();
+	}
 
-		StringBuilder result = new StringBuilder();
-		Iterator<Entry<String, String>> iter = params.entrySet().iterator();
-		Entry<String, String> entry = iter.next();
-
-		result.append(entry.getKey()).append("=").append(entry.getValue());// 添加第一个参数
-		if (params.size() == 1) {
-			return result.toString();
+	private static void appendQuery(StringBuilder result, Map<String, String> params) {
+		boolean first = true;
+		for (Entry<String, String> entry : params.entrySet()) {
+			if (!first) {
+				result.append('&');
+			}
+			result.append(entry.getKey()).append('=').append(entry.getValue());
+			first = false;
 		}
+	}
 
-		while (iter.hasNext()) {
-			entry = iter.next();
-			result.append("&").append(entry.getKey()).append("=").append(entry.getValue());// 添加第一个参数
+	private static int estimate(Map<String, String> params) {
+		int length = 0;
+		for (Entry<String, String> entry : params.entrySet()) {
+			length += entry.getKey().length() + (null == entry.getValue() ? 4 : entry.getValue().length()) + 2;
 		}
-		return result.toString();
-
+		return length;
 	}
 
 	public static String entity2str(HttpEntity httpEntity, int frameLen, String charset) throws IOException {
@@ -1,12 +1,17 @@
 package com.chuang.urras.toolskit.third.apache.httpcomponents;
 
+import com.chuang.urras.toolskit.third.apache.httpcomponents.async.AdaptiveRoutePool;
 import com.chuang.urras.toolskit.third.apache.httpcomponents.async.AsyncBuilder;
 import com.chuang.urras.toolskit.third.apache.httpcomponents.async.AsyncHttpClient;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.resilience.HttpResilience;
 import com.chuang.urras.toolskit.third.apache.httpcomponents.sync.HttpClient;
 import com.chuang.urras.toolskit.third.apache.httpcomponents.sync.SyncBuilder;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
 
+import java.util.Collections;
+import java.util.Map;
+
 public class Https {
 
     public static HttpClient syncClient =  sync().setDefaultCharset("UTF-8")
@@ -17,6 +22,9 @@ public class Https {
             .build();
     public static AsyncHttpClient asyncClient =  async().setDefaultCharset("UTF-8")
             .workThreadFull()
+            .totalConnectPoolMax(200)
+            .adaptiveRoute(5, 50, 3000)
+            .evictIdle(60000)
             .setConnectTimeout(10000)
             .setSocketTimeout(10000)
             .setConnectionRequestTimeout(10000)
@@ -24,6 +32,43 @@ public class Https {
             .build()
             .init();
 
+    /**
+     * Request.Builder#coalesce() 的请求使用的合并器，默认只合并不缓存，需要缓存时可以替换
+     */
+    public static RequestCoalescer coalescer = new RequestCoalescer();
+
+    /**
+     * Request.Builder#retry / hedge / circuitBreaker 的请求共用的熔断器和重试预算，可以替换为其他参数
+     */
+    public static HttpResilience resilience = new HttpResilience();
+
+    /**
+     * asyncClient 每个路由的连接池状态（使用中、等待、空闲、上限、平均耗时）
+     */
+    public static Map<String, AdaptiveRoutePool.RouteMetrics> routeMetrics() {
+        return asyncClient.getRoutePool().map(AdaptiveRoutePool::metrics).orElse(Collections.emptyMap());
+    }
+
+    /**
+     * 虚拟线程中使用的同步客户端，连接池与 syncClient 分开，大小通过系统属性设置：
+     * urras.virtual-threads.max-connections（默认1000）、urras.virtual-threads.max-connections-per-host（默认200）。
+     * 第一次调用时创建
+     */
+    public static HttpClient virtualSyncClient() {
+        return VirtualClientHolder.CLIENT;
+    }
+
+    private static class VirtualClientHolder {
+        private static final HttpClient CLIENT = sync().setDefaultCharset("UTF-8")
+                .totalConnectPoolMax(Integer.getInteger("urras.virtual-threads.max-connections", 1000))
+                .maxConnectEachHost(Integer.getInteger("urras.virtual-threads.max-connections-per-host", 200))
+                .setConnectTimeout(10000)
+                .setSocketTimeout(10000)
+                .setConnectionRequestTimeout(10000)
+                .trustAll()
+                .build();
+    }
+
     public static AsyncBuilder async() {
         return new AsyncBuilder();
     }
@@ -1,21 +1,28 @@
 package com.chuang.urras.toolskit.third.apache.httpcomponents;
 
+import com.chuang.urras.toolskit.basic.util.VirtualThreads;
 import com.chuang.urras.toolskit.third.apache.httpcomponents.async.AsyncHttpClient;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.async.JsonResponseConsumer;
 import com.chuang.urras.toolskit.third.apache.httpcomponents.exception.CallHttpException;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.h2.H2AsyncHttpClient;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.resilience.RequestPolicy;
 import com.chuang.urras.toolskit.third.apache.httpcomponents.sync.HttpClient;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.annotation.Contract;
 import org.apache.http.annotation.ThreadingBehavior;
 import org.apache.http.client.methods.*;
+import org.apache.http.client.utils.URIUtils;
 import org.apache.http.entity.StringEntity;
 
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Supplier;
 
 ;
@@ -50,6 +57,11 @@ public class Request implements Supplier<HttpRequestBase> {
 
     private final String charset;
 
+    private final boolean http2;
+
+    private final boolean coalesce;
+
+    private final RequestPolicy policy;
 
     public HttpMethod getMethod() {
         return method;
@@ -87,7 +99,26 @@ public class Request implements Supplier<HttpRequestBase> {
         return this.readTimeout;
     }
 
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    public RequestPolicy getPolicy() {
+        return policy;
+    }
+
     public Request(String url, HttpMethod method, Map<String, String> heads, Map<String, String> params, HttpEntity entity, HttpHost proxy, String charset, int connTimeout, int readTimeout) {
+        this(url, method, heads, params, entity, proxy, charset, connTimeout, readTimeout, false, false, null);
+    }
+
+    public Request(String url, HttpMethod method, Map<String, String> heads, Map<String, String> params, HttpEntity entity, HttpHost proxy, String charset, int connTimeout, int readTimeout, boolean http2, boolean coalesce, RequestPolicy policy) {
+        this.http2 = http2;
+        this.policy = policy;
+        this.coalesce = coalesce;
         this.method = method;
         this.heads = heads;
         this.params = params;
@@ -124,29 +155,126 @@ public class Request implements Supplier<HttpRequestBase> {
         }
     }
 
+    /**
+     * 异步执行，响应体流式读取后直接解析为 type，不经过中间 String
+     * @param type 目标类型
+     * @param maxBytes 响应体最大字节数，超过直接失败
+     */
+    public <T> CompletableFuture<T> executeAsJson(AsyncHttpClient client, Type type, int maxBytes) {
+        JsonResponseConsumer<T> consumer = new JsonResponseConsumer<>(type, maxBytes, charset, getMethodString());
+        if(null == entity) {
+            return client.stream(base, params, null, heads, charset, proxy, connTimeout, readTimeout, consumer);
+        } else {
+            return client.stream(base, entity, null, heads, proxy, connTimeout, readTimeout, consumer);
+        }
+    }
+
+    public <T> CompletableFuture<T> executeAsJson(AsyncHttpClient client, Type type) {
+        return executeAsJson(client, type, JsonResponseConsumer.DEFAULT_MAX_BYTES);
+    }
+
     public String executeAsString(HttpClient client) throws CallHttpException, IOException {
         return execute(client).asString();
     }
 
+    /**
+     * 同步执行。在虚拟线程中调用时使用 {@link Https#virtualSyncClient()}，不占用 syncClient 的连接池
+     */
     public Response execute() throws CallHttpException, IOException {
-
+        HttpClient client = VirtualThreads.isVirtual(Thread.currentThread()) ? Https.virtualSyncClient() : Https.syncClient;
         if(null == entity) {
-            return Https.syncClient.exec(base, params, heads, charset, proxy, connTimeout, readTimeout);
+            return client.exec(base, params, heads, charset, proxy, connTimeout, readTimeout);
         } else {
-            return Https.syncClient.exec(base, entity, heads, charset, proxy, connTimeout, readTimeout);
+            return client.exec(base, entity, heads, charset, proxy, connTimeout, readTimeout);
         }
     }
 
+    /**
+     * 在虚拟线程中同步执行，等待网络时不占用平台线程。
+     * 当前JDK不支持虚拟线程或没有通过 -Durras.virtual-threads=true 开启时，使用 {@link #asyncExecute()}
+     */
+    public CompletableFuture<Response> virtualExecute() {
+        if(!VirtualThreads.isEnabled()) {
+            return asyncExecute();
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return execute(Https.virtualSyncClient());
+            } catch (CallHttpException | IOException e) {
+                throw new CompletionException(e);
+            }
+        }, VirtualThreads.shared());
+    }
+
     public String executeAsString() throws CallHttpException, IOException {
         return execute().asString();
     }
 
 
+    public CompletableFuture<Response> execute(H2AsyncHttpClient client) {
+        if(null == entity) {
+            return client.exec(base, params, heads, charset, connTimeout, readTimeout);
+        } else {
+            return client.exec(base, entity, heads, charset, connTimeout, readTimeout);
+        }
+    }
+
+    /**
+     * 异步执行。
+     * 通过 {@link Builder#http2()} 构建的请求使用 HTTP/2 客户端（设置了代理时仍然使用 HTTP/1.1）；
+     * 通过 {@link Builder#coalesce()} 构建的GET请求交给 {@link Https#coalescer} 合并；
+     * 设置了重试、对冲或熔断的请求交给 {@link Https#resilience}。
+     */
     public CompletableFuture<Response> asyncExecute() {
+        if(coalesce && HttpMethod.GET == method) {
+            return Https.coalescer.execute(this);
+        }
+        return dispatch(null);
+    }
+
+    /**
+     * 按 {@link RequestPolicy} 发送请求。重试和对冲每次都使用新的 {@link #copy()}，不会重复使用同一个 HttpRequestBase
+     */
+    CompletableFuture<Response> dispatch(Map<String, String> extraHeads) {
+        if(null == policy) {
+            return send(extraHeads);
+        }
+        HttpHost host = URIUtils.extractHost(base.getURI());
+        return Https.resilience.execute(null == host ? url : host.toURI(), isIdempotent(), policy, () -> copy().send(extraHeads));
+    }
+
+    private boolean isIdempotent() {
+        return HttpMethod.GET == method || HttpMethod.HEAD == method || HttpMethod.OPTIONS == method
+                || HttpMethod.PUT == method || HttpMethod.DELETE == method;
+    }
+
+    /**
+     * 相同内容的新请求
+     */
+    Request copy() {
+        return new Request(url, method, heads, params, entity, proxy, charset, connTimeout, readTimeout, http2, coalesce, policy);
+    }
+
+    /**
+     * 直接发送请求
+     * @param extraHeads 额外的请求头，例如重新验证缓存时的 If-None-Match
+     */
+    CompletableFuture<Response> send(Map<String, String> extraHeads) {
+        Map<String, String> allHeads = heads;
+        if(null != extraHeads && !extraHeads.isEmpty()) {
+            allHeads = null == heads ? new HashMap<>() : new HashMap<>(heads);
+            allHeads.putAll(extraHeads);
+        }
+        if(http2 && null == proxy) {
+            H2AsyncHttpClient client = H2AsyncHttpClient.defaultClient();
+            return null == entity
+                    ? client.exec(base, params, allHeads, charset, connTimeout, readTimeout)
+                    : client.exec(base, entity, allHeads, charset, connTimeout, readTimeout);
+        }
         if(null == entity) {
-            return Https.asyncClient.exec(base, params, null, heads, charset, proxy, connTimeout, readTimeout);
+            return Https.asyncClient.exec(base, params, null, allHeads, charset, proxy, connTimeout, readTimeout);
         } else {
-            return Https.asyncClient.exec(base, entity, null, heads, charset, proxy, connTimeout, readTimeout);
+            return Https.asyncClient.exec(base, entity, null, allHeads, charset, proxy, connTimeout, readTimeout);
         }
     }
 
@@ -156,6 +284,14 @@ public class Request implements Supplier<HttpRequestBase> {
 
 
 
+    public <T> CompletableFuture<T> asyncExecuteAsJson(Type type) {
+        return executeAsJson(Https.asyncClient, type);
+    }
+
+    public <T> CompletableFuture<T> asyncExecuteAsJson(Type type, int maxBytes) {
+        return executeAsJson(Https.asyncClient, type, maxBytes);
+    }
+
     public HttpRequestBase getHttpRequestBase() {
         return base;
     }
@@ -250,6 +386,17 @@ public class Request implements Supplier<HttpRequestBase> {
 
         private String charset;
 
+        private boolean http2 = false;
+
+        private boolean coalesce = false;
+
+        private int maxRetries = 0;
+        private long baseDelayMillis = 100;
+        private long maxDelayMillis = 2000;
+        private double hedgePercentile = 0;
+        private boolean circuitBreaker = false;
+        private boolean retryNonIdempotent = false;
+
         public Builder() {
             headers = new HashMap<>();
             params = new LinkedHashMap<>();
@@ -326,6 +473,63 @@ public class Request implements Supplier<HttpRequestBase> {
             return this;
         }
 
+        /**
+         * asyncExecute 时使用 HTTP/2 多路复用，同一个host的并发请求共享少量连接。
+         * 需要引入 httpclient5，并且服务端支持 HTTP/2（https 需要 ALPN）
+         */
+        public Builder http2() {
+            this.http2 = true;
+            return this;
+        }
+
+        /**
+         * 合并同时发出的相同GET请求，见 {@link RequestCoalescer}
+         */
+        public Builder coalesce() {
+            this.coalesce = true;
+            return this;
+        }
+
+        /**
+         * asyncExecute 失败（网络异常或5xx）时重试，等待时间为 100ms 起的指数退避 + 随机抖动，最多2秒。
+         * 重试受 {@link Https#resilience} 的全局重试预算限制
+         */
+        public Builder retry(int times) {
+            this.maxRetries = times;
+            return this;
+        }
+
+        public Builder retry(int times, long baseDelayMillis, long maxDelayMillis) {
+            this.maxRetries = times;
+            this.baseDelayMillis = baseDelayMillis;
+            this.maxDelayMillis = maxDelayMillis;
+            return this;
+        }
+
+        /**
+         * 耗时超过该host最近请求耗时的 percentile 分位（例如 0.95）仍未返回时，再发一个相同的请求，使用先返回的结果
+         */
+        public Builder hedge(double percentile) {
+            this.hedgePercentile = percentile;
+            return this;
+        }
+
+        /**
+         * 按host熔断，失败率过高时直接失败
+         */
+        public Builder circuitBreaker() {
+            this.circuitBreaker = true;
+            return this;
+        }
+
+        /**
+         * 允许重试和对冲非幂等请求（POST、PATCH），只有在接口本身能去重时才能使用
+         */
+        public Builder retryNonIdempotent() {
+            this.retryNonIdempotent = true;
+            return this;
+        }
+
         public Builder entity(HttpEntity entity) {
             this.entity = entity;
             return this;
@@ -347,7 +551,11 @@ public class Request implements Supplier<HttpRequestBase> {
                 this.entity = new StringEntity(body, charset);
                 params.clear();
             }
-            return new Request(url, method, headers, params, entity, proxy, charset, connTimeout, readTimeout);
+            RequestPolicy policy = null;
+            if(maxRetries > 0 || hedgePercentile > 0 || circuitBreaker) {
+                policy = new RequestPolicy(maxRetries, baseDelayMillis, maxDelayMillis, hedgePercentile, circuitBreaker, retryNonIdempotent);
+            }
+            return new Request(url, method, headers, params, entity, proxy, charset, connTimeout, readTimeout, http2, coalesce, policy);
 //            Map<String, String> h = new HashMap<>();
 //            Map<String, String> p = new HashMap<>();
 //            h.putAll(headers);
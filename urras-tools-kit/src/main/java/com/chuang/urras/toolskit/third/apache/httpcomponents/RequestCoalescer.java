@@ -0,0 +1,263 @@
+package com.chuang.urras.toolskit.third.apache.httpcomponents;
+
+import org.apache.http.*;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 合并相同的GET请求。
+ * 远程接口和支付状态轮询经常同时发出完全相同的GET请求，这里把 method + url + 参数 + 请求头 相同的请求合并为一个，
+ * 后来的调用者直接挂在正在进行的请求上。响应体会被读成字节数组，每个调用者拿到各自的 {@link Response}，互不影响。
+ * 默认所有请求头都参与合并判断，只差一个 X-Token、X-Sign 之类的请求头也不会合并，不会把别人的响应交给调用者。
+ * 指定了允许的请求头时只比较这些请求头，带有其他请求头的请求不合并也不缓存，直接发出。
+ *
+ * 可选的短时缓存（cacheMaxEntries &gt; 0 时开启）：
+ * <ul>
+ *     <li>按 Cache-Control: max-age 缓存，没有声明时使用 defaultTtlMillis</li>
+ *     <li>no-store 不缓存；no-cache 或过期后，如果有 ETag / Last-Modified，用 If-None-Match / If-Modified-Since 重新验证，304 时继续使用缓存</li>
+ * </ul>
+ * 只缓存 200 的响应。
+ */
+public class RequestCoalescer {
+
+    /**
+     * 允许的请求头（不区分大小写），为 null 时所有请求头都参与合并判断
+     */
+    private final Set<String> keyHeaders;
+    private final int cacheMaxEntries;
+    private final long defaultTtlMillis;
+    private final Map<String, CompletableFuture<BufferedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, BufferedResponse> cache;
+
+    /**
+     * 只合并请求，不缓存，所有请求头都参与合并判断
+     */
+    public RequestCoalescer() {
+        this(null, 0, 0);
+    }
+
+    /**
+     * @param keyHeaders 允许的请求头，为 null 时所有请求头都参与合并判断；
+     *                   不为 null 时带有其他请求头的请求不合并，例如 Arrays.asList("Accept", "Authorization")
+     * @param cacheMaxEntries 缓存的最大条数，小于等于0不缓存
+     * @param defaultTtlMillis 响应没有声明 max-age 时的缓存时间
+     */
+    public RequestCoalescer(List<String> keyHeaders, int cacheMaxEntries, long defaultTtlMillis) {
+        if (null == keyHeaders) {
+            this.keyHeaders = null;
+        } else {
+            Set<String> headers = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            headers.addAll(keyHeaders);
+            this.keyHeaders = headers;
+        }
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.defaultTtlMillis = defaultTtlMillis;
+        this.cache = cacheMaxEntries <= 0 ? null : Collections.synchronizedMap(new LinkedHashMap<String, BufferedResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BufferedResponse> eldest) {
+                return size() > RequestCoalescer.this.cacheMaxEntries;
+            }
+        });
+    }
+
+    public CompletableFuture<Response> execute(Request request) {
+        String key = key(request);
+        if (null == key) {
+            return request.dispatch(Collections.emptyMap());
+        }
+        BufferedResponse cached = null == cache ? null : cache.get(key);
+        if (null != cached && cached.isFresh()) {
+            return CompletableFuture.completedFuture(cached.toResponse(request));
+        }
+
+        CompletableFuture<BufferedResponse> created = new CompletableFuture<>();
+        CompletableFuture<BufferedResponse> shared = inFlight.putIfAbsent(key, created);
+        if (null == shared) {
+            shared = created;
+            fetch(request, key, cached).whenComplete((r, e) -> {
+                inFlight.remove(key, created);
+                if (null != e) {
+                    created.completeExceptionally(e);
+                } else {
+                    created.complete(r);
+                }
+            });
+        }
+        return shared.thenApply(r -> r.toResponse(request));
+    }
+
+    public void clearCache() {
+        if (null != cache) {
+            cache.clear();
+        }
+    }
+
+    private CompletableFuture<BufferedResponse> fetch(Request request, String key, BufferedResponse stale) {
+        Map<String, String> conditional = new HashMap<>();
+        if (null != stale) {
+            if (null != stale.etag) {
+                conditional.put(HttpHeaders.IF_NONE_MATCH, stale.etag);
+            }
+            if (null != stale.lastModified) {
+                conditional.put(HttpHeaders.IF_MODIFIED_SINCE, stale.lastModified);
+            }
+        }
+        return request.dispatch(conditional).thenApply(response -> {
+            if (null != stale && response.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                response.close();
+                BufferedResponse refreshed = stale.refresh(ttl(response.getHeaders(HttpHeaders.CACHE_CONTROL)));
+                cache.put(key, refreshed);
+                return refreshed;
+            }
+            BufferedResponse buffered = buffer(response);
+            store(key, buffered);
+            return buffered;
+        });
+    }
+
+    private void store(String key, BufferedResponse buffered) {
+        if (null == cache || buffered.statusLine.getStatusCode() != HttpStatus.SC_OK || buffered.noStore) {
+            return;
+        }
+        if (buffered.expiresAt > System.currentTimeMillis() || null != buffered.etag || null != buffered.lastModified) {
+            cache.put(key, buffered);
+        }
+    }
+
+    private BufferedResponse buffer(Response response) {
+        try {
+            HttpEntity entity = response.asEntity();
+            byte[] body = null == entity ? null : EntityUtils.toByteArray(entity);
+            Header[] cacheControl = response.getHeaders(HttpHeaders.CACHE_CONTROL);
+            return new BufferedResponse(response.getStatusLine(),
+                    response.getAllHeaders(),
+                    body,
+                    null == entity ? null : entity.getContentType(),
+                    null == entity ? null : entity.getContentEncoding(),
+                    System.currentTimeMillis() + ttl(cacheControl),
+                    hasDirective(cacheControl, "no-store"));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * 缓存时间，no-cache 为0（每次都要重新验证）
+     */
+    private long ttl(Header[] cacheControl) {
+        if (hasDirective(cacheControl, "no-cache") || hasDirective(cacheControl, "no-store")) {
+            return 0;
+        }
+        for (Header header : cacheControl) {
+            for (HeaderElement element : header.getElements()) {
+                if ("max-age".equalsIgnoreCase(element.getName()) && null != element.getValue()) {
+                    try {
+                        return Long.parseLong(element.getValue()) * 1000;
+                    } catch (NumberFormatException ignore) {
+                    }
+                }
+            }
+        }
+        return defaultTtlMillis;
+    }
+
+    private static boolean hasDirective(Header[] cacheControl, String directive) {
+        for (Header header : cacheControl) {
+            for (HeaderElement element : header.getElements()) {
+                if (directive.equalsIgnoreCase(element.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 带有不允许的请求头时返回 null，不合并
+     */
+    String key(Request request) {
+        StringBuilder key = new StringBuilder(request.getMethodString()).append(' ').append(request.getURL());
+        if (null != request.getParams() && !request.getParams().isEmpty()) {
+            key.append('?');
+            new TreeMap<>(request.getParams()).forEach((k, v) -> key.append(k).append('=').append(v).append('&'));
+        }
+        if (null != request.getHeads() && !request.getHeads().isEmpty()) {
+            // 请求头名称不区分大小写，排序后拼接，顺序不同的相同请求头得到相同的key
+            Map<String, String> heads = new TreeMap<>();
+            for (Map.Entry<String, String> entry : request.getHeads().entrySet()) {
+                if (null != keyHeaders && !keyHeaders.contains(entry.getKey())) {
+                    return null;
+                }
+                heads.put(entry.getKey().toLowerCase(Locale.ROOT), entry.getValue());
+            }
+            heads.forEach((name, value) -> key.append('|').append(name).append(':').append(value));
+        }
+        return key.toString();
+    }
+
+    /**
+     * 读取完的响应，可以为多个调用者分别生成 {@link Response}
+     */
+    private static class BufferedResponse {
+        private final StatusLine statusLine;
+        private final Header[] headers;
+        private final byte[] body;
+        private final Header contentType;
+        private final Header contentEncoding;
+        private final long expiresAt;
+        private final boolean noStore;
+        private final String etag;
+        private final String lastModified;
+
+        BufferedResponse(StatusLine statusLine, Header[] headers, byte[] body, Header contentType, Header contentEncoding, long expiresAt, boolean noStore) {
+            this.statusLine = statusLine;
+            this.headers = headers;
+            this.body = body;
+            this.contentType = contentType;
+            this.contentEncoding = contentEncoding;
+            this.expiresAt = expiresAt;
+            this.noStore = noStore;
+            this.etag = value(headers, HttpHeaders.ETAG);
+            this.lastModified = value(headers, HttpHeaders.LAST_MODIFIED);
+        }
+
+        boolean isFresh() {
+            return System.currentTimeMillis() < expiresAt;
+        }
+
+        BufferedResponse refresh(long ttl) {
+            return new BufferedResponse(statusLine, headers, body, contentType, contentEncoding, System.currentTimeMillis() + ttl, noStore);
+        }
+
+        Response toResponse(Request request) {
+            HttpResponse response = new BasicHttpResponse(statusLine);
+            response.setHeaders(headers);
+            if (null != body) {
+                ByteArrayEntity entity = new ByteArrayEntity(body);
+                entity.setContentType(contentType);
+                entity.setContentEncoding(contentEncoding);
+                response.setEntity(entity);
+            }
+            HttpRequestBase base = request.getHttpRequestBase();
+            return new Response(base, response, request.getCharset());
+        }
+
+        private static String value(Header[] headers, String name) {
+            for (Header header : headers) {
+                if (name.equalsIgnoreCase(header.getName())) {
+                    return header.getValue();
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -68,6 +68,10 @@ public class Response {
         return response.getHeaders(key);
     }
 
+    public Header[] getAllHeaders() {
+        return response.getAllHeaders();
+    }
+
     public String asString(@Nullable String charset) {
         String result = null;
         try {
@@ -0,0 +1,244 @@
+package com.chuang.urras.toolskit.third.apache.httpcomponents.async;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按路由自适应调整连接池大小。
+ * 所有平台、所有远程接口共用一个 {@link AsyncHttpClient} 时，固定的 maxConnectEachHost 要么太小（快的网关排队），
+ * 要么太大（慢的网关把总连接数占满，其他网关拿不到连接）。
+ * 这里定时检查每个路由的 {@link PoolStats} 和 {@link AsyncHttpClient} 记录的平均耗时：
+ * <ul>
+ *     <li>有请求在等待连接，并且耗时正常：扩大该路由的连接数，最多到 maxPerRoute</li>
+ *     <li>耗时超过 slowMillis：网关已经变慢，加连接只会放大压力，收缩到 minPerRoute 方向，避免它占满总连接数</li>
+ *     <li>长期空闲：逐步回收到 minPerRoute</li>
+ * </ul>
+ * 通过 {@link AsyncBuilder#hostMaxConnect} 指定了连接数的路由不参与调整。
+ * 同时负责关闭过期和空闲超过 idleMillis 的连接。
+ */
+public class AdaptiveRoutePool {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveRoutePool.class);
+    /**
+     * 平均耗时的衰减系数，越大越偏向最近的请求
+     */
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final PoolingNHttpClientConnectionManager connManager;
+    private final int minPerRoute;
+    private final int maxPerRoute;
+    private final long slowMillis;
+    private final long idleMillis;
+    private final Set<HttpRoute> fixedRoutes;
+    private final Map<HttpHost, RouteStats> stats = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param minPerRoute 每个路由最少的连接数
+     * @param maxPerRoute 每个路由最多的连接数
+     * @param slowMillis 平均耗时超过该值认为网关变慢
+     * @param idleMillis 连接空闲超过该时间会被关闭，小于等于0不关闭
+     * @param fixedRoutes 固定连接数的路由
+     */
+    public AdaptiveRoutePool(PoolingNHttpClientConnectionManager connManager,
+                             int minPerRoute, int maxPerRoute,
+                             long slowMillis, long idleMillis,
+                             Set<HttpRoute> fixedRoutes) {
+        this.connManager = connManager;
+        this.minPerRoute = minPerRoute;
+        this.maxPerRoute = Math.max(minPerRoute, maxPerRoute);
+        this.slowMillis = slowMillis;
+        this.idleMillis = idleMillis;
+        this.fixedRoutes = fixedRoutes;
+    }
+
+    public synchronized void start(long periodMillis) {
+        if (null != scheduler) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "http-route-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::adjust, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (null != scheduler) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * 记录一次请求的结果
+     * @param success 是否成功（网络异常、5xx为失败）
+     */
+    public void record(HttpHost host, long millis, boolean success) {
+        if (null == host) {
+            return;
+        }
+        stats.computeIfAbsent(host, h -> new RouteStats()).record(millis, success);
+    }
+
+    /**
+     * 记录一次没有发出去的请求，只计失败次数，不参与平均耗时
+     */
+    public void recordFailure(HttpHost host) {
+        if (null == host) {
+            return;
+        }
+        RouteStats rs = stats.computeIfAbsent(host, h -> new RouteStats());
+        rs.requests.increment();
+        rs.failures.increment();
+    }
+
+    /**
+     * 每个路由的连接池状态
+     */
+    public Map<String, RouteMetrics> metrics() {
+        Map<String, RouteMetrics> metrics = new TreeMap<>();
+        for (HttpRoute route : connManager.getRoutes()) {
+            PoolStats ps = connManager.getStats(route);
+            RouteStats rs = stats.get(route.getTargetHost());
+            metrics.put(route.toString(), new RouteMetrics(
+                    ps.getLeased(), ps.getPending(), ps.getAvailable(), ps.getMax(),
+                    null == rs ? 0 : rs.latency(),
+                    null == rs ? 0 : rs.requests.sum(),
+                    null == rs ? 0 : rs.failures.sum()));
+        }
+        return metrics;
+    }
+
+    void adjust() {
+        try {
+            connManager.closeExpiredConnections();
+            if (idleMillis > 0) {
+                connManager.closeIdleConnections(idleMillis, TimeUnit.MILLISECONDS);
+            }
+            for (HttpRoute route : connManager.getRoutes()) {
+                if (!fixedRoutes.contains(route)) {
+                    adjust(route);
+                }
+            }
+        } catch (Exception e) {
+            // 异常不能抛出，否则定时任务会停止
+            logger.error("调整连接池失败", e);
+        }
+    }
+
+    /**
+     * 耗时从请求发送完成开始计算（见 {@link TimedRequestProducer}），不包含在连接池中排队的时间，
+     * 所以连接不够导致的排队只会扩容，不会被当成网关变慢而收缩
+     */
+    private void adjust(HttpRoute route) {
+        PoolStats ps = connManager.getStats(route);
+        RouteStats rs = stats.get(route.getTargetHost());
+        double latency = null == rs ? 0 : rs.latency();
+        int max = ps.getMax();
+
+        int target = max;
+        if (latency >= slowMillis) {
+            target = Math.max(minPerRoute, max * 3 / 4);
+        } else if (ps.getPending() > 0) {
+            target = Math.min(maxPerRoute, max + Math.max(1, max / 2));
+        } else if (ps.getLeased() < max / 4) {
+            target = Math.max(minPerRoute, max - 1);
+        }
+
+        if (target != max) {
+            connManager.setMaxPerRoute(route, target);
+            logger.debug("路由 {} 连接数 {} -> {}，平均耗时 {}ms，等待 {}，使用中 {}",
+                    route, max, target, (long) latency, ps.getPending(), ps.getLeased());
+        }
+    }
+
+    private static class RouteStats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private double latency = -1;
+
+        void record(long millis, boolean success) {
+            requests.increment();
+            if (!success) {
+                failures.increment();
+            }
+            synchronized (this) {
+                latency = latency < 0 ? millis : latency + EWMA_ALPHA * (millis - latency);
+            }
+        }
+
+        synchronized double latency() {
+            return Math.max(0, latency);
+        }
+    }
+
+    /**
+     * 单个路由的连接池状态
+     */
+    public static class RouteMetrics {
+        private final int leased;
+        private final int pending;
+        private final int available;
+        private final int max;
+        private final double latencyMillis;
+        private final long requests;
+        private final long failures;
+
+        public RouteMetrics(int leased, int pending, int available, int max, double latencyMillis, long requests, long failures) {
+            this.leased = leased;
+            this.pending = pending;
+            this.available = available;
+            this.max = max;
+            this.latencyMillis = latencyMillis;
+            this.requests = requests;
+            this.failures = failures;
+        }
+
+        public int getLeased() {
+            return leased;
+        }
+
+        public int getPending() {
+            return pending;
+        }
+
+        public int getAvailable() {
+            return available;
+        }
+
+        public int getMax() {
+            return max;
+        }
+
+        public double getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        @Override
+        public String toString() {
+            return "leased=" + leased + ", pending=" + pending + ", available=" + available + ", max=" + max
+                    + ", latency=" + String.format("%.1f", latencyMillis) + "ms, requests=" + requests + ", failures=" + failures;
+        }
+    }
+}
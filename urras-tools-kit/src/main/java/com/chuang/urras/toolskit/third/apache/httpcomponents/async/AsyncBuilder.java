@@ -48,6 +48,13 @@ public class AsyncBuilder extends ConfigBuilderProxy<AsyncBuilder, AsyncHttpClie
 
     private Map<HttpRoute, Integer> hostMaxConnect = new HashMap<>();
 
+    private boolean adaptiveRoute = false;
+    private int minConnectEachHost;
+    private int adaptiveMaxConnectEachHost;
+    private long slowMillis;
+    private long idleEvictMillis = -1;
+    private long adjustPeriodMillis = 5000;
+
     private HttpAsyncClientBuilder clientBuilder;
 
     public AsyncBuilder(HttpAsyncClientBuilder builder) {
@@ -96,6 +103,37 @@ public class AsyncBuilder extends ConfigBuilderProxy<AsyncBuilder, AsyncHttpClie
         return this;
     }
 
+    /**
+     * 按路由自适应调整连接数，见 {@link AdaptiveRoutePool}。
+     * 开启后 maxConnectEachHost 作为每个路由的初始连接数。
+     * @param min 每个路由最少的连接数
+     * @param max 每个路由最多的连接数
+     * @param slowMillis 平均耗时超过该值时不再扩大该路由的连接数，并逐步收缩
+     */
+    public AsyncBuilder adaptiveRoute(int min, int max, long slowMillis) {
+        this.adaptiveRoute = true;
+        this.minConnectEachHost = min;
+        this.adaptiveMaxConnectEachHost = max;
+        this.slowMillis = slowMillis;
+        return this;
+    }
+
+    /**
+     * 定时关闭空闲超过 idleMillis 的连接
+     */
+    public AsyncBuilder evictIdle(long idleMillis) {
+        this.idleEvictMillis = idleMillis;
+        return this;
+    }
+
+    /**
+     * 连接池检查周期，默认5秒
+     */
+    public AsyncBuilder adjustPeriod(long periodMillis) {
+        this.adjustPeriodMillis = periodMillis;
+        return this;
+    }
+
     public AsyncBuilder workThread(int workThread) {
         this.workThread = workThread;
         return this;
@@ -111,16 +149,12 @@ public class AsyncBuilder extends ConfigBuilderProxy<AsyncBuilder, AsyncHttpClie
                                  TrustManager[] trustmanagers,
                                  SecureRandom secureRandom) throws KeyManagementException, NoSuchAlgorithmException {
 
-        if(null == trustmanagers) {
-            RequestConfig config = configBuilder.build();
-            CloseableHttpAsyncClient client = clientBuilder.setDefaultRequestConfig(config).build();
-
-            return new AsyncHttpClient(defaultCharset, client, config);
-        }
-        // SSL context
+        // SSL context，trustmanagers 为 null 时使用 jvm 默认的信任证书校验服务端证书，连接池设置同样生效
         final SSLContext sslcontext = SSLContext.getInstance(
                 this.protocol != null ? this.protocol : "TLS");
         sslcontext.init(keymanagers, trustmanagers, secureRandom);
+        // 校验证书时使用 jvm 默认支持的协议版本
+        String[] protocols = null == trustmanagers ? null : new String[] { "TLSv1", "TLSv1.1", "TLSv1.2" };
 
         HostnameVerifier verifier;
         if( ignoreSSLCert ) {
@@ -132,7 +166,7 @@ public class AsyncBuilder extends ConfigBuilderProxy<AsyncBuilder, AsyncHttpClie
         // 设置协议http和https对应的处理socket链接工厂的对象
         Registry<SchemeIOSessionStrategy> sessionStrategyRegistry = RegistryBuilder.<SchemeIOSessionStrategy>create()
                 .register("http", NoopIOSessionStrategy.INSTANCE)
-                .register("https", new SSLIOSessionStrategy(sslcontext, new String[] { "TLSv1", "TLSv1.1", "TLSv1.2" }, null, verifier))
+                .register("https", new SSLIOSessionStrategy(sslcontext, protocols, null, verifier))
                 .build();
 
         //配置io线程
@@ -152,11 +186,21 @@ public class AsyncBuilder extends ConfigBuilderProxy<AsyncBuilder, AsyncHttpClie
         connManager.setMaxTotal(totalConnectPoolMax);//最多一次能同时发起多少个请求（每个请求就是一个连接）
         hostMaxConnect.forEach((httpRoute, max) -> connManager.setMaxPerRoute(httpRoute, max));//每个域名最多能发起多少个连接。
 
+        RequestConfig config = configBuilder.build();
         CloseableHttpAsyncClient httpclient = clientBuilder
+                .setDefaultRequestConfig(config)
                 .setConnectionManager(connManager)
                 .build();
 
-        RequestConfig config = configBuilder.build();
-        return new AsyncHttpClient(defaultCharset, httpclient, config);
+        AsyncHttpClient client = new AsyncHttpClient(defaultCharset, httpclient, config);
+        if (adaptiveRoute || idleEvictMillis > 0) {
+            AdaptiveRoutePool routePool = adaptiveRoute
+                    ? new AdaptiveRoutePool(connManager, minConnectEachHost, adaptiveMaxConnectEachHost, slowMillis, idleEvictMillis, hostMaxConnect.keySet())
+                    // 不调整连接数，只做空闲连接回收和统计
+                    : new AdaptiveRoutePool(connManager, maxConnectEachHost, maxConnectEachHost, Long.MAX_VALUE, idleEvictMillis, hostMaxConnect.keySet());
+            routePool.start(adjustPeriodMillis);
+            client.setRoutePool(routePool);
+        }
+        return client;
     }
 }
@@ -1,20 +1,24 @@
 package com.chuang.urras.toolskit.third.apache.httpcomponents.async;
 
+import com.chuang.urras.toolskit.third.apache.httpcomponents.FormEncoder;
 import com.chuang.urras.toolskit.third.apache.httpcomponents.Response;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.exception.CallHttpException;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.*;
 import org.apache.http.annotation.Contract;
 import org.apache.http.annotation.ThreadingBehavior;
 import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URIUtils;
 import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
-import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
@@ -23,8 +27,8 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
-import java.util.ArrayList;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
@@ -37,6 +41,7 @@ public class AsyncHttpClient {
     private final String defaultCharset;
     private final CloseableHttpAsyncClient asyncHttpClient;
     private final RequestConfig defaultConfig;
+    private volatile AdaptiveRoutePool routePool;
     private static final Logger logger = LoggerFactory.getLogger(AsyncHttpClient.class);
 
     public AsyncHttpClient(final String defaultCharset, final CloseableHttpAsyncClient asyncHttpClient, final RequestConfig defaultConfig) {
@@ -45,6 +50,17 @@ public class AsyncHttpClient {
         this.defaultConfig = defaultConfig;
     }
 
+    /**
+     * 设置后会记录每个请求的耗时，用于按路由调整连接池大小
+     */
+    public void setRoutePool(AdaptiveRoutePool routePool) {
+        this.routePool = routePool;
+    }
+
+    public Optional<AdaptiveRoutePool> getRoutePool() {
+        return Optional.ofNullable(routePool);
+    }
+
     public AsyncHttpClient init() {
         try {
             start();
@@ -64,6 +80,9 @@ public class AsyncHttpClient {
     }
 
     public void shutdown() {
+        if (null != routePool) {
+            routePool.shutdown();
+        }
         try {
             asyncHttpClient.close();
         } catch (Exception e) {
@@ -119,27 +138,13 @@ public class AsyncHttpClient {
      */
     public CompletableFuture<Response> exec(HttpRequestBase request, Map<String, String> params, HttpContext context, Map<String, String> heads, String charset, HttpHost proxy, int connTimeout, int readTimeout) {
 
-        UrlEncodedFormEntity requestEntity = null;
-        if (!(null == params  || params.isEmpty())) {
-            ArrayList<NameValuePair> pairs = new ArrayList(params.size());
-            for (Map.Entry<String, String> entry : params.entrySet()) {
-                String value = entry.getValue();
-
-                if (value == null) {
-                    pairs.add(new BasicNameValuePair(entry.getKey(), ""));
-                } else {
-                    pairs.add(new BasicNameValuePair(entry.getKey(), value));
-                }
-            }
-
-            try {
-                requestEntity = new UrlEncodedFormEntity(pairs, charset);
-            } catch (UnsupportedEncodingException e) {
-                CompletableFuture<Response> future = new CompletableFuture<>();
-                future.completeExceptionally(e);
-                return future;
-            }
-
+        HttpEntity requestEntity;
+        try {
+            requestEntity = toEntity(params, charset);
+        } catch (UnsupportedEncodingException e) {
+            CompletableFuture<Response> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
         }
         return exec(request, requestEntity, context, heads, charset, proxy, connTimeout, readTimeout);
 
@@ -249,46 +254,15 @@ public class AsyncHttpClient {
     public CompletableFuture<Response> exec(HttpRequestBase request, HttpEntity requestEntity, HttpContext context, Map<String, String> heads, String charset, HttpHost proxy, int connTimeout, int readTimeout) {
         MyCompletableFuture<Response> future = new MyCompletableFuture<>();
 
-        RequestConfig.Builder cfgBuilder = RequestConfig.copy(defaultConfig);
-        if(null != proxy) {
-            cfgBuilder.setProxy(proxy);
-        }
-
-        if(-1 != readTimeout){
-            cfgBuilder.setSocketTimeout(readTimeout);
-        }
-
-        if(-1 != connTimeout){
-            cfgBuilder.setConnectTimeout(connTimeout);
-            cfgBuilder.setConnectionRequestTimeout(connTimeout);
-        }
-
-        request.setConfig(cfgBuilder.build());
-
-        if(heads != null) {
-            for(String key : heads.keySet()) {
-                request.addHeader(key, heads.get(key));
-            }
+        try {
+            prepare(request, requestEntity, heads, proxy, connTimeout, readTimeout);
+        } catch (IOException e) {
+            future.completeExceptionally(e);
         }
         if(null == charset || charset.isEmpty()) {
             charset = this.defaultCharset;
         }
 
-
-
-        if (null != requestEntity) {
-            //如果是将参数写入entity的
-            if(request instanceof HttpEntityEnclosingRequest) {
-                ((HttpEntityEnclosingRequest)request).setEntity(requestEntity);
-            } else {
-                try {
-                    request.setURI(URI.create(request.getURI().toString() + "?" + EntityUtils.toString(requestEntity)));
-                } catch (IOException e) {
-                    future.completeExceptionally(e);
-                }
-            }
-        }
-
         final String finalCharset = charset;
 
         FutureCallback<HttpResponse> fc = new FutureCallback<HttpResponse>() {
@@ -312,13 +286,142 @@ public class AsyncHttpClient {
             }
         };
 
-        if(null == context) {
-            Future<HttpResponse> f = asyncHttpClient.execute(request, fc);
-            future.setCancelHandler(f::cancel);
-        } else {
-            Future<HttpResponse> f = asyncHttpClient.execute(request, context, fc);
-            future.setCancelHandler(f::cancel);
+        Future<HttpResponse> f = submit(request, context, HttpAsyncMethods.createConsumer(), fc);
+        future.setCancelHandler(f::cancel);
+        return future;
+    }
+
+    /**
+     * 执行请求，响应体由 consumer 在io线程中边接收边处理，不会先缓冲成完整的 HttpResponse
+     * @param params 参数键值
+     * @param consumer 响应处理，例如 {@link JsonResponseConsumer}
+     */
+    public <T> CompletableFuture<T> stream(HttpRequestBase request, Map<String, String> params, HttpContext context, Map<String, String> heads, String charset, HttpHost proxy, int connTimeout, int readTimeout, HttpAsyncResponseConsumer<T> consumer) {
+        try {
+            return stream(request, toEntity(params, charset), context, heads, proxy, connTimeout, readTimeout, consumer);
+        } catch (UnsupportedEncodingException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
         }
+    }
+
+    /**
+     * 执行请求，响应体由 consumer 在io线程中边接收边处理，不会先缓冲成完整的 HttpResponse
+     * @param requestEntity 请求数据体
+     * @param consumer 响应处理，例如 {@link JsonResponseConsumer}
+     */
+    public <T> CompletableFuture<T> stream(HttpRequestBase request, HttpEntity requestEntity, HttpContext context, Map<String, String> heads, HttpHost proxy, int connTimeout, int readTimeout, HttpAsyncResponseConsumer<T> consumer) {
+        MyCompletableFuture<T> future = new MyCompletableFuture<>();
+        try {
+            prepare(request, requestEntity, heads, proxy, connTimeout, readTimeout);
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        FutureCallback<T> fc = new FutureCallback<T>() {
+            @Override
+            public void completed(T result) {
+                future.complete(result);
+            }
+            @Override
+            public void failed(Exception e) {
+                logger.debug("urras request 失败", e);
+                future.completeExceptionally(e instanceof CallHttpException ? e : new IOException(request.toString() + "失败", e));
+            }
+            @Override
+            public void cancelled() {
+                logger.debug("urras request 取消");
+                future.cancel(true);
+            }
+        };
+
+        Future<T> f = submit(request, context, consumer, fc);
+        future.setCancelHandler(f::cancel);
         return future;
     }
+
+    /**
+     * 提交请求，配置了 {@link AdaptiveRoutePool} 时记录每个请求的耗时和结果
+     */
+    private <T> Future<T> submit(HttpRequestBase request, HttpContext context, HttpAsyncResponseConsumer<T> consumer, FutureCallback<T> callback) {
+        HttpHost target = URIUtils.extractHost(request.getURI());
+        AdaptiveRoutePool pool = this.routePool;
+        if (null == pool) {
+            HttpAsyncRequestProducer producer = HttpAsyncMethods.create(target, request);
+            return null == context
+                    ? asyncHttpClient.execute(producer, consumer, callback)
+                    : asyncHttpClient.execute(producer, consumer, context, callback);
+        }
+
+        TimedRequestProducer producer = new TimedRequestProducer(HttpAsyncMethods.create(target, request));
+        FutureCallback<T> timed = new FutureCallback<T>() {
+            @Override
+            public void completed(T result) {
+                boolean success = !(result instanceof HttpResponse)
+                        || ((HttpResponse) result).getStatusLine().getStatusCode() < HttpStatus.SC_INTERNAL_SERVER_ERROR;
+                record(success);
+                callback.completed(result);
+            }
+            @Override
+            public void failed(Exception e) {
+                record(e instanceof CallHttpException && ((CallHttpException) e).getHttpCode() < HttpStatus.SC_INTERNAL_SERVER_ERROR);
+                callback.failed(e);
+            }
+            @Override
+            public void cancelled() {
+                callback.cancelled();
+            }
+            private void record(boolean success) {
+                long elapsed = producer.elapsedMillis();
+                if (elapsed >= 0) {
+                    pool.record(target, elapsed, success);
+                } else if (!success) {
+                    // 请求没有发出去（连接失败、等待连接超时），只计失败，不影响耗时
+                    pool.recordFailure(target);
+                }
+            }
+        };
+        return null == context
+                ? asyncHttpClient.execute(producer, consumer, timed)
+                : asyncHttpClient.execute(producer, consumer, context, timed);
+    }
+
+    private void prepare(HttpRequestBase request, HttpEntity requestEntity, Map<String, String> heads, HttpHost proxy, int connTimeout, int readTimeout) throws IOException {
+        RequestConfig.Builder cfgBuilder = RequestConfig.copy(defaultConfig);
+        if(null != proxy) {
+            cfgBuilder.setProxy(proxy);
+        }
+
+        if(-1 != readTimeout){
+            cfgBuilder.setSocketTimeout(readTimeout);
+        }
+
+        if(-1 != connTimeout){
+            cfgBuilder.setConnectTimeout(connTimeout);
+            cfgBuilder.setConnectionRequestTimeout(connTimeout);
+        }
+
+        request.setConfig(cfgBuilder.build());
+
+        if(heads != null) {
+            for(String key : heads.keySet()) {
+                request.addHeader(key, heads.get(key));
+            }
+        }
+
+        if (null != requestEntity) {
+            //如果是将参数写入entity的
+            if(request instanceof HttpEntityEnclosingRequest) {
+                ((HttpEntityEnclosingRequest)request).setEntity(requestEntity);
+            } else {
+                request.setURI(URI.create(request.getURI().toString() + "?" + EntityUtils.toString(requestEntity)));
+            }
+        }
+    }
+
+    private HttpEntity toEntity(Map<String, String> params, String charset) throws UnsupportedEncodingException {
+        return FormEncoder.entity(params, charset);
+    }
 }
@@ -0,0 +1,215 @@
+package com.chuang.urras.toolskit.third.apache.httpcomponents.async;
+
+import com.alibaba.fastjson.JSON;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.exception.CallHttpException;
+import org.apache.http.*;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 流式读取响应体并直接解析成json对象。
+ * {@link com.chuang.urras.toolskit.third.apache.httpcomponents.Response#asString()} 的方式是：
+ * 先把整个响应缓冲在 HttpResponse 中，再通过 frameLen 的数组拷贝到 ByteArrayOutputStream，toByteArray 再拷贝一次，
+ * new String 再拷贝一次，最后 fastjson 再解析字符串。大的查询、对账响应会被拷贝三四次。
+ *
+ * 这里在 io 线程中把 ContentDecoder 的数据直接读进一个字节数组（ByteBuffer.wrap，没有中间缓冲），
+ * 响应结束后由 fastjson 直接从字节数组解析，不生成中间 String。
+ * 小的数组（{@link #CHUNK_SIZE}）会被放回池中复用；响应体超过 maxBytes 直接失败，gzip 响应解压后的长度同样受 maxBytes 限制。
+ * 解析在响应结束后一次完成而不是边收边解析：fastjson 没有可以在 io 回调中分段喂数据的解析器，
+ * 它的流式 JSONReader 需要阻塞读取，不能在 io 线程中使用。
+ * 非 2xx 的响应以 {@link CallHttpException} 结束。
+ */
+public class JsonResponseConsumer<T> extends AbstractAsyncResponseConsumer<T> {
+
+    public static final int DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final int POOL_SIZE = 256;
+    private static final int ERROR_PREVIEW_LEN = 512;
+    private static final BlockingQueue<byte[]> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private final Type type;
+    private final int maxBytes;
+    private final Charset defaultCharset;
+    private final String method;
+
+    private HttpResponse response;
+    private Charset charset;
+    private boolean gzip;
+    private byte[] buf;
+    private int len;
+
+    /**
+     * @param type 目标类型
+     * @param maxBytes 响应体最大字节数
+     * @param defaultCharset 响应没有声明编码时使用的编码
+     * @param method 请求方法，用于异常信息
+     */
+    public JsonResponseConsumer(Type type, int maxBytes, String defaultCharset, String method) {
+        this.type = type;
+        this.maxBytes = maxBytes;
+        this.defaultCharset = null == defaultCharset ? StandardCharsets.UTF_8 : Charset.forName(defaultCharset);
+        this.method = method;
+    }
+
+    @Override
+    protected void onResponseReceived(HttpResponse response) {
+        this.response = response;
+    }
+
+    @Override
+    protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+        long contentLength = entity.getContentLength();
+        if (contentLength > maxBytes) {
+            throw new ContentTooLongException("响应体长度 " + contentLength + " 超过限制 " + maxBytes);
+        }
+        this.charset = null == contentType || null == contentType.getCharset() ? defaultCharset : contentType.getCharset();
+
+        Header encoding = entity.getContentEncoding();
+        this.gzip = null != encoding && null != encoding.getValue() && encoding.getValue().toLowerCase().contains("gzip");
+        this.buf = borrow(contentLength > 0 ? (int) contentLength : CHUNK_SIZE);
+        this.len = 0;
+    }
+
+    @Override
+    protected void onContentReceived(ContentDecoder decoder, IOControl ioControl) throws IOException {
+        while (true) {
+            if (len == buf.length) {
+                // 缓冲区刚好写满时先确认后面还有数据再扩容，响应体正好等于缓冲区大小或 maxBytes 时不扩容
+                if (decoder.isCompleted() || !probe(decoder)) {
+                    break;
+                }
+                continue;
+            }
+            int n = decoder.read(ByteBuffer.wrap(buf, len, buf.length - len));
+            if (n <= 0) {
+                break;
+            }
+            len += n;
+        }
+    }
+
+    /**
+     * 缓冲区已满时读取一个字节，读到数据才扩容并写入
+     * @return 没有读到数据返回 false
+     */
+    private boolean probe(ContentDecoder decoder) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        if (decoder.read(one) <= 0) {
+            return false;
+        }
+        grow();
+        buf[len++] = one.get(0);
+        return true;
+    }
+
+    @Override
+    protected T buildResult(HttpContext context) throws Exception {
+        int status = response.getStatusLine().getStatusCode();
+        if (status < HttpStatus.SC_OK || status >= HttpStatus.SC_MULTIPLE_CHOICES) {
+            String preview = null == buf ? "" : new String(buf, 0, Math.min(len, ERROR_PREVIEW_LEN), charset);
+            throw new CallHttpException("HttpClient,error status code :" + status + ", response:->" + preview, status, method);
+        }
+        if (null == buf || len == 0) {
+            return null;
+        }
+        if (gzip) {
+            // 限制解压后的长度，压缩比很高的响应（解压炸弹）不会在解压时耗尽内存
+            try (InputStream in = new LimitedInputStream(new GZIPInputStream(new ByteArrayInputStream(buf, 0, len)), maxBytes)) {
+                return JSON.parseObject(in, charset, type);
+            }
+        }
+        return JSON.parseObject(buf, 0, len, charset, type);
+    }
+
+    @Override
+    protected void releaseResources() {
+        release(buf);
+        buf = null;
+        response = null;
+    }
+
+    private void grow() throws ContentTooLongException {
+        if (buf.length >= maxBytes) {
+            throw new ContentTooLongException("响应体超过限制 " + maxBytes);
+        }
+        byte[] old = buf;
+        buf = Arrays.copyOf(old, (int) Math.min(maxBytes, old.length * 2L));
+        release(old);
+    }
+
+    /**
+     * 读取超过 limit 字节时抛出 {@link ContentTooLongException}
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long n) throws ContentTooLongException {
+            count += n;
+            if (count > limit) {
+                throw new ContentTooLongException("解压后的响应体超过限制 " + limit);
+            }
+        }
+    }
+
+    private static byte[] borrow(int size) {
+        if (size <= CHUNK_SIZE) {
+            byte[] chunk = POOL.poll();
+            return null == chunk ? new byte[CHUNK_SIZE] : chunk;
+        }
+        return new byte[size];
+    }
+
+    private static void release(byte[] chunk) {
+        if (null != chunk && chunk.length == CHUNK_SIZE) {
+            POOL.offer(chunk);
+        }
+    }
+}
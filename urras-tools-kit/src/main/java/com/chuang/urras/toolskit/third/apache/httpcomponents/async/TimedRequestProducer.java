@@ -0,0 +1,76 @@
+package com.chuang.urras.toolskit.third.apache.httpcomponents.async;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+
+/**
+ * 记录请求发送完成的时间。
+ * HttpAsyncClient 4.1 中 generateRequest 在申请连接之前就会被调用，从那里计时会把连接池排队的时间算进去，
+ * 路由排队越久看起来越慢，{@link AdaptiveRoutePool} 就会继续收缩它的连接数。
+ * requestCompleted 在拿到连接并把请求（包括请求体）写完之后才调用，从这里计时只反映网关本身的处理和响应时间。
+ */
+class TimedRequestProducer implements HttpAsyncRequestProducer {
+
+    private final HttpAsyncRequestProducer delegate;
+    private volatile long startNanos;
+
+    TimedRequestProducer(HttpAsyncRequestProducer delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return 从请求发送完成到现在的毫秒数，请求还没发出（例如还在等待连接、连接失败）时返回 -1
+     */
+    long elapsedMillis() {
+        long start = startNanos;
+        return 0 == start ? -1 : (System.nanoTime() - start) / 1000000;
+    }
+
+    @Override
+    public HttpHost getTarget() {
+        return delegate.getTarget();
+    }
+
+    @Override
+    public HttpRequest generateRequest() throws IOException, HttpException {
+        return delegate.generateRequest();
+    }
+
+    @Override
+    public void produceContent(ContentEncoder encoder, IOControl ioControl) throws IOException {
+        delegate.produceContent(encoder, ioControl);
+    }
+
+    @Override
+    public void requestCompleted(HttpContext context) {
+        startNanos = System.nanoTime();
+        delegate.requestCompleted(context);
+    }
+
+    @Override
+    public void failed(Exception ex) {
+        delegate.failed(ex);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return delegate.isRepeatable();
+    }
+
+    @Override
+    public void resetRequest() throws IOException {
+        delegate.resetRequest();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
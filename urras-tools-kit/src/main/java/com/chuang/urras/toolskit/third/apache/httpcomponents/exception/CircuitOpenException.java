@@ -0,0 +1,15 @@
+package com.chuang.urras.toolskit.third.apache.httpcomponents.exception;
+
+import java.io.IOException;
+
+/**
+ * host的熔断器处于打开状态，请求没有发出
+ */
+public class CircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String host) {
+        super(host + " 熔断中，请求未发出");
+    }
+}
@@ -0,0 +1,224 @@
+package com.chuang.urras.toolskit.third.apache.httpcomponents.h2;
+
+import com.chuang.urras.toolskit.basic.FutureKit;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.FormEncoder;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.Response;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.async.MyCompletableFuture;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.Timeout;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * HTTP/2 异步客户端。
+ * HttpAsyncClient 4.x 只支持 HTTP/1.1，同一个网关的每个并发请求都要单独占一个 TCP+TLS 连接。
+ * 这里使用 HttpClient 5 的 HTTP/2 客户端，同一个host的并发请求在少量连接上多路复用。
+ * 对外仍然使用 4.x 的 HttpRequestBase 和 {@link Response}，调用方通过 Request.Builder#http2() 切换，其他代码不需要修改。
+ *
+ * https 需要 ALPN（JDK 8u252+ 或 JDK 9+）才能协商出 h2，协商不出或者网关只支持 HTTP/1.1 时回退到 HTTP/1.1，见 {@link H2Builder}。
+ * httpclient5 是可选依赖，使用时需要自行引入。
+ */
+public class H2AsyncHttpClient {
+    private static final Logger logger = LoggerFactory.getLogger(H2AsyncHttpClient.class);
+    private static final ProtocolVersion HTTP_2 = new ProtocolVersion("HTTP", 2, 0);
+    /**
+     * HTTP/2 禁止的连接相关头
+     */
+    private static final Set<String> CONNECTION_HEADERS = new HashSet<>(Arrays.asList(
+            "connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade", "host", "content-length"));
+
+    private final String defaultCharset;
+    private final CloseableHttpAsyncClient client;
+    private final RequestConfig defaultConfig;
+
+    public H2AsyncHttpClient(String defaultCharset, CloseableHttpAsyncClient client, RequestConfig defaultConfig) {
+        this.defaultCharset = defaultCharset;
+        this.client = client;
+        this.defaultConfig = defaultConfig;
+    }
+
+    public static H2Builder builder() {
+        return new H2Builder();
+    }
+
+    /**
+     * 默认的 HTTP/2 客户端，第一次使用时才创建，没有引入 httpclient5 时不会影响其他功能
+     */
+    public static H2AsyncHttpClient defaultClient() {
+        return DefaultHolder.CLIENT;
+    }
+
+    public H2AsyncHttpClient init() {
+        try {
+            client.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                logger.info("开始关闭HTTP/2客户端");
+                H2AsyncHttpClient.this.shutdown();
+                logger.info("HTTP/2客户端 成功 关闭");
+            }));
+        } catch (Throwable e) {
+            logger.error("无法开启HTTP/2客户端", e);
+        }
+        return this;
+    }
+
+    public void shutdown() {
+        client.close(CloseMode.GRACEFUL);
+    }
+
+    /**
+     * 执行请求
+     * @param params 参数键值
+     */
+    public CompletableFuture<Response> exec(HttpRequestBase request, Map<String, String> params, Map<String, String> heads, String charset, int connTimeout, int readTimeout) {
+        // 与 HTTP/1.1 客户端使用同一个编码器，两种传输的表单内容（以及按它计算的签名）完全相同
+        HttpEntity requestEntity;
+        try {
+            requestEntity = FormEncoder.entity(params, charset);
+        } catch (UnsupportedEncodingException e) {
+            return FutureKit.error(e);
+        }
+        return exec(request, requestEntity, heads, charset, connTimeout, readTimeout);
+    }
+
+    /**
+     * 执行请求
+     * @param requestEntity 请求数据体，GET等没有请求体的方法会拼接到url上
+     */
+    public CompletableFuture<Response> exec(HttpRequestBase request, HttpEntity requestEntity, Map<String, String> heads, String charset, int connTimeout, int readTimeout) {
+        MyCompletableFuture<Response> future = new MyCompletableFuture<>();
+        final String finalCharset = null == charset || charset.isEmpty() ? defaultCharset : charset;
+
+        SimpleHttpRequest h2Request;
+        try {
+            h2Request = toH2Request(request, requestEntity, heads, connTimeout, readTimeout);
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        Future<SimpleHttpResponse> f = client.execute(h2Request, new FutureCallback<SimpleHttpResponse>() {
+            @Override
+            public void completed(SimpleHttpResponse result) {
+                future.complete(new Response(request, toResponse(result), finalCharset));
+            }
+
+            @Override
+            public void failed(Exception e) {
+                logger.debug("urras h2 request 失败", e);
+                future.completeExceptionally(new IOException(request.toString() + "失败", e));
+            }
+
+            @Override
+            public void cancelled() {
+                logger.debug("urras h2 request 取消");
+                future.cancel(true);
+            }
+        });
+        future.setCancelHandler(f::cancel);
+        return future;
+    }
+
+    private SimpleHttpRequest toH2Request(HttpRequestBase request, HttpEntity requestEntity, Map<String, String> heads, int connTimeout, int readTimeout) throws IOException {
+        URI uri = request.getURI();
+        byte[] body = null;
+        ContentType contentType = null;
+        if (null != requestEntity) {
+            if (request instanceof HttpEntityEnclosingRequest) {
+                body = EntityUtils.toByteArray(requestEntity);
+                if (null != requestEntity.getContentType()) {
+                    contentType = ContentType.parse(requestEntity.getContentType().getValue());
+                }
+            } else {
+                uri = URI.create(uri.toString() + "?" + EntityUtils.toString(requestEntity));
+            }
+        }
+
+        SimpleHttpRequest h2Request = new SimpleHttpRequest(request.getMethod(), uri);
+        for (org.apache.http.Header header : request.getAllHeaders()) {
+            addHeader(h2Request, header.getName(), header.getValue());
+        }
+        if (null != heads) {
+            heads.forEach((key, value) -> addHeader(h2Request, key, value));
+        }
+        if (null != body) {
+            h2Request.setBody(body, contentType);
+        }
+
+        RequestConfig.Builder cfgBuilder = RequestConfig.copy(defaultConfig);
+        if (-1 != connTimeout) {
+            cfgBuilder.setConnectTimeout(Timeout.ofMilliseconds(connTimeout));
+            cfgBuilder.setConnectionRequestTimeout(Timeout.ofMilliseconds(connTimeout));
+        }
+        if (-1 != readTimeout) {
+            cfgBuilder.setResponseTimeout(Timeout.ofMilliseconds(readTimeout));
+        }
+        h2Request.setConfig(cfgBuilder.build());
+        return h2Request;
+    }
+
+    private static void addHeader(SimpleHttpRequest request, String name, String value) {
+        if (!CONNECTION_HEADERS.contains(name.toLowerCase())) {
+            request.addHeader(name, value);
+        }
+    }
+
+    /**
+     * 转换成 4.x 的 HttpResponse，这样 {@link Response} 的处理（gzip、编码等）可以直接复用
+     */
+    private static HttpResponse toResponse(SimpleHttpResponse result) {
+        ProtocolVersion version = null == result.getVersion()
+                ? HTTP_2 : new ProtocolVersion("HTTP", result.getVersion().getMajor(), result.getVersion().getMinor());
+        BasicHttpResponse response = new BasicHttpResponse(new BasicStatusLine(version, result.getCode(), result.getReasonPhrase()));
+        for (Header header : result.getHeaders()) {
+            response.addHeader(header.getName(), header.getValue());
+        }
+        byte[] body = result.getBodyBytes();
+        if (null != body) {
+            org.apache.http.entity.ContentType contentType = null;
+            if (null != result.getContentType()) {
+                try {
+                    contentType = org.apache.http.entity.ContentType.parse(result.getContentType().toString());
+                } catch (Exception e) {
+                    logger.debug("无法解析响应的 Content-Type:" + result.getContentType(), e);
+                }
+            }
+            response.setEntity(new ByteArrayEntity(body, contentType));
+        }
+        return response;
+    }
+
+    private static class DefaultHolder {
+        private static final H2AsyncHttpClient CLIENT = builder().setDefaultCharset("UTF-8")
+                .workThreadFull()
+                .setConnectTimeout(10000)
+                .setSocketTimeout(10000)
+                .setConnectionRequestTimeout(10000)
+                .trustAll()
+                .build()
+                .init();
+    }
+}
@@ -0,0 +1,122 @@
+package com.chuang.urras.toolskit.third.apache.httpcomponents.h2;
+
+import com.chuang.urras.toolskit.third.apache.httpcomponents.ConfigBuilderProxy;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.Timeout;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * {@link H2AsyncHttpClient} 的构建器。
+ * 超时、证书、trustAll 等配置和 {@link com.chuang.urras.toolskit.third.apache.httpcomponents.async.AsyncBuilder} 一致，
+ * 构建时转换成 HttpClient 5 的配置。
+ * 默认按 {@link HttpVersionPolicy#NEGOTIATE} 协商：https 通过 ALPN 协商出 h2 时多路复用，
+ * 网关只支持 HTTP/1.1（或者是 http）时回退到 HTTP/1.1，这时按 maxConnTotal / maxConnPerRoute 建立连接池。
+ */
+public class H2Builder extends ConfigBuilderProxy<H2Builder, H2AsyncHttpClient> {
+
+    private int workThread = 1;
+
+    /**
+     * 每个连接上最多同时进行的请求（stream）数
+     */
+    private int maxConcurrentStreams = 100;
+
+    private HttpVersionPolicy versionPolicy = HttpVersionPolicy.NEGOTIATE;
+
+    /**
+     * 回退到 HTTP/1.1 时的连接数，HTTP/2 下每个host通常只用一个连接
+     */
+    private int maxConnTotal = 200;
+    private int maxConnPerRoute = 50;
+
+    public H2Builder workThread(int workThread) {
+        this.workThread = workThread;
+        return this;
+    }
+
+    public H2Builder workThreadFull() {
+        this.workThread = Runtime.getRuntime().availableProcessors();
+        return this;
+    }
+
+    public H2Builder maxConcurrentStreams(int maxConcurrentStreams) {
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        return this;
+    }
+
+    /**
+     * 协议选择，默认 NEGOTIATE；FORCE_HTTP_2 不回退，http 时使用 h2c（需要网关支持）
+     */
+    public H2Builder versionPolicy(HttpVersionPolicy versionPolicy) {
+        this.versionPolicy = versionPolicy;
+        return this;
+    }
+
+    public H2Builder maxConnTotal(int maxConnTotal) {
+        this.maxConnTotal = maxConnTotal;
+        return this;
+    }
+
+    public H2Builder maxConnPerRoute(int maxConnPerRoute) {
+        this.maxConnPerRoute = maxConnPerRoute;
+        return this;
+    }
+
+    @Override
+    public H2AsyncHttpClient build(KeyManager[] keymanagers,
+                                   TrustManager[] trustmanagers,
+                                   SecureRandom secureRandom) throws KeyManagementException, NoSuchAlgorithmException {
+        final SSLContext sslcontext = SSLContext.getInstance(
+                this.protocol != null ? this.protocol : "TLS");
+        sslcontext.init(keymanagers, trustmanagers, secureRandom);
+
+        ClientTlsStrategyBuilder tlsBuilder = ClientTlsStrategyBuilder.create().setSslContext(sslcontext);
+        if (ignoreSSLCert) {
+            tlsBuilder.setHostnameVerifier(NoopHostnameVerifier.INSTANCE);
+        }
+
+        RequestConfig config = toH2Config(configBuilder.build());
+        PoolingAsyncClientConnectionManager connManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setTlsStrategy(tlsBuilder.build())
+                .setMaxConnTotal(maxConnTotal)
+                .setMaxConnPerRoute(maxConnPerRoute)
+                .build();
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setVersionPolicy(versionPolicy)
+                .setConnectionManager(connManager)
+                .setIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(workThread).build())
+                .setH2Config(H2Config.custom().setMaxConcurrentStreams(maxConcurrentStreams).build())
+                .setDefaultRequestConfig(config)
+                .build();
+        return new H2AsyncHttpClient(defaultCharset, client, config);
+    }
+
+    private static RequestConfig toH2Config(org.apache.http.client.config.RequestConfig config) {
+        RequestConfig.Builder builder = RequestConfig.custom();
+        if (config.getConnectTimeout() > 0) {
+            builder.setConnectTimeout(Timeout.ofMilliseconds(config.getConnectTimeout()));
+        }
+        if (config.getConnectionRequestTimeout() > 0) {
+            builder.setConnectionRequestTimeout(Timeout.ofMilliseconds(config.getConnectionRequestTimeout()));
+        }
+        if (config.getSocketTimeout() > 0) {
+            builder.setResponseTimeout(Timeout.ofMilliseconds(config.getSocketTimeout()));
+        }
+        return builder.setRedirectsEnabled(config.isRedirectsEnabled()).build();
+    }
+}
@@ -0,0 +1,166 @@
+package com.chuang.urras.toolskit.third.apache.httpcomponents.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个host的熔断器。
+ * 最近 windowSize 次调用中失败率达到 failureRateThreshold（并且至少有 minCalls 次调用）时打开，
+ * 打开期间直接失败，openMillis 后进入半开，只放行 halfOpenProbes 个探测请求，探测成功关闭，失败重新打开。
+ * 每次放行返回一个 {@link Permit}，结果通过 {@link #record(Permit, boolean)} 记录：
+ * 只记录当前状态下放行的请求，半开时只有探测请求能关闭或重新打开熔断器，
+ * 打开之前发出、半开期间才返回的慢请求不会影响探测结果。
+ */
+public class CircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final long openMillis;
+    private final int halfOpenProbes;
+
+    private final boolean[] window;
+    private int index;
+    private int calls;
+    private int failures;
+
+    private State state = State.CLOSED;
+    /**
+     * 每次状态变化加一，用来识别之前状态下放行的请求
+     */
+    private long epoch;
+    private long openedAt;
+    private int probes;
+
+    private final LongAdder transitions = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public CircuitBreaker(String name, int windowSize, int minCalls, double failureRateThreshold, long openMillis, int halfOpenProbes) {
+        this.name = name;
+        this.window = new boolean[windowSize];
+        this.minCalls = Math.min(minCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = openMillis;
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    /**
+     * 请求是否可以发出
+     * @return 不能发出时返回 null
+     */
+    public synchronized Permit tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis) {
+                rejected.increment();
+                return null;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probes >= halfOpenProbes) {
+                rejected.increment();
+                return null;
+            }
+            probes++;
+            return new Permit(epoch, true);
+        }
+        return new Permit(epoch, false);
+    }
+
+    /**
+     * 记录 {@link #tryAcquire()} 放行的请求的结果，之后状态已经变化时忽略
+     */
+    public synchronized void record(Permit permit, boolean success) {
+        if (permit.epoch != epoch) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (permit.probe) {
+                transition(success ? State.CLOSED : State.OPEN);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+
+        if (calls == window.length) {
+            if (!window[index]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        window[index] = success;
+        if (!success) {
+            failures++;
+        }
+        index = (index + 1) % window.length;
+
+        if (calls >= minCalls && (double) failures / calls >= failureRateThreshold) {
+            transition(State.OPEN);
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized double getFailureRate() {
+        return calls == 0 ? 0 : (double) failures / calls;
+    }
+
+    public long getTransitions() {
+        return transitions.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    private void transition(State to) {
+        State from = state;
+        state = to;
+        epoch++;
+        transitions.increment();
+        if (to == State.OPEN) {
+            openedAt = System.currentTimeMillis();
+        }
+        if (to == State.HALF_OPEN) {
+            probes = 0;
+        }
+        if (to == State.CLOSED) {
+            calls = 0;
+            failures = 0;
+            index = 0;
+        }
+        logger.warn("{} 熔断器状态 {} -> {}", name, from, to);
+    }
+
+    /**
+     * 一次放行，只能用于记录对应请求的结果
+     */
+    public static final class Permit {
+        private final long epoch;
+        private final boolean probe;
+
+        private Permit(long epoch, boolean probe) {
+            this.epoch = epoch;
+            this.probe = probe;
+        }
+
+        /**
+         * 是否为半开状态下的探测请求
+         */
+        public boolean isProbe() {
+            return probe;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.chuang.urras.toolskit.third.apache.httpcomponents.resilience;
+
+import com.chuang.urras.toolskit.basic.FutureKit;
+import com.chuang.urras.toolskit.basic.util.ScheduleKit;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.Response;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.exception.CircuitOpenException;
+import org.apache.http.HttpStatus;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 请求容错：按host熔断、全局重试预算、指数退避 + 抖动、对冲请求。
+ * <ul>
+ *     <li>熔断：host失败率过高时直接以 {@link CircuitOpenException} 失败，不再排队等待超时</li>
+ *     <li>重试：只重试网络异常和 5xx；每次重试要从 {@link RetryBudget} 取令牌，等待时间见 {@link FutureKit#backoffDelay}</li>
+ *     <li>对冲：请求耗时超过该host最近耗时的指定分位数仍未返回时，再发一个相同的请求，先返回的为准，另一个被取消</li>
+ * </ul>
+ * 重试和对冲默认只用于幂等请求（GET、HEAD、PUT、DELETE、OPTIONS）。
+ * 每次发送都由 sender 重新构建请求，不会重复使用同一个 HttpRequestBase。
+ */
+public class HttpResilience {
+
+    private static final int LATENCY_SAMPLES = 256;
+    private static final int LATENCY_MIN_SAMPLES = 20;
+
+    private final RetryBudget budget;
+    private final int windowSize;
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final long openMillis;
+    private final int halfOpenProbes;
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final Map<String, LatencyTracker> latencies = new ConcurrentHashMap<>();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+
+    /**
+     * 默认：重试最多占请求量10%，最近20次中至少10次调用且失败率50%时熔断10秒
+     */
+    public HttpResilience() {
+        this(new RetryBudget(0.1, 10), 20, 10, 0.5, 10000, 1);
+    }
+
+    public HttpResilience(RetryBudget budget, int windowSize, int minCalls, double failureRateThreshold, long openMillis, int halfOpenProbes) {
+        this.budget = budget;
+        this.windowSize = windowSize;
+        this.minCalls = minCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = openMillis;
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    /**
+     * @param host 熔断和耗时统计的key
+     * @param idempotent 请求是否幂等
+     * @param sender 每次调用发送一个新的请求
+     */
+    public CompletableFuture<Response> execute(String host, boolean idempotent, RequestPolicy policy, Supplier<CompletableFuture<Response>> sender) {
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        attempt(host, idempotent, policy, sender, 0, result);
+        return result;
+    }
+
+    private void attempt(String host, boolean idempotent, RequestPolicy policy, Supplier<CompletableFuture<Response>> sender, int n, CompletableFuture<Response> result) {
+        CircuitBreaker breaker = policy.isCircuitBreaker() ? breaker(host) : null;
+        CircuitBreaker.Permit permit = null == breaker ? null : breaker.tryAcquire();
+        if (null != breaker && null == permit) {
+            result.completeExceptionally(new CircuitOpenException(host));
+            return;
+        }
+        if (n == 0) {
+            budget.deposit();
+        }
+
+        boolean retryable = idempotent || policy.isRetryNonIdempotent();
+        LatencyTracker tracker = latencies.computeIfAbsent(host, h -> new LatencyTracker(LATENCY_SAMPLES, LATENCY_MIN_SAMPLES));
+        // 半开时的探测请求不对冲，一个探测只发一个请求
+        boolean hedge = retryable && policy.getHedgePercentile() > 0 && (null == permit || !permit.isProbe());
+        Supplier<CompletableFuture<Response>> timed = () -> timed(tracker, sender);
+
+        CompletableFuture<Response> f;
+        try {
+            f = hedge ? hedged(tracker, policy.getHedgePercentile(), timed) : timed.get();
+        } catch (RuntimeException e) {
+            f = FutureKit.error(e);
+        }
+
+        f.whenComplete((response, e) -> {
+            boolean success = null == e && response.getStatusCode() < HttpStatus.SC_INTERNAL_SERVER_ERROR;
+            if (null != breaker) {
+                breaker.record(permit, success);
+            }
+
+            if (!success && retryable && n < policy.getMaxRetries() && !result.isDone()) {
+                if (budget.tryWithdraw()) {
+                    if (null != response) {
+                        response.close();
+                    }
+                    retries.increment();
+                    long delay = FutureKit.backoffDelay(n, policy.getBaseDelayMillis(), policy.getMaxDelayMillis());
+                    ScheduleKit.schedule(() -> attempt(host, idempotent, policy, sender, n + 1, result), (int) delay, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                budgetExhausted.increment();
+            }
+
+            if (null != e) {
+                result.completeExceptionally(e);
+            } else if (!result.complete(response)) {
+                response.close();
+            }
+        });
+    }
+
+    /**
+     * 发送一次请求并记录耗时。对冲时两个请求各自记录，较慢的那个也计入，否则分位数会越来越低，对冲越来越频繁
+     */
+    private static CompletableFuture<Response> timed(LatencyTracker tracker, Supplier<CompletableFuture<Response>> sender) {
+        long start = System.nanoTime();
+        CompletableFuture<Response> f = sender.get();
+        f.whenComplete((response, e) -> {
+            if (null == e) {
+                tracker.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        });
+        return f;
+    }
+
+    private CompletableFuture<Response> hedged(LatencyTracker tracker, double percentile, Supplier<CompletableFuture<Response>> sender) {
+        long threshold = tracker.percentile(percentile);
+        if (threshold < 0) {
+            return sender.get();
+        }
+
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        CompletableFuture<Response> first = sender.get();
+        race(first, result, pending);
+
+        ScheduleKit.schedule(() -> {
+            pending.incrementAndGet();
+            if (result.isDone()) {
+                pending.decrementAndGet();
+                return;
+            }
+            hedges.increment();
+            CompletableFuture<Response> second = sender.get();
+            race(second, result, pending);
+            result.whenComplete((r, e) -> {
+                first.cancel(true);
+                second.cancel(true);
+            });
+        }, (int) threshold, TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    /**
+     * 第一个成功的结果为准，全部失败时以最后一个异常结束
+     */
+    private static void race(CompletableFuture<Response> attempt, CompletableFuture<Response> result, AtomicInteger pending) {
+        attempt.whenComplete((response, e) -> {
+            int left = pending.decrementAndGet();
+            if (null == e) {
+                if (!result.complete(response)) {
+                    response.close();
+                }
+            } else if (left == 0) {
+                result.completeExceptionally(e);
+            }
+        });
+    }
+
+    public CircuitBreaker breaker(String host) {
+        return breakers.computeIfAbsent(host, h -> new CircuitBreaker(h, windowSize, minCalls, failureRateThreshold, openMillis, halfOpenProbes));
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    public long getBudgetExhausted() {
+        return budgetExhausted.sum();
+    }
+
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * 每个host的熔断状态以及全局的重试、对冲次数
+     */
+    public Map<String, String> metrics() {
+        Map<String, String> metrics = new TreeMap<>();
+        breakers.forEach((host, breaker) -> metrics.put(host, "state=" + breaker.getState()
+                + ", failureRate=" + String.format("%.2f", breaker.getFailureRate())
+                + ", transitions=" + breaker.getTransitions()
+                + ", rejected=" + breaker.getRejected()));
+        metrics.put("retries", String.valueOf(getRetries()));
+        metrics.put("hedges", String.valueOf(getHedges()));
+        metrics.put("retryBudget.tokens", String.format("%.1f", budget.getTokens()));
+        metrics.put("retryBudget.exhausted", String.valueOf(getBudgetExhausted()));
+        return metrics;
+    }
+}
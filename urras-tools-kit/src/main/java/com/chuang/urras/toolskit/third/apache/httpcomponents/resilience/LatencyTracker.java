@@ -0,0 +1,44 @@
+package com.chuang.urras.toolskit.third.apache.httpcomponents.resilience;
+
+import java.util.Arrays;
+
+/**
+ * 记录最近 capacity 个请求的耗时，用于计算对冲请求的触发时间
+ */
+public class LatencyTracker {
+
+    private final long[] samples;
+    private final int minSamples;
+    private int index;
+    private int size;
+
+    public LatencyTracker(int capacity, int minSamples) {
+        this.samples = new long[capacity];
+        this.minSamples = minSamples;
+    }
+
+    public synchronized void record(long millis) {
+        samples[index] = millis;
+        index = (index + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+    }
+
+    /**
+     * @param percentile 0 ~ 1，例如 0.95
+     * @return 样本不足时返回 -1
+     */
+    public long percentile(double percentile) {
+        long[] copy;
+        synchronized (this) {
+            if (size < minSamples) {
+                return -1;
+            }
+            copy = Arrays.copyOf(samples, size);
+        }
+        Arrays.sort(copy);
+        int idx = (int) Math.ceil(percentile * copy.length) - 1;
+        return copy[Math.max(0, Math.min(copy.length - 1, idx))];
+    }
+}
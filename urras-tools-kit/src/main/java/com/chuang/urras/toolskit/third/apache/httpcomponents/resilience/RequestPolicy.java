@@ -0,0 +1,55 @@
+package com.chuang.urras.toolskit.third.apache.httpcomponents.resilience;
+
+/**
+ * 单个请求的容错策略，由 Request.Builder 构建
+ */
+public class RequestPolicy {
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final double hedgePercentile;
+    private final boolean circuitBreaker;
+    private final boolean retryNonIdempotent;
+
+    /**
+     * @param maxRetries 最多重试次数
+     * @param baseDelayMillis 退避的基础时间，第n次重试等待 random(0, min(maxDelay, base * 2^n))
+     * @param maxDelayMillis 退避的最长时间
+     * @param hedgePercentile 请求耗时超过该分位数时发出对冲请求，小于等于0不对冲
+     * @param circuitBreaker 是否使用host熔断
+     * @param retryNonIdempotent POST等非幂等请求是否允许重试和对冲，支付类接口不要开启
+     */
+    public RequestPolicy(int maxRetries, long baseDelayMillis, long maxDelayMillis, double hedgePercentile, boolean circuitBreaker, boolean retryNonIdempotent) {
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.hedgePercentile = hedgePercentile;
+        this.circuitBreaker = circuitBreaker;
+        this.retryNonIdempotent = retryNonIdempotent;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public boolean isCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public boolean isRetryNonIdempotent() {
+        return retryNonIdempotent;
+    }
+}
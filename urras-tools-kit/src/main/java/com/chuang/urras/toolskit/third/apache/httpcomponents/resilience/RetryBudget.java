@@ -0,0 +1,39 @@
+package com.chuang.urras.toolskit.third.apache.httpcomponents.resilience;
+
+/**
+ * 全局重试预算（令牌桶）。
+ * 每个首次请求存入 ratio 个令牌，每次重试取出一个，令牌不足时不再重试。
+ * 这样重试带来的额外请求最多是正常请求的 ratio 倍，网关变慢时不会被重试放大压力。
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final double maxTokens;
+    private double tokens;
+
+    /**
+     * @param ratio 每个请求存入的令牌数，例如 0.1 表示重试最多占请求量的 10%
+     * @param maxTokens 令牌上限，同时也是初始令牌数
+     */
+    public RetryBudget(double ratio, double maxTokens) {
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+    }
+
+    public synchronized void deposit() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    public synchronized boolean tryWithdraw() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    public synchronized double getTokens() {
+        return tokens;
+    }
+}
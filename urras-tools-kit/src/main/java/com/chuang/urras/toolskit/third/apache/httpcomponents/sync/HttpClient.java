@@ -1,27 +1,24 @@
 package com.chuang.urras.toolskit.third.apache.httpcomponents.sync;
 
+import com.chuang.urras.toolskit.third.apache.httpcomponents.FormEncoder;
 import com.chuang.urras.toolskit.third.apache.httpcomponents.HttpTools;
 import com.chuang.urras.toolskit.third.apache.httpcomponents.Response;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpHost;
-import org.apache.http.NameValuePair;
 import org.apache.http.annotation.Contract;
 import org.apache.http.annotation.ThreadingBehavior;
 import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.*;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.URI;
-import java.util.ArrayList;
 import java.util.Map;
 
 //import org.apache.http.annotation.ThreadSafe;
@@ -125,18 +122,7 @@ public class HttpClient {
      */
     public Response exec(HttpRequestBase request, Map<String, String> params, Map<String, String> heads, String charset, HttpHost proxy, int connTimeout, int readTimeout) throws IOException {
 
-        UrlEncodedFormEntity requestEntity = null;
-        if (params != null && !params.isEmpty()) {
-            ArrayList<NameValuePair> pairs = new ArrayList<>(params.size());
-            for (Map.Entry<String, String> entry : params.entrySet()) {
-                String value = entry.getValue();
-                value = (value == null ? "": value);
-                pairs.add(new BasicNameValuePair(entry.getKey(), value));
-
-            }
-            requestEntity = new UrlEncodedFormEntity(pairs, charset);
-
-        }
+        HttpEntity requestEntity = FormEncoder.entity(params, charset);
         return exec(request, requestEntity, heads, charset, proxy,connTimeout, readTimeout);
     }
 
@@ -28,6 +28,22 @@ public class SyncBuilder extends ConfigBuilderProxy<SyncBuilder, HttpClient> {
         clientBuilder = HttpClientBuilder.create();
     }
 
+    /**
+     * 连接池的最大连接数，默认20
+     */
+    public SyncBuilder totalConnectPoolMax(int totalConnectPoolMax) {
+        clientBuilder.setMaxConnTotal(totalConnectPoolMax);
+        return this;
+    }
+
+    /**
+     * 每个host的最大连接数，默认2
+     */
+    public SyncBuilder maxConnectEachHost(int maxConnectEachHost) {
+        clientBuilder.setMaxConnPerRoute(maxConnectEachHost);
+        return this;
+    }
+
     @Override
     public HttpClient build(KeyManager[] keymanagers,
                             TrustManager[] trustmanagers,
@@ -0,0 +1,124 @@
+package com.chuang.urras.toolskit.third.spring.rest;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.chuang.urras.toolskit.basic.util.ScheduleKit;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.HttpMethod;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.Request;
+import com.chuang.urras.toolskit.third.spring.rest.annotation.Batchable;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 收集 {@link Batchable} 方法的调用，在时间窗口结束或达到 maxSize 时合并为一个批量请求发送，再把结果按顺序分给每个调用者
+ */
+class BatchCollector {
+
+    private final String url;
+    private final int maxSize;
+    private final int windowMillis;
+    private final Type resultType;
+    /**
+     * 发送批量请求，参数为JSON数组格式的请求体
+     */
+    private final Function<String, CompletableFuture<JSONArray>> sender;
+
+    //@GuardedBy("this")
+    private List<Call> pending = new ArrayList<>();
+
+    BatchCollector(String url, Batchable batchable, Type resultType) {
+        this(url, batchable, resultType, body -> new Request(url, HttpMethod.POST, null, null,
+                new StringEntity(body, ContentType.APPLICATION_JSON), null, "UTF-8", -1, -1)
+                .asyncExecuteAsJson(JSONArray.class));
+    }
+
+    BatchCollector(String url, Batchable batchable, Type resultType, Function<String, CompletableFuture<JSONArray>> sender) {
+        this.url = url;
+        this.maxSize = Math.max(1, batchable.maxSize());
+        this.windowMillis = Math.max(0, batchable.windowMillis());
+        this.resultType = resultType;
+        this.sender = sender;
+    }
+
+    CompletableFuture<Object> submit(Map<String, String> params) {
+        Call call = new Call(params);
+        List<Call> full = null;
+        boolean first;
+        synchronized (this) {
+            pending.add(call);
+            first = pending.size() == 1;
+            if (pending.size() >= maxSize) {
+                full = pending;
+                pending = new ArrayList<>(maxSize);
+            }
+        }
+        if (null != full) {
+            send(full);
+        } else if (first) {
+            ScheduleKit.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+        }
+        return call.future;
+    }
+
+    private void flush() {
+        List<Call> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<>(maxSize);
+        }
+        send(batch);
+    }
+
+    private void send(List<Call> batch) {
+        List<Map<String, String>> body = new ArrayList<>(batch.size());
+        for (Call call : batch) {
+            body.add(call.params);
+        }
+
+        CompletableFuture<JSONArray> future;
+        try {
+            future = sender.apply(JSON.toJSONString(body));
+        } catch (RuntimeException e) {
+            batch.forEach(call -> call.future.completeExceptionally(e));
+            return;
+        }
+
+        future.whenComplete((results, e) -> {
+            for (int i = 0; i < batch.size(); i++) {
+                CompletableFuture<Object> f = batch.get(i).future;
+                if (null != e) {
+                    f.completeExceptionally(e);
+                } else if (null == results || i >= results.size()) {
+                    f.completeExceptionally(new IllegalStateException("批量接口 " + url + " 返回 "
+                            + (null == results ? 0 : results.size()) + " 个结果，请求 " + batch.size() + " 个"));
+                } else {
+                    try {
+                        f.complete(results.getObject(i, resultType));
+                    } catch (RuntimeException ex) {
+                        f.completeExceptionally(ex);
+                    }
+                }
+            }
+        });
+    }
+
+    private static class Call {
+        private final Map<String, String> params;
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        Call(Map<String, String> params) {
+            this.params = params;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.chuang.urras.toolskit.third.spring.rest;
+
+import com.chuang.urras.toolskit.third.apache.httpcomponents.HttpMethod;
+import com.chuang.urras.toolskit.third.apache.httpcomponents.Request;
+import com.chuang.urras.toolskit.third.spring.rest.annotation.Batchable;
+import com.chuang.urras.toolskit.third.spring.rest.annotation.Mapping;
+import com.chuang.urras.toolskit.third.spring.rest.annotation.RestRemoteApi;
+
+import java.lang.reflect.*;
+import java.net.URLEncoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * 远程接口方法的调用计划。
+ * 在创建代理时为每个方法解析一次注解、参数名、参数编码方式和返回值类型，调用时只需要填参数、发请求。
+ */
+class InvocationPlan {
+
+    private static final String CHARSET = "UTF-8";
+
+    private final String url;
+    private final HttpMethod method;
+    private final String[] names;
+    private final Function<Object, String>[] encoders;
+    private final Type resultType;
+    private final boolean async;
+    /**
+     * {@link Batchable} 方法的调用收集器，普通方法为 null
+     */
+    private final BatchCollector batcher;
+
+    @SuppressWarnings("unchecked")
+    private InvocationPlan(String url, HttpMethod method, Parameter[] parameters, Type resultType, boolean async, BatchCollector batcher) {
+        this.url = url;
+        this.batcher = batcher;
+        this.method = method;
+        this.resultType = resultType;
+        this.async = async;
+        this.names = new String[parameters.length];
+        this.encoders = new Function[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            names[i] = parameters[i].getName();
+            encoders[i] = encoder(parameters[i].getType());
+        }
+    }
+
+    /**
+     * @return 方法没有 {@link Mapping} 和 {@link Batchable} 注解时返回 null
+     */
+    static InvocationPlan compile(Class<?> remoteApiClass, Method method) {
+        Mapping mapping = method.getAnnotation(Mapping.class);
+        Batchable batchable = method.getAnnotation(Batchable.class);
+        if (null == mapping && null == batchable) {
+            return null;
+        }
+        RestRemoteApi restRemoteApi = remoteApiClass.getAnnotation(RestRemoteApi.class);
+        String domain = null == restRemoteApi ? "" : restRemoteApi.domain();
+        boolean async = CompletableFuture.class.isAssignableFrom(method.getReturnType());
+        Type resultType = resultType(method, async);
+        BatchCollector batcher = null == batchable ? null : new BatchCollector(domain + batchable.value(), batchable, resultType);
+        return new InvocationPlan(null == mapping ? null : encodeQuery(domain + mapping.value()),
+                null == mapping ? HttpMethod.POST : mapping.method(),
+                method.getParameters(), resultType, async, batcher);
+    }
+
+    /**
+     * @param args 方法没有参数时为 null
+     */
+    Object invoke(Object[] args) {
+        Map<String, String> params = new LinkedHashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            if (null != args[i]) {
+                params.put(names[i], encoders[i].apply(args[i]));
+            }
+        }
+
+        CompletableFuture<Object> future = null != batcher
+                ? batcher.submit(params)
+                : new Request(url, method, null, params, null, null, CHARSET, -1, -1).asyncExecuteAsJson(resultType);
+        return async ? future : future.join();
+    }
+
+    /**
+     * 返回值为 CompletableFuture&lt;T&gt; 时解析为 T，CompletableFuture&lt;? extends T&gt; 取上界
+     */
+    private static Type resultType(Method method, boolean async) {
+        Type type = method.getGenericReturnType();
+        if (!async) {
+            return type;
+        }
+        if (!(type instanceof ParameterizedType)) {
+            return Object.class;
+        }
+        Type actual = ((ParameterizedType) type).getActualTypeArguments()[0];
+        if (actual instanceof WildcardType) {
+            return ((WildcardType) actual).getUpperBounds()[0];
+        }
+        if (actual instanceof TypeVariable) {
+            return ((TypeVariable<?>) actual).getBounds()[0];
+        }
+        return actual;
+    }
+
+    private static Function<Object, String> encoder(Class<?> type) {
+        if (type == String.class) {
+            return String.class::cast;
+        }
+        if (type.isEnum()) {
+            return arg -> ((Enum<?>) arg).name();
+        }
+        return Object::toString;
+    }
+
+    /**
+     * 与 {@link Request.Builder#url(String)} 相同的处理，只在编译时做一次
+     */
+    private static String encodeQuery(String url) {
+        if (url.contains("?")) {
+            String[] uri = url.split("\\?");
+            try {
+                url = uri[0] + "?" + URLEncoder.encode(uri[1], CHARSET);
+            } catch (Exception ignore) { }
+        }
+        return url;
+    }
+}
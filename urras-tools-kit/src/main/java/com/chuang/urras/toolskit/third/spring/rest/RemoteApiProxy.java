@@ -1,18 +1,14 @@
 package com.chuang.urras.toolskit.third.spring.rest;
 
 
-import com.alibaba.fastjson.JSONObject;
-import com.chuang.urras.toolskit.third.apache.httpcomponents.Request;
 import com.chuang.urras.toolskit.third.spring.rest.annotation.Mapping;
-import com.chuang.urras.toolskit.third.spring.rest.annotation.RestRemoteApi;
 
 import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 
 public class RemoteApiProxy implements InvocationHandler, Serializable {
 
@@ -20,44 +16,54 @@ public class RemoteApiProxy implements InvocationHandler, Serializable {
 
     private final Class<?> remoteApiClass;
 
+    /**
+     * 创建代理时编译好的调用计划，创建后只读
+     */
+    private final transient Map<Method, InvocationPlan> plans;
+
     public RemoteApiProxy(Class remoteApiClass) {
         this.remoteApiClass = remoteApiClass;
+        this.plans = compile(remoteApiClass);
     }
 
-    @Override
-    public Object invoke(Object proxy, Method method, Object[] args) {
-        RestRemoteApi restRemoteApi = remoteApiClass.getAnnotation(RestRemoteApi.class);
-        Mapping mapping = method.getAnnotation(Mapping.class);
-
-        CompletableFuture<Object> obj = Request.newBuilder()
-                .url(restRemoteApi.domain() + mapping.value())
-                .method(mapping.method())
-                .parameter(toMap(method, args))
-                .build()
-                .asyncExecuteAsString()
-                .thenApply(s -> {
-                    Class clazz = method.getReturnType();
-                    if(clazz == CompletableFuture.class) {
-                        clazz = clazz.getComponentType();
-                    }
-                    return JSONObject.parseObject(s, clazz);
-                });
-
-        if (method.getReturnType() == CompletableFuture.class) {
-            return obj;
-        } else {
-            return obj.join();
+    private static Map<Method, InvocationPlan> compile(Class<?> remoteApiClass) {
+        Map<Method, InvocationPlan> plans = new HashMap<>();
+        for (Method method : remoteApiClass.getMethods()) {
+            InvocationPlan plan = InvocationPlan.compile(remoteApiClass, method);
+            if (null != plan) {
+                plans.put(method, plan);
+            }
         }
+        return Collections.unmodifiableMap(plans);
     }
 
-    private Map<String, String> toMap(Method method, Object[] args) {
-        Parameter[] parameters = method.getParameters();
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        InvocationPlan plan = plans.get(method);
+        if (null != plan) {
+            return plan.invoke(args);
+        }
 
-        Map<String, String> params = new HashMap<>();
-        for(int i = 0; i < parameters.length; i++) {
-            params.put(parameters[i].getName(), args[i].toString());
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "RemoteApiProxy(" + remoteApiClass.getName() + ")";
+                default:
+                    break;
+            }
         }
-        return params;
+        throw new UnsupportedOperationException(remoteApiClass.getName() + "." + method.getName() + " 缺少 @" + Mapping.class.getSimpleName());
+    }
+
+    /**
+     * 反序列化后重新编译调用计划
+     */
+    private Object readResolve() {
+        return new RemoteApiProxy(remoteApiClass);
     }
 
 }
@@ -0,0 +1,30 @@
+package com.chuang.urras.toolskit.third.spring.rest.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 批量调用。
+ * 短时间内对该方法的并发调用会合并为一个批量请求：POST {@link RestRemoteApi#domain()} + value，
+ * 请求体为JSON数组，每个元素是一次调用的参数；响应体必须是顺序相同的JSON数组，第i个元素是第i次调用的结果。
+ * 可以和 {@link Mapping} 一起使用，此时 {@link Mapping} 只作为说明，实际都走批量接口。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@Documented
+public @interface Batchable {
+
+    /**
+     * 批量接口的路径
+     */
+    String value();
+
+    /**
+     * 一批最多的调用数，达到后立即发送
+     */
+    int maxSize() default 50;
+
+    /**
+     * 第一个调用到达后最多等待的毫秒数
+     */
+    int windowMillis() default 10;
+}
@@ -0,0 +1,61 @@
+package com.chuang.urras.toolskit.third.apache.httpcomponents;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class RequestCoalescerTest {
+
+    private static final String URL = "http://127.0.0.1/order/query";
+
+    private static Request get(Map<String, String> heads, Map<String, String> params) {
+        return new Request(URL, HttpMethod.GET, heads, params, null, null, "UTF-8", 1000, 1000);
+    }
+
+    private static Map<String, String> map(String... kv) {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (int i = 0; i < kv.length; i += 2) {
+            map.put(kv[i], kv[i + 1]);
+        }
+        return map;
+    }
+
+    @Test
+    public void differentHeadersAreNotCoalescedByDefault() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        String a = coalescer.key(get(map("X-Sign", "a"), map("orderNo", "1")));
+        String b = coalescer.key(get(map("X-Sign", "b"), map("orderNo", "1")));
+        assertNotNull(a);
+        assertNotEquals(a, b);
+    }
+
+    @Test
+    public void headerOrderAndCaseDoNotChangeKey() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        String a = coalescer.key(get(map("Accept", "json", "X-Token", "t"), map("a", "1", "b", "2")));
+        String b = coalescer.key(get(map("x-token", "t", "accept", "json"), map("b", "2", "a", "1")));
+        assertEquals(a, b);
+    }
+
+    @Test
+    public void differentParamsAreNotCoalesced() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        assertNotEquals(coalescer.key(get(new HashMap<>(), map("orderNo", "1"))),
+                coalescer.key(get(new HashMap<>(), map("orderNo", "2"))));
+    }
+
+    @Test
+    public void headersOutsideAllowListBypassCoalescing() {
+        RequestCoalescer coalescer = new RequestCoalescer(Arrays.asList("Accept", "Authorization"), 0, 0);
+        assertNotNull(coalescer.key(get(map("accept", "json", "Authorization", "x"), map())));
+        assertNull(coalescer.key(get(map("Accept", "json", "X-Sign", "s"), map())));
+    }
+}
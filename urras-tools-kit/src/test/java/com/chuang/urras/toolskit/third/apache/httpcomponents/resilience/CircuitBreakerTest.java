@@ -0,0 +1,90 @@
+package com.chuang.urras.toolskit.third.apache.httpcomponents.resilience;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    /**
+     * 窗口4次，至少4次调用，失败率50%打开；openMillis 为0时打开后下一次 tryAcquire 立即进入半开
+     */
+    private static CircuitBreaker breaker(long openMillis) {
+        return new CircuitBreaker("test", 4, 4, 0.5, openMillis, 1);
+    }
+
+    private static void fail(CircuitBreaker breaker, int times) {
+        for (int i = 0; i < times; i++) {
+            breaker.record(breaker.tryAcquire(), false);
+        }
+    }
+
+    @Test
+    public void opensWhenFailureRateReached() {
+        CircuitBreaker breaker = breaker(60000);
+        breaker.record(breaker.tryAcquire(), true);
+        breaker.record(breaker.tryAcquire(), true);
+        fail(breaker, 1);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        fail(breaker, 1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire());
+        assertEquals(1, breaker.getRejected());
+    }
+
+    @Test
+    public void staysClosedBelowMinCalls() {
+        CircuitBreaker breaker = breaker(60000);
+        fail(breaker, 3);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void halfOpenAllowsOnlyConfiguredProbes() {
+        CircuitBreaker breaker = breaker(0);
+        fail(breaker, 4);
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+        assertNotNull(probe);
+        assertTrue(probe.isProbe());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire());
+    }
+
+    @Test
+    public void probeSuccessCloses() {
+        CircuitBreaker breaker = breaker(0);
+        fail(breaker, 4);
+        breaker.record(breaker.tryAcquire(), true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getFailureRate(), 0);
+    }
+
+    @Test
+    public void probeFailureReopens() {
+        CircuitBreaker breaker = breaker(0);
+        fail(breaker, 4);
+        breaker.record(breaker.tryAcquire(), false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void lateResultFromClosedStateDoesNotDecideHalfOpen() {
+        CircuitBreaker breaker = breaker(0);
+        CircuitBreaker.Permit slow = breaker.tryAcquire();
+        assertFalse(slow.isProbe());
+        fail(breaker, 4);
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // 打开之前发出的慢请求在半开期间返回，不能关闭熔断器
+        breaker.record(slow, true);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.record(probe, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
@@ -0,0 +1,121 @@
+package com.chuang.urras.toolskit.third.spring.rest;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.chuang.urras.toolskit.third.spring.rest.annotation.Batchable;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchCollectorTest {
+
+    interface Api {
+        @Batchable(value = "/batch", maxSize = 3, windowMillis = 200)
+        String get();
+    }
+
+    private static Batchable batchable() throws NoSuchMethodException {
+        return Api.class.getMethod("get").getAnnotation(Batchable.class);
+    }
+
+    /**
+     * 记录每次批量请求的请求体，返回每个元素的 id
+     */
+    private static class Echo {
+        final List<JSONArray> requests = Collections.synchronizedList(new ArrayList<>());
+        int drop;
+
+        CompletableFuture<JSONArray> send(String body) {
+            JSONArray request = JSON.parseArray(body);
+            requests.add(request);
+            JSONArray response = new JSONArray();
+            for (int i = 0; i < request.size() - drop; i++) {
+                response.add(request.getJSONObject(i).getString("id"));
+            }
+            return CompletableFuture.completedFuture(response);
+        }
+    }
+
+    private static CompletableFuture<Object> submit(BatchCollector collector, String id) {
+        return collector.submit(Collections.singletonMap("id", id));
+    }
+
+    @Test
+    public void fullBatchIsSentImmediately() throws Exception {
+        Echo echo = new Echo();
+        BatchCollector collector = new BatchCollector("http://127.0.0.1/batch", batchable(), String.class, echo::send);
+        CompletableFuture<Object> a = submit(collector, "a");
+        CompletableFuture<Object> b = submit(collector, "b");
+        CompletableFuture<Object> c = submit(collector, "c");
+
+        // 达到 maxSize 时在调用线程中发送，不等时间窗口
+        assertEquals(1, echo.requests.size());
+        assertEquals(3, echo.requests.get(0).size());
+        assertEquals("a", a.get());
+        assertEquals("b", b.get());
+        assertEquals("c", c.get());
+    }
+
+    @Test
+    public void partialBatchIsSentAfterWindow() throws Exception {
+        Echo echo = new Echo();
+        BatchCollector collector = new BatchCollector("http://127.0.0.1/batch", batchable(), String.class, echo::send);
+        CompletableFuture<Object> a = submit(collector, "a");
+        CompletableFuture<Object> b = submit(collector, "b");
+        assertTrue(echo.requests.isEmpty());
+
+        assertEquals("a", a.get(5, TimeUnit.SECONDS));
+        assertEquals("b", b.get(5, TimeUnit.SECONDS));
+        assertEquals(1, echo.requests.size());
+    }
+
+    @Test
+    public void missingResultsFailOnlyTheirCallers() throws Exception {
+        Echo echo = new Echo();
+        echo.drop = 1;
+        BatchCollector collector = new BatchCollector("http://127.0.0.1/batch", batchable(), String.class, echo::send);
+        CompletableFuture<Object> a = submit(collector, "a");
+        CompletableFuture<Object> b = submit(collector, "b");
+        CompletableFuture<Object> c = submit(collector, "c");
+
+        assertEquals("a", a.get());
+        assertEquals("b", b.get());
+        try {
+            c.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void failedRequestFailsEveryCaller() throws Exception {
+        IllegalStateException error = new IllegalStateException("down");
+        BatchCollector collector = new BatchCollector("http://127.0.0.1/batch", batchable(), String.class, body -> {
+            CompletableFuture<JSONArray> f = new CompletableFuture<>();
+            f.completeExceptionally(error);
+            return f;
+        });
+        List<CompletableFuture<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(submit(collector, String.valueOf(i)));
+        }
+        for (CompletableFuture<Object> f : futures) {
+            try {
+                f.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertEquals(error, e.getCause());
+            }
+        }
+    }
+}
@@ -16,7 +16,9 @@ import org.apache.shiro.authc.credential.HashedCredentialsMatcher;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.*;
+import org.springframework.core.task.TaskDecorator;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.servlet.LocaleResolver;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
@@ -24,12 +26,13 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import org.springframework.web.servlet.i18n.LocaleChangeInterceptor;
 import org.springframework.web.servlet.i18n.SessionLocaleResolver;
 
+import javax.servlet.DispatcherType;
 import java.util.ArrayList;
 import java.util.List;
 
 @Configuration
 @ComponentScan("com.chuang.urras.web.office")
-@Import({ShiroAutoConfiguration.class, OperatorInterceptor.class})
+@Import({ShiroAutoConfiguration.class})
 @MapperScan(
         basePackages= {"com.chuang.urras.web.office"},
         markerInterface = BaseMapper.class
@@ -56,6 +59,26 @@ public class OfficeAutoConfigurer implements WebMvcConfigurer {
         return new ThreadLocalValueGetter<>();
     }
 
+    /**
+     * 操作人过滤器，排在shiro过滤器(order 0)之后
+     */
+    @Bean
+    public FilterRegistrationBean<OperatorFilter> operatorFilterRegistration(@Qualifier("operatorGetter") ValueGetter<String> operatorGetter) {
+        FilterRegistrationBean<OperatorFilter> registration = new FilterRegistrationBean<>(new OperatorFilter(operatorGetter));
+        registration.setDispatcherTypes(DispatcherType.REQUEST);
+        registration.setOrder(1);
+        return registration;
+    }
+
+    /**
+     * 异步任务使用提交任务线程的操作人，spring boot 的 task executor 和 {@code @EnableAsyncTaskPool} 都会使用它
+     */
+    @Bean("operatorTaskDecorator")
+    @ConditionalOnMissingBean
+    public TaskDecorator operatorTaskDecorator(@Qualifier("operatorGetter") ValueGetter<String> operatorGetter) {
+        return operatorGetter::wrap;
+    }
+
     @Bean
     @ConditionalOnMissingBean
     public MetaObjectHandler autoTimeHandler(@Qualifier("operatorGetter") ValueGetter<String> operatorGetter) {
@@ -0,0 +1,59 @@
+package com.chuang.urras.web.office.configuration;
+
+import com.chuang.urras.crud.handlers.ValueGetter;
+import com.chuang.urras.toolskit.basic.StringKit;
+import com.chuang.urras.web.office.SessionKeys;
+import com.chuang.urras.web.office.model.User;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.session.Session;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 操作人过滤器，每个请求只解析一次操作人，请求结束后清理。
+ * 必须排在shiro过滤器之后，这时subject已经绑定到当前线程，session也已经被 MyShiroSessionManager 缓存在request中，
+ * 这里获取session不会再访问redis。没有session的请求不会创建session。
+ * 未登录时从参数或header中的 operator 获取操作人。
+ */
+public class OperatorFilter extends OncePerRequestFilter {
+
+    private final ValueGetter<String> operatorGetter;
+
+    public OperatorFilter(ValueGetter<String> operatorGetter) {
+        this.operatorGetter = operatorGetter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String operator = resolve(request);
+        if (null != operator) {
+            operatorGetter.set(operator);
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            operatorGetter.release();
+        }
+    }
+
+    private String resolve(HttpServletRequest request) {
+        Session session = SecurityUtils.getSubject().getSession(false);
+        if (null != session) {
+            User user = (User) session.getAttribute(SessionKeys.LOGIN_USER);
+            if (null != user) {
+                return user.getUsername();
+            }
+        }
+        String operator = request.getParameter("operator");
+        if (null == operator) {
+            operator = request.getHeader("operator");
+        }
+        return StringKit.isNotEmpty(operator) ? operator : null;
+    }
+}
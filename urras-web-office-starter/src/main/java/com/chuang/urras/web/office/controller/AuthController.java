@@ -17,6 +17,8 @@ import com.chuang.urras.web.office.service.single.IRoleService;
 import com.chuang.urras.web.office.service.single.IRunAsService;
 import com.chuang.urras.web.office.service.single.IUserService;
 import com.chuang.urras.web.office.shiro.WebUsernameAndPwdToken;
+import com.chuang.urras.web.shiro.credential.CredentialHasher;
+import com.chuang.urras.web.shiro.properties.LoginThrottleProperties;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiImplicitParam;
 import io.swagger.annotations.ApiImplicitParams;
@@ -29,12 +31,16 @@ import org.apache.shiro.authz.annotation.RequiresPermissions;
 import org.apache.shiro.subject.Subject;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 import static java.util.stream.Collectors.*;
@@ -49,6 +55,8 @@ public class AuthController extends BaseController {
     @javax.annotation.Resource private IRoleService roleService;
     @javax.annotation.Resource private UserAuthPolymerService userAuthPolymerService;
     @javax.annotation.Resource @Qualifier("operatorGetter") private ValueGetter<String> operatorGetter;
+    @javax.annotation.Resource private CredentialHasher credentialHasher;
+    @javax.annotation.Resource private LoginThrottleProperties loginThrottleProperties;
 
 
 
@@ -63,32 +71,38 @@ public class AuthController extends BaseController {
             @ApiImplicitParam(name = "password", value = "密码", required = true, dataTypeClass = String.class),
             @ApiImplicitParam(name = "captcha", value = "验证码", required = true, dataTypeClass = String.class)
     })
-    public Result login(HttpServletRequest request,
-                        HttpServletResponse response,
+    public CompletableFuture<ResponseEntity<Result>> login(HttpServletRequest request,
                         String username,
                         String password,
                         String captcha,
                         @RequestHeader(name = HttpHeaders.USER_AGENT, required = false) String ua,
                         @RequestHeader(name = HttpHeaders.REFERER, required = false) String referer) {
         try {
-
             verifyCaptcha(captcha, true);
+        } catch (AuthenticationException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.ok(Result.fail(e.getMessage())));
+        }
 
-            operatorGetter.set(username);
-            //获取登录相关信息
-            if (StringKit.isNotEmpty(referer)) {
-                referer = request.getRequestURL().toString();
-            }
-
-            UsernamePasswordToken token =
-                    new WebUsernameAndPwdToken(username, password, HttpKit.getIpAddress(request), ua, referer);
-            SecurityUtils.getSubject().login(
-                    token);
+        //获取登录相关信息
+        if (StringKit.isNotEmpty(referer)) {
+            referer = request.getRequestURL().toString();
+        }
+        // 只有经过可信代理时才使用请求头中的IP，否则请求头可以伪造，用来绕过IP限流
+        String ip = loginThrottleProperties.getTrustedProxies().contains(request.getRemoteAddr())
+                ? HttpKit.getIpAddress(request) : request.getRemoteAddr();
+        UsernamePasswordToken token = new WebUsernameAndPwdToken(username, password, ip, ua, referer);
+
+        // 密码的迭代散列比较耗CPU，登录过程交给散列线程池执行，tomcat线程直接返回，登录完成后异步响应
+        // 散列线程不经过 OperatorFilter，这里临时设置操作人，执行完后恢复
+        // 散列线程中不能操作 response（请求可能已经异步分派），响应状态通过 ResponseEntity 返回
+        Subject subject = SecurityUtils.getSubject();
+        return credentialHasher.submit(subject.associateWith(() -> operatorGetter.temp(username, () -> {
+            subject.login(token);
 
             User entity = userService.findByUsername(username)
                     .orElseThrow(() -> new SystemWarnException(Result.FAIL_CODE, "用户不存在"));
 
-            entity.setLastLoginIp(HttpKit.getIpAddress(request));
+            entity.setLastLoginIp(ip);
             entity.setLastLoginTime(LocalDateTime.now());
             userService.updateById(entity);
             getSession().setAttribute(SessionKeys.LOGIN_USER, entity);
@@ -98,17 +112,20 @@ public class AuthController extends BaseController {
 //            if (entity.getUsername().equalsIgnoreCase("admin")) {
 //                simpMessagingTemplate.convertAndSend("/topic/notify", new Result(true, "notify.admin_login"));
 //            }
-            return Result.success();
-        } catch(IncorrectCredentialsException e) {
-            return Result.fail("密码错误");
-        } catch(AuthenticationException e) {
-            return Result.fail(e.getMessage());
-        } catch (Exception e) {
+            return ResponseEntity.ok((Result) Result.success());
+        }))).exceptionally(throwable -> {
+            Throwable e = throwable instanceof CompletionException && null != throwable.getCause() ? throwable.getCause() : throwable;
+            if (e instanceof IncorrectCredentialsException) {
+                return ResponseEntity.ok(Result.fail("密码错误"));
+            } else if (e instanceof AuthenticationException) {
+                return ResponseEntity.ok(Result.fail(e.getMessage()));
+            } else if (e instanceof RejectedExecutionException) {
+                return ResponseEntity.ok(Result.fail("登录繁忙,请稍后再试"));
+            }
             //其他异常一律直接通知 前台登录错误
-            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             logger.error(e.getMessage());
-            return Result.fail("登陆失败,系统异常");
-        }
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Result.fail("登陆失败,系统异常"));
+        });
     }
 
     @GetMapping("/tree/all")
@@ -11,6 +11,7 @@ import com.chuang.urras.web.office.model.UserPrincipal;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public interface UserAuthPolymerService {
     /**
@@ -38,6 +39,11 @@ public interface UserAuthPolymerService {
 
     boolean changePasswordWithCheck(String username, String oldPwd, String newPwd);
 
+    /**
+     * 按当前迭代次数重新散列密码，在散列线程池中异步执行，用于登录成功后升级旧密码
+     */
+    CompletableFuture<Boolean> rehashPassword(String username, String password);
+
 
     /**
      * 获取用户权限菜单树
@@ -11,12 +11,16 @@ import com.chuang.urras.toolskit.basic.tree.Node;
 import com.chuang.urras.toolskit.basic.tree.NodeBuilder;
 import com.chuang.urras.web.office.model.*;
 import com.chuang.urras.web.office.service.single.*;
+import com.chuang.urras.web.shiro.credential.CredentialHasher;
+import com.chuang.urras.web.shiro.credential.StoredCredential;
 import com.chuang.urras.web.shiro.properties.HashedCredentialProperties;
+import com.chuang.urras.web.shiro.throttle.UnknownUserCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Service("userAuthPolymerService")
@@ -32,12 +36,18 @@ public class UserAuthPolymerServiceImpl implements UserAuthPolymerService {
 
     private final HashedCredentialProperties hashedCredentialProperties;
 
+    private final CredentialHasher credentialHasher;
+
+    private final UnknownUserCache unknownUserCache;
+
     private final IUserPrincipalService userPrincipalService;
 
     private final IUserPrincipalResourceService userPrincipalResourceService;
 
     @Autowired
     public UserAuthPolymerServiceImpl(HashedCredentialProperties hashedCredentialProperties,
+                                      CredentialHasher credentialHasher,
+                                      UnknownUserCache unknownUserCache,
                                       IUserService userService,
                                       IRoleService roleService,
                                       IResourceService resourceService,
@@ -45,6 +55,8 @@ public class UserAuthPolymerServiceImpl implements UserAuthPolymerService {
                                       IUserPrincipalService userPrincipalService,
                                       IUserPrincipalResourceService userPrincipalResourceService) {
         this.hashedCredentialProperties = hashedCredentialProperties;
+        this.credentialHasher = credentialHasher;
+        this.unknownUserCache = unknownUserCache;
         this.userService = userService;
         this.roleService = roleService;
         this.resourceService = resourceService;
@@ -58,30 +70,27 @@ public class UserAuthPolymerServiceImpl implements UserAuthPolymerService {
         Optional<User> optional = userService.findByUsername(username);
 
         User entity = optional.orElseThrow(() -> new SystemWarnException(Result.FAIL_CODE, "用户不存在"));
-        byte [] salt = HashKit.genSalt(hashedCredentialProperties.getSaltLen());
-        String newPwdHash = HashKit.encodeHex(hashedCredentialProperties.getAlgorithm(), newPwd.getBytes(), salt, hashedCredentialProperties.getIterations());
-
-        entity.setSalt(HexKit.encodeHexStr(salt));
-        entity.setPassword(newPwdHash);
+        encodePassword(entity, newPwd);
         return userService.updateById(entity);
     }
 
+    @Override
+    public CompletableFuture<Boolean> rehashPassword(String username, String password) {
+        return credentialHasher.submit(() -> changePassword(username, password));
+    }
+
     @Override
     public boolean changePasswordWithCheck(String username, String oldPwd, String newPwd) {
         Optional<User> optional = userService.findByUsername(username);
 
         User entity = optional.orElseThrow(() -> new SystemWarnException(Result.FAIL_CODE, "用户不存在"));
 
-        String oldPwdHash = HashKit.encodeHex(hashedCredentialProperties.getAlgorithm(), oldPwd.getBytes(), HexKit.decodeHex(entity.getSalt().toCharArray()), hashedCredentialProperties.getIterations());
-        if(!oldPwdHash.equalsIgnoreCase(entity.getPassword())) {
+        StoredCredential stored = StoredCredential.parse(entity.getPassword(), hashedCredentialProperties.getIterations());
+        if(!credentialHasher.matches(oldPwd.getBytes(), HexKit.decodeHex(entity.getSalt().toCharArray()), stored)) {
             throw new SystemWarnException(Result.FAIL_CODE, "原密码错误");
         }
 
-        byte [] salt = HashKit.genSalt(hashedCredentialProperties.getSaltLen());
-        String newPwdHash = HashKit.encodeHex(hashedCredentialProperties.getAlgorithm(), newPwd.getBytes(), salt, hashedCredentialProperties.getIterations());
-
-        entity.setSalt(HexKit.encodeHexStr(salt));
-        entity.setPassword(newPwdHash);
+        encodePassword(entity, newPwd);
         return userService.updateById(entity);
     }
 
@@ -299,14 +308,12 @@ public class UserAuthPolymerServiceImpl implements UserAuthPolymerService {
     @Transactional
     public boolean register(User entity) {
         // 创建用户
-        byte [] salt = HashKit.genSalt(hashedCredentialProperties.getSaltLen());
-        String newPwdHash = HashKit.encodeHex(hashedCredentialProperties.getAlgorithm(), entity.getPassword().getBytes(), salt, hashedCredentialProperties.getIterations());
-        entity.setSalt(HexKit.encodeHexStr(salt));
-        entity.setPassword(newPwdHash);
+        encodePassword(entity, entity.getPassword());
         if(null == entity.getUseLanguage()) {
             entity.setUseLanguage(Language.ZH_CN);
         }
         userService.save(entity);
+        unknownUserCache.evict(entity.getUsername());
 
         // 创建主令牌
         UserPrincipal principal = new UserPrincipal();
@@ -359,6 +366,15 @@ public class UserAuthPolymerServiceImpl implements UserAuthPolymerService {
         return runAsService.saveBatch(runAsList);
     }
 
+    /**
+     * 生成新的盐，并按当前迭代次数散列密码
+     */
+    private void encodePassword(User entity, String password) {
+        byte [] salt = HashKit.genSalt(hashedCredentialProperties.getSaltLen());
+        entity.setSalt(HexKit.encodeHexStr(salt));
+        entity.setPassword(credentialHasher.encode(password.getBytes(), salt).toString());
+    }
+
     private User getUserAndCheckStatus(String username) {
         User user = userService.findByUsername(username)
                 .orElseThrow(() -> new SystemWarnException(Result.FAIL_CODE, username + "用户不存在"));
@@ -10,11 +10,17 @@ import com.chuang.urras.web.office.service.single.ILoginLogService;
 import com.chuang.urras.web.office.service.single.IRoleService;
 import com.chuang.urras.web.office.service.single.IUserPrincipalService;
 import com.chuang.urras.web.office.service.single.IUserService;
+import com.chuang.urras.web.shiro.credential.AdaptiveCredentialsMatcher;
+import com.chuang.urras.web.shiro.properties.LoginThrottleProperties;
+import com.chuang.urras.web.shiro.throttle.LoginThrottle;
+import com.chuang.urras.web.shiro.throttle.UnknownUserCache;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authc.ExcessiveAttemptsException;
 import org.apache.shiro.authc.SimpleAuthenticationInfo;
+import org.apache.shiro.authc.UnknownAccountException;
 import org.apache.shiro.authz.AuthorizationInfo;
 import org.apache.shiro.authz.SimpleAuthorizationInfo;
 import org.apache.shiro.codec.Hex;
@@ -37,6 +43,8 @@ import java.util.stream.Collectors;
  */
 public class UserRealm extends AuthorizingRealm {
     private Logger logger = LoggerFactory.getLogger(UserRealm.class);
+    private static final String USER_KEY_PREFIX = "user:";
+    private static final String IP_KEY_PREFIX = "ip:";
 
     @Resource
     private IUserService userService;
@@ -56,6 +64,15 @@ public class UserRealm extends AuthorizingRealm {
     @Resource
     private MessageSource messageSource;
 
+    @Resource
+    private LoginThrottle loginThrottle;
+
+    @Resource
+    private LoginThrottleProperties loginThrottleProperties;
+
+    @Resource
+    private UnknownUserCache unknownUserCache;
+
     /**
      * @param authcToken 认证Token
      * @return AuthenticationInfo 交给shiro认证(主要为了记录session等一些其他工作),实际上在方法内已经认证通过
@@ -65,6 +82,22 @@ public class UserRealm extends AuthorizingRealm {
 
         WebUsernameAndPwdToken token = (WebUsernameAndPwdToken) authcToken;
 
+        // 限流和不存在用户的缓存都在查询数据库之前，撞库流量不会打到数据库
+        if (loginThrottleProperties.isEnabled()) {
+            if (null != token.getHost()
+                    && loginThrottle.isBlocked(IP_KEY_PREFIX + token.getHost(), loginThrottleProperties.getMaxAttemptsPerIp())) {
+                throw new ExcessiveAttemptsException(String.format("login attempts exceeded.Ip:%s", token.getHost()));
+            }
+            if (loginThrottle.isBlocked(USER_KEY_PREFIX + token.getUsername(), loginThrottleProperties.getMaxAttemptsPerUser())) {
+                throw new ExcessiveAttemptsException(String.format("login attempts exceeded.loginName:%s", token.getUsername()));
+            }
+        }
+        if (unknownUserCache.isUnknown(token.getUsername())) {
+            recordFailure(token);
+            throw new UnknownAccountException(String.
+                    format("username is not found.loginName:%s,Ip:%s.message:\n%s", token.getUsername(), token.getHost(), "cached"));
+        }
+
         Optional<User> optional;
         try {
             optional = userService.findByUsername(token.getUsername());
@@ -74,7 +107,9 @@ public class UserRealm extends AuthorizingRealm {
                     format("username query error.loginName:%s,Ip:%s.message:\n%s", token.getUsername(), token.getHost(), e.getMessage()));
         }
         if (!optional.isPresent()) {
-            throw new AuthenticationException(String.
+            unknownUserCache.markUnknown(token.getUsername());
+            recordFailure(token);
+            throw new UnknownAccountException(String.
                     format("username is not found.loginName:%s,Ip:%s.message:\n%s", token.getUsername(), token.getHost(), "webService return null"));
         }
         User userEntity = optional.get();
@@ -93,6 +128,19 @@ public class UserRealm extends AuthorizingRealm {
     }
 
 
+    /**
+     * 登录失败时用户名和IP各记一次，只有失败才计入限流
+     */
+    private void recordFailure(WebUsernameAndPwdToken token) {
+        if (!loginThrottleProperties.isEnabled()) {
+            return;
+        }
+        if (null != token.getHost()) {
+            loginThrottle.recordFailure(IP_KEY_PREFIX + token.getHost(), loginThrottleProperties.getMaxAttemptsPerIp());
+        }
+        loginThrottle.recordFailure(USER_KEY_PREFIX + token.getUsername(), loginThrottleProperties.getMaxAttemptsPerUser());
+    }
+
     /**
      * 授权查询回调函数, 进行鉴权但缓存中无用户的授权信息时调用.
      * 使用两类权限,账户类型和币种类型
@@ -151,7 +199,27 @@ public class UserRealm extends AuthorizingRealm {
         String userAgent = upt.getUserAgent(),
                 referer = upt.getReferer();//useragent表示浏览器
 
-        super.assertCredentialsMatch(token, info);
+        try {
+            super.assertCredentialsMatch(token, info);
+        } catch (AuthenticationException e) {
+            recordFailure(upt);
+            throw e;
+        }
+
+        if (loginThrottleProperties.isEnabled()) {
+            loginThrottle.reset(USER_KEY_PREFIX + upt.getUsername());
+        }
+
+        // 保存的密码迭代次数低于当前配置时，用这次登录的明文密码在散列线程池中重新散列，不影响本次登录
+        if (getCredentialsMatcher() instanceof AdaptiveCredentialsMatcher
+                && ((AdaptiveCredentialsMatcher) getCredentialsMatcher()).isOutdated(info)) {
+            userAuthPolymerService.rehashPassword(upt.getUsername(), new String(upt.getPassword()))
+                    .whenComplete((success, throwable) -> {
+                        if (null != throwable) {
+                            logger.warn("用户 {} 密码重新散列失败", upt.getUsername(), throwable);
+                        }
+                    });
+        }
 
         //记录登录日志
         loginLogService.addLoginLog(upt.getUsername(),
@@ -87,7 +87,7 @@ CREATE TABLE `t_run_as` (
 CREATE TABLE `t_user` (
   `id` int(11) UNSIGNED NOT NULL AUTO_INCREMENT COMMENT '主键',
   `username` varchar(32) NOT NULL COMMENT '用户名',
-  `password` varchar(32) NOT NULL COMMENT '密码',
+  `password` varchar(128) NOT NULL COMMENT '密码(迭代次数$散列)',
   `nick_name` varchar(32) NOT NULL COMMENT '昵称',
   `salt` varchar(32) NOT NULL COMMENT '盐',
   `real_name` varchar(32) NOT NULL COMMENT '真实名称',
@@ -0,0 +1,3 @@
+-- 密码改为 "迭代次数$散列" 格式后长度超过 32，已有的库需要执行一次（新库使用 office-starter.sql 创建时已经是 varchar(128)）
+-- 没有开启 urras.hashed-credential.target-millis 校准时仍然保存旧格式，可以不执行
+ALTER TABLE `t_user` MODIFY `password` varchar(128) NOT NULL COMMENT '密码(迭代次数$散列)';
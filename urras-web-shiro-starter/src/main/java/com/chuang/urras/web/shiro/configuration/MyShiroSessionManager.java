@@ -12,6 +12,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.servlet.ServletRequest;
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -82,4 +83,18 @@ public class MyShiroSessionManager extends DefaultWebSessionManager {
             }
         }
     }
+
+    /**
+     * 由 {@link com.chuang.urras.web.shiro.session.ClusterSessionValidationScheduler} 批量检查出过期session后调用，
+     * 只通知 SessionListener，删除由调度器批量完成。
+     */
+    public void notifyExpired(Collection<Session> sessions) {
+        for (Session session : sessions) {
+            try {
+                notifyExpiration(session);
+            } catch (Exception e) {
+                logger.error("session过期通知失败:" + session.getId(), e);
+            }
+        }
+    }
 }
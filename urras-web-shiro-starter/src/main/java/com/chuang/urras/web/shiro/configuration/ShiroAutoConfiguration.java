@@ -1,8 +1,19 @@
 package com.chuang.urras.web.shiro.configuration;
 
 import com.chuang.urras.toolskit.third.apache.shiro.ShiroRedisCacheManager;
+import com.chuang.urras.toolskit.third.redis.RedisHCached;
+import com.chuang.urras.web.shiro.credential.AdaptiveCredentialsMatcher;
+import com.chuang.urras.web.shiro.credential.CredentialHasher;
+import com.chuang.urras.web.shiro.session.ClusterSessionValidationScheduler;
+import com.chuang.urras.web.shiro.session.RedisSessionDAO;
+import com.chuang.urras.web.shiro.throttle.LocalLoginThrottle;
+import com.chuang.urras.web.shiro.throttle.LoginThrottle;
+import com.chuang.urras.web.shiro.throttle.RedisLoginThrottle;
+import com.chuang.urras.web.shiro.throttle.RedisUnknownUserCache;
+import com.chuang.urras.web.shiro.throttle.UnknownUserCache;
 import com.chuang.urras.web.shiro.properties.AuthProperties;
 import com.chuang.urras.web.shiro.properties.HashedCredentialProperties;
+import com.chuang.urras.web.shiro.properties.LoginThrottleProperties;
 import com.chuang.urras.web.shiro.properties.RealmProperties;
 import com.chuang.urras.web.shiro.properties.SessionProperties;
 import org.apache.shiro.authc.credential.HashedCredentialsMatcher;
@@ -18,6 +29,7 @@ import org.apache.shiro.web.servlet.AbstractShiroFilter;
 import org.apache.shiro.web.servlet.SimpleCookie;
 import org.apache.shiro.web.session.mgt.DefaultWebSessionManager;
 import org.springframework.aop.framework.autoproxy.DefaultAdvisorAutoProxyCreator;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
@@ -46,6 +58,7 @@ import java.util.Map;
 @EnableConfigurationProperties({
         AuthProperties.class,
         HashedCredentialProperties.class,
+        LoginThrottleProperties.class,
         RealmProperties.class,
         SessionProperties.class,
 //        ShiroRedisCachingProperties.class
@@ -74,12 +87,63 @@ public class ShiroAutoConfiguration {
      */
     @Bean(name = "hashedCredentialsMatcher")
     @ConditionalOnMissingBean
-    public HashedCredentialsMatcher hashedCredentialsMatcher(HashedCredentialProperties hashedCredentialProperties) {
-        HashedCredentialsMatcher credentialsMatcher = new HashedCredentialsMatcher();
-        credentialsMatcher.setHashIterations(hashedCredentialProperties.getIterations());
-        credentialsMatcher.setHashAlgorithmName(hashedCredentialProperties.getAlgorithm());
-        credentialsMatcher.setStoredCredentialsHexEncoded(true);
-        return credentialsMatcher;
+    public HashedCredentialsMatcher hashedCredentialsMatcher(CredentialHasher credentialHasher,
+                                                             HashedCredentialProperties hashedCredentialProperties) {
+        return new AdaptiveCredentialsMatcher(credentialHasher, hashedCredentialProperties.getIterations());
+    }
+
+    /**
+     * 密码散列执行器，登录校验和修改密码的迭代散列都在这里的有界线程池中完成。
+     * 配置了 targetMillis 时启动时按目标耗时校准迭代次数。
+     */
+    @Bean(name = "credentialHasher", destroyMethod = "shutdown")
+    @ConditionalOnMissingBean
+    public CredentialHasher credentialHasher(HashedCredentialProperties hashedCredentialProperties) {
+        CredentialHasher hasher = new CredentialHasher(hashedCredentialProperties.getAlgorithm(),
+                hashedCredentialProperties.getIterations(),
+                hashedCredentialProperties.getHashThreads(),
+                hashedCredentialProperties.getHashQueueCapacity(),
+                hashedCredentialProperties.getHashTimeout());
+        if (hashedCredentialProperties.getTargetMillis() > 0) {
+            hasher.calibrate(hashedCredentialProperties.getTargetMillis(), hashedCredentialProperties.getMaxIterations());
+        }
+        return hasher;
+    }
+
+    /**
+     * 登录限流，开启redis时集群内共享计数，否则每个节点单独计数。
+     * 只有开启redis时才需要 shiroRedisCache，只用本地计数时没有该bean也可以启动
+     */
+    @Bean(name = "loginThrottle")
+    @ConditionalOnMissingBean
+    public LoginThrottle loginThrottle(LoginThrottleProperties loginThrottleProperties,
+                                       @Qualifier("shiroRedisCache") ObjectProvider<RedisHCached> redisHCached) {
+        if (loginThrottleProperties.isRedis()) {
+            RedisHCached cached = redisHCached.getIfAvailable();
+            if (null == cached) {
+                throw new IllegalStateException("urras.shiro.login-throttle.redis=true 需要 shiroRedisCache");
+            }
+            return new RedisLoginThrottle(cached.getRedisTemplate(),
+                    loginThrottleProperties.getRedisKeyPrefix(),
+                    loginThrottleProperties.getWindow());
+        }
+        return new LocalLoginThrottle(loginThrottleProperties.getWindow(), loginThrottleProperties.getLocalMaxKeys());
+    }
+
+    @Bean(name = "unknownUserCache")
+    @ConditionalOnMissingBean
+    public UnknownUserCache unknownUserCache(LoginThrottleProperties loginThrottleProperties,
+                                             @Qualifier("shiroRedisCache") ObjectProvider<RedisHCached> redisHCached) {
+        if (loginThrottleProperties.isRedis()) {
+            RedisHCached cached = redisHCached.getIfAvailable();
+            if (null == cached) {
+                throw new IllegalStateException("urras.shiro.login-throttle.redis=true 需要 shiroRedisCache");
+            }
+            return new RedisUnknownUserCache(cached.getRedisTemplate(),
+                    loginThrottleProperties.getRedisKeyPrefix() + "unknown-user:",
+                    loginThrottleProperties.getUnknownUserTtl());
+        }
+        return new UnknownUserCache(loginThrottleProperties.getUnknownUserTtl(), loginThrottleProperties.getUnknownUserMaxSize());
     }
 
     /**
@@ -113,6 +177,7 @@ public class ShiroAutoConfiguration {
     @Bean("sessionManager")
     public DefaultWebSessionManager webSessionManager(SessionDAO sessionDAO,
                                                       ShiroRedisCacheManager redisCacheManager,
+                                                      @Qualifier("shiroRedisCache") RedisHCached redisHCached,
                                                       @Value("${server.servlet.session.timeout}") String timeout,
                                                       SessionProperties sessionProperties) {
         // Simple Cookie
@@ -133,16 +198,39 @@ public class ShiroAutoConfiguration {
         webSessionManager.setSessionIdCookie(simpleCookie);
         webSessionManager.setGlobalSessionTimeout(null == timeoutDur ? sessionProperties.getGlobalTimeout() : timeoutDur.getSeconds() * 1000);
         webSessionManager.setDeleteInvalidSessions(sessionProperties.isDeleteInvalidSessions());
-        webSessionManager.setSessionValidationSchedulerEnabled(sessionProperties.isValidationSchedulerEnabled());
+        // 间隔小于等于0时调度器不会启动，不关闭的话每个请求都会尝试启动一次
+        webSessionManager.setSessionValidationSchedulerEnabled(sessionProperties.isValidationSchedulerEnabled()
+                && sessionProperties.getValidationInterval() > 0);
         webSessionManager.setSessionValidationInterval(sessionProperties.getValidationInterval());
 
+        if (sessionDAO instanceof RedisSessionDAO && sessionProperties.isClusterValidation()) {
+            ClusterSessionValidationScheduler scheduler = new ClusterSessionValidationScheduler(
+                    redisHCached.getRedisTemplate(), (RedisSessionDAO) sessionDAO, webSessionManager,
+                    sessionProperties.getValidationLeaseKey());
+            scheduler.setBatchSize(sessionProperties.getValidationBatchSize());
+            scheduler.setMaxPerRun(sessionProperties.getValidationMaxPerRun());
+            webSessionManager.setSessionValidationScheduler(scheduler);
+        }
+
         return webSessionManager;
     }
 
+    /**
+     * session dao
+     * indexedStore=true 时使用按属性拆分存储的 RedisSessionDAO，否则整个session作为一个值存在 activeSessionCache 中
+     */
     @Bean
     @ConditionalOnMissingBean
-    public SessionDAO shiroSessionDAO(ShiroRedisCacheManager redisCacheManager, SessionProperties sessionProperties) {
-        // session dao
+    public SessionDAO shiroSessionDAO(ShiroRedisCacheManager redisCacheManager,
+                                      @Qualifier("shiroRedisCache") RedisHCached redisHCached,
+                                      SessionProperties sessionProperties) {
+        if (sessionProperties.isIndexedStore()) {
+            RedisSessionDAO sessionDAO = new RedisSessionDAO(redisHCached.getRedisTemplate(),
+                    sessionProperties.getRedisKeyPrefix(),
+                    sessionProperties.getExpireSlack());
+            sessionDAO.setSessionIdGenerator(new JavaUuidSessionIdGenerator());
+            return sessionDAO;
+        }
         EnterpriseCacheSessionDAO sessionDAO = new EnterpriseCacheSessionDAO();
         sessionDAO.setCacheManager(redisCacheManager);
         sessionDAO.setActiveSessionsCacheName(sessionProperties.getActiveSessionCacheName());
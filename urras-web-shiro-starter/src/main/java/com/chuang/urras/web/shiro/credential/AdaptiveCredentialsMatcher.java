@@ -0,0 +1,62 @@
+package com.chuang.urras.web.shiro.credential;
+
+import com.chuang.urras.support.exception.CodeException;
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authc.SaltedAuthenticationInfo;
+import org.apache.shiro.authc.credential.HashedCredentialsMatcher;
+import org.apache.shiro.util.ByteSource;
+
+/**
+ * 校验器
+ * 散列交给 {@link CredentialHasher} 在独立线程池中完成，迭代次数从保存的密码中读取（{@link StoredCredential}），
+ * 旧格式的密码使用 hashIterations。
+ * 继承 HashedCredentialsMatcher 只是为了兼容原来按类型注入的地方。
+ */
+public class AdaptiveCredentialsMatcher extends HashedCredentialsMatcher {
+
+    private final CredentialHasher hasher;
+
+    /**
+     * @param hasher 散列执行器
+     * @param legacyIterations 旧格式密码的迭代次数
+     */
+    public AdaptiveCredentialsMatcher(CredentialHasher hasher, int legacyIterations) {
+        this.hasher = hasher;
+        setHashAlgorithmName(hasher.getAlgorithm());
+        setHashIterations(legacyIterations);
+        setStoredCredentialsHexEncoded(true);
+    }
+
+    @Override
+    public boolean doCredentialsMatch(AuthenticationToken token, AuthenticationInfo info) {
+        byte[] salt = null;
+        if (info instanceof SaltedAuthenticationInfo && null != ((SaltedAuthenticationInfo) info).getCredentialsSalt()) {
+            salt = ((SaltedAuthenticationInfo) info).getCredentialsSalt().getBytes();
+        }
+        byte[] source = ByteSource.Util.bytes(token.getCredentials()).getBytes();
+        try {
+            return hasher.matches(source, salt, stored(info));
+        } catch (CodeException e) {
+            throw new AuthenticationException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 密码校验通过后，判断保存的密码是否需要按当前迭代次数重新散列
+     */
+    public boolean isOutdated(AuthenticationInfo info) {
+        return hasher.isOutdated(stored(info));
+    }
+
+    public CredentialHasher getHasher() {
+        return hasher;
+    }
+
+    private StoredCredential stored(AuthenticationInfo info) {
+        Object credentials = info.getCredentials();
+        String stored = credentials instanceof char[] ? new String((char[]) credentials) : String.valueOf(credentials);
+        return StoredCredential.parse(stored, getHashIterations());
+    }
+}
@@ -0,0 +1,179 @@
+package com.chuang.urras.web.shiro.credential;
+
+import com.chuang.urras.support.Result;
+import com.chuang.urras.support.exception.SystemErrorException;
+import com.chuang.urras.support.exception.SystemWarnException;
+import com.chuang.urras.toolskit.basic.HashKit;
+import com.chuang.urras.toolskit.basic.HexKit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 密码散列执行器。
+ * 迭代散列是纯CPU运算，登录高峰时直接在tomcat线程里做会把请求线程耗光。
+ * 这里用一个有界的线程池专门做散列，队列满了直接拒绝，不让请求无限排队。
+ * 已经在散列线程里的调用（例如整个登录过程被提交到这里执行）会直接计算，不会再次提交，避免线程池自己等自己。
+ *
+ * 迭代次数可以通过 {@link #calibrate(long, int)} 按目标耗时校准，校准结果作为新密码的迭代次数，
+ * 旧密码的迭代次数保存在 {@link StoredCredential} 中，登录成功后可以按新的次数重新散列。
+ */
+public class CredentialHasher {
+    private static final Logger logger = LoggerFactory.getLogger(CredentialHasher.class);
+    private static final ThreadLocal<Boolean> HASH_THREAD = ThreadLocal.withInitial(() -> false);
+    private static final int PROBE_ITERATIONS = 10000;
+    private static final int PROBE_TIMES = 5;
+
+    private final String algorithm;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+    /**
+     * 配置的迭代次数，旧格式密码使用该次数
+     */
+    private final int defaultIterations;
+    private volatile int iterations;
+
+    public CredentialHasher(String algorithm, int iterations, int threads, int queueCapacity, long timeoutMillis) {
+        this.algorithm = algorithm;
+        this.defaultIterations = iterations;
+        this.iterations = iterations;
+        this.timeoutMillis = timeoutMillis;
+
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                r -> {
+                    Thread t = new Thread(() -> {
+                        HASH_THREAD.set(true);
+                        r.run();
+                    }, "credential-hasher-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 在散列线程池中执行任务，线程池满时返回的future以 {@link RejectedExecutionException} 结束
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public CompletableFuture<String> hashAsync(byte[] source, byte[] salt, int iterations) {
+        return submit(() -> hashHex(source, salt, iterations));
+    }
+
+    /**
+     * 同步获取散列结果，非散列线程会提交到线程池并最多等待 timeoutMillis
+     */
+    public String hash(byte[] source, byte[] salt, int iterations) {
+        if (isHashThread()) {
+            return hashHex(source, salt, iterations);
+        }
+        try {
+            return hashAsync(source, salt, iterations).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new SystemWarnException(Result.FAIL_CODE, "系统繁忙,请稍后再试", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemErrorException(Result.FAIL_CODE, "散列被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                throw new SystemWarnException(Result.FAIL_CODE, "系统繁忙,请稍后再试", e.getCause());
+            }
+            throw new SystemErrorException(Result.FAIL_CODE, "散列失败", e.getCause());
+        }
+    }
+
+    /**
+     * 使用当前迭代次数生成需要保存的密码。
+     * 没有校准（当前次数等于配置的次数）时按旧格式只保存散列hex，旧库 varchar(32) 的密码字段仍然放得下
+     */
+    public StoredCredential encode(byte[] source, byte[] salt) {
+        int current = this.iterations;
+        String hex = hash(source, salt, current);
+        return current == defaultIterations ? StoredCredential.legacy(current, hex) : StoredCredential.of(current, hex);
+    }
+
+    public boolean matches(byte[] source, byte[] salt, StoredCredential stored) {
+        String hex = hash(source, salt, stored.getIterations());
+        return MessageDigest.isEqual(hex.toLowerCase().getBytes(), stored.getHex().toLowerCase().getBytes());
+    }
+
+    /**
+     * 保存的密码迭代次数低于当前迭代次数时需要重新散列
+     */
+    public boolean isOutdated(StoredCredential stored) {
+        return stored.getIterations() < iterations;
+    }
+
+    /**
+     * 按目标耗时校准迭代次数。
+     * 先用固定次数散列几次，取中位数算出单次迭代的耗时，再推算目标耗时对应的迭代次数。
+     * 结果不会低于当前的迭代次数，也不会超过 maxIterations
+     * @return 校准后的迭代次数
+     */
+    public int calibrate(long targetMillis, int maxIterations) {
+        byte[] source = HashKit.genSalt(16);
+        byte[] salt = HashKit.genSalt(16);
+        hashHex(source, salt, PROBE_ITERATIONS); // 预热
+
+        long[] costs = new long[PROBE_TIMES];
+        for (int i = 0; i < PROBE_TIMES; i++) {
+            long start = System.nanoTime();
+            hashHex(source, salt, PROBE_ITERATIONS);
+            costs[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(costs);
+        double nanosPerIteration = Math.max(1d, (double) costs[PROBE_TIMES / 2] / PROBE_ITERATIONS);
+
+        long calibrated = (long) (TimeUnit.MILLISECONDS.toNanos(targetMillis) / nanosPerIteration);
+        int result = (int) Math.max(iterations, Math.min(maxIterations, calibrated));
+        logger.info("{} 散列校准完成，单次迭代约 {}ns，目标耗时 {}ms，迭代次数 {} -> {}",
+                algorithm, String.format("%.1f", nanosPerIteration), targetMillis, iterations, result);
+        this.iterations = result;
+        return result;
+    }
+
+    public static boolean isHashThread() {
+        return HASH_THREAD.get();
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private String hashHex(byte[] source, byte[] salt, int iterations) {
+        try {
+            return HexKit.encodeHexStr(HashKit.encode(algorithm, source, salt, iterations));
+        } catch (NoSuchAlgorithmException e) {
+            throw new SystemErrorException(Result.FAIL_CODE, "不支持的散列算法:" + algorithm, e);
+        }
+    }
+}
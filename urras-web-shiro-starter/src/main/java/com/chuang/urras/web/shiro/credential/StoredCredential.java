@@ -0,0 +1,73 @@
+package com.chuang.urras.web.shiro.credential;
+
+/**
+ * 数据库中保存的密码。
+ * 新格式为 "迭代次数$散列hex"，这样每个用户的散列成本跟着密码走，调整迭代次数后旧密码仍然可以校验。
+ * 旧数据只有散列hex，没有迭代次数，这种情况使用配置的默认迭代次数。
+ * 迭代次数等于配置的默认次数时仍然只保存散列hex，t_user.password 还是 varchar(32) 的旧库不受影响；
+ * 开启校准（迭代次数变化）前需要先执行 sql/upgrade/t_user-password-varchar128.sql 加宽字段。
+ */
+public final class StoredCredential {
+    private static final char SEPARATOR = '$';
+
+    private final int iterations;
+    private final String hex;
+    /**
+     * 是否按旧格式（只有散列hex）保存
+     */
+    private final boolean legacy;
+
+    private StoredCredential(int iterations, String hex, boolean legacy) {
+        this.iterations = iterations;
+        this.hex = hex;
+        this.legacy = legacy;
+    }
+
+    public static StoredCredential of(int iterations, String hex) {
+        return new StoredCredential(iterations, hex, false);
+    }
+
+    /**
+     * 旧格式，保存时只有散列hex
+     * @param iterations 配置的默认迭代次数
+     */
+    public static StoredCredential legacy(int iterations, String hex) {
+        return new StoredCredential(iterations, hex, true);
+    }
+
+    /**
+     * @param stored 数据库中的密码
+     * @param defaultIterations 旧格式密码使用的迭代次数
+     */
+    public static StoredCredential parse(String stored, int defaultIterations) {
+        int idx = stored.indexOf(SEPARATOR);
+        if (idx <= 0) {
+            return legacy(defaultIterations, stored);
+        }
+        try {
+            return of(Integer.parseInt(stored.substring(0, idx)), stored.substring(idx + 1));
+        } catch (NumberFormatException e) {
+            return legacy(defaultIterations, stored);
+        }
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public String getHex() {
+        return hex;
+    }
+
+    public boolean isLegacy() {
+        return legacy;
+    }
+
+    /**
+     * 保存到数据库的值
+     */
+    @Override
+    public String toString() {
+        return legacy ? hex : iterations + String.valueOf(SEPARATOR) + hex;
+    }
+}
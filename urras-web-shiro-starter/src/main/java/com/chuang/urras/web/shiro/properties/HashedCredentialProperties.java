@@ -10,6 +10,29 @@ public class HashedCredentialProperties {
     private int iterations = 3;
     private int saltLen = 6;
 
+    /**
+     * 散列线程数，登录时的迭代散列都在这个线程池中完成，不占用tomcat的请求线程
+     */
+    private int hashThreads = Runtime.getRuntime().availableProcessors();
+    /**
+     * 散列线程池队列长度，队列满了直接拒绝登录请求，避免登录风暴时请求无限堆积
+     */
+    private int hashQueueCapacity = 128;
+    /**
+     * 同步等待散列结果的超时时间(毫秒)
+     */
+    private long hashTimeout = 3000;
+    /**
+     * 单次散列的目标耗时(毫秒)，大于0时启动时会按这个耗时校准迭代次数，
+     * 校准后的次数只会大于等于 iterations。 0 表示不校准，直接使用 iterations。
+     * 校准后新密码按 "迭代次数$散列" 保存，开启前需要执行 sql/upgrade/t_user-password-varchar128.sql 把 t_user.password 加宽到 varchar(128)
+     */
+    private long targetMillis = 0;
+    /**
+     * 校准后允许的最大迭代次数
+     */
+    private int maxIterations = 1000000;
+
     public String getAlgorithm() {
         return algorithm;
     }
@@ -34,4 +57,44 @@ public class HashedCredentialProperties {
         this.saltLen = saltLen;
     }
 
+    public int getHashThreads() {
+        return hashThreads;
+    }
+
+    public void setHashThreads(int hashThreads) {
+        this.hashThreads = hashThreads;
+    }
+
+    public int getHashQueueCapacity() {
+        return hashQueueCapacity;
+    }
+
+    public void setHashQueueCapacity(int hashQueueCapacity) {
+        this.hashQueueCapacity = hashQueueCapacity;
+    }
+
+    public long getHashTimeout() {
+        return hashTimeout;
+    }
+
+    public void setHashTimeout(long hashTimeout) {
+        this.hashTimeout = hashTimeout;
+    }
+
+    public long getTargetMillis() {
+        return targetMillis;
+    }
+
+    public void setTargetMillis(long targetMillis) {
+        this.targetMillis = targetMillis;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
 }
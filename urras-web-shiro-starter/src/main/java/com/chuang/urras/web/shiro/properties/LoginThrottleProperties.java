@@ -0,0 +1,133 @@
+package com.chuang.urras.web.shiro.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 登录限流配置
+ * 在滑动时间窗口内，同一个用户名或同一个IP的登录失败次数超过上限时直接拒绝，不再查询数据库。
+ */
+@Component
+@ConfigurationProperties(prefix = "urras.shiro.login-throttle")
+public class LoginThrottleProperties {
+
+    private boolean enabled = true;
+    /**
+     * 是否使用redis记录失败次数和不存在的用户名，集群部署时需要开启，否则每个节点单独计数，
+     * 注册用户后其他节点要等不存在用户名的缓存过期才能登录
+     */
+    private boolean redis = false;
+    private String redisKeyPrefix = "urras:login-throttle:";
+    /**
+     * 滑动窗口大小(毫秒)
+     */
+    private long window = 300000;
+    /**
+     * 窗口内每个用户名允许的失败次数，登录成功后清零
+     */
+    private int maxAttemptsPerUser = 10;
+    /**
+     * 窗口内每个IP允许的失败次数
+     */
+    private int maxAttemptsPerIp = 50;
+    /**
+     * 可信的反向代理地址。请求来自这些地址时才使用 x-forwarded-for 等请求头中的客户端IP，
+     * 否则使用连接的远端地址，避免伪造请求头绕过IP限流
+     */
+    private List<String> trustedProxies = new ArrayList<>();
+    /**
+     * 本地计数时记录的key数量超过这个值会清理过期的key
+     */
+    private int localMaxKeys = 10000;
+    /**
+     * 不存在的用户名缓存时间(毫秒)，0 表示不缓存
+     */
+    private long unknownUserTtl = 60000;
+    /**
+     * 不存在的用户名最多缓存多少个
+     */
+    private int unknownUserMaxSize = 10000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isRedis() {
+        return redis;
+    }
+
+    public void setRedis(boolean redis) {
+        this.redis = redis;
+    }
+
+    public String getRedisKeyPrefix() {
+        return redisKeyPrefix;
+    }
+
+    public void setRedisKeyPrefix(String redisKeyPrefix) {
+        this.redisKeyPrefix = redisKeyPrefix;
+    }
+
+    public long getWindow() {
+        return window;
+    }
+
+    public void setWindow(long window) {
+        this.window = window;
+    }
+
+    public int getMaxAttemptsPerUser() {
+        return maxAttemptsPerUser;
+    }
+
+    public void setMaxAttemptsPerUser(int maxAttemptsPerUser) {
+        this.maxAttemptsPerUser = maxAttemptsPerUser;
+    }
+
+    public int getMaxAttemptsPerIp() {
+        return maxAttemptsPerIp;
+    }
+
+    public void setMaxAttemptsPerIp(int maxAttemptsPerIp) {
+        this.maxAttemptsPerIp = maxAttemptsPerIp;
+    }
+
+    public List<String> getTrustedProxies() {
+        return trustedProxies;
+    }
+
+    public void setTrustedProxies(List<String> trustedProxies) {
+        this.trustedProxies = trustedProxies;
+    }
+
+    public int getLocalMaxKeys() {
+        return localMaxKeys;
+    }
+
+    public void setLocalMaxKeys(int localMaxKeys) {
+        this.localMaxKeys = localMaxKeys;
+    }
+
+    public long getUnknownUserTtl() {
+        return unknownUserTtl;
+    }
+
+    public void setUnknownUserTtl(long unknownUserTtl) {
+        this.unknownUserTtl = unknownUserTtl;
+    }
+
+    public int getUnknownUserMaxSize() {
+        return unknownUserMaxSize;
+    }
+
+    public void setUnknownUserMaxSize(int unknownUserMaxSize) {
+        this.unknownUserMaxSize = unknownUserMaxSize;
+    }
+}
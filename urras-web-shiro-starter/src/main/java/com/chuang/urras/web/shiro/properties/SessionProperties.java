@@ -17,8 +17,32 @@ public class SessionProperties {
     private int globalTimeout = 1800000;
     private boolean deleteInvalidSessions = true;
     private boolean validationSchedulerEnabled = true;
+    /**
+     * session过期检查间隔(毫秒)，小于等于0时不检查
+     */
     private long validationInterval = 3600000;
     private String activeSessionCacheName= CachingSessionDAO.ACTIVE_SESSION_CACHE_NAME;
+    /**
+     * 是否使用按属性拆分的session存储（RedisSessionDAO），
+     * 开启后读取session只反序列化时间戳等信息，属性按需读取。切换存储方式后旧的session会失效。
+     */
+    private boolean indexedStore = false;
+    private String redisKeyPrefix = "urras:session:";
+    /**
+     * session超时后key在redis中额外保留的时间(毫秒)
+     */
+    private long expireSlack = 600000;
+    /**
+     * indexedStore=true 时是否使用集群过期检查（ClusterSessionValidationScheduler），
+     * 由一个节点持有租约，按过期索引分批检查，代替每个节点遍历全部session
+     */
+    private boolean clusterValidation = true;
+    private String validationLeaseKey = "urras:session-validation:leader";
+    private int validationBatchSize = 200;
+    /**
+     * 单次检查最多处理的session数量，剩下的留到下一个周期
+     */
+    private int validationMaxPerRun = 10000;
 
     public String getCookieName() {
         return cookieName;
@@ -85,6 +109,62 @@ public class SessionProperties {
     }
 
 
+    public boolean isIndexedStore() {
+        return indexedStore;
+    }
+
+    public void setIndexedStore(boolean indexedStore) {
+        this.indexedStore = indexedStore;
+    }
+
+    public String getRedisKeyPrefix() {
+        return redisKeyPrefix;
+    }
+
+    public void setRedisKeyPrefix(String redisKeyPrefix) {
+        this.redisKeyPrefix = redisKeyPrefix;
+    }
+
+    public long getExpireSlack() {
+        return expireSlack;
+    }
+
+    public void setExpireSlack(long expireSlack) {
+        this.expireSlack = expireSlack;
+    }
+
+    public boolean isClusterValidation() {
+        return clusterValidation;
+    }
+
+    public void setClusterValidation(boolean clusterValidation) {
+        this.clusterValidation = clusterValidation;
+    }
+
+    public String getValidationLeaseKey() {
+        return validationLeaseKey;
+    }
+
+    public void setValidationLeaseKey(String validationLeaseKey) {
+        this.validationLeaseKey = validationLeaseKey;
+    }
+
+    public int getValidationBatchSize() {
+        return validationBatchSize;
+    }
+
+    public void setValidationBatchSize(int validationBatchSize) {
+        this.validationBatchSize = validationBatchSize;
+    }
+
+    public int getValidationMaxPerRun() {
+        return validationMaxPerRun;
+    }
+
+    public void setValidationMaxPerRun(int validationMaxPerRun) {
+        this.validationMaxPerRun = validationMaxPerRun;
+    }
+
     public String getActiveSessionCacheName() {
         return activeSessionCacheName;
     }
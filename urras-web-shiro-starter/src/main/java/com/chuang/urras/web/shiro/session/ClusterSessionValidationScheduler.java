@@ -0,0 +1,224 @@
+package com.chuang.urras.web.shiro.session;
+
+import com.chuang.urras.web.shiro.configuration.MyShiroSessionManager;
+import org.apache.shiro.session.ExpiredSessionException;
+import org.apache.shiro.session.InvalidSessionException;
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.mgt.SessionValidationScheduler;
+import org.apache.shiro.session.mgt.ValidatingSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 集群session过期检查。
+ * 默认的 ExecutorServiceSessionValidationScheduler 每个节点都会跑，并且每次都要通过 getActiveSessions() 把所有session反序列化一遍。
+ * 这里改为：
+ * <ol>
+ *     <li>各节点通过redis租约选出一个leader，只有leader执行检查，leader挂掉后租约过期由其他节点接替</li>
+ *     <li>通过 {@link RedisSessionDAO} 维护的过期索引只取出已经到期的session id，不遍历全部session</li>
+ *     <li>每次最多处理 batchSize 个，读取、删除都走pipeline，每批之间续租，失去租约立即停止</li>
+ * </ol>
+ * 过期的session仍然会通过 {@link MyShiroSessionManager#notifyExpired} 通知 SessionListener。
+ * 已经停止（登出）的session只清理，不算过期也不再通知；redis中已经不存在的session只清理索引。
+ * interval 小于等于0时不检查。
+ */
+public class ClusterSessionValidationScheduler implements SessionValidationScheduler, Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(ClusterSessionValidationScheduler.class);
+
+    /**
+     * 租约是自己的就续期，没有人持有就抢占
+     */
+    private static final byte[] LEASE_LUA = (
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "    return redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+            "end " +
+            "if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then " +
+            "    return 1 " +
+            "end " +
+            "return 0").getBytes(StandardCharsets.UTF_8);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisSessionDAO sessionDAO;
+    private final MyShiroSessionManager sessionManager;
+    private final byte[] leaseKey;
+    private final byte[] nodeId = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+
+    private long interval;
+    private int batchSize = 200;
+    private int maxPerRun = 10000;
+    private ScheduledExecutorService service;
+    private volatile boolean enabled = false;
+
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder stopped = new LongAdder();
+    private final LongAdder missing = new LongAdder();
+    private final LongAdder runs = new LongAdder();
+
+    /**
+     * @param leaseKey leader租约的redis key
+     */
+    public ClusterSessionValidationScheduler(RedisTemplate<String, Object> redisTemplate,
+                                             RedisSessionDAO sessionDAO,
+                                             MyShiroSessionManager sessionManager,
+                                             String leaseKey) {
+        this.redisTemplate = redisTemplate;
+        this.sessionDAO = sessionDAO;
+        this.sessionManager = sessionManager;
+        this.leaseKey = leaseKey.getBytes(StandardCharsets.UTF_8);
+        this.interval = sessionManager.getSessionValidationInterval();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void enableSessionValidation() {
+        if (interval <= 0) {
+            return;
+        }
+        service = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cluster-session-validation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        service.scheduleAtFixedRate(this, interval, interval, TimeUnit.MILLISECONDS);
+        enabled = true;
+    }
+
+    @Override
+    public void disableSessionValidation() {
+        if (null != service) {
+            service.shutdownNow();
+        }
+        enabled = false;
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (!holdLease()) {
+                logger.debug("未持有session检查租约，跳过本次检查");
+                return;
+            }
+            long start = System.currentTimeMillis();
+            long expiredBefore = expired.sum();
+            long stoppedBefore = stopped.sum();
+            long missingBefore = missing.sum();
+            int swept = sweep(start);
+            runs.increment();
+            if (swept > 0) {
+                logger.info("session过期检查完成，处理 {} 个（过期 {}，已停止 {}，已不存在 {}），耗时 {}ms", swept,
+                        expired.sum() - expiredBefore, stopped.sum() - stoppedBefore, missing.sum() - missingBefore,
+                        System.currentTimeMillis() - start);
+            } else {
+                logger.debug("session过期检查完成，没有到期的session");
+            }
+        } catch (Exception e) {
+            // 异常不能抛出，否则定时任务会停止
+            logger.error("session过期检查失败", e);
+        }
+    }
+
+    /**
+     * 按批处理过期索引中到期的session
+     * @return 处理的session数量
+     */
+    protected int sweep(long now) {
+        int swept = 0;
+        while (swept < maxPerRun) {
+            List<String> ids = sessionDAO.findExpiredIds(now, batchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            List<Session> sessions = sessionDAO.readSessionsById(ids);
+            List<Serializable> invalidIds = new ArrayList<>(ids.size());
+            List<Session> expiredSessions = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                Session session = sessions.get(i);
+                if (null == session) {
+                    // session已被redis按ttl清理，只剩索引
+                    missing.increment();
+                    invalidIds.add(ids.get(i));
+                    continue;
+                }
+                try {
+                    ((ValidatingSession) session).validate();
+                    // 索引写入后session又被访问过，按新的时间戳重新索引
+                    sessionDAO.reindex(session);
+                } catch (ExpiredSessionException e) {
+                    expired.increment();
+                    expiredSessions.add(session);
+                    invalidIds.add(ids.get(i));
+                } catch (InvalidSessionException e) {
+                    // 登出等主动停止的session，停止时已经通知过 SessionListener
+                    stopped.increment();
+                    invalidIds.add(ids.get(i));
+                }
+            }
+
+            sessionManager.notifyExpired(expiredSessions);
+            if (sessionManager.isDeleteInvalidSessions()) {
+                sessionDAO.deleteBatch(invalidIds);
+            } else {
+                sessionDAO.removeFromIndex(invalidIds);
+            }
+            swept += ids.size();
+
+            if (ids.size() < batchSize || !holdLease()) {
+                break;
+            }
+        }
+        return swept;
+    }
+
+    /**
+     * 获取或续期leader租约，租约时长为两个检查周期
+     */
+    protected boolean holdLease() {
+        Long result = redisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.eval(LEASE_LUA, ReturnType.INTEGER, 1,
+                        leaseKey, nodeId, String.valueOf(interval * 2).getBytes(StandardCharsets.UTF_8)));
+        return null != result && result > 0;
+    }
+
+    /**
+     * 启动以来的累计数量
+     */
+    public Map<String, String> metrics() {
+        Map<String, String> metrics = new LinkedHashMap<>();
+        metrics.put("runs", String.valueOf(runs.sum()));
+        metrics.put("expired", String.valueOf(expired.sum()));
+        metrics.put("stopped", String.valueOf(stopped.sum()));
+        metrics.put("missing", String.valueOf(missing.sum()));
+        return metrics;
+    }
+
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setMaxPerRun(int maxPerRun) {
+        this.maxPerRun = maxPerRun;
+    }
+}
@@ -0,0 +1,131 @@
+package com.chuang.urras.web.shiro.session;
+
+import org.apache.shiro.session.InvalidSessionException;
+import org.apache.shiro.session.mgt.SimpleSession;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link RedisSessionDAO} 读取出来的session。
+ * 读取时只反序列化session本身的时间戳等信息，属性在第一次 getAttribute 时才单独从redis的hash field中读取，
+ * 同一个请求内读取过的属性会留在对象中（MyShiroSessionManager 会把session缓存在request中）。
+ * 修改过的属性记录下来，update时只写这些field，不再整体写回。
+ * 注意 getAttributes() 是父类内部使用的，这里不做加载，只返回已经加载到本地的属性。
+ * 对象被 java 序列化后只带着已经加载到本地的属性，反序列化得到的对象没有 dao，不再从redis加载。
+ */
+public class IndexedSession extends SimpleSession {
+    private static final long serialVersionUID = 1L;
+
+    private transient RedisSessionDAO dao;
+    private transient Set<Object> loaded = new HashSet<>();
+    private transient Set<Object> dirty = new HashSet<>();
+    private transient Set<Object> removed = new HashSet<>();
+    private transient boolean allLoaded = false;
+
+    IndexedSession(SimpleSession meta, RedisSessionDAO dao) {
+        this.dao = dao;
+        setId(meta.getId());
+        setStartTimestamp(meta.getStartTimestamp());
+        setStopTimestamp(meta.getStopTimestamp());
+        setLastAccessTime(meta.getLastAccessTime());
+        setTimeout(meta.getTimeout());
+        setExpired(meta.isExpired());
+        setHost(meta.getHost());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        loaded = new HashSet<>();
+        dirty = new HashSet<>();
+        removed = new HashSet<>();
+        // dao 是 transient，反序列化后没有可以加载的来源
+        allLoaded = true;
+    }
+
+    @Override
+    public Object getAttribute(Object key) {
+        load(key);
+        return super.getAttribute(key);
+    }
+
+    @Override
+    public void setAttribute(Object key, Object value) {
+        if (null == value) {
+            removeAttribute(key);
+            return;
+        }
+        super.setAttribute(key, value);
+        dirty.add(key);
+        removed.remove(key);
+    }
+
+    @Override
+    public Object removeAttribute(Object key) {
+        load(key);
+        Object old = super.removeAttribute(key);
+        dirty.remove(key);
+        removed.add(key);
+        return old;
+    }
+
+    @Override
+    public Collection<Object> getAttributeKeys() throws InvalidSessionException {
+        loadAll();
+        return super.getAttributeKeys();
+    }
+
+    Set<Object> getDirtyKeys() {
+        return dirty;
+    }
+
+    Set<Object> getRemovedKeys() {
+        return removed;
+    }
+
+    /**
+     * 修改已经写入redis
+     */
+    void flushed() {
+        loaded.addAll(dirty);
+        dirty.clear();
+        removed.clear();
+    }
+
+    /**
+     * 直接读取本地已有的属性，不触发从redis加载
+     */
+    Object getLocalAttribute(Object key) {
+        Map<Object, Object> attributes = getAttributes();
+        return null == attributes ? null : attributes.get(key);
+    }
+
+    private void load(Object key) {
+        if (allLoaded || loaded.contains(key) || dirty.contains(key) || removed.contains(key)) {
+            return;
+        }
+        loaded.add(key);
+        Object value = dao.readAttribute(getId(), key);
+        if (null != value) {
+            super.setAttribute(key, value);
+        }
+    }
+
+    private void loadAll() {
+        if (allLoaded) {
+            return;
+        }
+        allLoaded = true;
+        for (Map.Entry<Object, Object> entry : dao.readAttributes(getId()).entrySet()) {
+            Object key = entry.getKey();
+            if (!loaded.contains(key) && !dirty.contains(key) && !removed.contains(key)) {
+                super.setAttribute(key, entry.getValue());
+            }
+            loaded.add(key);
+        }
+    }
+}
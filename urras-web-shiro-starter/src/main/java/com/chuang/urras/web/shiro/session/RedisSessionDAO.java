@@ -0,0 +1,349 @@
+package com.chuang.urras.web.shiro.session;
+
+import com.chuang.urras.toolskit.basic.BasicKit;
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.apache.shiro.session.mgt.eis.AbstractSessionDAO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 按属性拆分存储的 session DAO。
+ * 每个session是一个redis hash：
+ * <pre>
+ *  key   : prefix + sessionId
+ *  field : m          -> 不含属性的 SimpleSession（时间戳、超时、host等）
+ *  field : a:属性名    -> 字符串key的属性值
+ *  field : o:序列化key -> 非字符串key的属性值
+ * </pre>
+ * 读取session只反序列化 m，属性由 {@link IndexedSession} 按需读取，
+ * 像 LOGIN_USER、KEY_PRINCIPAL_EXPIRED 这样的小检查不再需要拉取整个session。
+ * 每次更新只写 m 和修改过的属性，并把key的过期时间设置为 session超时时间 + expireSlack。
+ *
+ * 另外维护一个过期索引（sorted set，key 为 prefix + "index:expiry"，score 为session的过期时间点），
+ * {@link ClusterSessionValidationScheduler} 按索引增量找出过期的session，不需要遍历全部session。
+ */
+public class RedisSessionDAO extends AbstractSessionDAO {
+    private static final Logger logger = LoggerFactory.getLogger(RedisSessionDAO.class);
+
+    static final byte[] META_FIELD = "m".getBytes(StandardCharsets.UTF_8);
+    private static final String STRING_KEY_PREFIX = "a:";
+    private static final String OBJECT_KEY_PREFIX = "o:";
+    private static final int SCAN_COUNT = 500;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final String keyPrefix;
+    private final long expireSlackMillis;
+    private final byte[] expiryIndexKey;
+
+    /**
+     * @param keyPrefix session key前缀
+     * @param expireSlackMillis session超时后key在redis中额外保留的时间，留给过期检查触发 onExpiration
+     */
+    public RedisSessionDAO(RedisTemplate<String, Object> redisTemplate, String keyPrefix, long expireSlackMillis) {
+        this.redisTemplate = redisTemplate;
+        this.keyPrefix = keyPrefix;
+        this.expireSlackMillis = expireSlackMillis;
+        this.expiryIndexKey = (keyPrefix + "index:expiry").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected Serializable doCreate(Session session) {
+        Serializable sessionId = generateSessionId(session);
+        assignSessionId(session, sessionId);
+        write(session);
+        return sessionId;
+    }
+
+    @Override
+    protected Session doReadSession(Serializable sessionId) {
+        byte[] meta = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.hGet(key(sessionId), META_FIELD));
+        return toSession(meta);
+    }
+
+    @Override
+    public void update(Session session) {
+        if (null == session || null == session.getId()) {
+            return;
+        }
+        write(session);
+    }
+
+    @Override
+    public void delete(Session session) {
+        if (null == session || null == session.getId()) {
+            return;
+        }
+        deleteBatch(Collections.singletonList(session.getId()));
+    }
+
+    /**
+     * 批量删除session和它们的过期索引
+     */
+    public void deleteBatch(Collection<Serializable> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return;
+        }
+        byte[][] keys = sessionIds.stream().map(this::key).toArray(byte[][]::new);
+        byte[][] members = sessionIds.stream().map(this::member).toArray(byte[][]::new);
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.openPipeline();
+            try {
+                connection.del(keys);
+                connection.zRem(expiryIndexKey, members);
+            } finally {
+                connection.closePipeline();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 只从过期索引中移除，session本身留给redis按ttl清理
+     */
+    public void removeFromIndex(Collection<Serializable> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return;
+        }
+        byte[][] members = sessionIds.stream().map(this::member).toArray(byte[][]::new);
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.zRem(expiryIndexKey, members));
+    }
+
+    /**
+     * 从过期索引中取出过期时间早于 now 的session id
+     * @param limit 最多取多少个
+     */
+    public List<String> findExpiredIds(long now, int limit) {
+        Set<byte[]> members = redisTemplate.execute((RedisCallback<Set<byte[]>>) connection ->
+                connection.zRangeByScore(expiryIndexKey, 0, now, 0, limit));
+        List<String> ids = new ArrayList<>();
+        if (null != members) {
+            for (byte[] member : members) {
+                ids.add(new String(member, StandardCharsets.UTF_8));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 按id批量读取session，不存在的session对应位置为null
+     */
+    public List<Session> readSessionsById(List<? extends Serializable> sessionIds) {
+        List<byte[]> keys = new ArrayList<>(sessionIds.size());
+        for (Serializable id : sessionIds) {
+            keys.add(key(id));
+        }
+        return readSessions(keys, true);
+    }
+
+    /**
+     * 按session当前的时间戳重新写入过期索引
+     */
+    public void reindex(Session session) {
+        long expireAt = expireAt(session);
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            index(connection, session.getId(), expireAt);
+            return null;
+        });
+    }
+
+    /**
+     * 用 SCAN 遍历所有session，只读取 m，属性仍然按需加载
+     */
+    @Override
+    public Collection<Session> getActiveSessions() {
+        List<byte[]> keys = redisTemplate.execute((RedisCallback<List<byte[]>>) connection -> {
+            List<byte[]> list = new ArrayList<>();
+            ScanOptions options = ScanOptions.scanOptions().match(keyPrefix + "*").count(SCAN_COUNT).build();
+            try (Cursor<byte[]> cursor = connection.scan(options)) {
+                cursor.forEachRemaining(key -> {
+                    if (!Arrays.equals(key, expiryIndexKey)) {
+                        list.add(key);
+                    }
+                });
+            } catch (Exception e) {
+                logger.error("遍历session失败", e);
+            }
+            return list;
+        });
+        return readSessions(null == keys ? Collections.emptyList() : keys, false);
+    }
+
+    /**
+     * 批量读取session，pipeline一次往返
+     * @param keepMissing 为true时不存在的session在结果中对应位置为null，否则跳过
+     */
+    protected List<Session> readSessions(List<byte[]> keys, boolean keepMissing) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Object> metas = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (byte[] key : keys) {
+                connection.hGet(key, META_FIELD);
+            }
+            return null;
+        }, RedisSerializer.byteArray());
+
+        List<Session> sessions = new ArrayList<>(metas.size());
+        for (Object meta : metas) {
+            Session session = toSession((byte[]) meta);
+            if (null != session || keepMissing) {
+                sessions.add(session);
+            }
+        }
+        return sessions;
+    }
+
+    Object readAttribute(Serializable sessionId, Object attributeKey) {
+        byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.hGet(key(sessionId), field(attributeKey)));
+        return null == value ? null : BasicKit.unSerialize(value).orElse(null);
+    }
+
+    Map<Object, Object> readAttributes(Serializable sessionId) {
+        Map<byte[], byte[]> all = redisTemplate.execute((RedisCallback<Map<byte[], byte[]>>) connection -> connection.hGetAll(key(sessionId)));
+        Map<Object, Object> attributes = new HashMap<>();
+        if (null == all) {
+            return attributes;
+        }
+        for (Map.Entry<byte[], byte[]> entry : all.entrySet()) {
+            Object attributeKey = attributeKey(entry.getKey());
+            if (null != attributeKey) {
+                BasicKit.unSerialize(entry.getValue()).ifPresent(value -> attributes.put(attributeKey, value));
+            }
+        }
+        return attributes;
+    }
+
+    protected byte[] key(Serializable sessionId) {
+        return (keyPrefix + sessionId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    protected long expireMillis(Session session) {
+        return session.getTimeout() < 0 ? -1 : session.getTimeout() + expireSlackMillis;
+    }
+
+    /**
+     * session的过期时间点，永不过期返回 -1
+     */
+    protected long expireAt(Session session) {
+        return session.getTimeout() < 0 ? -1 : session.getLastAccessTime().getTime() + session.getTimeout();
+    }
+
+    protected void write(Session session) {
+        byte[] key = key(session.getId());
+        Map<byte[], byte[]> fields = new HashMap<>();
+        fields.put(META_FIELD, BasicKit.serialize(meta(session)).orElseThrow(() -> new IllegalStateException("session 序列化失败")));
+
+        List<byte[]> removedFields = new ArrayList<>();
+        if (session instanceof IndexedSession) {
+            IndexedSession indexed = (IndexedSession) session;
+            for (Object attributeKey : indexed.getDirtyKeys()) {
+                BasicKit.serialize(indexed.getLocalAttribute(attributeKey)).ifPresent(value -> fields.put(field(attributeKey), value));
+            }
+            for (Object attributeKey : indexed.getRemovedKeys()) {
+                removedFields.add(field(attributeKey));
+            }
+        } else {
+            for (Object attributeKey : session.getAttributeKeys()) {
+                BasicKit.serialize(session.getAttribute(attributeKey)).ifPresent(value -> fields.put(field(attributeKey), value));
+            }
+        }
+
+        long expire = expireMillis(session);
+        long expireAt = expireAt(session);
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.openPipeline();
+            try {
+                writeFields(connection, key, fields, removedFields, expire);
+                index(connection, session.getId(), expireAt);
+            } finally {
+                connection.closePipeline();
+            }
+            return null;
+        });
+        if (session instanceof IndexedSession) {
+            ((IndexedSession) session).flushed();
+        }
+    }
+
+    protected void writeFields(RedisConnection connection, byte[] key, Map<byte[], byte[]> fields, List<byte[]> removedFields, long expire) {
+        connection.hMSet(key, fields);
+        if (!removedFields.isEmpty()) {
+            connection.hDel(key, removedFields.toArray(new byte[0][]));
+        }
+        if (expire > 0) {
+            connection.pExpire(key, expire);
+        } else {
+            connection.persist(key);
+        }
+    }
+
+    protected void index(RedisConnection connection, Serializable sessionId, long expireAt) {
+        if (expireAt > 0) {
+            connection.zAdd(expiryIndexKey, expireAt, member(sessionId));
+        } else {
+            connection.zRem(expiryIndexKey, member(sessionId));
+        }
+    }
+
+    private byte[] member(Serializable sessionId) {
+        return sessionId.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Session toSession(byte[] meta) {
+        if (null == meta) {
+            return null;
+        }
+        Object obj = BasicKit.unSerialize(meta).orElse(null);
+        if (!(obj instanceof SimpleSession)) {
+            return null;
+        }
+        return new IndexedSession((SimpleSession) obj, this);
+    }
+
+    private SimpleSession meta(Session session) {
+        SimpleSession meta = new SimpleSession();
+        meta.setId(session.getId());
+        meta.setStartTimestamp(session.getStartTimestamp());
+        meta.setLastAccessTime(session.getLastAccessTime());
+        meta.setTimeout(session.getTimeout());
+        meta.setHost(session.getHost());
+        if (session instanceof SimpleSession) {
+            meta.setStopTimestamp(((SimpleSession) session).getStopTimestamp());
+            meta.setExpired(((SimpleSession) session).isExpired());
+        }
+        return meta;
+    }
+
+    private byte[] field(Object attributeKey) {
+        if (attributeKey instanceof String) {
+            return (STRING_KEY_PREFIX + attributeKey).getBytes(StandardCharsets.UTF_8);
+        }
+        byte[] serialized = BasicKit.serialize(attributeKey).orElseThrow(() -> new IllegalArgumentException("session 属性key无法序列化:" + attributeKey));
+        byte[] prefix = OBJECT_KEY_PREFIX.getBytes(StandardCharsets.UTF_8);
+        byte[] field = Arrays.copyOf(prefix, prefix.length + serialized.length);
+        System.arraycopy(serialized, 0, field, prefix.length, serialized.length);
+        return field;
+    }
+
+    private Object attributeKey(byte[] field) {
+        String str = new String(field, StandardCharsets.UTF_8);
+        if (str.startsWith(STRING_KEY_PREFIX)) {
+            return str.substring(STRING_KEY_PREFIX.length());
+        }
+        if (field.length > 2 && str.startsWith(OBJECT_KEY_PREFIX)) {
+            return BasicKit.unSerialize(Arrays.copyOfRange(field, OBJECT_KEY_PREFIX.length(), field.length)).orElse(null);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.chuang.urras.web.shiro.throttle;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本地内存实现的滑动窗口限流。
+ * 每个key保存窗口内的失败时间，最多保存limit个，所以内存占用和限流次数相关而不是和请求量相关。
+ * key数量超过 maxKeys 时，写入前会清理已经过期的key。
+ */
+public class LocalLoginThrottle implements LoginThrottle {
+
+    private final long windowMillis;
+    private final int maxKeys;
+    private final Map<String, ArrayDeque<Long>> attempts = new ConcurrentHashMap<>();
+
+    public LocalLoginThrottle(long windowMillis, int maxKeys) {
+        this.windowMillis = windowMillis;
+        this.maxKeys = maxKeys;
+    }
+
+    @Override
+    public boolean isBlocked(String key, int limit) {
+        long now = System.currentTimeMillis();
+        boolean[] blocked = new boolean[1];
+        attempts.computeIfPresent(key, (k, deque) -> {
+            evict(deque, now);
+            blocked[0] = deque.size() >= limit;
+            return deque.isEmpty() ? null : deque;
+        });
+        return blocked[0];
+    }
+
+    @Override
+    public void recordFailure(String key, int limit) {
+        long now = System.currentTimeMillis();
+        if (attempts.size() > maxKeys) {
+            purge(now);
+        }
+        // 在 compute 中修改，和 reset、purge 的删除互斥，不会把失败记录写进已经被删除的队列
+        attempts.compute(key, (k, deque) -> {
+            if (null == deque) {
+                deque = new ArrayDeque<>();
+            }
+            evict(deque, now);
+            deque.addLast(now);
+            while (deque.size() > limit) {
+                deque.pollFirst();
+            }
+            return deque;
+        });
+    }
+
+    @Override
+    public void reset(String key) {
+        attempts.remove(key);
+    }
+
+    private void purge(long now) {
+        for (String key : attempts.keySet()) {
+            attempts.computeIfPresent(key, (k, deque) -> {
+                evict(deque, now);
+                return deque.isEmpty() ? null : deque;
+            });
+        }
+    }
+
+    private void evict(ArrayDeque<Long> deque, long now) {
+        while (!deque.isEmpty() && now - deque.peekFirst() >= windowMillis) {
+            deque.pollFirst();
+        }
+    }
+}
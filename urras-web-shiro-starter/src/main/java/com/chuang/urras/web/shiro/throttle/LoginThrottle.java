@@ -0,0 +1,27 @@
+package com.chuang.urras.web.shiro.throttle;
+
+/**
+ * 登录限流，滑动窗口内记录每个key（用户名、IP）的登录失败次数。
+ * 只有失败才计数，正常用户的成功登录不会占用次数。
+ * 检查和记录不是同一个原子操作，并发的失败尝试最多会超出上限并发数那么多次。
+ */
+public interface LoginThrottle {
+
+    /**
+     * 检查是否已经被限制，不计数
+     * @param key 限流key
+     * @param limit 窗口内允许的失败次数
+     * @return 窗口内的失败次数已经达到 limit 时返回 true
+     */
+    boolean isBlocked(String key, int limit);
+
+    /**
+     * 记录一次失败，窗口内最多记录 limit 次
+     */
+    void recordFailure(String key, int limit);
+
+    /**
+     * 清除key的失败记录，一般在登录成功后调用
+     */
+    void reset(String key);
+}
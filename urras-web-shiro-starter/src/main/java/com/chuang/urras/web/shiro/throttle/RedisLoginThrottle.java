@@ -0,0 +1,88 @@
+package com.chuang.urras.web.shiro.throttle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * redis实现的滑动窗口限流，集群中所有节点共享计数。
+ * 每个key是一个 sorted set，score 为失败时间。清理过期记录和计数、清理过期记录和写入各自在一个lua脚本中完成。
+ * redis不可用时放行，避免redis故障导致所有人都无法登录。
+ */
+public class RedisLoginThrottle implements LoginThrottle {
+    private static final Logger logger = LoggerFactory.getLogger(RedisLoginThrottle.class);
+
+    private static final byte[] BLOCKED_LUA = (
+            "redis.call('ZREMRANGEBYSCORE', KEYS[1], 0, tonumber(ARGV[1]) - tonumber(ARGV[2])) " +
+            "if redis.call('ZCARD', KEYS[1]) >= tonumber(ARGV[3]) then " +
+            "    return 1 " +
+            "end " +
+            "return 0").getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] FAILURE_LUA = (
+            "redis.call('ZREMRANGEBYSCORE', KEYS[1], 0, tonumber(ARGV[1]) - tonumber(ARGV[2])) " +
+            "redis.call('ZADD', KEYS[1], ARGV[1], ARGV[4]) " +
+            "redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -tonumber(ARGV[3]) - 1) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+            "return 1").getBytes(StandardCharsets.UTF_8);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final String prefix;
+    private final long windowMillis;
+
+    public RedisLoginThrottle(RedisTemplate<String, Object> redisTemplate, String prefix, long windowMillis) {
+        this.redisTemplate = redisTemplate;
+        this.prefix = prefix;
+        this.windowMillis = windowMillis;
+    }
+
+    @Override
+    public boolean isBlocked(String key, int limit) {
+        try {
+            Long result = eval(BLOCKED_LUA, key, limit);
+            return null != result && result > 0;
+        } catch (Exception e) {
+            logger.error("登录限流访问redis失败，本次放行", e);
+            return false;
+        }
+    }
+
+    @Override
+    public void recordFailure(String key, int limit) {
+        try {
+            eval(FAILURE_LUA, key, limit);
+        } catch (Exception e) {
+            logger.error("记录登录失败次数失败", e);
+        }
+    }
+
+    private Long eval(byte[] script, String key, int limit) {
+        byte[][] keysAndArgs = new byte[][]{
+                bytes(prefix + key),
+                bytes(String.valueOf(System.currentTimeMillis())),
+                bytes(String.valueOf(windowMillis)),
+                bytes(String.valueOf(limit)),
+                bytes(UUID.randomUUID().toString())
+        };
+        return redisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.eval(script, ReturnType.INTEGER, 1, keysAndArgs));
+    }
+
+    @Override
+    public void reset(String key) {
+        try {
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.del(bytes(prefix + key)));
+        } catch (Exception e) {
+            logger.error("清除登录限流记录失败", e);
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
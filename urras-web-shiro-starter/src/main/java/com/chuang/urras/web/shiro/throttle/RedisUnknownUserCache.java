@@ -0,0 +1,74 @@
+package com.chuang.urras.web.shiro.throttle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * redis实现的不存在用户名缓存，集群中所有节点共享，新注册用户时 {@link #evict(String)} 对所有节点立即生效。
+ * 每个用户名一个带过期时间的key。redis不可用时当作没有缓存，照常查询数据库。
+ */
+public class RedisUnknownUserCache extends UnknownUserCache {
+    private static final Logger logger = LoggerFactory.getLogger(RedisUnknownUserCache.class);
+
+    private static final byte[] VALUE = new byte[]{'1'};
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final String prefix;
+    private final long ttlMillis;
+
+    public RedisUnknownUserCache(RedisTemplate<String, Object> redisTemplate, String prefix, long ttlMillis) {
+        super(ttlMillis, 0);
+        this.redisTemplate = redisTemplate;
+        this.prefix = prefix;
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public boolean isUnknown(String username) {
+        if (ttlMillis <= 0 || null == username) {
+            return false;
+        }
+        try {
+            Boolean exists = redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.exists(key(username)));
+            return Boolean.TRUE.equals(exists);
+        } catch (Exception e) {
+            logger.error("读取不存在用户名缓存失败", e);
+            return false;
+        }
+    }
+
+    @Override
+    public void markUnknown(String username) {
+        if (ttlMillis <= 0 || null == username) {
+            return;
+        }
+        try {
+            redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.set(key(username), VALUE,
+                    Expiration.milliseconds(ttlMillis), RedisStringCommands.SetOption.UPSERT));
+        } catch (Exception e) {
+            logger.error("写入不存在用户名缓存失败", e);
+        }
+    }
+
+    @Override
+    public void evict(String username) {
+        if (null == username) {
+            return;
+        }
+        try {
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.del(key(username)));
+        } catch (Exception e) {
+            logger.error("清除不存在用户名缓存失败", e);
+        }
+    }
+
+    private byte[] key(String username) {
+        return (prefix + username).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,55 @@
+package com.chuang.urras.web.shiro.throttle;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 不存在的用户名的短期缓存。
+ * 撞库时大量使用不存在的用户名，缓存一段时间可以避免每次都查询数据库。
+ * 默认只在本地缓存，过期时间很短，新注册用户时调用 {@link #evict(String)} 只对当前节点立即生效；
+ * 集群部署时使用 {@link RedisUnknownUserCache}，所有节点共享缓存，注册后的 evict 对所有节点生效。
+ */
+public class UnknownUserCache {
+
+    private final long ttlMillis;
+    private final int maxSize;
+    private final Map<String, Long> expires = new ConcurrentHashMap<>();
+
+    public UnknownUserCache(long ttlMillis, int maxSize) {
+        this.ttlMillis = ttlMillis;
+        this.maxSize = maxSize;
+    }
+
+    public boolean isUnknown(String username) {
+        if (ttlMillis <= 0 || null == username) {
+            return false;
+        }
+        Long expire = expires.get(username);
+        if (null == expire) {
+            return false;
+        }
+        if (expire < System.currentTimeMillis()) {
+            expires.remove(username, expire);
+            return false;
+        }
+        return true;
+    }
+
+    public void markUnknown(String username) {
+        if (ttlMillis <= 0 || null == username) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (expires.size() >= maxSize) {
+            expires.values().removeIf(expire -> expire < now);
+            if (expires.size() >= maxSize) {
+                return;
+            }
+        }
+        expires.put(username, now + ttlMillis);
+    }
+
+    public void evict(String username) {
+        expires.remove(username);
+    }
+}